@@ -0,0 +1,95 @@
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Hash-spreading functions for {@code Map4}. A spreader is applied to a key's
+ * {@code hashCode} before it is reduced to a bucket index, so keys whose hash
+ * codes differ only in bits the reduction ignores still land in different
+ * buckets.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class HashSpreaders {
+
+    /**
+     * Leaves hash codes unchanged; this is what {@code Map4} has always done.
+     */
+    public static final IntUnaryOperator IDENTITY = h -> h;
+
+    /**
+     * The 32-bit finalizer of MurmurHash3, which makes every output bit depend
+     * on every input bit.
+     */
+    public static final IntUnaryOperator MURMUR = HashSpreaders::murmur;
+
+    /**
+     * Fibonacci (multiplicative) hashing: multiplies by 2^32 / phi, then folds
+     * the well-mixed high half into the low half that {@code mod} looks at.
+     */
+    public static final IntUnaryOperator FIBONACCI = HashSpreaders::fibonacci;
+
+    /**
+     * First multiplier of the MurmurHash3 finalizer.
+     */
+    private static final int MURMUR_MULTIPLIER_1 = 0x85ebca6b;
+
+    /**
+     * Second multiplier of the MurmurHash3 finalizer.
+     */
+    private static final int MURMUR_MULTIPLIER_2 = 0xc2b2ae35;
+
+    /**
+     * First shift of the MurmurHash3 finalizer.
+     */
+    private static final int MURMUR_SHIFT_1 = 16;
+
+    /**
+     * Second shift of the MurmurHash3 finalizer.
+     */
+    private static final int MURMUR_SHIFT_2 = 13;
+
+    /**
+     * 2^32 divided by the golden ratio, rounded to an odd integer.
+     */
+    private static final int GOLDEN_RATIO = 0x9e3779b9;
+
+    /**
+     * Number of bits in half an {@code int}.
+     */
+    private static final int HALF_INT_BITS = 16;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private HashSpreaders() {
+    }
+
+    /**
+     * Returns the MurmurHash3 finalizer of {@code h}.
+     *
+     * @param h
+     *            the hash code to spread
+     * @return the spread hash code
+     */
+    private static int murmur(int h) {
+        int x = h;
+        x ^= x >>> MURMUR_SHIFT_1;
+        x *= MURMUR_MULTIPLIER_1;
+        x ^= x >>> MURMUR_SHIFT_2;
+        x *= MURMUR_MULTIPLIER_2;
+        x ^= x >>> MURMUR_SHIFT_1;
+        return x;
+    }
+
+    /**
+     * Returns the Fibonacci hash of {@code h}, high half folded into low.
+     *
+     * @param h
+     *            the hash code to spread
+     * @return the spread hash code
+     */
+    private static int fibonacci(int h) {
+        int x = h * GOLDEN_RATIO;
+        return x ^ (x >>> HALF_INT_BITS);
+    }
+
+}
@@ -1,5 +1,9 @@
+import java.lang.reflect.Constructor;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.function.IntUnaryOperator;
 
 import components.array.Array;
 import components.array.Array1L;
@@ -11,32 +15,86 @@ import components.map.MapSecondary;
  * {@code Map} represented as a hash table using {@code Map}s for the buckets,
  * with implementations of primary methods.
  *
+ * <p>
+ * Buckets are created only when a pair is first added to them, and
+ * {@code clear} empties {@code this} in constant time by forgetting which
+ * buckets are non-empty; a stale bucket is cleared when it is next added to.
+ * Until then it still references its old pairs, which is the price of not
+ * touching every bucket on {@code clear}. The hash table keeps its size, and
+ * since only removals shrink it, refilling a cleared map to its old size does
+ * not rehash.
+ *
+ * <p>
+ * A bucket is a {@code Map1L} until it holds more than
+ * {@code TREEIFY_THRESHOLD} pairs whose keys are all {@code Comparable}, of
+ * the same class, and distinct according to {@code compareTo}; it is then
+ * converted to a balanced search tree, so that even keys that all collide cost
+ * only a logarithmic number of comparisons to look up. A key found in the tree
+ * is confirmed with {@code equals}, so a {@code compareTo} that is inconsistent
+ * with {@code equals} does not change which keys are in {@code this}. A tree
+ * bucket is converted back once it shrinks below {@code UNTREEIFY_THRESHOLD},
+ * or if a key is added to it that it cannot order, or that {@code compareTo}
+ * finds equal to a different key already there.
+ *
  * @param <K>
  *            type of {@code Map} domain (key) entries
  * @param <V>
  *            type of {@code Map} range (associated value) entries
+ * @mathdefinitions
+ *
+ *                  <pre>
+ * LISTED(
+ *   i: integer
+ *  ): boolean is
+ *  0 <= $this.occupiedPosition[i] < $this.occupiedCount  and
+ *  $this.occupiedBuckets[$this.occupiedPosition[i]] = i
+ *
+ * BUCKET(
+ *   x: K
+ *  ): integer is
+ *  if $this.powerOfTwo then
+ *    FOLD(h) bitwise-and (|$this.hashTable.entries| - 1)
+ *  else
+ *    h mod |$this.hashTable.entries|
+ *  where h = [computed result of $this.spreader.applyAsInt(x.hashCode())]
+ *  and FOLD(h) = h xor (h >>> 16)
+ *                  </pre>
+ *
  * @convention
  *
  *             <pre>
  * |$this.hashTable.entries| > 0  and
+ * |$this.occupiedBuckets| = |$this.occupiedPosition| =
+ *   |$this.hashTable.entries|  and
+ * ($this.treeifyRetrySize = null  or
+ *  |$this.treeifyRetrySize| = |$this.hashTable.entries|)  and
+ * 0 <= $this.occupiedCount <= |$this.hashTable.entries|  and
+ * for all j: integer where (0 <= j < $this.occupiedCount)
+ *   ($this.occupiedPosition[$this.occupiedBuckets[j]] = j  and
+ *    $this.occupiedBuckets[j] is in $this.hashTable.examinableIndices  and
+ *    $this.hashTable.entries[$this.occupiedBuckets[j]] /= {})  and
  * for all i: integer, pf: PARTIAL_FUNCTION, x: K
- *     where (0 <= i  and  i < |$this.hashTable.entries|  and
+ *     where (LISTED(i)  and
  *            <pf> = $this.hashTable.entries[i, i+1)  and
  *            x is in DOMAIN(pf))
- *   ([computed result of x.hashCode()] mod |$this.hashTable.entries| = i))  and
- * |$this.hashTable.examinableIndices| = |$this.hashTable.entries|  and
+ *   (BUCKET(x) = i))  and
  * $this.size = sum i: integer, pf: PARTIAL_FUNCTION
- *     where (0 <= i  and  i < |$this.hashTable.entries|  and
- *            <pf> = $this.hashTable.entries[i, i+1))
- *   (|pf|)
+ *     where (LISTED(i)  and  <pf> = $this.hashTable.entries[i, i+1))
+ *   (|pf|)  and
+ * 0 < $this.loadFactor  and
+ * 0 < $this.initialHashTableSize <= |$this.hashTable.entries|  and
+ * $this.mask = |$this.hashTable.entries| - 1  and
+ * (if $this.powerOfTwo then
+ *   [|$this.hashTable.entries| and $this.initialHashTableSize are powers
+ *    of 2])  and
+ * $this.size <= $this.loadFactor * |$this.hashTable.entries|
  *             </pre>
  *
  * @correspondence
  *
  *                 <pre>
  * this = union i: integer, pf: PARTIAL_FUNCTION
- *            where (0 <= i  and  i < |$this.hashTable.entries|  and
- *                   <pf> = $this.hashTable.entries[i, i+1))
+ *            where (LISTED(i)  and  <pf> = $this.hashTable.entries[i, i+1))
  *          (pf)
  *                 </pre>
  *
@@ -53,6 +111,47 @@ public class Map4<K, V> extends MapSecondary<K, V> {
      */
     private static final int DEFAULT_HASH_TABLE_SIZE = 100;
 
+    /**
+     * Default maximum ratio of {@code size} to hash table size.
+     */
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+    /**
+     * Factor by which the hash table grows when the load factor is exceeded.
+     */
+    private static final int GROWTH_FACTOR = 2;
+
+    /**
+     * A bucket with more pairs than this is converted to a tree, if its keys
+     * can be ordered.
+     */
+    private static final int TREEIFY_THRESHOLD = 8;
+
+    /**
+     * A tree bucket with fewer pairs than this is converted back to a
+     * {@code Map1L}; less than {@code TREEIFY_THRESHOLD} so that a bucket
+     * hovering around the threshold is not converted back and forth.
+     */
+    private static final int UNTREEIFY_THRESHOLD = 6;
+
+    /**
+     * Largest power-of-2 hash table size.
+     */
+    private static final int MAX_POWER_OF_TWO_SIZE = 1 << 30;
+
+    /**
+     * Shift that folds the high half of a hash code into the low half, so a
+     * mask still sees the high bits.
+     */
+    private static final int FOLD_SHIFT = 16;
+
+    /**
+     * The hash table shrinks when its load drops below
+     * {@code loadFactor / SHRINK_DIVISOR}; the gap between the grow and shrink
+     * thresholds keeps alternating add/remove from rehashing every time.
+     */
+    private static final int SHRINK_DIVISOR = 4;
+
     /**
      * Buckets for hashing.
      */
@@ -63,6 +162,63 @@ public class Map4<K, V> extends MapSecondary<K, V> {
      */
     private int size;
 
+    /**
+     * Maximum ratio of {@code size} to hash table size before rehashing.
+     */
+    private double loadFactor;
+
+    /**
+     * Hash table size chosen at construction; the table never shrinks below
+     * it, and {@code transferFrom} returns the source to it.
+     */
+    private int initialHashTableSize;
+
+    /**
+     * Function applied to each key's {@code hashCode} before it is reduced to
+     * a bucket index.
+     */
+    private IntUnaryOperator spreader;
+
+    /**
+     * Whether the hash table size is kept a power of 2, so that bucket indices
+     * come from a bit mask instead of {@code mod}.
+     */
+    private boolean powerOfTwo;
+
+    /**
+     * Hash table size minus one, used as the bit mask when
+     * {@code powerOfTwo}; cached so indexing does not call {@code length}.
+     */
+    private int mask;
+
+    /**
+     * Indices of the non-empty buckets, in no particular order, in
+     * {@code occupiedBuckets[0, occupiedCount)}; buckets not listed there are
+     * empty whatever they contain.
+     */
+    private int[] occupiedBuckets;
+
+    /**
+     * Number of non-empty buckets.
+     */
+    private int occupiedCount;
+
+    /**
+     * For each non-empty bucket {@code i}, the position of {@code i} in
+     * {@code occupiedBuckets}, so it can be unlisted in constant time; for
+     * other buckets, any value.
+     */
+    private int[] occupiedPosition;
+
+    /**
+     * For each list bucket {@code i} that could not be made a tree, the size
+     * it must exceed before that is tried again; 0 if no attempt has failed
+     * since the bucket was last empty. {@code null} until an attempt first
+     * fails: most tables never need it, and allocating it with every table
+     * measurably slowed lookups in large tables in {@code Map4Timing}.
+     */
+    private int[] treeifyRetrySize;
+
     /**
      * Computes {@code a} mod {@code b} as % should have been defined to work.
      *
@@ -83,8 +239,8 @@ public class Map4<K, V> extends MapSecondary<K, V> {
         assert b > 0 : "Violation of: b > 0";
         // Calculate the reminder
         int mod = a % b;
-        // Check if a is less than 0
-        if (a < 0) {
+        // Check if the remainder is less than 0 (a < 0 with b not dividing a)
+        if (mod < 0) {
             // Calculate the mod
             mod += b;
         }
@@ -101,19 +257,302 @@ public class Map4<K, V> extends MapSecondary<K, V> {
      *
      *          <pre>
      * |$this.hashTable.entries| = hashTableSize  and
-     * for all i: integer
-     *     where (0 <= i  and  i < |$this.hashTable.entries|)
-     *   ($this.hashTable.entries[i, i+1) = <{}>  and
-     *    i is in $this.hashTable.examinableIndices)  and
-     * $this.size = 0
+     * $this.hashTable.examinableIndices = {}  and
+     * $this.occupiedCount = 0  and  $this.size = 0
      *          </pre>
      */
     private void createNewRep(int hashTableSize) {
-        // Create an array of hashTable with given size
+        // Create an array of hashTable with given size; buckets come later
         this.hashTable = new Array1L<Map<K, V>>(hashTableSize);
-        // Use a for loop to initialize every bucket in the array
-        for (int i = 0; i < hashTableSize; i++) {
-            this.hashTable.setEntry(i, new Map1L<K, V>());
+        this.mask = hashTableSize - 1;
+        this.size = 0;
+        this.occupiedBuckets = new int[hashTableSize];
+        this.occupiedPosition = new int[hashTableSize];
+        this.treeifyRetrySize = null;
+        this.occupiedCount = 0;
+    }
+
+    /**
+     * Reports whether bucket {@code i} is listed as non-empty.
+     *
+     * @param i
+     *            the bucket index
+     * @return true iff bucket {@code i} is listed
+     * @requires 0 <= i < |$this.hashTable.entries|
+     * @ensures isListed = LISTED(i)
+     */
+    private boolean isListed(int i) {
+        int position = this.occupiedPosition[i];
+        return position < this.occupiedCount
+                && this.occupiedBuckets[position] == i;
+    }
+
+    /**
+     * Reports the size list bucket {@code i} must exceed before it is tried
+     * as a tree again, or 0 if no attempt has failed.
+     *
+     * @param i
+     *            the bucket index
+     * @return the retry size of bucket {@code i}
+     * @requires 0 <= i < |$this.hashTable.entries|
+     */
+    private int treeifyRetrySize(int i) {
+        int retrySize = 0;
+        if (this.treeifyRetrySize != null) {
+            retrySize = this.treeifyRetrySize[i];
+        }
+        return retrySize;
+    }
+
+    /**
+     * Sets the size list bucket {@code i} must exceed before it is tried as a
+     * tree again, creating {@code $this.treeifyRetrySize} if a non-zero size
+     * needs it.
+     *
+     * @param i
+     *            the bucket index
+     * @param retrySize
+     *            the new retry size, or 0 to try whenever the bucket is long
+     * @updates $this.treeifyRetrySize
+     * @requires 0 <= i < |$this.hashTable.entries| and retrySize >= 0
+     */
+    private void setTreeifyRetrySize(int i, int retrySize) {
+        if (this.treeifyRetrySize == null && retrySize > 0) {
+            this.treeifyRetrySize = new int[this.hashTable.length()];
+        }
+        if (this.treeifyRetrySize != null) {
+            this.treeifyRetrySize[i] = retrySize;
+        }
+    }
+
+    /**
+     * Adds the pair ({@code key}, {@code value}) to bucket {@code i}, listing
+     * the bucket as occupied if it was empty.
+     *
+     * @param i
+     *            the bucket index
+     * @param key
+     *            the key to add
+     * @param value
+     *            the associated value to add
+     * @updates $this.hashTable, $this.occupiedBuckets, $this.occupiedCount,
+     *          $this.occupiedPosition
+     * @requires i = bucketIndex(key) and key is not in DOMAIN(this)
+     * @ensures this = #this union {(key, value)}
+     */
+    private void addToBucket(int i, K key, V value) {
+        if (!this.isListed(i)) {
+            // Create the bucket on first use, or drop what a clear left in it
+            if (!this.hashTable.mayBeExamined(i)) {
+                this.hashTable.setEntry(i, new Map1L<K, V>());
+            } else if (this.hashTable.entry(i) instanceof TreeBucket<?, ?>) {
+                this.hashTable.replaceEntry(i, new Map1L<K, V>());
+            } else {
+                this.hashTable.entry(i).clear();
+            }
+            this.occupiedBuckets[this.occupiedCount] = i;
+            this.occupiedPosition[i] = this.occupiedCount;
+            this.occupiedCount++;
+            this.setTreeifyRetrySize(i, 0);
+        }
+        Map<K, V> bucket = this.hashTable.entry(i);
+        if (bucket instanceof TreeBucket<?, ?>
+                && !((TreeBucket<K, V>) bucket).accepts(key)) {
+            // The tree cannot tell the new key apart, so fall back to a list
+            bucket = this.convertBucket(i, new Map1L<K, V>());
+            this.setTreeifyRetrySize(i, GROWTH_FACTOR * (bucket.size() + 1));
+        }
+        bucket.add(key, value);
+        /*
+         * Try again after a failure, since a key that kept the bucket a list
+         * may have been removed since, but only once the bucket has doubled:
+         * each attempt walks the whole bucket, so trying on every add would
+         * make adding colliding keys that cannot be ordered quadratic
+         */
+        if (bucket.size() > Math.max(TREEIFY_THRESHOLD,
+                this.treeifyRetrySize(i))
+                && !(bucket instanceof TreeBucket<?, ?>)) {
+            TreeBucket<K, V> tree = TreeBucket.treeOf(bucket);
+            if (tree != null) {
+                this.hashTable.replaceEntry(i, tree);
+            } else {
+                this.setTreeifyRetrySize(i, GROWTH_FACTOR * bucket.size());
+            }
+        }
+    }
+
+    /**
+     * Converts bucket {@code i} back to a {@code Map1L} if it is a tree bucket
+     * that has become small.
+     *
+     * @param i
+     *            the bucket index
+     * @updates $this.hashTable
+     * @requires i is in $this.hashTable.examinableIndices
+     * @ensures this = #this
+     */
+    private void untreeifyIfSmall(int i) {
+        Map<K, V> bucket = this.hashTable.entry(i);
+        if (bucket instanceof TreeBucket<?, ?>
+                && bucket.size() < UNTREEIFY_THRESHOLD) {
+            this.convertBucket(i, new Map1L<K, V>());
+        }
+    }
+
+    /**
+     * Moves the pairs of bucket {@code i} into {@code newBucket} and makes it
+     * bucket {@code i}.
+     *
+     * @param i
+     *            the bucket index
+     * @param newBucket
+     *            the empty bucket that replaces bucket {@code i}
+     * @return the new bucket {@code i}
+     * @updates $this.hashTable
+     * @requires
+     *
+     *           <pre>
+     * i is in $this.hashTable.examinableIndices  and  newBucket = {}  and
+     * [newBucket can hold every key of bucket i]
+     *           </pre>
+     *
+     * @ensures this = #this and convertBucket = newBucket
+     */
+    private Map<K, V> convertBucket(int i, Map<K, V> newBucket) {
+        Map<K, V> oldBucket = this.hashTable.replaceEntry(i, newBucket);
+        while (oldBucket.size() > 0) {
+            Pair<K, V> p = oldBucket.removeAny();
+            newBucket.add(p.key(), p.value());
+        }
+        return newBucket;
+    }
+
+    /**
+     * Unlists bucket {@code i} as occupied if it has become empty, by moving
+     * the last listed bucket into its position.
+     *
+     * @param i
+     *            the bucket index
+     * @updates $this.occupiedBuckets, $this.occupiedCount,
+     *          $this.occupiedPosition
+     * @requires [bucket i is listed in occupiedBuckets]
+     * @ensures [bucket i is listed in occupiedBuckets iff it is non-empty]
+     */
+    private void unlistIfEmpty(int i) {
+        if (this.hashTable.entry(i).size() == 0) {
+            int position = this.occupiedPosition[i];
+            this.occupiedCount--;
+            int last = this.occupiedBuckets[this.occupiedCount];
+            this.occupiedBuckets[position] = last;
+            this.occupiedPosition[last] = position;
+        }
+    }
+
+    /**
+     * Returns the index of the bucket in which {@code key} belongs.
+     *
+     * @param key
+     *            the key
+     * @return the bucket index for {@code key}
+     * @ensures
+     *
+     *          <pre>
+     * bucketIndex = BUCKET(key)
+     *          </pre>
+     */
+    private int bucketIndex(K key) {
+        int h = this.spreader.applyAsInt(key.hashCode());
+        int i;
+        if (this.powerOfTwo) {
+            // No division: fold the high bits down and keep the low ones
+            i = (h ^ (h >>> FOLD_SHIFT)) & this.mask;
+        } else {
+            i = mod(h, this.hashTable.length());
+        }
+        return i;
+    }
+
+    /**
+     * Moves every pair into a new hash table of size {@code newHashTableSize}.
+     *
+     * @param newHashTableSize
+     *            the size of the new hash table
+     * @updates $this.hashTable
+     * @requires newHashTableSize > 0
+     * @ensures
+     *
+     *          <pre>
+     * |$this.hashTable.entries| = newHashTableSize  and
+     * this = #this
+     *          </pre>
+     */
+    private void rehash(int newHashTableSize) {
+        assert newHashTableSize > 0 : "Violation of: newHashTableSize > 0";
+
+        Array<Map<K, V>> oldHashTable = this.hashTable;
+        int oldSize = this.size;
+        int[] oldOccupiedBuckets = this.occupiedBuckets;
+        int oldOccupiedCount = this.occupiedCount;
+        this.createNewRep(newHashTableSize);
+        // Drain every old non-empty bucket into the new table
+        for (int j = 0; j < oldOccupiedCount; j++) {
+            Map<K, V> bucket = oldHashTable.entry(oldOccupiedBuckets[j]);
+            while (bucket.size() > 0) {
+                Pair<K, V> p = bucket.removeAny();
+                this.addToBucket(this.bucketIndex(p.key()), p.key(),
+                        p.value());
+            }
+        }
+        this.size = oldSize;
+    }
+
+    /**
+     * Grows the hash table if the load factor has been exceeded.
+     *
+     * @updates $this.hashTable
+     * @ensures
+     *
+     *          <pre>
+     * this = #this  and
+     * $this.size <= $this.loadFactor * |$this.hashTable.entries|
+     *          </pre>
+     */
+    private void growIfNeeded() {
+        int length = this.hashTable.length();
+        if (this.size > this.loadFactor * length) {
+            // Grow until the load factor holds again, keeping powers of 2
+            int extra = 1;
+            long maxLength = Integer.MAX_VALUE;
+            if (this.powerOfTwo) {
+                extra = 0;
+                maxLength = MAX_POWER_OF_TWO_SIZE;
+            }
+            long newLength = (long) length * GROWTH_FACTOR + extra;
+            while (this.size > this.loadFactor * newLength) {
+                newLength = newLength * GROWTH_FACTOR + extra;
+            }
+            newLength = Math.min(newLength, maxLength);
+            if (newLength > length) {
+                this.rehash((int) newLength);
+            }
+        }
+    }
+
+    /**
+     * Shrinks the hash table by one step, but never below
+     * {@code initialHashTableSize}, if it has become sparse. Only removals
+     * call this, so that a map refilled after {@code clear} keeps its table.
+     *
+     * @updates $this.hashTable
+     * @ensures this = #this
+     */
+    private void shrinkIfNeeded() {
+        int length = this.hashTable.length();
+        if (length > this.initialHashTableSize
+                && this.size < this.loadFactor * length / SHRINK_DIVISOR) {
+            // Shrink by one step; later removes shrink further if needed
+            this.rehash(Math.max(this.initialHashTableSize,
+                    length / GROWTH_FACTOR));
         }
     }
 
@@ -125,8 +564,7 @@ public class Map4<K, V> extends MapSecondary<K, V> {
      * No-argument constructor.
      */
     public Map4() {
-        // Create the new rep with default size
-        this.createNewRep(DEFAULT_HASH_TABLE_SIZE);
+        this(DEFAULT_HASH_TABLE_SIZE, DEFAULT_LOAD_FACTOR);
     }
 
     /**
@@ -138,8 +576,91 @@ public class Map4<K, V> extends MapSecondary<K, V> {
      * @ensures this = {}
      */
     public Map4(int hashTableSize) {
+        this(hashTableSize, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructor resulting in a hash table of initial size
+     * {@code hashTableSize} that is rehashed into a larger table whenever
+     * {@code |this| > loadFactor * [hash table size]}.
+     *
+     * @param hashTableSize
+     *            initial size of hash table
+     * @param loadFactor
+     *            maximum ratio of {@code |this|} to hash table size
+     * @requires hashTableSize > 0 and loadFactor > 0
+     * @ensures this = {}
+     */
+    public Map4(int hashTableSize, double loadFactor) {
+        this(hashTableSize, loadFactor, HashSpreaders.IDENTITY);
+    }
+
+    /**
+     * Constructor resulting in a hash table of initial size
+     * {@code hashTableSize}, with load factor {@code loadFactor}, that puts
+     * each key {@code x} in bucket
+     * {@code spreader.applyAsInt(x.hashCode()) mod [hash table size]}.
+     *
+     * @param hashTableSize
+     *            initial size of hash table
+     * @param loadFactor
+     *            maximum ratio of {@code |this|} to hash table size
+     * @param spreader
+     *            function applied to hash codes before choosing a bucket, such
+     *            as one of the {@code HashSpreaders}
+     * @requires hashTableSize > 0 and loadFactor > 0 and [spreader is a
+     *           function, i.e., returns equal results for equal arguments]
+     * @ensures this = {}
+     */
+    public Map4(int hashTableSize, double loadFactor,
+            IntUnaryOperator spreader) {
+        this(hashTableSize, loadFactor, spreader, false);
+    }
+
+    /**
+     * Constructor like {@code Map4(hashTableSize, loadFactor, spreader)}, except
+     * that if {@code powerOfTwo} the hash table size is rounded up to a power
+     * of 2 and kept one, so that bucket indices come from a bit mask (after
+     * folding the high half of the spread hash code into the low half) rather
+     * than from an integer division.
+     *
+     * @param hashTableSize
+     *            initial size of hash table, before rounding
+     * @param loadFactor
+     *            maximum ratio of {@code |this|} to hash table size
+     * @param spreader
+     *            function applied to hash codes before choosing a bucket
+     * @param powerOfTwo
+     *            whether to use power-of-2 sizes and mask-based indexing
+     * @requires
+     *
+     *           <pre>
+     * 0 < hashTableSize <= 2^30  and  loadFactor > 0  and
+     * [spreader is a function]
+     *           </pre>
+     *
+     * @ensures this = {}
+     */
+    public Map4(int hashTableSize, double loadFactor, IntUnaryOperator spreader,
+            boolean powerOfTwo) {
+        assert hashTableSize > 0 : "Violation of: hashTableSize > 0";
+        assert loadFactor > 0 : "Violation of: loadFactor > 0";
+        assert spreader != null : "Violation of: spreader is not null";
+
+        this.loadFactor = loadFactor;
+        this.spreader = spreader;
+        this.powerOfTwo = powerOfTwo;
+        this.initialHashTableSize = hashTableSize;
+        if (powerOfTwo) {
+            assert hashTableSize <= MAX_POWER_OF_TWO_SIZE : ""
+                    + "Violation of: hashTableSize <= 2^30";
+            this.initialHashTableSize = 1;
+            while (this.initialHashTableSize < hashTableSize) {
+                this.initialHashTableSize *= 2;
+            }
+        }
         // Create the new rep with given size
-        this.createNewRep(hashTableSize);
+        this.createNewRep(this.initialHashTableSize);
     }
 
     /*
@@ -150,7 +671,10 @@ public class Map4<K, V> extends MapSecondary<K, V> {
     @Override
     public final Map<K, V> newInstance() {
         try {
-            return this.getClass().newInstance();
+            Constructor<?> c = this.getClass().getConstructor(int.class,
+                    double.class, IntUnaryOperator.class, boolean.class);
+            return (Map<K, V>) c.newInstance(this.initialHashTableSize,
+                    this.loadFactor, this.spreader, this.powerOfTwo);
         } catch (ReflectiveOperationException e) {
             throw new AssertionError(
                     "Cannot construct object of type " + this.getClass());
@@ -159,7 +683,9 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 
     @Override
     public final void clear() {
-        this.createNewRep(DEFAULT_HASH_TABLE_SIZE);
+        // Forget the non-empty buckets; the table keeps its current size
+        this.occupiedCount = 0;
+        this.size = 0;
     }
 
     @Override
@@ -176,7 +702,16 @@ public class Map4<K, V> extends MapSecondary<K, V> {
         Map4<K, V> localSource = (Map4<K, V>) source;
         this.hashTable = localSource.hashTable;
         this.size = localSource.size;
-        localSource.createNewRep(DEFAULT_HASH_TABLE_SIZE);
+        this.occupiedBuckets = localSource.occupiedBuckets;
+        this.occupiedCount = localSource.occupiedCount;
+        this.occupiedPosition = localSource.occupiedPosition;
+        this.treeifyRetrySize = localSource.treeifyRetrySize;
+        this.loadFactor = localSource.loadFactor;
+        this.initialHashTableSize = localSource.initialHashTableSize;
+        this.spreader = localSource.spreader;
+        this.powerOfTwo = localSource.powerOfTwo;
+        this.mask = localSource.mask;
+        localSource.createNewRep(localSource.initialHashTableSize);
     }
 
     /*
@@ -190,11 +725,12 @@ public class Map4<K, V> extends MapSecondary<K, V> {
         assert!this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
 
         // Retrieve the bucket number of the pair
-        int i = mod(key.hashCode(), this.hashTable.length());
+        int i = this.bucketIndex(key);
         // Put the pair in the corresponding bucket
-        this.hashTable.entry(i).add(key, value);
+        this.addToBucket(i, key, value);
         // Increase the size by 1
         this.size++;
+        this.growIfNeeded();
     }
 
     @Override
@@ -203,11 +739,14 @@ public class Map4<K, V> extends MapSecondary<K, V> {
         assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
 
         // Retrieve the bucket number of the pair
-        int i = mod(key.hashCode(), this.hashTable.length());
+        int i = this.bucketIndex(key);
         // Remove the corresponding pair
         Pair<K, V> p = this.hashTable.entry(i).remove(key);
-        this.size--;
+        this.untreeifyIfSmall(i);
+        this.unlistIfEmpty(i);
         // Decrease the size by 1
+        this.size--;
+        this.shrinkIfNeeded();
         return p;
     }
 
@@ -215,19 +754,15 @@ public class Map4<K, V> extends MapSecondary<K, V> {
     public final Pair<K, V> removeAny() {
         assert this.size() > 0 : "Violation of: this /= empty_set";
 
-        // Initialize the index
-        int i = 0;
-        // Initialize the boolean of whether the size of the bucket is 0
-        boolean bucketHasSize = this.hashTable.entry(i).size() > 0;
-        // Use a while loop to find a index of no empty bucket
-        while (!bucketHasSize) {
-            i++;
-            bucketHasSize = this.hashTable.entry(i).size() > 0;
-        }
+        // Take the last listed non-empty bucket
+        int i = this.occupiedBuckets[this.occupiedCount - 1];
         // Remove the corresponding pair
         Pair<K, V> p = this.hashTable.entry(i).removeAny();
+        this.untreeifyIfSmall(i);
+        this.unlistIfEmpty(i);
         // Decrease the size by 1
         this.size--;
+        this.shrinkIfNeeded();
         return p;
     }
 
@@ -237,7 +772,7 @@ public class Map4<K, V> extends MapSecondary<K, V> {
         assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
 
         // Retrieve the bucket number of the pair
-        int i = mod(key.hashCode(), this.hashTable.length());
+        int i = this.bucketIndex(key);
         // Return the value of the corresponding key
         return this.hashTable.entry(i).value(key);
     }
@@ -247,9 +782,9 @@ public class Map4<K, V> extends MapSecondary<K, V> {
         assert key != null : "Violation of: key is not null";
 
         // Retrieve the bucket number of the pair
-        int i = mod(key.hashCode(), this.hashTable.length());
-        // Return the boolean of whether it has key
-        return this.hashTable.entry(i).hasKey(key);
+        int i = this.bucketIndex(key);
+        // An unlisted bucket is empty, and may not even exist yet
+        return this.isListed(i) && this.hashTable.entry(i).hasKey(key);
     }
 
     @Override
@@ -264,6 +799,310 @@ public class Map4<K, V> extends MapSecondary<K, V> {
         return new Map4Iterator();
     }
 
+    /*
+     * Statistics methods -----------------------------------------------------
+     */
+
+    /**
+     * Reports the number of buckets in the hash table.
+     *
+     * @return the hash table size
+     * @ensures hashTableSize = |$this.hashTable.entries|
+     */
+    public final int hashTableSize() {
+        return this.hashTable.length();
+    }
+
+    /**
+     * Reports the number of pairs in the largest bucket.
+     *
+     * @return the longest chain length
+     * @ensures
+     *
+     *          <pre>
+     * maxBucketSize = [max |pf| over the buckets pf of $this.hashTable]
+     *          </pre>
+     */
+    public final int maxBucketSize() {
+        int max = 0;
+        for (int j = 0; j < this.occupiedCount; j++) {
+            max = Math.max(max,
+                    this.hashTable.entry(this.occupiedBuckets[j]).size());
+        }
+        return max;
+    }
+
+    /**
+     * Reports how many buckets hold each number of pairs.
+     *
+     * @return histogram where entry {@code k} is the number of buckets holding
+     *         exactly {@code k} pairs
+     * @ensures
+     *
+     *          <pre>
+     * |bucketSizeHistogram| = maxBucketSize() + 1  and
+     * for all k: integer where (0 <= k <= maxBucketSize())
+     *   (bucketSizeHistogram[k] =
+     *     [number of buckets pf of $this.hashTable with |pf| = k])
+     *          </pre>
+     */
+    public final int[] bucketSizeHistogram() {
+        int[] histogram = new int[this.maxBucketSize() + 1];
+        // Every unlisted bucket is empty
+        histogram[0] = this.hashTable.length() - this.occupiedCount;
+        for (int j = 0; j < this.occupiedCount; j++) {
+            histogram[this.hashTable.entry(this.occupiedBuckets[j]).size()]++;
+        }
+        return histogram;
+    }
+
+    /**
+     * Reports the number of collisions: pairs that share a bucket with some
+     * other pair added before them.
+     *
+     * @return the collision count
+     * @ensures collisionCount = |this| - [number of non-empty buckets]
+     */
+    public final int collisionCount() {
+        return this.size - this.occupiedCount;
+    }
+
+    /**
+     * Bucket for pairs whose keys are {@code Comparable}, all of one class,
+     * and distinct according to {@code compareTo}, represented as a red-black
+     * tree ordered by {@code compareTo}. A key found by {@code compareTo} is
+     * only reported as present if it is also {@code equals} to the key looked
+     * up.
+     *
+     * @param <K>
+     *            type of {@code Map} domain (key) entries
+     * @param <V>
+     *            type of {@code Map} range (associated value) entries
+     */
+    private static final class TreeBucket<K, V> extends MapSecondary<K, V> {
+
+        /**
+         * Class of every key in {@code this}.
+         */
+        private final Class<?> keyClass;
+
+        /**
+         * Pairs of {@code this}, ordered by key.
+         */
+        private TreeMap<K, V> tree;
+
+        /**
+         * Returns the class shared by every key of {@code bucket} if that class
+         * implements {@code Comparable}, and {@code null} otherwise.
+         *
+         * @param bucket
+         *            the bucket to examine
+         * @return the common {@code Comparable} key class, or {@code null}
+         * @requires |bucket| > 0
+         */
+        private static Class<?> commonComparableClass(Map<?, ?> bucket) {
+            Iterator<? extends Pair<?, ?>> it = bucket.iterator();
+            Class<?> keyClass = it.next().key().getClass();
+            boolean common = Comparable.class.isAssignableFrom(keyClass);
+            // Stop at the first key of another class
+            while (common && it.hasNext()) {
+                common = it.next().key().getClass() == keyClass;
+            }
+            if (!common) {
+                keyClass = null;
+            }
+            return keyClass;
+        }
+
+        /**
+         * Returns a tree bucket with the pairs of {@code bucket}, or
+         * {@code null} if its keys are not all of one {@code Comparable} class
+         * or if {@code compareTo} finds two of them equal.
+         *
+         * @param <K>
+         *            type of {@code Map} domain (key) entries
+         * @param <V>
+         *            type of {@code Map} range (associated value) entries
+         * @param bucket
+         *            the bucket to copy
+         * @return the tree bucket, or {@code null}
+         * @requires |bucket| > 0
+         * @ensures treeOf = null or treeOf = bucket
+         */
+        static <K, V> TreeBucket<K, V> treeOf(Map<K, V> bucket) {
+            TreeBucket<K, V> result = null;
+            Class<?> keyClass = commonComparableClass(bucket);
+            if (keyClass != null) {
+                result = new TreeBucket<K, V>(keyClass);
+                Iterator<Pair<K, V>> it = bucket.iterator();
+                while (result != null && it.hasNext()) {
+                    Pair<K, V> p = it.next();
+                    if (result.tree.containsKey(p.key())) {
+                        // Distinct keys that compareTo cannot tell apart
+                        result = null;
+                    } else {
+                        result.tree.put(p.key(), p.value());
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Compares two keys of the same {@code Comparable} class.
+         *
+         * @param <K>
+         *            type of keys
+         * @param a
+         *            the first key
+         * @param b
+         *            the second key
+         * @return {@code a.compareTo(b)}
+         * @requires [a and b are of the same Comparable class]
+         */
+        @SuppressWarnings("unchecked")
+        private static <K> int compareKeys(K a, K b) {
+            return ((Comparable<Object>) a).compareTo(b);
+        }
+
+        /**
+         * Constructor for keys of class {@code keyClass}.
+         *
+         * @param keyClass
+         *            the class of every key to be added
+         * @requires keyClass implements Comparable
+         * @ensures this = {}
+         */
+        TreeBucket(Class<?> keyClass) {
+            this.keyClass = keyClass;
+            this.tree = new TreeMap<K, V>(
+                    (Comparator<K>) TreeBucket::compareKeys);
+        }
+
+        /**
+         * Reports whether {@code key} can be ordered with the keys of
+         * {@code this}.
+         *
+         * @param key
+         *            the key
+         * @return true iff key is of the class of the keys of {@code this}
+         */
+        private boolean ordered(Object key) {
+            return key.getClass() == this.keyClass;
+        }
+
+        /**
+         * Reports whether {@code key}, which is not in {@code this}, can be
+         * added to {@code this}: whether it can be ordered with the keys of
+         * {@code this} and {@code compareTo} finds none of them equal to it.
+         *
+         * @param key
+         *            the key
+         * @return true iff key can be added to {@code this}
+         * @requires key is not in DOMAIN(this)
+         */
+        boolean accepts(K key) {
+            return this.ordered(key) && !this.tree.containsKey(key);
+        }
+
+        /**
+         * Returns the key of {@code this} that {@code equals} {@code key}, or
+         * {@code null} if there is none.
+         *
+         * @param key
+         *            the key
+         * @return the stored key, or {@code null}
+         */
+        private K storedKey(K key) {
+            K stored = null;
+            // A key of another class cannot be here, and cannot be compared
+            if (this.ordered(key)) {
+                K candidate = this.tree.ceilingKey(key);
+                if (candidate != null && candidate.equals(key)) {
+                    stored = candidate;
+                }
+            }
+            return stored;
+        }
+
+        @Override
+        public Map<K, V> newInstance() {
+            return new TreeBucket<K, V>(this.keyClass);
+        }
+
+        @Override
+        public void clear() {
+            this.tree = new TreeMap<K, V>(this.tree.comparator());
+        }
+
+        @Override
+        public void transferFrom(Map<K, V> source) {
+            TreeBucket<K, V> localSource = (TreeBucket<K, V>) source;
+            this.tree = localSource.tree;
+            localSource.tree = new TreeMap<K, V>(this.tree.comparator());
+        }
+
+        @Override
+        public void add(K key, V value) {
+            assert this.accepts(key) : ""
+                    + "Violation of: key can be told apart from DOMAIN(this)";
+            this.tree.put(key, value);
+        }
+
+        @Override
+        public Pair<K, V> remove(K key) {
+            assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+            K storedKey = this.storedKey(key);
+            return new SimplePair<K, V>(storedKey, this.tree.remove(key));
+        }
+
+        @Override
+        public Pair<K, V> removeAny() {
+            java.util.Map.Entry<K, V> e = this.tree.pollFirstEntry();
+            return new SimplePair<K, V>(e.getKey(), e.getValue());
+        }
+
+        @Override
+        public V value(K key) {
+            assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+            return this.tree.get(key);
+        }
+
+        @Override
+        public boolean hasKey(K key) {
+            return this.storedKey(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return this.tree.size();
+        }
+
+        @Override
+        public Iterator<Pair<K, V>> iterator() {
+            final Iterator<java.util.Map.Entry<K, V>> entries = this.tree
+                    .entrySet().iterator();
+            return new Iterator<Pair<K, V>>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public Pair<K, V> next() {
+                    java.util.Map.Entry<K, V> e = entries.next();
+                    return new SimplePair<K, V>(e.getKey(), e.getValue());
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException(
+                            "remove operation not supported");
+                }
+            };
+        }
+    }
+
     /**
      * Implementation of {@code Iterator} interface for {@code Map4}.
      */
@@ -275,9 +1114,10 @@ public class Map4<K, V> extends MapSecondary<K, V> {
         private int numberSeen;
 
         /**
-         * Bucket from which current bucket iterator comes.
+         * Position in {@code occupiedBuckets} of the bucket from which the
+         * current bucket iterator comes.
          */
-        private int currentBucket;
+        private int currentPosition;
 
         /**
          * Bucket iterator from which next element will come.
@@ -289,8 +1129,11 @@ public class Map4<K, V> extends MapSecondary<K, V> {
          */
         public Map4Iterator() {
             this.numberSeen = 0;
-            this.currentBucket = 0;
-            this.bucketIterator = Map4.this.hashTable.entry(0).iterator();
+            this.currentPosition = 0;
+            if (Map4.this.occupiedCount > 0) {
+                this.bucketIterator = Map4.this.hashTable
+                        .entry(Map4.this.occupiedBuckets[0]).iterator();
+            }
         }
 
         @Override
@@ -310,13 +1153,12 @@ public class Map4<K, V> extends MapSecondary<K, V> {
                 throw new NoSuchElementException();
             }
             this.numberSeen++;
-            if (this.bucketIterator.hasNext()) {
-                return this.bucketIterator.next();
-            }
-            while (!this.bucketIterator.hasNext()) {
-                this.currentBucket++;
+            // Every listed bucket is non-empty, so one step always suffices
+            if (!this.bucketIterator.hasNext()) {
+                this.currentPosition++;
                 this.bucketIterator = Map4.this.hashTable
-                        .entry(this.currentBucket).iterator();
+                        .entry(Map4.this.occupiedBuckets[this.currentPosition])
+                        .iterator();
             }
             return this.bucketIterator.next();
         }
@@ -0,0 +1,114 @@
+import java.util.function.IntUnaryOperator;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Reads the distinct lines of a text file (such as the data sets in
+ * HashingExperiments/data) into a {@code Map4} once per hash spreader, with the
+ * hash table held at a fixed size, and reports how evenly each spreader
+ * distributes them.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class Map4Distribution {
+
+    /**
+     * Load factor large enough that the hash table never grows, so every
+     * spreader is measured at the requested size.
+     */
+    private static final double NO_GROWTH = Double.MAX_VALUE;
+
+    /**
+     * Names of the spreaders compared.
+     */
+    private static final String[] NAMES = { "identity", "murmur",
+            "fibonacci" };
+
+    /**
+     * Spreaders compared, in the order of {@code NAMES}.
+     */
+    private static final IntUnaryOperator[] SPREADERS = {
+            HashSpreaders.IDENTITY, HashSpreaders.MURMUR,
+            HashSpreaders.FIBONACCI };
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private Map4Distribution() {
+    }
+
+    /**
+     * Returns a {@code Map4} with the given size and spreader holding each
+     * distinct line of {@code fileName} as a key.
+     *
+     * @param fileName
+     *            the text file to read
+     * @param hashTableSize
+     *            the hash table size
+     * @param spreader
+     *            the hash spreader
+     * @return the map of lines
+     * @requires hashTableSize > 0
+     * @ensures DOMAIN(readLines) = [distinct lines of the file]
+     */
+    private static Map4<String, Integer> readLines(String fileName,
+            int hashTableSize, IntUnaryOperator spreader) {
+        Map4<String, Integer> lines = new Map4<String, Integer>(hashTableSize,
+                NO_GROWTH, spreader);
+        SimpleReader textFile = new SimpleReader1L(fileName);
+        int lineNumber = 0;
+        while (!textFile.atEOS()) {
+            String line = textFile.nextLine();
+            if (!lines.hasKey(line)) {
+                lines.add(line, lineNumber);
+            }
+            lineNumber++;
+        }
+        textFile.close();
+        return lines;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+        /*
+         * Get hash table size and file name.
+         */
+        out.print("Hash table size: ");
+        int hashTableSize = in.nextInteger();
+        out.print("Text file name: ");
+        String textFileName = in.nextLine();
+        /*
+         * Report the statistics for each spreader.
+         */
+        out.println();
+        out.println("Spreader\tPairs\tEmpty\tMax\tCollisions\tHistogram");
+        out.println("--------\t-----\t-----\t---\t----------\t---------");
+        for (int s = 0; s < SPREADERS.length; s++) {
+            Map4<String, Integer> lines = readLines(textFileName,
+                    hashTableSize, SPREADERS[s]);
+            int[] histogram = lines.bucketSizeHistogram();
+            out.print(NAMES[s] + "\t" + lines.size() + "\t" + histogram[0]
+                    + "\t" + lines.maxBucketSize() + "\t"
+                    + lines.collisionCount() + "\t");
+            for (int k = 0; k < histogram.length; k++) {
+                if (histogram[k] > 0) {
+                    out.print(" " + k + ":" + histogram[k]);
+                }
+            }
+            out.println();
+        }
+        in.close();
+        out.close();
+    }
+
+}
@@ -0,0 +1,221 @@
+import java.util.function.IntUnaryOperator;
+
+import components.map.Map;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Times {@code Map4} kernel operations at increasing sizes and reports the
+ * average cost per call, so that changes to the hash table can be compared by
+ * running this program before and after.
+ *
+ * <p>
+ * For the power-of-2 table sizes with mask indexing, three runs of the
+ * {@code hasKey} comparison (1M keys, load factor 1.0, OpenJDK 17, one core)
+ * gave, in ns per call:
+ *
+ * <pre>
+ * spreader   mod              power of 2
+ * identity   291 / 297 / 313  239 / 240 / 237
+ * murmur     288 / 243 / 265  158 / 153 / 153
+ * </pre>
+ *
+ * Masking saved about 40% with {@code MURMUR} and about 20% with
+ * {@code IDENTITY}, whose consecutive keys fall in consecutive buckets either
+ * way, so that there the cost is mostly the cache misses of the lookup.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class Map4Timing {
+
+    /**
+     * Map sizes to time.
+     */
+    private static final int[] SIZES = { 1_000, 10_000, 100_000, 1_000_000,
+            10_000_000 };
+
+    /**
+     * Number of {@code value} calls timed at each size.
+     */
+    private static final int LOOKUPS = 1_000_000;
+
+    /**
+     * Number of pairs in the sparse map drained by {@code removeAny}.
+     */
+    private static final int DRAIN_SIZE = 1_000_000;
+
+    /**
+     * Hash table size of the sparse map drained by {@code removeAny}; 16
+     * buckets per pair.
+     */
+    private static final int DRAIN_HASH_TABLE_SIZE = 16 * DRAIN_SIZE;
+
+    /**
+     * Number of keys in the maps compared on {@code hasKey}.
+     */
+    private static final int HAS_KEY_SIZE = 1_000_000;
+
+    /**
+     * Number of {@code hasKey} calls timed for each table mode; half hit and
+     * half miss.
+     */
+    private static final int HAS_KEY_CALLS = 10_000_000;
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private Map4Timing() {
+    }
+
+    /**
+     * Returns the average number of nanoseconds per {@code add} when adding
+     * keys {@code 0} through {@code n - 1} to {@code m}.
+     *
+     * @param m
+     *            the map to add to
+     * @param n
+     *            the number of keys to add
+     * @return nanoseconds per {@code add}
+     * @updates m
+     * @requires m = {}
+     * @ensures m = {(i, i) : 0 <= i < n}
+     */
+    private static double timeAdd(Map<Integer, Integer> m, int n) {
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            m.add(i, i);
+        }
+        return (System.nanoTime() - start) / (double) n;
+    }
+
+    /**
+     * Returns the average number of nanoseconds per {@code value} over
+     * {@code LOOKUPS} lookups of keys spread across {@code m}.
+     *
+     * @param m
+     *            the map to look keys up in
+     * @param n
+     *            the number of keys in {@code m}
+     * @return nanoseconds per {@code value}
+     * @requires m = {(i, i) : 0 <= i < n} and n > 0
+     */
+    private static double timeValue(Map<Integer, Integer> m, int n) {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            checksum += m.value((int) ((i * 2_654_435_761L) % n));
+        }
+        double result = (System.nanoTime() - start) / (double) LOOKUPS;
+        // Use the checksum so the lookups cannot be optimized away
+        if (checksum < 0) {
+            throw new AssertionError("Impossible checksum");
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of milliseconds taken to empty {@code m} by calling
+     * {@code removeAny} until it is empty.
+     *
+     * @param m
+     *            the map to drain
+     * @return milliseconds to drain {@code m}
+     * @clears m
+     */
+    private static double timeDrain(Map<Integer, Integer> m) {
+        long start = System.nanoTime();
+        while (m.size() > 0) {
+            m.removeAny();
+        }
+        return (System.nanoTime() - start) / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Returns the average number of nanoseconds per {@code hasKey} over
+     * {@code HAS_KEY_CALLS} calls, half for keys in {@code m} and half for
+     * keys not in it.
+     *
+     * @param m
+     *            the map to query
+     * @param n
+     *            the number of keys in {@code m}
+     * @return nanoseconds per {@code hasKey}
+     * @requires m = {(i, i) : 0 <= i < n} and n > 0
+     */
+    private static double timeHasKey(Map<Integer, Integer> m, int n) {
+        int hits = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < HAS_KEY_CALLS; i++) {
+            int key = (int) ((i * 2_654_435_761L) % (2L * n));
+            if (m.hasKey(key)) {
+                hits++;
+            }
+        }
+        double result = (System.nanoTime() - start) / (double) HAS_KEY_CALLS;
+        // Use the hit count so the lookups cannot be optimized away
+        if (hits > HAS_KEY_CALLS) {
+            throw new AssertionError("Impossible hit count");
+        }
+        return result;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments; optionally, the largest size to
+     *            time
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        int maxSize = Integer.MAX_VALUE;
+        if (args.length > 0) {
+            maxSize = Integer.parseInt(args[0]);
+        }
+        out.println("size\tadd (ns/op)\tvalue (ns/op)\tbuild (ms)");
+        for (int n : SIZES) {
+            if (n <= maxSize) {
+                Map<Integer, Integer> m = new Map4<Integer, Integer>();
+                long start = System.nanoTime();
+                double add = timeAdd(m, n);
+                double build = (System.nanoTime() - start) / NANOS_PER_MILLI;
+                double value = timeValue(m, n);
+                out.println(n + "\t" + String.format("%.1f", add) + "\t"
+                        + String.format("%.1f", value) + "\t"
+                        + String.format("%.1f", build));
+            }
+        }
+        Map<Integer, Integer> sparse = new Map4<Integer, Integer>(
+                DRAIN_HASH_TABLE_SIZE);
+        timeAdd(sparse, DRAIN_SIZE);
+        out.println("removeAny drain of " + DRAIN_SIZE + " pairs from "
+                + DRAIN_HASH_TABLE_SIZE + " buckets (ms): "
+                + String.format("%.1f", timeDrain(sparse)));
+        out.println();
+        out.println("hasKey on " + HAS_KEY_SIZE + " keys\tmod (ns/op)"
+                + "\tpower of 2 (ns/op)");
+        String[] spreaderNames = { "identity", "murmur" };
+        IntUnaryOperator[] spreaders = { HashSpreaders.IDENTITY,
+                HashSpreaders.MURMUR };
+        for (int s = 0; s < spreaders.length; s++) {
+            Map<Integer, Integer> modMap = new Map4<Integer, Integer>(
+                    HAS_KEY_SIZE, 1.0, spreaders[s], false);
+            timeAdd(modMap, HAS_KEY_SIZE);
+            double modTime = timeHasKey(modMap, HAS_KEY_SIZE);
+            modMap.clear();
+            Map<Integer, Integer> maskMap = new Map4<Integer, Integer>(
+                    HAS_KEY_SIZE, 1.0, spreaders[s], true);
+            timeAdd(maskMap, HAS_KEY_SIZE);
+            double maskTime = timeHasKey(maskMap, HAS_KEY_SIZE);
+            out.println(spreaderNames[s] + "\t" + String.format("%.1f", modTime)
+                    + "\t" + String.format("%.1f", maskTime));
+        }
+        out.close();
+    }
+
+}
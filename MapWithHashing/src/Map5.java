@@ -0,0 +1,454 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} represented as an open-addressing hash table with linear probing,
+ * keeping keys, values, and cached hash codes in parallel arrays, with
+ * implementations of primary methods.
+ *
+ * <p>
+ * Unlike {@code Map4}, there are no per-bucket {@code Map} objects: an empty
+ * slot costs one array cell in each of the three arrays, and a lookup reads
+ * consecutive cells instead of following bucket references. Removal shifts
+ * later entries of the same probe run back into the freed slot, so there are
+ * no tombstones and probe runs never lengthen because of removals.
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention
+ *
+ *             <pre>
+ * |$this.keys| = |$this.values| = |$this.hashes|  and
+ * |$this.keys| is a power of 2  and
+ * 0 <= $this.size <= MAX_LOAD * |$this.keys|  and
+ * $this.size = |{i: integer where (0 <= i < |$this.keys|  and
+ *                                  $this.keys[i] /= null)}|  and
+ * for all i: integer
+ *     where (0 <= i < |$this.keys|  and  $this.keys[i] /= null)
+ *   ($this.values[i] /= null  and
+ *    $this.hashes[i] = SPREAD([computed result of $this.keys[i].hashCode()])
+ *    and  [no slot between HOME($this.hashes[i]) and i, cyclically,
+ *          has null key])  and
+ * [no two non-null entries of $this.keys are equal]
+ *             </pre>
+ *
+ * @correspondence
+ *
+ *                 <pre>
+ * this = {(k, v): (K, V)
+ *         where (there exists i: integer
+ *                 (0 <= i < |$this.keys|  and
+ *                  $this.keys[i] = k  and  $this.values[i] = v))}
+ *                 </pre>
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public class Map5<K, V> extends MapSecondary<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default number of slots; must be a power of 2.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Maximum ratio of {@code size} to number of slots; linear probing
+     * degrades quickly past roughly 0.7.
+     */
+    private static final double MAX_LOAD = 0.6;
+
+    /**
+     * Multiplier for the hash-spreading step (a murmur3 finalizer constant).
+     */
+    private static final int SPREAD_MULTIPLIER = 0x85ebca6b;
+
+    /**
+     * Number of bits to fold down when spreading a hash code.
+     */
+    private static final int SPREAD_SHIFT = 16;
+
+    /**
+     * Keys, or {@code null} for an empty slot.
+     */
+    private Object[] keys;
+
+    /**
+     * Values; {@code values[i]} is associated with {@code keys[i]}.
+     */
+    private Object[] values;
+
+    /**
+     * Spread hash code of {@code keys[i]}, so probing and rehashing never call
+     * {@code hashCode} again.
+     */
+    private int[] hashes;
+
+    /**
+     * Total size of abstract {@code this}.
+     */
+    private int size;
+
+    /**
+     * Slot at which {@code removeAny} starts looking for an entry; it only
+     * moves forward, so draining {@code this} with {@code removeAny} scans the
+     * table about once instead of once per call.
+     */
+    private int removeAnyStart;
+
+    /**
+     * Mixes the bits of {@code h} so that keys differing only in their high
+     * bits still land in different slots.
+     *
+     * @param h
+     *            the hash code to spread
+     * @return the spread hash code
+     */
+    private static int spread(int h) {
+        int x = h * SPREAD_MULTIPLIER;
+        return x ^ (x >>> SPREAD_SHIFT);
+    }
+
+    /**
+     * Returns the smallest power of 2 that is at least {@code n}.
+     *
+     * @param n
+     *            the lower bound
+     * @return the smallest power of 2 >= n
+     * @requires 0 < n <= 2^30
+     * @ensures powerOfTwoAtLeast = [smallest power of 2 >= n]
+     */
+    private static int powerOfTwoAtLeast(int n) {
+        assert n > 0 : "Violation of: n > 0";
+        int powerOfTwo = 1;
+        while (powerOfTwo < n) {
+            powerOfTwo *= 2;
+        }
+        return powerOfTwo;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param capacity
+     *            the number of slots
+     * @requires capacity is a power of 2
+     * @ensures
+     *
+     *          <pre>
+     * |$this.keys| = capacity  and  $this.size = 0  and
+     * [every slot is empty]
+     *          </pre>
+     */
+    private void createNewRep(int capacity) {
+        this.keys = new Object[capacity];
+        this.values = new Object[capacity];
+        this.hashes = new int[capacity];
+        this.size = 0;
+        this.removeAnyStart = 0;
+    }
+
+    /**
+     * Returns the slot holding {@code key}, or the empty slot that ends its
+     * probe run if {@code key} is not in {@code this}.
+     *
+     * @param key
+     *            the key to find
+     * @param hash
+     *            SPREAD([computed result of key.hashCode()])
+     * @return the slot index
+     * @ensures
+     *
+     *          <pre>
+     * ($this.keys[findSlot] = key)  or
+     * ($this.keys[findSlot] = null  and  key is not in DOMAIN(this))
+     *          </pre>
+     */
+    private int findSlot(Object key, int hash) {
+        int mask = this.keys.length - 1;
+        int i = hash & mask;
+        // Walk the probe run until the key or an empty slot turns up
+        while (this.keys[i] != null
+                && (this.hashes[i] != hash || !this.keys[i].equals(key))) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Doubles the number of slots and reinserts every entry, reusing the cached
+     * hash codes.
+     *
+     * @updates $this
+     * @ensures this = #this and |$this.keys| = 2 * |#$this.keys|
+     */
+    private void grow() {
+        Object[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        int[] oldHashes = this.hashes;
+        int oldSize = this.size;
+        this.createNewRep(oldKeys.length * 2);
+        int mask = this.keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null) {
+                int i = oldHashes[j] & mask;
+                while (this.keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                this.keys[i] = oldKeys[j];
+                this.values[i] = oldValues[j];
+                this.hashes[i] = oldHashes[j];
+            }
+        }
+        this.size = oldSize;
+    }
+
+    /**
+     * Empties slot {@code i} and shifts later entries of the same probe run
+     * back so that every remaining key is still reachable from its home slot.
+     *
+     * @param i
+     *            the slot to empty
+     * @updates $this
+     * @requires $this.keys[i] /= null
+     * @ensures this = #this \ {(#$this.keys[i], #$this.values[i])}
+     */
+    private void deleteSlot(int i) {
+        int mask = this.keys.length - 1;
+        int hole = i;
+        int j = (i + 1) & mask;
+        while (this.keys[j] != null) {
+            int home = this.hashes[j] & mask;
+            /*
+             * The entry at j may move into the hole only if its home slot is
+             * not cyclically in (hole, j]; otherwise moving it would put it
+             * before its home and lookups would miss it
+             */
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                this.keys[hole] = this.keys[j];
+                this.values[hole] = this.values[j];
+                this.hashes[hole] = this.hashes[j];
+                hole = j;
+            }
+            j = (j + 1) & mask;
+        }
+        this.keys[hole] = null;
+        this.values[hole] = null;
+        this.size--;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Map5() {
+        this.createNewRep(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor resulting in a table that holds {@code expectedSize} pairs
+     * without growing.
+     *
+     * @param expectedSize
+     *            number of pairs expected
+     * @requires expectedSize >= 0
+     * @ensures this = {}
+     */
+    public Map5(int expectedSize) {
+        assert expectedSize >= 0 : "Violation of: expectedSize >= 0";
+        this.createNewRep(powerOfTwoAtLeast(
+                Math.max(DEFAULT_CAPACITY, (int) (expectedSize / MAX_LOAD) + 1)));
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Map<K, V> newInstance() {
+        try {
+            return this.getClass().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(DEFAULT_CAPACITY);
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Map5<?, ?> : ""
+                + "Violation of: source is of dynamic type Map5<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Map5<?,?>, and
+         * the ?,? must be K,V or the call would not have compiled.
+         */
+        Map5<K, V> localSource = (Map5<K, V>) source;
+        this.keys = localSource.keys;
+        this.values = localSource.values;
+        this.hashes = localSource.hashes;
+        this.size = localSource.size;
+        this.removeAnyStart = localSource.removeAnyStart;
+        localSource.createNewRep(DEFAULT_CAPACITY);
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert!this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+        if (this.size + 1 > MAX_LOAD * this.keys.length) {
+            this.grow();
+        }
+        int hash = spread(key.hashCode());
+        // The probe run for a missing key ends at an empty slot
+        int i = this.findSlot(key, hash);
+        this.keys[i] = key;
+        this.values[i] = value;
+        this.hashes[i] = hash;
+        this.size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int i = this.findSlot(key, spread(key.hashCode()));
+        Pair<K, V> p = new SimplePair<K, V>((K) this.keys[i],
+                (V) this.values[i]);
+        this.deleteSlot(i);
+        return p;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        int mask = this.keys.length - 1;
+        int i = this.removeAnyStart;
+        // Skip the empty slots; there is at least one entry, so this ends
+        while (this.keys[i] == null) {
+            i = (i + 1) & mask;
+        }
+        /*
+         * Removal may shift a later entry back into slot i, so the next
+         * removeAny starts looking here again
+         */
+        this.removeAnyStart = i;
+        Pair<K, V> p = new SimplePair<K, V>((K) this.keys[i],
+                (V) this.values[i]);
+        this.deleteSlot(i);
+        return p;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        return (V) this.values[this.findSlot(key, spread(key.hashCode()))];
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.keys[this.findSlot(key, spread(key.hashCode()))] != null;
+    }
+
+    @Override
+    public final int size() {
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        return new Map5Iterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Map5}.
+     */
+    private final class Map5Iterator implements Iterator<Pair<K, V>> {
+
+        /**
+         * Number of elements seen already (i.e., |~this.seen|).
+         */
+        private int numberSeen;
+
+        /**
+         * Slot from which the next element will come, once empty slots are
+         * skipped.
+         */
+        private int currentSlot;
+
+        /**
+         * No-argument constructor.
+         */
+        Map5Iterator() {
+            this.numberSeen = 0;
+            this.currentSlot = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.numberSeen < Map5.this.size;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            while (Map5.this.keys[this.currentSlot] == null) {
+                this.currentSlot++;
+            }
+            this.numberSeen++;
+            Pair<K, V> p = new SimplePair<K, V>(
+                    (K) Map5.this.keys[this.currentSlot],
+                    (V) Map5.this.values[this.currentSlot]);
+            this.currentSlot++;
+            return p;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+    }
+}
@@ -0,0 +1,702 @@
+import java.lang.reflect.Constructor;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+
+import components.map.Map;
+import components.map.Map1L;
+import components.map.MapSecondary;
+import components.queue.Queue;
+import components.queue.Queue1L;
+
+/**
+ * {@code Map} represented as a hash table using {@code Map}s for the buckets,
+ * like {@code Map4}, but safe to share between threads: the buckets are
+ * partitioned into stripes, and each operation locks only the stripe its key
+ * hashes to. Besides the kernel methods, {@code compute} and {@code merge}
+ * update one pair atomically, so callers need not combine {@code hasKey},
+ * {@code value}, and {@code replaceValue} under a lock of their own.
+ *
+ * <p>
+ * The hash table size is always a multiple of the number of stripes, so the
+ * stripe of a key depends only on its hash code and not on the table size;
+ * growing the table locks every stripe. {@code size}, {@code removeAny}, and
+ * iteration look at one stripe at a time, so while other threads are updating
+ * {@code this} they see a state that may never have existed as a whole.
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention
+ *
+ *             <pre>
+ * |$this.locks| > 0  and  |$this.stripeSizes| = |$this.locks|  and
+ * |$this.removeAnyStart| = |$this.locks|  and
+ * |$this.hashTable| > 0  and
+ * |$this.hashTable| mod |$this.locks| = 0  and
+ * for all s: integer where (0 <= s < |$this.locks|)
+ *   (0 <= $this.removeAnyStart[s] < |$this.hashTable|  and
+ *    $this.removeAnyStart[s] mod |$this.locks| = s)  and
+ * for all i: integer, x: K
+ *     where (0 <= i < |$this.hashTable|  and  $this.hashTable[i] /= null  and
+ *            x is in DOMAIN($this.hashTable[i]))
+ *   ([computed result of x.hashCode()] mod |$this.hashTable| = i)  and
+ * for all s: integer where (0 <= s < |$this.locks|)
+ *   ($this.stripeSizes[s] = sum i: integer
+ *        where (0 <= i < |$this.hashTable|  and  i mod |$this.locks| = s  and
+ *               $this.hashTable[i] /= null)
+ *      (|$this.hashTable[i]|))  and
+ * 0 < $this.loadFactor
+ *             </pre>
+ *
+ * @correspondence
+ *
+ *                 <pre>
+ * this = union i: integer
+ *            where (0 <= i < |$this.hashTable|  and
+ *                   $this.hashTable[i] /= null)
+ *          ($this.hashTable[i])
+ *                 </pre>
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public class Map6<K, V> extends MapSecondary<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default number of stripes.
+     */
+    private static final int DEFAULT_STRIPES = 64;
+
+    /**
+     * Initial number of buckets per stripe.
+     */
+    private static final int INITIAL_BUCKETS_PER_STRIPE = 4;
+
+    /**
+     * Default maximum ratio of a stripe's size to its number of buckets.
+     */
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+    /**
+     * Buckets for hashing; {@code null} until a pair is first added. Bucket
+     * {@code i} is guarded by {@code locks[i mod locks.length]}.
+     */
+    private volatile Map<K, V>[] hashTable;
+
+    /**
+     * One lock per stripe.
+     */
+    private final ReentrantLock[] locks;
+
+    /**
+     * Number of pairs in each stripe; {@code stripeSizes[s]} is guarded by
+     * {@code locks[s]}.
+     */
+    private final int[] stripeSizes;
+
+    /**
+     * For each stripe, the bucket where {@code removeAny} starts looking, so
+     * that draining a stripe does not rescan the buckets it has emptied;
+     * {@code removeAnyStart[s]} is guarded by {@code locks[s]}.
+     */
+    private final int[] removeAnyStart;
+
+    /**
+     * Maximum ratio of a stripe's size to its number of buckets before the
+     * table grows.
+     */
+    private final double loadFactor;
+
+    /**
+     * Computes {@code a} mod {@code b} as % should have been defined to work.
+     *
+     * @param a
+     *            the number being reduced
+     * @param b
+     *            the modulus
+     * @return the result of a mod b, which satisfies 0 <= {@code mod} < b
+     * @requires b > 0
+     * @ensures
+     *
+     *          <pre>
+     * 0 <= mod  and  mod < b  and
+     * there exists k: integer (a = k * b + mod)
+     *          </pre>
+     */
+    private static int mod(int a, int b) {
+        assert b > 0 : "Violation of: b > 0";
+        int mod = a % b;
+        if (mod < 0) {
+            mod += b;
+        }
+        return mod;
+    }
+
+    /**
+     * Returns a new, all-{@code null} bucket array of the given size.
+     *
+     * @param <K>
+     *            type of {@code Map} domain (key) entries
+     * @param <V>
+     *            type of {@code Map} range (associated value) entries
+     * @param hashTableSize
+     *            the number of buckets
+     * @return the new bucket array
+     * @ensures |newTable| = hashTableSize and [every entry is null]
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Map<K, V>[] newTable(int hashTableSize) {
+        return (Map<K, V>[]) new Map<?, ?>[hashTableSize];
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @ensures
+     *
+     *          <pre>
+     * |$this.hashTable| = INITIAL_BUCKETS_PER_STRIPE * |$this.locks|  and
+     * this = {}
+     *          </pre>
+     */
+    private void createNewRep() {
+        this.hashTable = newTable(
+                INITIAL_BUCKETS_PER_STRIPE * this.locks.length);
+        for (int s = 0; s < this.stripeSizes.length; s++) {
+            this.stripeSizes[s] = 0;
+            this.removeAnyStart[s] = s;
+        }
+    }
+
+    /**
+     * Returns the stripe in which {@code key} belongs.
+     *
+     * @param key
+     *            the key
+     * @return the stripe index for {@code key}
+     * @ensures stripeOf = [computed result of key.hashCode()] mod |$this.locks|
+     */
+    private int stripeOf(Object key) {
+        return mod(key.hashCode(), this.locks.length);
+    }
+
+    /**
+     * Returns the bucket in which {@code key} belongs, creating it if
+     * {@code create} and it does not exist yet; otherwise {@code null} if it
+     * does not exist.
+     *
+     * @param key
+     *            the key
+     * @param create
+     *            whether to create a missing bucket
+     * @return the bucket for {@code key}, or {@code null}
+     * @requires [the current thread holds the lock of key's stripe]
+     */
+    private Map<K, V> bucket(Object key, boolean create) {
+        Map<K, V>[] table = this.hashTable;
+        int i = mod(key.hashCode(), table.length);
+        if (table[i] == null && create) {
+            table[i] = new Map1L<K, V>();
+        }
+        return table[i];
+    }
+
+    /**
+     * Locks every stripe, in index order so that two threads doing this cannot
+     * deadlock.
+     */
+    private void lockAll() {
+        for (ReentrantLock lock : this.locks) {
+            lock.lock();
+        }
+    }
+
+    /**
+     * Unlocks every stripe.
+     *
+     * @requires [the current thread holds every stripe lock]
+     */
+    private void unlockAll() {
+        for (int s = this.locks.length - 1; s >= 0; s--) {
+            this.locks[s].unlock();
+        }
+    }
+
+    /**
+     * Doubles the hash table if stripe {@code s} is still over the load factor
+     * once every stripe is locked.
+     *
+     * @param s
+     *            the stripe that was found over the load factor
+     * @requires [the current thread holds no stripe lock]
+     * @ensures this = #this
+     */
+    private void growIfNeeded(int s) {
+        this.lockAll();
+        try {
+            Map<K, V>[] oldTable = this.hashTable;
+            int bucketsPerStripe = oldTable.length / this.locks.length;
+            if (this.stripeSizes[s] > this.loadFactor * bucketsPerStripe) {
+                Map<K, V>[] newTable = newTable(oldTable.length * 2);
+                for (Map<K, V> bucket : oldTable) {
+                    if (bucket != null) {
+                        while (bucket.size() > 0) {
+                            Pair<K, V> p = bucket.removeAny();
+                            int i = mod(p.key().hashCode(), newTable.length);
+                            if (newTable[i] == null) {
+                                newTable[i] = new Map1L<K, V>();
+                            }
+                            newTable[i].add(p.key(), p.value());
+                        }
+                    }
+                }
+                // Stripe sizes do not change: a key's stripe does not
+                this.hashTable = newTable;
+                for (int t = 0; t < this.locks.length; t++) {
+                    this.removeAnyStart[t] = t;
+                }
+            }
+        } finally {
+            this.unlockAll();
+        }
+    }
+
+    /**
+     * Reports whether stripe {@code s} is over the load factor.
+     *
+     * @param s
+     *            the stripe
+     * @return true iff stripe {@code s} holds too many pairs
+     * @requires [the current thread holds locks[s]]
+     */
+    private boolean overloaded(int s) {
+        int bucketsPerStripe = this.hashTable.length / this.locks.length;
+        return this.stripeSizes[s] > this.loadFactor * bucketsPerStripe;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Map6() {
+        this(DEFAULT_STRIPES, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructor resulting in a hash table partitioned into {@code stripes}
+     * independently locked stripes.
+     *
+     * @param stripes
+     *            number of stripes
+     * @param loadFactor
+     *            maximum ratio of a stripe's size to its number of buckets
+     * @requires stripes > 0 and loadFactor > 0
+     * @ensures this = {}
+     */
+    public Map6(int stripes, double loadFactor) {
+        assert stripes > 0 : "Violation of: stripes > 0";
+        assert loadFactor > 0 : "Violation of: loadFactor > 0";
+
+        this.locks = new ReentrantLock[stripes];
+        for (int s = 0; s < stripes; s++) {
+            this.locks[s] = new ReentrantLock();
+        }
+        this.stripeSizes = new int[stripes];
+        this.removeAnyStart = new int[stripes];
+        this.loadFactor = loadFactor;
+        this.createNewRep();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Map<K, V> newInstance() {
+        try {
+            Constructor<?> c = this.getClass().getConstructor(int.class,
+                    double.class);
+            return (Map<K, V>) c.newInstance(this.locks.length,
+                    this.loadFactor);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.lockAll();
+        try {
+            this.createNewRep();
+        } finally {
+            this.unlockAll();
+        }
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Map6<?, ?> : ""
+                + "Violation of: source is of dynamic type Map6<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Map6<?,?>, and
+         * the ?,? must be K,V or the call would not have compiled.
+         */
+        Map6<K, V> localSource = (Map6<K, V>) source;
+        /*
+         * The stripe count is final, so pairs are moved rather than the
+         * representation; like the other bulk operations, this is not atomic
+         * with respect to other threads updating source
+         */
+        this.clear();
+        while (localSource.size() > 0) {
+            Pair<K, V> p = localSource.removeAny();
+            this.add(p.key(), p.value());
+        }
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+
+        int s = this.stripeOf(key);
+        boolean grow;
+        this.locks[s].lock();
+        try {
+            Map<K, V> bucket = this.bucket(key, true);
+            assert!bucket.hasKey(
+                    key) : "Violation of: key is not in DOMAIN(this)";
+            bucket.add(key, value);
+            this.stripeSizes[s]++;
+            grow = this.overloaded(s);
+        } finally {
+            this.locks[s].unlock();
+        }
+        if (grow) {
+            this.growIfNeeded(s);
+        }
+    }
+
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int s = this.stripeOf(key);
+        this.locks[s].lock();
+        try {
+            Map<K, V> bucket = this.bucket(key, false);
+            assert bucket != null && bucket
+                    .hasKey(key) : "Violation of: key is in DOMAIN(this)";
+            Pair<K, V> p = bucket.remove(key);
+            this.stripeSizes[s]--;
+            return p;
+        } finally {
+            this.locks[s].unlock();
+        }
+    }
+
+    @Override
+    public final Pair<K, V> removeAny() {
+        Pair<K, V> p = null;
+        for (int s = 0; p == null && s < this.locks.length; s++) {
+            this.locks[s].lock();
+            try {
+                if (this.stripeSizes[s] > 0) {
+                    /*
+                     * Resume where the last call found a pair, wrapping around
+                     * since an add may have filled an earlier bucket since
+                     */
+                    Map<K, V>[] table = this.hashTable;
+                    int i = this.removeAnyStart[s];
+                    while (table[i] == null || table[i].size() == 0) {
+                        i += this.locks.length;
+                        if (i >= table.length) {
+                            i = s;
+                        }
+                    }
+                    p = table[i].removeAny();
+                    this.stripeSizes[s]--;
+                    this.removeAnyStart[s] = i;
+                }
+            } finally {
+                this.locks[s].unlock();
+            }
+        }
+        assert p != null : "Violation of: this /= empty_set";
+        return p;
+    }
+
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int s = this.stripeOf(key);
+        this.locks[s].lock();
+        try {
+            Map<K, V> bucket = this.bucket(key, false);
+            assert bucket != null && bucket
+                    .hasKey(key) : "Violation of: key is in DOMAIN(this)";
+            return bucket.value(key);
+        } finally {
+            this.locks[s].unlock();
+        }
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int s = this.stripeOf(key);
+        this.locks[s].lock();
+        try {
+            Map<K, V> bucket = this.bucket(key, false);
+            return bucket != null && bucket.hasKey(key);
+        } finally {
+            this.locks[s].unlock();
+        }
+    }
+
+    @Override
+    public final int size() {
+        int size = 0;
+        for (int s = 0; s < this.locks.length; s++) {
+            this.locks[s].lock();
+            try {
+                size += this.stripeSizes[s];
+            } finally {
+                this.locks[s].unlock();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        return new Map6Iterator();
+    }
+
+    /*
+     * Atomic update methods ---------------------------------------------------
+     */
+
+    /**
+     * Atomically replaces the value associated with {@code key} (or its
+     * absence, represented by {@code null}) by the result of
+     * {@code remapping}; a {@code null} result removes {@code key}.
+     *
+     * @param key
+     *            the key whose pair is updated
+     * @param remapping
+     *            computes the new value from {@code key} and the old value, or
+     *            {@code null}
+     * @return the new value associated with {@code key}, or {@code null} if
+     *         {@code key} is no longer in {@code this}
+     * @updates this
+     * @requires key /= null
+     * @ensures
+     *
+     *          <pre>
+     * [compute = remapping(key, old value of key in #this, or null)]  and
+     * if compute = null then
+     *   this = #this \ {(key, v) for any v}
+     * else
+     *   this = (#this \ {(key, v) for any v}) union {(key, compute)}
+     *          </pre>
+     */
+    public final V compute(K key,
+            BiFunction<? super K, ? super V, ? extends V> remapping) {
+        assert key != null : "Violation of: key is not null";
+        assert remapping != null : "Violation of: remapping is not null";
+
+        int s = this.stripeOf(key);
+        boolean grow = false;
+        V newValue;
+        this.locks[s].lock();
+        try {
+            Map<K, V> bucket = this.bucket(key, true);
+            V oldValue = null;
+            if (bucket.hasKey(key)) {
+                oldValue = bucket.value(key);
+            }
+            newValue = remapping.apply(key, oldValue);
+            if (oldValue != null && newValue != null) {
+                bucket.replaceValue(key, newValue);
+            } else if (oldValue != null) {
+                bucket.remove(key);
+                this.stripeSizes[s]--;
+            } else if (newValue != null) {
+                bucket.add(key, newValue);
+                this.stripeSizes[s]++;
+                grow = this.overloaded(s);
+            }
+        } finally {
+            this.locks[s].unlock();
+        }
+        if (grow) {
+            this.growIfNeeded(s);
+        }
+        return newValue;
+    }
+
+    /**
+     * Atomically associates {@code value} with {@code key} if {@code key} is
+     * not in {@code this}, and otherwise replaces its value {@code v} by
+     * {@code combine(v, value)}.
+     *
+     * @param key
+     *            the key whose pair is updated
+     * @param value
+     *            the value to add or combine
+     * @param combine
+     *            combines the old value with {@code value}
+     * @return the new value associated with {@code key}
+     * @updates this
+     * @requires key /= null and value /= null
+     * @ensures
+     *
+     *          <pre>
+     * if key is in DOMAIN(#this) then
+     *   merge = combine(#this(key), value)
+     * else
+     *   merge = value  and
+     * this = (#this \ {(key, v) for any v}) union {(key, merge)}
+     *          </pre>
+     */
+    public final V merge(K key, V value, BinaryOperator<V> combine) {
+        assert value != null : "Violation of: value is not null";
+        assert combine != null : "Violation of: combine is not null";
+
+        return this.compute(key, (k, old) -> {
+            V result = value;
+            if (old != null) {
+                result = combine.apply(old, value);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Atomically adds ({@code key}, 1) to {@code map} if {@code key} is not in
+     * it, and otherwise increments the count associated with {@code key}.
+     *
+     * @param <K>
+     *            type of {@code Map} domain (key) entries
+     * @param map
+     *            the map of counts
+     * @param key
+     *            the key to count
+     * @return the new count associated with {@code key}
+     * @updates map
+     * @requires key /= null
+     * @ensures
+     *
+     *          <pre>
+     * if key is in DOMAIN(#map) then addOrIncrement = #map(key) + 1
+     * else addOrIncrement = 1  and
+     * map = (#map \ {(key, n) for any n}) union {(key, addOrIncrement)}
+     *          </pre>
+     */
+    public static <K> int addOrIncrement(Map6<K, Integer> map, K key) {
+        assert map != null : "Violation of: map is not null";
+
+        return map.merge(key, 1, Integer::sum);
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Map6}. Pairs are
+     * copied out one stripe at a time, so iteration never holds a lock between
+     * calls to {@code next}.
+     */
+    private final class Map6Iterator implements Iterator<Pair<K, V>> {
+
+        /**
+         * Pairs copied from the current stripe and not yet returned.
+         */
+        private final Queue<Pair<K, V>> pending;
+
+        /**
+         * Next stripe to copy pairs from.
+         */
+        private int nextStripe;
+
+        /**
+         * No-argument constructor.
+         */
+        Map6Iterator() {
+            this.pending = new Queue1L<Pair<K, V>>();
+            this.nextStripe = 0;
+            this.fill();
+        }
+
+        /**
+         * Copies the pairs of the following stripes into {@code pending} until
+         * it is non-empty or there are no stripes left.
+         */
+        private void fill() {
+            int stripes = Map6.this.locks.length;
+            while (this.pending.length() == 0 && this.nextStripe < stripes) {
+                int s = this.nextStripe;
+                Map6.this.locks[s].lock();
+                try {
+                    Map<K, V>[] table = Map6.this.hashTable;
+                    for (int i = s; i < table.length; i += stripes) {
+                        if (table[i] != null) {
+                            for (Pair<K, V> p : table[i]) {
+                                this.pending.enqueue(p);
+                            }
+                        }
+                    }
+                } finally {
+                    Map6.this.locks[s].unlock();
+                }
+                this.nextStripe++;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.pending.length() > 0;
+        }
+
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            Pair<K, V> p = this.pending.dequeue();
+            this.fill();
+            return p;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+    }
+}
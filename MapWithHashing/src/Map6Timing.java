@@ -0,0 +1,198 @@
+import components.map.Map;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Measures word-count throughput when several threads count words into one
+ * shared map: {@code Map6} with its atomic {@code addOrIncrement}, against
+ * {@code Map4} guarded by a single global lock.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class Map6Timing {
+
+    /**
+     * Thread counts to measure.
+     */
+    private static final int[] THREADS = { 1, 2, 4, 8, 16, 32 };
+
+    /**
+     * Number of distinct words.
+     */
+    private static final int VOCABULARY = 100_000;
+
+    /**
+     * Total number of words counted in each run, split among the threads.
+     */
+    private static final int WORDS = 4_000_000;
+
+    /**
+     * Number of untimed runs before the timed one, to let the JIT compile the
+     * hot paths.
+     */
+    private static final int WARMUP_RUNS = 2;
+
+    /**
+     * Multiplier used to scatter word choices across the vocabulary.
+     */
+    private static final long SCATTER = 2_654_435_761L;
+
+    /**
+     * Nanoseconds per second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private Map6Timing() {
+    }
+
+    /**
+     * Counts the words with indices {@code [from, to)} into a shared map.
+     */
+    @FunctionalInterface
+    private interface Counter {
+        /**
+         * Counts one slice of the words.
+         *
+         * @param words
+         *            the vocabulary
+         * @param from
+         *            the first word index, inclusive
+         * @param to
+         *            the last word index, exclusive
+         */
+        void count(String[] words, int from, int to);
+    }
+
+    /**
+     * Returns the word at position {@code i} of the synthetic input.
+     *
+     * @param words
+     *            the vocabulary
+     * @param i
+     *            the position in the input
+     * @return the word at position {@code i}
+     */
+    private static String wordAt(String[] words, int i) {
+        return words[(int) ((i * SCATTER) % words.length)];
+    }
+
+    /**
+     * Runs {@code counter} on {@code WORDS} words split among
+     * {@code threadCount} threads and returns the throughput.
+     *
+     * @param words
+     *            the vocabulary
+     * @param threadCount
+     *            the number of threads
+     * @param counter
+     *            the counting step each thread runs on its slice
+     * @return words counted per second
+     * @throws InterruptedException
+     *             if interrupted while waiting for the threads
+     */
+    private static double run(String[] words, int threadCount,
+            Counter counter) throws InterruptedException {
+        Thread[] threads = new Thread[threadCount];
+        int slice = WORDS / threadCount;
+        for (int t = 0; t < threadCount; t++) {
+            int from = t * slice;
+            int to = from + slice;
+            threads[t] = new Thread(() -> counter.count(words, from, to));
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        return slice * (double) threadCount * NANOS_PER_SECOND / elapsed;
+    }
+
+    /**
+     * Measures {@code Map6.addOrIncrement} with {@code threadCount} threads.
+     *
+     * @param words
+     *            the vocabulary
+     * @param threadCount
+     *            the number of threads
+     * @return words counted per second in the timed run
+     * @throws InterruptedException
+     *             if interrupted while waiting for the threads
+     */
+    private static double timeMap6(String[] words, int threadCount)
+            throws InterruptedException {
+        double result = 0;
+        for (int r = 0; r <= WARMUP_RUNS; r++) {
+            Map6<String, Integer> map = new Map6<String, Integer>();
+            result = run(words, threadCount, (w, from, to) -> {
+                for (int i = from; i < to; i++) {
+                    Map6.addOrIncrement(map, wordAt(w, i));
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Measures {@code Map4} behind one global lock with {@code threadCount}
+     * threads.
+     *
+     * @param words
+     *            the vocabulary
+     * @param threadCount
+     *            the number of threads
+     * @return words counted per second in the timed run
+     * @throws InterruptedException
+     *             if interrupted while waiting for the threads
+     */
+    private static double timeLockedMap4(String[] words, int threadCount)
+            throws InterruptedException {
+        double result = 0;
+        for (int r = 0; r <= WARMUP_RUNS; r++) {
+            Map<String, Integer> map = new Map4<String, Integer>();
+            result = run(words, threadCount, (w, from, to) -> {
+                for (int i = from; i < to; i++) {
+                    String word = wordAt(w, i);
+                    synchronized (map) {
+                        if (map.hasKey(word)) {
+                            map.replaceValue(word, map.value(word) + 1);
+                        } else {
+                            map.add(word, 1);
+                        }
+                    }
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     * @throws InterruptedException
+     *             if interrupted while waiting for the threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        SimpleWriter out = new SimpleWriter1L();
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            words[i] = "word" + i;
+        }
+        out.println("threads\tMap6 (words/s)\tlocked Map4 (words/s)");
+        for (int threadCount : THREADS) {
+            double striped = timeMap6(words, threadCount);
+            double locked = timeLockedMap4(words, threadCount);
+            out.println(threadCount + "\t" + String.format("%.0f", striped)
+                    + "\t" + String.format("%.0f", locked));
+        }
+        out.close();
+    }
+
+}
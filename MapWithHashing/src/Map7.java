@@ -0,0 +1,1102 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} from {@code String} to {@code String} whose hash table and pairs
+ * live in two memory-mapped files, so that it outlasts the process that built
+ * it and can be reopened without being rebuilt.
+ *
+ * <p>
+ * The hashing scheme is that of {@code Map4}: a pair with key {@code k} is
+ * kept in bucket {@code mod(k.hashCode(), hashTableSize)}, each bucket is a
+ * chain, and the table grows to {@code 2 * hashTableSize + 1} buckets when the
+ * load factor would pass 0.75. {@code String.hashCode} is fixed by the Java
+ * specification, so bucket indices stay valid from one process to the next.
+ *
+ * <p>
+ * For a map named {@code name}, the file {@code name.table} holds a header
+ * ({@code MAGIC}, hash table size, size, end of the used part of the data
+ * file) followed by one 8-byte bucket head per bucket, each the offset of the
+ * first record of the bucket's chain in the data file, or {@code NIL}. The
+ * file {@code name.data} holds the records, each 8-byte aligned: the offset of
+ * the next record in the chain, the key's hash code, the lengths of the UTF-8
+ * encoded key and value, then the key and value bytes. Records are only ever
+ * appended: removing a pair unlinks its record but does not reuse its space
+ * until the map is cleared. Files larger than 2 GB are mapped in 1 GB
+ * segments.
+ *
+ * <p>
+ * Every operation updates the mapped files directly, so the files are
+ * consistent whenever no operation is in progress. Nothing is forced to the
+ * storage device between operations, though: only {@code flush} and
+ * {@code close} do that. If the process dies in the middle of an {@code add}
+ * or a rehash, or the machine dies before the operating system has written
+ * the changed pages back, the files may be left inconsistent. Opening them
+ * checks only that the header is plausible, so such a map may reopen without
+ * any error and then answer wrongly.
+ *
+ * <p>
+ * A map opened on named files holds two open channels and their mappings
+ * until {@code close}, so callers must close it, e.g., with
+ * try-with-resources. A map built with the no-argument constructor, or by
+ * {@code newInstance}, or left behind in the source of {@code transferFrom},
+ * has no files: it keeps the same layout in buffers in memory, and closing it
+ * is optional.
+ *
+ * @mathdefinitions
+ *
+ *                  <pre>
+ * RECORD(r) is the record at offset r of the data file  and
+ * CHAIN(r) = if r = NIL then <> else <RECORD(r)> * CHAIN(RECORD(r).next)
+ *                  </pre>
+ *
+ * @convention
+ *
+ *             <pre>
+ * $this.hashTableSize > 0  and
+ * 0 <= $this.size <= LOAD_FACTOR * $this.hashTableSize  and
+ * DATA_START <= $this.dataEnd <= |$this.dataFile|  and
+ * the header of $this.tableFile records $this.hashTableSize, $this.size,
+ *   and $this.dataEnd  and
+ * for all i: integer where (0 <= i < $this.hashTableSize)
+ *   (every record in CHAIN(head(i)) lies in [DATA_START, $this.dataEnd)  and
+ *    for all rec in CHAIN(head(i))
+ *      (rec.hash = [computed result of rec.key.hashCode()]  and
+ *       mod(rec.hash, $this.hashTableSize) = i))  and
+ * [no key appears in two records of the chains]  and
+ * $this.size = [total number of records in the chains]  and
+ * 0 <= $this.removeAnyStart < $this.hashTableSize
+ *             </pre>
+ *
+ * @correspondence
+ *
+ *                 <pre>
+ * this = {(k, v): (String, String)
+ *         where (there exists i: integer, rec: record
+ *                 (0 <= i < $this.hashTableSize  and
+ *                  rec is in CHAIN(head(i))  and
+ *                  rec.key = k  and  rec.value = v))}
+ *                 </pre>
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public class Map7 extends MapSecondary<String, String>
+        implements AutoCloseable {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default size of hash table, as in {@code Map4}.
+     */
+    private static final int DEFAULT_HASH_TABLE_SIZE = 100;
+
+    /**
+     * Maximum ratio of {@code size} to hash table size, as in {@code Map4}.
+     */
+    private static final double LOAD_FACTOR = 0.75;
+
+    /**
+     * First word of every table file, to recognize one.
+     */
+    private static final long MAGIC = 0x4D61703754626C31L;
+
+    /**
+     * Offset of the hash table size in the table file header.
+     */
+    private static final int TABLE_SIZE_OFFSET = 8;
+
+    /**
+     * Offset of the size in the table file header.
+     */
+    private static final int SIZE_OFFSET = 16;
+
+    /**
+     * Offset of the end of the used part of the data file in the table file
+     * header.
+     */
+    private static final int DATA_END_OFFSET = 24;
+
+    /**
+     * Size of the table file header; bucket heads follow it.
+     */
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * Offset standing for "no record"; no record starts there, so a zeroed
+     * bucket head is an empty bucket.
+     */
+    private static final long NIL = 0;
+
+    /**
+     * Offset of the first record in the data file.
+     */
+    private static final long DATA_START = 8;
+
+    /**
+     * Initial capacity of a new data file, in bytes.
+     */
+    private static final long INITIAL_DATA_CAPACITY = 4096;
+
+    /**
+     * Offset of the key's hash code within a record.
+     */
+    private static final int HASH_OFFSET = 8;
+
+    /**
+     * Offset of the key length within a record.
+     */
+    private static final int KEY_LENGTH_OFFSET = 12;
+
+    /**
+     * Offset of the value length within a record.
+     */
+    private static final int VALUE_LENGTH_OFFSET = 16;
+
+    /**
+     * Offset of the key bytes within a record; the value bytes follow them.
+     */
+    private static final int KEY_OFFSET = 20;
+
+    /**
+     * Alignment of records, so that their {@code long} and {@code int} fields
+     * never straddle two mapped segments.
+     */
+    private static final int RECORD_ALIGNMENT = 8;
+
+    /**
+     * Name suffix of the table file.
+     */
+    private static final String TABLE_SUFFIX = ".table";
+
+    /**
+     * Name suffix of the data file.
+     */
+    private static final String DATA_SUFFIX = ".data";
+
+    /**
+     * File of header and bucket heads.
+     */
+    private MappedFile tableFile;
+
+    /**
+     * File of records.
+     */
+    private MappedFile dataFile;
+
+    /**
+     * Number of buckets; also kept in the table file header.
+     */
+    private int hashTableSize;
+
+    /**
+     * Size of abstract {@code this}; also kept in the table file header.
+     */
+    private int size;
+
+    /**
+     * End of the used part of the data file, where the next record goes; also
+     * kept in the table file header.
+     */
+    private long dataEnd;
+
+    /**
+     * Hash table size of a cleared {@code this}.
+     */
+    private int initialHashTableSize;
+
+    /**
+     * Bucket at which {@code removeAny} starts looking for a pair.
+     */
+    private int removeAnyStart;
+
+    /**
+     * A file mapped into memory in segments of at most {@code SEGMENT_SIZE}
+     * bytes, since one mapping cannot exceed 2 GB, or buffers in memory
+     * standing in for one. It only grows, doubling its capacity each time, and
+     * bytes past the old end of the file read as zero.
+     */
+    private static final class MappedFile {
+
+        /**
+         * Base 2 logarithm of {@code SEGMENT_SIZE}.
+         */
+        private static final int SEGMENT_BITS = 30;
+
+        /**
+         * Size of a full segment.
+         */
+        private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+        /**
+         * Channel of the file, or {@code null} if there is no file.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Mapped segments, or buffers in memory if there is no file; segment
+         * {@code k} starts at {@code k * SEGMENT_SIZE}.
+         */
+        private ByteBuffer[] segments;
+
+        /**
+         * Number of bytes mapped.
+         */
+        private long capacity;
+
+        /**
+         * Opens, or creates, the file at {@code path} and maps at least
+         * {@code minCapacity} bytes of it.
+         *
+         * @param path
+         *            the file
+         * @param minCapacity
+         *            the least number of bytes to map
+         */
+        MappedFile(Path path, long minCapacity) {
+            try {
+                this.channel = FileChannel.open(path, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+                this.segments = new ByteBuffer[0];
+                this.capacity = 0;
+                this.ensureCapacity(Math.max(minCapacity, this.channel.size()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Creates buffers in memory of at least {@code minCapacity} bytes,
+         * standing in for a file.
+         *
+         * @param minCapacity
+         *            the least number of bytes
+         */
+        MappedFile(long minCapacity) {
+            this.channel = null;
+            this.segments = new ByteBuffer[0];
+            this.capacity = 0;
+            this.ensureCapacity(minCapacity);
+        }
+
+        /**
+         * Makes sure at least {@code needed} bytes are mapped, growing the file
+         * if necessary.
+         *
+         * @param needed
+         *            the least number of bytes to map
+         */
+        void ensureCapacity(long needed) {
+            if (needed > this.capacity) {
+                long newCapacity = Math.max(needed, 2 * this.capacity);
+                int count = (int) ((newCapacity + SEGMENT_SIZE - 1)
+                        >>> SEGMENT_BITS);
+                ByteBuffer[] newSegments = Arrays.copyOf(this.segments, count);
+                try {
+                    /*
+                     * The last old segment may be partial, so map it again;
+                     * mapping past the end of the file extends the file. In
+                     * memory, copy it into a larger buffer instead
+                     */
+                    for (int k = Math.max(0, this.segments.length - 1);
+                            k < count; k++) {
+                        long start = (long) k << SEGMENT_BITS;
+                        int length = (int) Math.min(SEGMENT_SIZE,
+                                newCapacity - start);
+                        if (this.channel != null) {
+                            newSegments[k] = this.channel.map(
+                                    FileChannel.MapMode.READ_WRITE, start,
+                                    length);
+                        } else {
+                            newSegments[k] = ByteBuffer.allocate(length);
+                            if (k < this.segments.length) {
+                                ByteBuffer old = this.segments[k].duplicate();
+                                old.clear();
+                                newSegments[k].put(old);
+                                newSegments[k].clear();
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                this.segments = newSegments;
+                this.capacity = newCapacity;
+            }
+        }
+
+        /**
+         * Returns the segment holding byte {@code position}.
+         *
+         * @param position
+         *            the file offset
+         * @return the segment
+         */
+        private ByteBuffer segment(long position) {
+            return this.segments[(int) (position >>> SEGMENT_BITS)];
+        }
+
+        /**
+         * Returns the offset of byte {@code position} within its segment.
+         *
+         * @param position
+         *            the file offset
+         * @return the offset within the segment
+         */
+        private static int offset(long position) {
+            return (int) (position & (SEGMENT_SIZE - 1));
+        }
+
+        /**
+         * Returns the {@code long} at {@code position}.
+         *
+         * @param position
+         *            the file offset, a multiple of 8
+         * @return the {@code long} there
+         */
+        long getLong(long position) {
+            return this.segment(position).getLong(offset(position));
+        }
+
+        /**
+         * Writes {@code x} at {@code position}.
+         *
+         * @param position
+         *            the file offset, a multiple of 8
+         * @param x
+         *            the value to write
+         */
+        void putLong(long position, long x) {
+            this.segment(position).putLong(offset(position), x);
+        }
+
+        /**
+         * Returns the {@code int} at {@code position}.
+         *
+         * @param position
+         *            the file offset, a multiple of 4
+         * @return the {@code int} there
+         */
+        int getInt(long position) {
+            return this.segment(position).getInt(offset(position));
+        }
+
+        /**
+         * Writes {@code x} at {@code position}.
+         *
+         * @param position
+         *            the file offset, a multiple of 4
+         * @param x
+         *            the value to write
+         */
+        void putInt(long position, int x) {
+            this.segment(position).putInt(offset(position), x);
+        }
+
+        /**
+         * Copies {@code bytes.length} bytes from {@code position} into
+         * {@code bytes}, across segment boundaries if need be.
+         *
+         * @param position
+         *            the file offset
+         * @param bytes
+         *            the destination
+         */
+        void getBytes(long position, byte[] bytes) {
+            int done = 0;
+            while (done < bytes.length) {
+                long p = position + done;
+                ByteBuffer view = this.segment(p).duplicate();
+                view.position(offset(p));
+                int n = Math.min(bytes.length - done, view.remaining());
+                view.get(bytes, done, n);
+                done += n;
+            }
+        }
+
+        /**
+         * Copies {@code bytes} to {@code position}, across segment boundaries
+         * if need be.
+         *
+         * @param position
+         *            the file offset
+         * @param bytes
+         *            the source
+         */
+        void putBytes(long position, byte[] bytes) {
+            int done = 0;
+            while (done < bytes.length) {
+                long p = position + done;
+                ByteBuffer view = this.segment(p).duplicate();
+                view.position(offset(p));
+                int n = Math.min(bytes.length - done, view.remaining());
+                view.put(bytes, done, n);
+                done += n;
+            }
+        }
+
+        /**
+         * Writes every change to the storage device; does nothing if there is
+         * no file.
+         */
+        void force() {
+            if (this.channel != null) {
+                for (ByteBuffer segment : this.segments) {
+                    ((MappedByteBuffer) segment).force();
+                }
+            }
+        }
+
+        /**
+         * Writes every change to the storage device and closes the file; does
+         * nothing if there is no file.
+         */
+        void close() {
+            if (this.channel != null) {
+                this.force();
+                try {
+                    this.channel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes {@code a} mod {@code b} as % should have been defined to work.
+     *
+     * @param a
+     *            the number being reduced
+     * @param b
+     *            the modulus
+     * @return the result of a mod b, which satisfies 0 <= {@code mod} < b
+     * @requires b > 0
+     * @ensures
+     *
+     *          <pre>
+     * 0 <= mod  and  mod < b  and
+     * there exists k: integer (a = k * b + mod)
+     *          </pre>
+     */
+    private static int mod(int a, int b) {
+        assert b > 0 : "Violation of: b > 0";
+        int mod = a % b;
+        if (mod < 0) {
+            mod += b;
+        }
+        return mod;
+    }
+
+    /**
+     * Returns the offset of the head of bucket {@code i} in the table file.
+     *
+     * @param i
+     *            the bucket index
+     * @return the offset of its head
+     */
+    private static long headOffset(long i) {
+        return HEADER_SIZE + Long.BYTES * i;
+    }
+
+    /**
+     * Returns the number of bytes taken by a record with the given key and
+     * value lengths, padding included.
+     *
+     * @param keyLength
+     *            length of the encoded key
+     * @param valueLength
+     *            length of the encoded value
+     * @return the record size
+     */
+    private static long recordSize(int keyLength, int valueLength) {
+        long unpadded = (long) KEY_OFFSET + keyLength + valueLength;
+        return (unpadded + RECORD_ALIGNMENT - 1) & -RECORD_ALIGNMENT;
+    }
+
+    /**
+     * Returns the head of bucket {@code i}.
+     *
+     * @param i
+     *            the bucket index
+     * @return offset of the first record in the chain, or {@code NIL}
+     */
+    private long head(int i) {
+        return this.tableFile.getLong(headOffset(i));
+    }
+
+    /**
+     * Sets the head of bucket {@code i}.
+     *
+     * @param i
+     *            the bucket index
+     * @param record
+     *            offset of the new first record, or {@code NIL}
+     */
+    private void setHead(int i, long record) {
+        this.tableFile.putLong(headOffset(i), record);
+    }
+
+    /**
+     * Returns the offset of the record after {@code record} in its chain.
+     *
+     * @param record
+     *            offset of a record
+     * @return offset of the next record, or {@code NIL}
+     */
+    private long next(long record) {
+        return this.dataFile.getLong(record);
+    }
+
+    /**
+     * Decodes the key of {@code record}.
+     *
+     * @param record
+     *            offset of a record
+     * @return the key
+     */
+    private String keyOf(long record) {
+        byte[] bytes = new byte[this.dataFile
+                .getInt(record + KEY_LENGTH_OFFSET)];
+        this.dataFile.getBytes(record + KEY_OFFSET, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes the value of {@code record}.
+     *
+     * @param record
+     *            offset of a record
+     * @return the value
+     */
+    private String valueOf(long record) {
+        int keyLength = this.dataFile.getInt(record + KEY_LENGTH_OFFSET);
+        byte[] bytes = new byte[this.dataFile
+                .getInt(record + VALUE_LENGTH_OFFSET)];
+        this.dataFile.getBytes(record + KEY_OFFSET + keyLength, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reports whether {@code record} holds the key with the given hash code
+     * and encoding.
+     *
+     * @param record
+     *            offset of a record
+     * @param hash
+     *            the key's hash code
+     * @param keyBytes
+     *            the key's UTF-8 encoding
+     * @return true iff the record's key is that key
+     */
+    private boolean holdsKey(long record, int hash, byte[] keyBytes) {
+        boolean holds = this.dataFile.getInt(record + HASH_OFFSET) == hash
+                && this.dataFile.getInt(
+                        record + KEY_LENGTH_OFFSET) == keyBytes.length;
+        if (holds) {
+            byte[] stored = new byte[keyBytes.length];
+            this.dataFile.getBytes(record + KEY_OFFSET, stored);
+            holds = Arrays.equals(stored, keyBytes);
+        }
+        return holds;
+    }
+
+    /**
+     * Returns the record holding {@code key}, or {@code NIL}.
+     *
+     * @param key
+     *            the key to find
+     * @return offset of its record, or {@code NIL} if key is not in
+     *         DOMAIN(this)
+     */
+    private long find(String key) {
+        int hash = key.hashCode();
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long record = this.head(mod(hash, this.hashTableSize));
+        while (record != NIL && !this.holdsKey(record, hash, keyBytes)) {
+            record = this.next(record);
+        }
+        return record;
+    }
+
+    /**
+     * Writes the hash table size, size, and end of data to the table file
+     * header.
+     *
+     * @updates $this.tableFile
+     * @ensures [the header of $this.tableFile records $this.hashTableSize,
+     *          $this.size, and $this.dataEnd]
+     */
+    private void writeHeader() {
+        this.tableFile.putLong(0, MAGIC);
+        this.tableFile.putLong(TABLE_SIZE_OFFSET, this.hashTableSize);
+        this.tableFile.putLong(SIZE_OFFSET, this.size);
+        this.tableFile.putLong(DATA_END_OFFSET, this.dataEnd);
+    }
+
+    /**
+     * Unlinks {@code record} from bucket {@code i} and returns its pair.
+     *
+     * @param i
+     *            the bucket index
+     * @param previous
+     *            the record before {@code record} in the chain, or {@code NIL}
+     *            if {@code record} is first
+     * @param record
+     *            offset of the record to unlink
+     * @return the pair of the record
+     * @updates $this
+     * @requires record is in CHAIN(head(i))
+     * @ensures this = #this \ {unlink}
+     */
+    private Pair<String, String> unlink(int i, long previous, long record) {
+        Pair<String, String> p = new SimplePair<String, String>(
+                this.keyOf(record), this.valueOf(record));
+        if (previous == NIL) {
+            this.setHead(i, this.next(record));
+        } else {
+            this.dataFile.putLong(previous, this.next(record));
+        }
+        this.size--;
+        this.writeHeader();
+        return p;
+    }
+
+    /**
+     * Grows the hash table to {@code newSize} buckets in place, relinking
+     * every record; no record is copied.
+     *
+     * @param newSize
+     *            the new hash table size
+     * @updates $this
+     * @requires newSize > $this.hashTableSize
+     * @ensures this = #this and $this.hashTableSize = newSize
+     */
+    private void rehash(int newSize) {
+        int oldSize = this.hashTableSize;
+        this.tableFile.ensureCapacity(headOffset(newSize));
+        // Buckets past the old size may hold heads left by an earlier clear
+        for (int i = oldSize; i < newSize; i++) {
+            this.setHead(i, NIL);
+        }
+        /*
+         * Detach each old chain and push its records onto their new buckets. A
+         * record pushed onto a later old bucket is pushed again when that
+         * bucket's turn comes, onto the same bucket, which does no harm
+         */
+        for (int i = 0; i < oldSize; i++) {
+            long record = this.head(i);
+            this.setHead(i, NIL);
+            while (record != NIL) {
+                long next = this.next(record);
+                int j = mod(this.dataFile.getInt(record + HASH_OFFSET),
+                        newSize);
+                this.dataFile.putLong(record, this.head(j));
+                this.setHead(j, record);
+                record = next;
+            }
+        }
+        this.hashTableSize = newSize;
+        this.removeAnyStart = 0;
+        this.writeHeader();
+    }
+
+    /**
+     * Makes the representation that of an empty map with
+     * {@code hashTableSize} buckets, in the files or buffers of
+     * {@code $this.tableFile} and {@code $this.dataFile}.
+     *
+     * @param hashTableSize
+     *            the hash table size
+     * @updates $this
+     * @requires hashTableSize > 0  and
+     *           [$this.tableFile holds at least headOffset(hashTableSize)
+     *           bytes]
+     * @ensures this = {}
+     */
+    private void initialize(int hashTableSize) {
+        this.hashTableSize = hashTableSize;
+        this.size = 0;
+        this.dataEnd = DATA_START;
+        this.removeAnyStart = 0;
+        for (int i = 0; i < hashTableSize; i++) {
+            this.setHead(i, NIL);
+        }
+        this.writeHeader();
+    }
+
+    /**
+     * Opens the files at {@code table} and {@code data}, and reads or
+     * initializes the representation from them.
+     *
+     * @param table
+     *            path of the table file
+     * @param data
+     *            path of the data file
+     * @param hashTableSize
+     *            hash table size to use if the files are new
+     * @throws IllegalArgumentException
+     *             if the table file is not that of a {@code Map7}, or its
+     *             header does not fit the files
+     * @requires hashTableSize > 0
+     * @ensures
+     *
+     *          <pre>
+     * if [the table file is new or empty]
+     *  then this = {}
+     *  else this = [the map stored in the files]
+     *          </pre>
+     */
+    private void open(Path table, Path data, int hashTableSize) {
+        this.initialHashTableSize = hashTableSize;
+        this.removeAnyStart = 0;
+        this.tableFile = new MappedFile(table, headOffset(hashTableSize));
+        long magic = this.tableFile.getLong(0);
+        if (magic == MAGIC) {
+            long storedTableSize = this.tableFile.getLong(TABLE_SIZE_OFFSET);
+            long storedSize = this.tableFile.getLong(SIZE_OFFSET);
+            long storedDataEnd = this.tableFile.getLong(DATA_END_OFFSET);
+            long dataFileSize = 0;
+            try {
+                if (Files.exists(data)) {
+                    dataFileSize = Files.size(data);
+                }
+                // Only the header is checked: the chains would take a full scan
+                if (storedTableSize <= 0 || storedTableSize > Integer.MAX_VALUE
+                        || Files.size(table) < headOffset(storedTableSize)
+                        || storedSize < 0
+                        || storedSize > LOAD_FACTOR * storedTableSize
+                        || storedDataEnd < DATA_START
+                        || storedDataEnd > Math.max(dataFileSize, DATA_START)) {
+                    this.tableFile.close();
+                    throw new IllegalArgumentException(
+                            "Corrupt Map7 table file: " + table);
+                }
+            } catch (IOException e) {
+                this.tableFile.close();
+                throw new UncheckedIOException(e);
+            }
+            this.hashTableSize = (int) storedTableSize;
+            this.size = (int) storedSize;
+            this.dataEnd = storedDataEnd;
+        } else if (magic == 0) {
+            this.initialize(hashTableSize);
+        } else {
+            this.tableFile.close();
+            throw new IllegalArgumentException(
+                    "Not a Map7 table file: " + table);
+        }
+        this.dataFile = new MappedFile(data,
+                Math.max(this.dataEnd, INITIAL_DATA_CAPACITY));
+    }
+
+    /**
+     * Creator of initial representation: an empty map in buffers in memory,
+     * with no files.
+     *
+     * @ensures this = {}
+     */
+    private void createNewRep() {
+        this.initialHashTableSize = DEFAULT_HASH_TABLE_SIZE;
+        this.tableFile = new MappedFile(headOffset(DEFAULT_HASH_TABLE_SIZE));
+        this.dataFile = new MappedFile(INITIAL_DATA_CAPACITY);
+        this.initialize(DEFAULT_HASH_TABLE_SIZE);
+    }
+
+    /**
+     * Closes the files, if any.
+     */
+    private void closeFiles() {
+        this.tableFile.close();
+        this.dataFile.close();
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor, resulting in a map in memory, with no files.
+     */
+    public Map7() {
+        this.createNewRep();
+    }
+
+    /**
+     * Constructor that opens the map stored in {@code name.table} and
+     * {@code name.data}, creating an empty one if they do not exist.
+     *
+     * @param name
+     *            path of the files, without suffix
+     * @ensures
+     *
+     *          <pre>
+     * if [the files exist]
+     *  then this = [the map stored in them]
+     *  else this = {}
+     *          </pre>
+     */
+    public Map7(String name) {
+        this(name, DEFAULT_HASH_TABLE_SIZE);
+    }
+
+    /**
+     * Constructor that opens the map stored in {@code name.table} and
+     * {@code name.data}, creating an empty one with
+     * {@code initialHashTableSize} buckets if they do not exist.
+     *
+     * @param name
+     *            path of the files, without suffix
+     * @param initialHashTableSize
+     *            hash table size of a new or cleared map
+     * @requires initialHashTableSize > 0
+     * @ensures
+     *
+     *          <pre>
+     * if [the files exist]
+     *  then this = [the map stored in them]
+     *  else this = {}
+     *          </pre>
+     */
+    public Map7(String name, int initialHashTableSize) {
+        assert name != null : "Violation of: name is not null";
+        assert initialHashTableSize > 0 : ""
+                + "Violation of: initialHashTableSize > 0";
+        this.open(Paths.get(name + TABLE_SUFFIX), Paths.get(name + DATA_SUFFIX),
+                initialHashTableSize);
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @Override
+    public final Map<String, String> newInstance() {
+        try {
+            return this.getClass().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        // The files keep their capacity; their old contents get overwritten
+        this.initialize(this.initialHashTableSize);
+    }
+
+    @Override
+    public final void transferFrom(Map<String, String> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Map7 : ""
+                + "Violation of: source is of dynamic type Map7";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case.
+         */
+        Map7 localSource = (Map7) source;
+        // this takes over the files of source; its own are closed
+        this.closeFiles();
+        this.tableFile = localSource.tableFile;
+        this.dataFile = localSource.dataFile;
+        this.hashTableSize = localSource.hashTableSize;
+        this.size = localSource.size;
+        this.dataEnd = localSource.dataEnd;
+        this.initialHashTableSize = localSource.initialHashTableSize;
+        this.removeAnyStart = localSource.removeAnyStart;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(String key, String value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert!this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+        if (this.size + 1 > LOAD_FACTOR * this.hashTableSize) {
+            this.rehash(2 * this.hashTableSize + 1);
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        int hash = key.hashCode();
+        int i = mod(hash, this.hashTableSize);
+        long record = this.dataEnd;
+        long recordEnd = record
+                + recordSize(keyBytes.length, valueBytes.length);
+        this.dataFile.ensureCapacity(recordEnd);
+        // Write the whole record before linking it in
+        this.dataFile.putLong(record, this.head(i));
+        this.dataFile.putInt(record + HASH_OFFSET, hash);
+        this.dataFile.putInt(record + KEY_LENGTH_OFFSET, keyBytes.length);
+        this.dataFile.putInt(record + VALUE_LENGTH_OFFSET, valueBytes.length);
+        this.dataFile.putBytes(record + KEY_OFFSET, keyBytes);
+        this.dataFile.putBytes(record + KEY_OFFSET + keyBytes.length,
+                valueBytes);
+        this.setHead(i, record);
+        this.dataEnd = recordEnd;
+        this.size++;
+        this.writeHeader();
+    }
+
+    @Override
+    public final Pair<String, String> remove(String key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int hash = key.hashCode();
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int i = mod(hash, this.hashTableSize);
+        long previous = NIL;
+        long record = this.head(i);
+        while (!this.holdsKey(record, hash, keyBytes)) {
+            previous = record;
+            record = this.next(record);
+        }
+        return this.unlink(i, previous, record);
+    }
+
+    @Override
+    public final Pair<String, String> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        int i = this.removeAnyStart;
+        // Skip the empty buckets; there is at least one pair, so this ends
+        while (this.head(i) == NIL) {
+            i = (i + 1) % this.hashTableSize;
+        }
+        this.removeAnyStart = i;
+        return this.unlink(i, NIL, this.head(i));
+    }
+
+    @Override
+    public final String value(String key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        return this.valueOf(this.find(key));
+    }
+
+    @Override
+    public final boolean hasKey(String key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.find(key) != NIL;
+    }
+
+    @Override
+    public final int size() {
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<Pair<String, String>> iterator() {
+        return new Map7Iterator();
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Writes every change to {@code this} to the storage device.
+     */
+    public final void flush() {
+        this.tableFile.force();
+        this.dataFile.force();
+    }
+
+    /**
+     * Writes every change to {@code this} to the storage device and closes its
+     * files, if it has any. {@code this} must not be used afterwards.
+     */
+    @Override
+    public final void close() {
+        this.closeFiles();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Map7}.
+     */
+    private final class Map7Iterator implements Iterator<Pair<String, String>> {
+
+        /**
+         * Number of elements seen already (i.e., |~this.seen|).
+         */
+        private int numberSeen;
+
+        /**
+         * Bucket of the next record.
+         */
+        private int currentBucket;
+
+        /**
+         * Offset of the next record, or {@code NIL} if it is the first record
+         * of a later bucket.
+         */
+        private long currentRecord;
+
+        /**
+         * No-argument constructor.
+         */
+        Map7Iterator() {
+            this.numberSeen = 0;
+            this.currentBucket = 0;
+            this.currentRecord = Map7.this.head(0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.numberSeen < Map7.this.size;
+        }
+
+        @Override
+        public Pair<String, String> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            while (this.currentRecord == NIL) {
+                this.currentBucket++;
+                this.currentRecord = Map7.this.head(this.currentBucket);
+            }
+            this.numberSeen++;
+            Pair<String, String> p = new SimplePair<String, String>(
+                    Map7.this.keyOf(this.currentRecord),
+                    Map7.this.valueOf(this.currentRecord));
+            this.currentRecord = Map7.this.next(this.currentRecord);
+            return p;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+    }
+}
@@ -0,0 +1,189 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import components.map.Map;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Compares the two ways a process can get a large glossary map at startup:
+ * rebuilding it by parsing a text file into a {@code Map4}, or reopening a
+ * {@code Map7} that an earlier run left on disk.
+ *
+ * <p>
+ * Usage: {@code Map7Timing [pairs]}, 1,000,000 pairs by default. The text file
+ * and the {@code Map7} files are written to a temporary directory and deleted
+ * at the end.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class Map7Timing {
+
+    /**
+     * Default number of glossary pairs.
+     */
+    private static final int DEFAULT_PAIRS = 1_000_000;
+
+    /**
+     * Number of {@code value} calls timed on each map after startup.
+     */
+    private static final int LOOKUPS = 1_000_000;
+
+    /**
+     * Multiplier used to scatter lookups across the terms.
+     */
+    private static final long SCATTER = 2_654_435_761L;
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private Map7Timing() {
+    }
+
+    /**
+     * Returns the term at position {@code i} of the glossary.
+     *
+     * @param i
+     *            the position
+     * @return the term
+     */
+    private static String term(int i) {
+        return "term" + i;
+    }
+
+    /**
+     * Writes a glossary of {@code pairs} lines, each a term, a tab, and its
+     * definition, to {@code fileName}.
+     *
+     * @param fileName
+     *            the file to write
+     * @param pairs
+     *            the number of lines
+     */
+    private static void writeGlossary(String fileName, int pairs) {
+        SimpleWriter file = new SimpleWriter1L(fileName);
+        for (int i = 0; i < pairs; i++) {
+            file.println(term(i) + "\tthe definition of " + term(i)
+                    + ", which is long enough to look like a real one");
+        }
+        file.close();
+    }
+
+    /**
+     * Adds each term and definition in {@code fileName} to {@code m}.
+     *
+     * @param fileName
+     *            the glossary file
+     * @param m
+     *            the map to fill
+     * @updates m
+     * @requires m = {}
+     * @ensures m = [the pairs in the glossary file]
+     */
+    private static void parseGlossary(String fileName, Map<String, String> m) {
+        SimpleReader file = new SimpleReader1L(fileName);
+        while (!file.atEOS()) {
+            String line = file.nextLine();
+            int tab = line.indexOf('\t');
+            m.add(line.substring(0, tab), line.substring(tab + 1));
+        }
+        file.close();
+    }
+
+    /**
+     * Returns the average number of nanoseconds per {@code value} call on
+     * {@code m}.
+     *
+     * @param m
+     *            the map to look up in
+     * @param pairs
+     *            the number of terms in {@code m}
+     * @return nanoseconds per {@code value}
+     */
+    private static double timeLookups(Map<String, String> m, int pairs) {
+        int totalLength = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            totalLength += m.value(term((int) ((i * SCATTER) % pairs)))
+                    .length();
+        }
+        long elapsed = System.nanoTime() - start;
+        // Use the result so the loop cannot be optimized away
+        if (totalLength == 0) {
+            throw new AssertionError("empty definitions");
+        }
+        return elapsed / (double) LOOKUPS;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments: optionally the number of pairs
+     * @throws IOException
+     *             if the temporary files cannot be created or deleted
+     */
+    public static void main(String[] args) throws IOException {
+        SimpleWriter out = new SimpleWriter1L();
+        int pairs = DEFAULT_PAIRS;
+        if (args.length > 0) {
+            pairs = Integer.parseInt(args[0]);
+        }
+        Path directory = Files.createTempDirectory("map7timing");
+        String glossary = directory.resolve("glossary.txt").toString();
+        String name = directory.resolve("glossary").toString();
+        writeGlossary(glossary, pairs);
+        /*
+         * Rebuild from text, as every process start does today
+         */
+        long start = System.nanoTime();
+        Map<String, String> rebuilt = new Map4<String, String>();
+        parseGlossary(glossary, rebuilt);
+        long rebuildTime = System.nanoTime() - start;
+        /*
+         * Build the persistent map once, as a first run would
+         */
+        start = System.nanoTime();
+        Map7 built = new Map7(name);
+        parseGlossary(glossary, built);
+        built.close();
+        long buildTime = System.nanoTime() - start;
+        /*
+         * Reopen it, as every later run would, and look up one term
+         */
+        start = System.nanoTime();
+        Map7 reopened = new Map7(name);
+        String first = reopened.value(term(0));
+        long reopenTime = System.nanoTime() - start;
+
+        out.println(pairs + " pairs, " + Files.size(directory.resolve(
+                "glossary.data")) + " bytes of Map7 data");
+        out.println("rebuild Map4 from text (ms):\t"
+                + String.format("%.1f", rebuildTime / NANOS_PER_MILLI));
+        out.println("first build of Map7 (ms):\t"
+                + String.format("%.1f", buildTime / NANOS_PER_MILLI));
+        out.println("reopen Map7 + 1 lookup (ms):\t"
+                + String.format("%.1f", reopenTime / NANOS_PER_MILLI) + "\t("
+                + first.length() + " chars)");
+        out.println("Map4 value (ns/op):\t"
+                + String.format("%.1f", timeLookups(rebuilt, pairs)));
+        out.println("Map7 value (ns/op):\t"
+                + String.format("%.1f", timeLookups(reopened, pairs)));
+        reopened.close();
+
+        Files.delete(directory.resolve("glossary.txt"));
+        Files.delete(directory.resolve("glossary.table"));
+        Files.delete(directory.resolve("glossary.data"));
+        Files.delete(directory);
+        out.close();
+    }
+
+}
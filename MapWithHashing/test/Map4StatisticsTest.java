@@ -0,0 +1,140 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.function.IntUnaryOperator;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for the bucket statistics of {@code Map4} and for the
+ * hash spreaders, using {@code Integer} keys, whose hash codes are their
+ * values, so that which keys collide is known.
+ */
+public class Map4StatisticsTest {
+
+    /**
+     * Hash table size of the maps under test.
+     */
+    private static final int TABLE_SIZE = 10;
+
+    /**
+     * Load factor high enough that the maps under test never grow.
+     */
+    private static final double NO_GROWTH = 100.0;
+
+    /**
+     * Returns an empty {@code Map4} with {@code TABLE_SIZE} buckets that never
+     * grows, using {@code spreader}.
+     *
+     * @param spreader
+     *            the hash spreader
+     * @return the map
+     */
+    private static Map4<Integer, Integer> map(IntUnaryOperator spreader) {
+        return new Map4<Integer, Integer>(TABLE_SIZE, NO_GROWTH, spreader);
+    }
+
+    @Test
+    public final void testEmpty() {
+        Map4<Integer, Integer> m = map(HashSpreaders.IDENTITY);
+        assertEquals(0, m.maxBucketSize());
+        assertArrayEquals(new int[] { TABLE_SIZE }, m.bucketSizeHistogram());
+        assertEquals(0, m.collisionCount());
+    }
+
+    @Test
+    public final void testKnownCollisions() {
+        Map4<Integer, Integer> m = map(HashSpreaders.IDENTITY);
+        // Twelve keys in bucket 0, which makes it a tree bucket
+        final int colliding = 12;
+        for (int i = 0; i < colliding; i++) {
+            m.add(i * TABLE_SIZE, i);
+        }
+        // Two keys in bucket 3 and one each in buckets 5 and 7
+        m.add(3, 0);
+        m.add(3 + TABLE_SIZE, 0);
+        m.add(5, 0);
+        m.add(7, 0);
+        assertEquals(colliding, m.maxBucketSize());
+        int[] expected = new int[colliding + 1];
+        expected[0] = TABLE_SIZE - 4;
+        expected[1] = 2;
+        expected[2] = 1;
+        expected[colliding] = 1;
+        assertArrayEquals(expected, m.bucketSizeHistogram());
+        // colliding + 4 pairs in 4 non-empty buckets
+        assertEquals(colliding, m.collisionCount());
+    }
+
+    @Test
+    public final void testStatisticsFollowRemovals() {
+        Map4<Integer, Integer> m = map(HashSpreaders.IDENTITY);
+        for (int i = 0; i < 3; i++) {
+            m.add(i * TABLE_SIZE, i);
+        }
+        m.add(1, 0);
+        m.remove(TABLE_SIZE);
+        assertEquals(2, m.maxBucketSize());
+        assertArrayEquals(new int[] { TABLE_SIZE - 2, 1, 1 },
+                m.bucketSizeHistogram());
+        assertEquals(1, m.collisionCount());
+        m.remove(1);
+        m.remove(0);
+        m.remove(2 * TABLE_SIZE);
+        assertEquals(0, m.maxBucketSize());
+        assertEquals(0, m.collisionCount());
+    }
+
+    @Test
+    public final void testStatisticsAfterClear() {
+        Map4<Integer, Integer> m = map(HashSpreaders.IDENTITY);
+        for (int i = 0; i < 5; i++) {
+            m.add(i * TABLE_SIZE, i);
+        }
+        m.clear();
+        assertEquals(0, m.maxBucketSize());
+        assertArrayEquals(new int[] { TABLE_SIZE }, m.bucketSizeHistogram());
+        assertEquals(0, m.collisionCount());
+    }
+
+    /**
+     * Adds {@code n} multiples of {@code TABLE_SIZE}, which all collide
+     * without spreading, to a map using {@code spreader}, and returns its
+     * largest bucket size.
+     *
+     * @param spreader
+     *            the hash spreader
+     * @param n
+     *            the number of keys
+     * @return the largest bucket size
+     */
+    private static int maxBucketOfMultiples(IntUnaryOperator spreader,
+            int n) {
+        Map4<Integer, Integer> m = map(spreader);
+        for (int i = 0; i < n; i++) {
+            m.add(i * TABLE_SIZE, i);
+        }
+        int total = 0;
+        int[] histogram = m.bucketSizeHistogram();
+        for (int k = 0; k < histogram.length; k++) {
+            total += k * histogram[k];
+        }
+        assertEquals(n, total);
+        assertEquals(n - (TABLE_SIZE - histogram[0]), m.collisionCount());
+        return m.maxBucketSize();
+    }
+
+    @Test
+    public final void testSpreadersSpreadMultiples() {
+        final int n = 1000;
+        assertEquals(n, maxBucketOfMultiples(HashSpreaders.IDENTITY, n));
+        int murmur = maxBucketOfMultiples(HashSpreaders.MURMUR, n);
+        int fibonacci = maxBucketOfMultiples(HashSpreaders.FIBONACCI, n);
+        // Evenly spread would be n / TABLE_SIZE per bucket
+        assertTrue("MURMUR: " + murmur, murmur <= 2 * n / TABLE_SIZE);
+        assertTrue("FIBONACCI: " + fibonacci,
+                fibonacci <= 2 * n / TABLE_SIZE);
+    }
+
+}
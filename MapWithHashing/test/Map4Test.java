@@ -1,3 +1,7 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
 import components.map.Map;
 import components.map.Map1L;
 
@@ -16,4 +20,21 @@ public class Map4Test extends MapTest {
         return new Map1L<String, String>();
     }
 
+    @Test
+    public final void testRefillAfterClearKeepsTable() {
+        final int n = 10_000;
+        Map4<String, String> m = new Map4<String, String>();
+        for (int i = 0; i < n; i++) {
+            m.add("k" + i, "v" + i);
+        }
+        int length = m.hashTableSize();
+        m.clear();
+        assertEquals(length, m.hashTableSize());
+        for (int i = 0; i < n; i++) {
+            m.add("k" + i, "v" + i);
+            assertEquals(length, m.hashTableSize());
+        }
+        assertEquals(n, m.size());
+    }
+
 }
@@ -0,0 +1,47 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map4} using power-of-2 hash table
+ * sizes with mask-based indexing, starting from a two-bucket table so that the
+ * tests also exercise growing and shrinking.
+ */
+public class Map4TestPowerOfTwo extends MapTest {
+
+    /**
+     * Initial size of hash table to be used in tests.
+     */
+    private static final int TEST_HASH_TABLE_SIZE = 2;
+
+    /**
+     * Load factor to be used in tests.
+     */
+    private static final double TEST_LOAD_FACTOR = 0.75;
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map4<String, String>(TEST_HASH_TABLE_SIZE, TEST_LOAD_FACTOR,
+                HashSpreaders.MURMUR, true);
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+    @Test
+    public final void testNewInstanceKeepsConfiguration() {
+        Map4<String, String> m = (Map4<String, String>) this.constructorTest();
+        Map4<String, String> n = (Map4<String, String>) m.newInstance();
+        assertEquals(TEST_HASH_TABLE_SIZE, n.hashTableSize());
+        n.add("a", "1");
+        n.add("b", "2");
+        // Past the load factor, a power-of-2 table doubles
+        assertEquals(2 * TEST_HASH_TABLE_SIZE, n.hashTableSize());
+    }
+
+}
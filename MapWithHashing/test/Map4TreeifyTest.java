@@ -0,0 +1,410 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for the tree buckets of {@code Map4}, using keys whose
+ * hash codes all collide so that every pair lands in the same bucket.
+ */
+public class Map4TreeifyTest {
+
+    /**
+     * Number of colliding keys used in the lookup tests.
+     */
+    private static final int MANY = 4096;
+
+    /**
+     * Key with a constant hash code that counts its comparisons.
+     */
+    private static final class CollidingKey
+            implements Comparable<CollidingKey> {
+
+        /**
+         * Number of calls to {@code compareTo} on any {@code CollidingKey}.
+         */
+        private static int comparisons = 0;
+
+        /**
+         * Identity of this key.
+         */
+        private final int id;
+
+        /**
+         * Constructor.
+         *
+         * @param id
+         *            the identity of the key
+         */
+        CollidingKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof CollidingKey
+                    && ((CollidingKey) obj).id == this.id;
+        }
+
+        @Override
+        public int compareTo(CollidingKey other) {
+            comparisons++;
+            return Integer.compare(this.id, other.id);
+        }
+
+        @Override
+        public String toString() {
+            return "k" + this.id;
+        }
+    }
+
+    /**
+     * Key with a constant hash code that cannot be ordered.
+     */
+    private static final class UnorderedKey {
+
+        /**
+         * Identity of this key.
+         */
+        private final int id;
+
+        /**
+         * Constructor.
+         *
+         * @param id
+         *            the identity of the key
+         */
+        UnorderedKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof UnorderedKey
+                    && ((UnorderedKey) obj).id == this.id;
+        }
+    }
+
+    /**
+     * Key with a constant hash code whose {@code compareTo} ignores case while
+     * {@code equals} does not, so the two are inconsistent.
+     */
+    private static final class CaseInsensitiveKey
+            implements Comparable<CaseInsensitiveKey> {
+
+        /**
+         * Name of this key.
+         */
+        private final String name;
+
+        /**
+         * Constructor.
+         *
+         * @param name
+         *            the name of the key
+         */
+        CaseInsensitiveKey(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof CaseInsensitiveKey
+                    && ((CaseInsensitiveKey) obj).name.equals(this.name);
+        }
+
+        @Override
+        public int compareTo(CaseInsensitiveKey other) {
+            return this.name.compareToIgnoreCase(other.name);
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+
+    /**
+     * Key with a constant hash code whose {@code compareTo} compares
+     * identities modulo {@code PERIOD}, so that keys {@code i} and
+     * {@code i + PERIOD} are different but cannot be ordered; counts its
+     * comparisons.
+     */
+    private static final class PeriodicKey implements Comparable<PeriodicKey> {
+
+        /**
+         * Period of the order.
+         */
+        private static final int PERIOD = 512;
+
+        /**
+         * Number of calls to {@code compareTo} on any {@code PeriodicKey}.
+         */
+        private static long comparisons = 0;
+
+        /**
+         * Identity of this key.
+         */
+        private final int id;
+
+        /**
+         * Constructor.
+         *
+         * @param id
+         *            the identity of the key
+         */
+        PeriodicKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof PeriodicKey
+                    && ((PeriodicKey) obj).id == this.id;
+        }
+
+        @Override
+        public int compareTo(PeriodicKey other) {
+            comparisons++;
+            return Integer.compare(this.id % PERIOD, other.id % PERIOD);
+        }
+    }
+
+    /**
+     * Returns a {@code Map4} holding keys {@code 0..n-1}, each mapped to its
+     * identity times two.
+     *
+     * @param n
+     *            number of keys
+     * @return the map
+     */
+    private static Map<CollidingKey, Integer> collidingMap(int n) {
+        Map<CollidingKey, Integer> m = new Map4<CollidingKey, Integer>();
+        for (int i = 0; i < n; i++) {
+            m.add(new CollidingKey(i), 2 * i);
+        }
+        return m;
+    }
+
+    /**
+     * Returns ceiling(log2(n)).
+     *
+     * @param n
+     *            the number
+     * @return ceiling(log2(n))
+     */
+    private static int log2(int n) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(n - 1);
+    }
+
+    @Test
+    public final void testLookupsStayLogarithmic() {
+        Map<CollidingKey, Integer> m = collidingMap(MANY);
+        int bound = 2 * log2(MANY) + 2;
+        for (int i = 0; i < MANY; i++) {
+            CollidingKey.comparisons = 0;
+            assertEquals(true, m.hasKey(new CollidingKey(i)));
+            assertTrue("comparisons: " + CollidingKey.comparisons,
+                    CollidingKey.comparisons <= bound);
+            assertEquals(2 * i, m.value(new CollidingKey(i)).intValue());
+        }
+        CollidingKey.comparisons = 0;
+        assertEquals(false, m.hasKey(new CollidingKey(MANY)));
+        assertTrue(CollidingKey.comparisons <= bound);
+    }
+
+    @Test
+    public final void testRemoveUntreeifiesAndStaysCorrect() {
+        Map<CollidingKey, Integer> m = collidingMap(MANY);
+        Map<CollidingKey, Integer> ref = new Map1L<CollidingKey, Integer>();
+        for (int i = 0; i < MANY; i++) {
+            ref.add(new CollidingKey(i), 2 * i);
+        }
+        for (int i = 0; i < MANY - 1; i++) {
+            assertEquals(ref.remove(new CollidingKey(i)),
+                    m.remove(new CollidingKey(i)));
+            if (i % 512 == 0 || i > MANY - 16) {
+                assertEquals(ref, m);
+            }
+        }
+        /*
+         * The bucket is a list again: lookups compare with equals only
+         */
+        CollidingKey.comparisons = 0;
+        assertEquals(2 * (MANY - 1),
+                m.value(new CollidingKey(MANY - 1)).intValue());
+        assertEquals(0, CollidingKey.comparisons);
+        m.removeAny();
+        assertEquals(0, m.size());
+    }
+
+    @Test
+    public final void testRemoveAnyDrainsTreeBucket() {
+        Map<CollidingKey, Integer> m = collidingMap(MANY);
+        Map<CollidingKey, Integer> ref = collidingMap(MANY);
+        while (m.size() > 0) {
+            Map.Pair<CollidingKey, Integer> p = m.removeAny();
+            assertEquals(ref.remove(p.key()), p);
+        }
+        assertEquals(0, ref.size());
+    }
+
+    @Test
+    public final void testClearAndReuse() {
+        Map<CollidingKey, Integer> m = collidingMap(MANY);
+        m.clear();
+        assertEquals(0, m.size());
+        for (int i = 0; i < 3; i++) {
+            m.add(new CollidingKey(i), i);
+        }
+        CollidingKey.comparisons = 0;
+        assertEquals(true, m.hasKey(new CollidingKey(2)));
+        assertEquals(0, CollidingKey.comparisons);
+        assertEquals(false, m.hasKey(new CollidingKey(MANY - 1)));
+    }
+
+    @Test
+    public final void testUnorderedKeysStayInList() {
+        Map<UnorderedKey, Integer> m = new Map4<UnorderedKey, Integer>();
+        Map<UnorderedKey, Integer> ref = new Map1L<UnorderedKey, Integer>();
+        for (int i = 0; i < 100; i++) {
+            m.add(new UnorderedKey(i), i);
+            ref.add(new UnorderedKey(i), i);
+        }
+        assertEquals(ref, m);
+        assertEquals(37, m.value(new UnorderedKey(37)).intValue());
+    }
+
+    @Test
+    public final void testCompareToInconsistentWithEquals() {
+        Map<CaseInsensitiveKey, Integer> m = new Map4<CaseInsensitiveKey, Integer>();
+        Map<CaseInsensitiveKey, Integer> ref = new Map1L<CaseInsensitiveKey, Integer>();
+        final int n = 20;
+        for (int i = 0; i < n; i++) {
+            m.add(new CaseInsensitiveKey("k" + i), i);
+            ref.add(new CaseInsensitiveKey("k" + i), i);
+        }
+        // compareTo finds "K3" in the tree, but equals does not
+        assertEquals(false, m.hasKey(new CaseInsensitiveKey("K3")));
+        m.add(new CaseInsensitiveKey("K3"), -3);
+        ref.add(new CaseInsensitiveKey("K3"), -3);
+        assertEquals(n + 1, m.size());
+        assertEquals(3, m.value(new CaseInsensitiveKey("k3")).intValue());
+        assertEquals(-3, m.value(new CaseInsensitiveKey("K3")).intValue());
+        assertEquals(ref, m);
+        // Still a list, since compareTo cannot tell the keys apart
+        m.add(new CaseInsensitiveKey("k" + n), n);
+        ref.add(new CaseInsensitiveKey("k" + n), n);
+        assertEquals(ref.remove(new CaseInsensitiveKey("K3")),
+                m.remove(new CaseInsensitiveKey("K3")));
+        assertEquals(false, m.hasKey(new CaseInsensitiveKey("K3")));
+        assertEquals(3, m.value(new CaseInsensitiveKey("k3")).intValue());
+        assertEquals(ref, m);
+    }
+
+    @Test
+    public final void testTreeifiesOnceKeysCanBeOrdered() {
+        Map<Object, Integer> m = new Map4<Object, Integer>();
+        for (int i = 0; i < 10; i++) {
+            m.add(new CollidingKey(i), i);
+        }
+        m.add(new UnorderedKey(0), -1);
+        m.remove(new UnorderedKey(0));
+        // The bucket already has more than the threshold when this is added
+        for (int i = 10; i < MANY; i++) {
+            m.add(new CollidingKey(i), i);
+        }
+        int bound = 2 * log2(MANY) + 2;
+        CollidingKey.comparisons = 0;
+        assertEquals(true, m.hasKey(new CollidingKey(MANY / 2)));
+        assertTrue("comparisons: " + CollidingKey.comparisons,
+                CollidingKey.comparisons > 0
+                        && CollidingKey.comparisons <= bound);
+    }
+
+    @Test
+    public final void testMixedKeyClassesInOneTreeBucket() {
+        Map<Object, Integer> m = new Map4<Object, Integer>();
+        Map<Object, Integer> ref = new Map1L<Object, Integer>();
+        for (int i = 0; i < 20; i++) {
+            m.add(new CollidingKey(i), i);
+            ref.add(new CollidingKey(i), i);
+        }
+        // Cannot be ordered with the tree's keys, so the bucket becomes a list
+        m.add(new UnorderedKey(0), -1);
+        ref.add(new UnorderedKey(0), -1);
+        assertEquals(false, m.hasKey(new UnorderedKey(1)));
+        assertEquals(ref, m);
+        assertEquals(-1, m.remove(new UnorderedKey(0)).value().intValue());
+        assertEquals(7, m.value(new CollidingKey(7)).intValue());
+    }
+
+    @Test
+    public final void testFailedTreeifyIsNotRetriedOnEveryAdd() {
+        Map<PeriodicKey, Integer> m = new Map4<PeriodicKey, Integer>();
+        PeriodicKey.comparisons = 0;
+        for (int i = 0; i < MANY; i++) {
+            m.add(new PeriodicKey(i), i);
+        }
+        /*
+         * Every attempt to make the bucket a tree fails only after ordering
+         * PERIOD keys, so retrying on every add would take about
+         * MANY * PERIOD * log2(PERIOD) comparisons; the bound leaves room for
+         * any comparisons the list bucket makes itself
+         */
+        long bound = (long) MANY * PeriodicKey.PERIOD;
+        assertTrue("comparisons: " + PeriodicKey.comparisons,
+                PeriodicKey.comparisons <= bound);
+        assertEquals(MANY, m.size());
+        assertEquals(PeriodicKey.PERIOD + 1,
+                m.value(new PeriodicKey(PeriodicKey.PERIOD + 1)).intValue());
+    }
+
+    @Test
+    public final void testUnorderedKeysAmongOrderedStayCorrect() {
+        Map<Object, Integer> m = new Map4<Object, Integer>();
+        Map<Object, Integer> ref = new Map1L<Object, Integer>();
+        m.add(new UnorderedKey(0), -1);
+        ref.add(new UnorderedKey(0), -1);
+        for (int i = 0; i < MANY; i++) {
+            m.add(new CollidingKey(i), i);
+            ref.add(new CollidingKey(i), i);
+        }
+        assertEquals(ref, m);
+        // Once the key that could not be ordered is gone, a later retry wins
+        m.remove(new UnorderedKey(0));
+        for (int i = MANY; i < 2 * MANY + 1; i++) {
+            m.add(new CollidingKey(i), i);
+        }
+        int bound = 2 * log2(2 * MANY + 1) + 2;
+        CollidingKey.comparisons = 0;
+        assertEquals(true, m.hasKey(new CollidingKey(MANY)));
+        assertTrue("comparisons: " + CollidingKey.comparisons,
+                CollidingKey.comparisons > 0
+                        && CollidingKey.comparisons <= bound);
+    }
+
+}
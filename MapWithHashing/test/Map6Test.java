@@ -0,0 +1,197 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.function.IntConsumer;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map6} using default constructor,
+ * with extra tests of the atomic update methods and of many threads updating
+ * one map.
+ */
+public class Map6Test extends MapTest {
+
+    /**
+     * Number of threads in the concurrent tests.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * Number of updates each thread makes in the concurrent tests.
+     */
+    private static final int PER_THREAD = 20_000;
+
+    /**
+     * Number of distinct keys all threads update in the concurrent tests;
+     * enough that the table grows while they run.
+     */
+    private static final int KEYS = 1_000;
+
+    /**
+     * Number of stripes of the maps in the concurrent tests; few, so that
+     * threads often contend for the same stripe.
+     */
+    private static final int STRIPES = 4;
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map6<String, String>();
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+    /**
+     * Runs {@code body} in {@code THREADS} threads, passing each its index,
+     * and waits for all of them; then rethrows the first failure of any
+     * thread, so that a failed assertion in a thread fails the test.
+     *
+     * @param body
+     *            the work of one thread, given its index
+     */
+    private static void runThreads(IntConsumer body) {
+        Thread[] threads = new Thread[THREADS];
+        Throwable[] failures = new Throwable[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            int index = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    body.accept(index);
+                } catch (Throwable e) {
+                    failures[index] = e;
+                }
+            });
+            threads[t].start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        // join makes each thread's write to failures visible here
+        for (int t = 0; t < THREADS; t++) {
+            if (failures[t] != null) {
+                throw new AssertionError("Thread " + t + " failed",
+                        failures[t]);
+            }
+        }
+    }
+
+    @Test
+    public final void testCompute() {
+        Map6<String, Integer> m = new Map6<String, Integer>();
+        assertEquals(1, m.compute("a", (k, v) -> 1).intValue());
+        assertEquals(3, m.compute("a", (k, v) -> v + 2).intValue());
+        assertEquals(3, m.value("a").intValue());
+        assertNull(m.compute("b", (k, v) -> null));
+        assertFalse(m.hasKey("b"));
+        assertNull(m.compute("a", (k, v) -> null));
+        assertFalse(m.hasKey("a"));
+        assertEquals(0, m.size());
+    }
+
+    @Test
+    public final void testMergeAndAddOrIncrement() {
+        Map6<String, Integer> m = new Map6<String, Integer>();
+        assertEquals(5, m.merge("a", 5, Integer::sum).intValue());
+        assertEquals(12, m.merge("a", 7, Integer::sum).intValue());
+        assertEquals(1, Map6.addOrIncrement(m, "b"));
+        assertEquals(2, Map6.addOrIncrement(m, "b"));
+        assertEquals(13, Map6.addOrIncrement(m, "a"));
+        assertEquals(2, m.size());
+    }
+
+    @Test
+    public final void testConcurrentAddOrIncrement() {
+        Map6<Integer, Integer> m = new Map6<Integer, Integer>(STRIPES, 0.75);
+        // Every thread counts every key, starting at a different one
+        runThreads(t -> {
+            for (int i = 0; i < PER_THREAD; i++) {
+                Map6.addOrIncrement(m, (i + t * KEYS / THREADS) % KEYS);
+            }
+        });
+        assertEquals(KEYS, m.size());
+        int total = 0;
+        for (Map.Pair<Integer, Integer> p : m) {
+            assertEquals(THREADS * PER_THREAD / KEYS, p.value().intValue());
+            total += p.value();
+        }
+        assertEquals(THREADS * PER_THREAD, total);
+    }
+
+    @Test
+    public final void testConcurrentMerge() {
+        Map6<Integer, Integer> m = new Map6<Integer, Integer>(STRIPES, 0.75);
+        // Thread t adds t + 1 to every key
+        runThreads(t -> {
+            for (int i = 0; i < PER_THREAD; i++) {
+                m.merge(i % KEYS, t + 1, Integer::sum);
+            }
+        });
+        assertEquals(KEYS, m.size());
+        int expected = PER_THREAD / KEYS * THREADS * (THREADS + 1) / 2;
+        for (int k = 0; k < KEYS; k++) {
+            assertEquals(expected, m.value(k).intValue());
+        }
+    }
+
+    @Test
+    public final void testConcurrentIncrementAndDecrement() {
+        Map6<Integer, Integer> m = new Map6<Integer, Integer>(STRIPES, 0.75);
+        /*
+         * Each thread counts a key up and then down again, removing it at
+         * zero, so keys keep being added and removed by different threads
+         */
+        runThreads(t -> {
+            for (int i = 0; i < PER_THREAD; i++) {
+                Integer key = (i * (t + 1)) % KEYS;
+                Map6.addOrIncrement(m, key);
+                m.compute(key, (k, v) -> {
+                    Integer result = null;
+                    if (v > 1) {
+                        result = v - 1;
+                    }
+                    return result;
+                });
+            }
+        });
+        assertEquals(0, m.size());
+        assertFalse(m.iterator().hasNext());
+    }
+
+    @Test
+    public final void testRemoveAnyDrainsWithAddsBehind() {
+        final int n = 100_000;
+        Map<Integer, Integer> m = new Map6<Integer, Integer>(1, 0.75);
+        Map<Integer, Integer> ref = new Map1L<Integer, Integer>();
+        for (int i = 0; i < n; i++) {
+            m.add(i, i);
+            ref.add(i, i);
+        }
+        /*
+         * Drain the one stripe, adding back a key now and then so removeAny
+         * has to look behind where it last found a pair
+         */
+        int next = n;
+        while (m.size() > 0) {
+            Map.Pair<Integer, Integer> p = m.removeAny();
+            assertEquals(ref.remove(p.key()), p);
+            if (p.key() % 1000 == 0 && next < n + 50) {
+                m.add(next, next);
+                ref.add(next, next);
+                next++;
+            }
+        }
+        assertEquals(0, ref.size());
+    }
+
+}
@@ -0,0 +1,137 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for closing and reopening a {@code Map7} stored in named
+ * files.
+ */
+public class Map7ReopenTest {
+
+    /**
+     * Directory holding the files of the map under test.
+     */
+    private Path directory;
+
+    /**
+     * Name of the map under test, without suffix.
+     */
+    private String name;
+
+    /**
+     * Creates a fresh directory for the map files.
+     *
+     * @throws IOException
+     *             if the directory cannot be created
+     */
+    @Before
+    public final void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("map7test");
+        this.name = this.directory.resolve("glossary").toString();
+    }
+
+    /**
+     * Deletes the map files and their directory.
+     *
+     * @throws IOException
+     *             if a file cannot be deleted
+     */
+    @After
+    public final void tearDown() throws IOException {
+        Files.deleteIfExists(this.directory.resolve("glossary.table"));
+        Files.deleteIfExists(this.directory.resolve("glossary.data"));
+        Files.deleteIfExists(this.directory);
+    }
+
+    @Test
+    public final void testReopenEmpty() {
+        Map7 m = new Map7(this.name);
+        m.close();
+        Map7 reopened = new Map7(this.name);
+        assertEquals(0, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    public final void testReopenAfterGrowthAndRemoval() {
+        Map<String, String> ref = new Map1L<String, String>();
+        Map7 m = new Map7(this.name, 1);
+        for (int i = 0; i < 5000; i++) {
+            m.add("term" + i, "definition " + i);
+            ref.add("term" + i, "definition " + i);
+        }
+        for (int i = 0; i < 5000; i += 3) {
+            assertEquals(ref.remove("term" + i), m.remove("term" + i));
+        }
+        m.close();
+        Map7 reopened = new Map7(this.name, 1);
+        assertEquals(ref, reopened);
+        assertEquals("definition 4999", reopened.value("term4999"));
+        assertEquals(false, reopened.hasKey("term0"));
+        reopened.close();
+    }
+
+    @Test
+    public final void testReopenAndContinue() {
+        Map7 m = new Map7(this.name);
+        m.add("glossary", "a list of terms");
+        m.close();
+        Map7 reopened = new Map7(this.name);
+        reopened.add("term", "a word with a definition");
+        reopened.replaceValue("glossary", "an alphabetical list of terms");
+        reopened.close();
+        Map7 again = new Map7(this.name);
+        Map<String, String> ref = new Map1L<String, String>();
+        ref.add("glossary", "an alphabetical list of terms");
+        ref.add("term", "a word with a definition");
+        assertEquals(ref, again);
+        again.close();
+    }
+
+    @Test
+    public final void testNonAsciiKeysAndValues() {
+        Map7 m = new Map7(this.name);
+        m.add("\u00e9t\u00e9", "\u590f");
+        m.add("", "empty key");
+        m.close();
+        Map7 reopened = new Map7(this.name);
+        assertEquals("\u590f", reopened.value("\u00e9t\u00e9"));
+        assertEquals("empty key", reopened.value(""));
+        reopened.close();
+    }
+
+    @Test
+    public final void testClearPersists() {
+        Map7 m = new Map7(this.name, 1);
+        for (int i = 0; i < 100; i++) {
+            m.add("k" + i, "v" + i);
+        }
+        m.clear();
+        m.add("k1", "after clear");
+        m.close();
+        Map7 reopened = new Map7(this.name, 1);
+        assertEquals(1, reopened.size());
+        assertEquals("after clear", reopened.value("k1"));
+        assertEquals(false, reopened.hasKey("k2"));
+        reopened.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public final void testReopenWithMissingDataFails() throws IOException {
+        Map7 m = new Map7(this.name);
+        m.add("term", "a word with a definition");
+        m.close();
+        Files.delete(this.directory.resolve("glossary.data"));
+        new Map7(this.name);
+    }
+
+}
@@ -0,0 +1,258 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code ObjectIntMap}.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public class ObjectIntMapTest {
+
+    /**
+     * Number of keys in the larger tests: enough to grow the default table
+     * several times.
+     */
+    private static final int MANY = 1_000;
+
+    /**
+     * Seed for the random operations, so failures can be reproduced.
+     */
+    private static final long SEED = 2231;
+
+    /**
+     * Key whose hash codes take only a few values, so that many keys share
+     * each chain.
+     */
+    private static final class CollidingKey {
+
+        /**
+         * Identity of this key.
+         */
+        private final int id;
+
+        /**
+         * Constructor.
+         *
+         * @param id
+         *            the identity of the key
+         */
+        CollidingKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.id % 3;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof CollidingKey
+                    && ((CollidingKey) obj).id == this.id;
+        }
+
+        @Override
+        public String toString() {
+            return "k" + this.id;
+        }
+    }
+
+    /**
+     * Returns an {@code ObjectIntMap} mapping each of {@code "k0"} through
+     * {@code "k(n-1)"} to its number times 10.
+     *
+     * @param n
+     *            number of keys
+     * @return the map
+     */
+    private static ObjectIntMap<String> tens(int n) {
+        ObjectIntMap<String> m = new ObjectIntMap<String>();
+        for (int i = 0; i < n; i++) {
+            m.put("k" + i, 10 * i);
+        }
+        return m;
+    }
+
+    @Test
+    public final void testEmpty() {
+        ObjectIntMap<String> m = new ObjectIntMap<String>();
+        assertEquals(0, m.size());
+        assertEquals(false, m.hasKey("a"));
+        assertEquals(-1, m.get("a", -1));
+        assertEquals("{}", m.toString());
+    }
+
+    @Test
+    public final void testIncrement() {
+        ObjectIntMap<String> m = new ObjectIntMap<String>();
+        assertEquals(1, m.increment("a"));
+        assertEquals(2, m.increment("a"));
+        assertEquals(1, m.increment("b"));
+        assertEquals(2, m.size());
+        assertEquals(2, m.get("a", 0));
+        assertEquals(1, m.get("b", 0));
+    }
+
+    @Test
+    public final void testAddTo() {
+        ObjectIntMap<String> m = new ObjectIntMap<String>();
+        assertEquals(5, m.addTo("a", 5));
+        assertEquals(2, m.addTo("a", -3));
+        assertEquals(-4, m.addTo("b", -4));
+        assertEquals(2, m.get("a", 0));
+        assertEquals(-4, m.get("b", 0));
+    }
+
+    @Test
+    public final void testGetDefault() {
+        ObjectIntMap<String> m = new ObjectIntMap<String>();
+        m.put("a", 0);
+        assertEquals(0, m.get("a", 7));
+        assertEquals(7, m.get("b", 7));
+        assertEquals(false, m.hasKey("b"));
+    }
+
+    @Test
+    public final void testPutOverwrites() {
+        ObjectIntMap<String> m = new ObjectIntMap<String>();
+        m.put("a", 1);
+        m.put("a", 9);
+        assertEquals(1, m.size());
+        assertEquals(9, m.get("a", 0));
+        assertEquals(10, m.increment("a"));
+    }
+
+    @Test
+    public final void testRemoveLastEntry() {
+        ObjectIntMap<String> m = tens(5);
+        // "k4" was added last, so it is the last entry
+        assertEquals(40, m.remove("k4"));
+        assertEquals(4, m.size());
+        assertEquals(false, m.hasKey("k4"));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(10 * i, m.get("k" + i, -1));
+        }
+    }
+
+    @Test
+    public final void testRemoveMiddleEntry() {
+        ObjectIntMap<String> m = tens(5);
+        // The last entry moves into the index "k2" frees
+        assertEquals(20, m.remove("k2"));
+        assertEquals(4, m.size());
+        assertEquals(false, m.hasKey("k2"));
+        for (int i = 0; i < 5; i++) {
+            if (i != 2) {
+                assertEquals(10 * i, m.get("k" + i, -1));
+            }
+        }
+        m.put("k2", 22);
+        assertEquals(22, m.get("k2", -1));
+        assertEquals(40, m.get("k4", -1));
+    }
+
+    @Test
+    public final void testRemoveRelinksCollidingChains() {
+        ObjectIntMap<CollidingKey> m = new ObjectIntMap<CollidingKey>();
+        final int n = 30;
+        for (int i = 0; i < n; i++) {
+            m.put(new CollidingKey(i), i);
+        }
+        // Remove from the middle, the ends, and then whatever is last
+        int[] order = { 15, 0, 29, 7, 22, 28, 1 };
+        boolean[] removed = new boolean[n];
+        for (int r : order) {
+            assertEquals(r, m.remove(new CollidingKey(r)));
+            removed[r] = true;
+            for (int i = 0; i < n; i++) {
+                assertEquals(!removed[i], m.hasKey(new CollidingKey(i)));
+                if (!removed[i]) {
+                    assertEquals(i, m.get(new CollidingKey(i), -1));
+                }
+            }
+        }
+        assertEquals(n - order.length, m.size());
+    }
+
+    @Test
+    public final void testCollidingKeys() {
+        ObjectIntMap<CollidingKey> m = new ObjectIntMap<CollidingKey>();
+        for (int i = 0; i < MANY; i++) {
+            assertEquals(1, m.increment(new CollidingKey(i)));
+        }
+        for (int i = 0; i < MANY; i += 2) {
+            m.increment(new CollidingKey(i));
+        }
+        assertEquals(MANY, m.size());
+        for (int i = 0; i < MANY; i++) {
+            assertEquals(2 - i % 2, m.get(new CollidingKey(i), 0));
+        }
+        assertEquals(false, m.hasKey(new CollidingKey(MANY)));
+    }
+
+    @Test
+    public final void testGrowthPastLoadFactor() {
+        ObjectIntMap<String> m = tens(MANY);
+        assertEquals(MANY, m.size());
+        for (int i = 0; i < MANY; i++) {
+            assertEquals(10 * i, m.get("k" + i, -1));
+        }
+        assertEquals(false, m.hasKey("k" + MANY));
+    }
+
+    @Test
+    public final void testRandomAgainstHashMap() {
+        ObjectIntMap<String> m = new ObjectIntMap<String>();
+        HashMap<String, Integer> ref = new HashMap<String, Integer>();
+        Random random = new Random(SEED);
+        final int keys = 200;
+        for (int i = 0; i < 20 * MANY; i++) {
+            String k = "k" + random.nextInt(keys);
+            if (random.nextInt(3) == 0 && ref.containsKey(k)) {
+                assertEquals(ref.remove(k).intValue(), m.remove(k));
+            } else {
+                ref.merge(k, 1, Integer::sum);
+                m.increment(k);
+            }
+            assertEquals(ref.size(), m.size());
+        }
+        for (String k : ref.keySet()) {
+            assertEquals(ref.get(k).intValue(), m.get(k, -1));
+        }
+    }
+
+    @Test
+    public final void testTransferTo() {
+        ObjectIntMap<String> m = tens(MANY);
+        Map<String, Integer> target = new Map1L<String, Integer>();
+        target.add("other", -1);
+        m.transferTo(target);
+        assertEquals(0, m.size());
+        assertEquals(false, m.hasKey("k0"));
+        assertEquals(MANY + 1, target.size());
+        for (int i = 0; i < MANY; i++) {
+            assertEquals(10 * i, target.value("k" + i).intValue());
+        }
+        assertEquals(-1, target.value("other").intValue());
+        // Still usable after the transfer
+        assertEquals(1, m.increment("k0"));
+    }
+
+    @Test
+    public final void testClear() {
+        ObjectIntMap<String> m = tens(MANY);
+        m.clear();
+        assertEquals(0, m.size());
+        assertEquals(-1, m.get("k1", -1));
+        m.put("k1", 3);
+        assertEquals(3, m.get("k1", -1));
+    }
+
+}
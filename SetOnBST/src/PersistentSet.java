@@ -0,0 +1,493 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable (persistent) ordered set of {@code Comparable} elements,
+ * represented as an AVL tree whose nodes are never modified once built.
+ *
+ * <p>
+ * {@code add} and {@code remove} do not change {@code this}: they return a new
+ * version that shares every untouched subtree with {@code this} and copies
+ * only the O(log n) nodes on the search path, plus the few involved in
+ * rebalancing rotations (path copying). Every version stays valid and
+ * unchanged for as long as anyone holds it, so a reader can iterate one
+ * version while a writer derives newer ones, with no locking at all. See
+ * {@code PublishedSet} for handing the latest version to concurrent readers.
+ *
+ * @param <T>
+ *            type of elements
+ * @mathdefinitions
+ *
+ *                  <pre>
+ * TREE(
+ *   n: Node
+ *  ): binary tree of T satisfies
+ *  if n = null then TREE(n) = empty_tree
+ *  else TREE(n) = compose(n.element, TREE(n.left), TREE(n.right))
+ *                  </pre>
+ *
+ * @convention
+ *
+ *             <pre>
+ * [TREE($this.root) is a binary search tree with no duplicate labels, by
+ *  compareTo]  and
+ * [for every node n reachable from $this.root,
+ *  n.height = height(TREE(n))  and  n.size = |TREE(n)|  and
+ *  |height(TREE(n.left)) - height(TREE(n.right))| <= 1]
+ *             </pre>
+ *
+ * @correspondence this = labels(TREE($this.root))
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class PersistentSet<T extends Comparable<T>>
+        implements Iterable<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Immutable node of the tree.
+     *
+     * @param <T>
+     *            type of elements
+     */
+    private static final class Node<T> {
+
+        /**
+         * The element.
+         */
+        private final T element;
+
+        /**
+         * Root of the left subtree, or {@code null}.
+         */
+        private final Node<T> left;
+
+        /**
+         * Root of the right subtree, or {@code null}.
+         */
+        private final Node<T> right;
+
+        /**
+         * Height of the subtree rooted here.
+         */
+        private final int height;
+
+        /**
+         * Number of nodes in the subtree rooted here.
+         */
+        private final int size;
+
+        /**
+         * Constructor.
+         *
+         * @param element
+         *            the element
+         * @param left
+         *            the left subtree
+         * @param right
+         *            the right subtree
+         */
+        Node(T element, Node<T> left, Node<T> right) {
+            this.element = element;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(heightOf(left), heightOf(right));
+            this.size = 1 + sizeOf(left) + sizeOf(right);
+        }
+    }
+
+    /**
+     * The empty set; there is only one, shared by every element type.
+     */
+    private static final PersistentSet<?> EMPTY = new PersistentSet<>(null);
+
+    /**
+     * Root of the tree, or {@code null} if {@code this} is empty.
+     */
+    private final Node<T> root;
+
+    /**
+     * Returns the height of the subtree rooted at {@code n}.
+     *
+     * @param n
+     *            the root, or {@code null}
+     * @return its height
+     */
+    private static int heightOf(Node<?> n) {
+        int height = 0;
+        if (n != null) {
+            height = n.height;
+        }
+        return height;
+    }
+
+    /**
+     * Returns the size of the subtree rooted at {@code n}.
+     *
+     * @param n
+     *            the root, or {@code null}
+     * @return its size
+     */
+    private static int sizeOf(Node<?> n) {
+        int size = 0;
+        if (n != null) {
+            size = n.size;
+        }
+        return size;
+    }
+
+    /**
+     * Returns a new node for {@code x}, {@code left}, and {@code right},
+     * rotating first if the heights of {@code left} and {@code right} differ
+     * by 2. Only new nodes are created; the arguments are not changed.
+     *
+     * @param <T>
+     *            type of elements
+     * @param x
+     *            the element
+     * @param left
+     *            the left subtree, an AVL tree
+     * @param right
+     *            the right subtree, an AVL tree
+     * @return the root of an AVL tree with the in-order elements of
+     *         {@code left}, then {@code x}, then {@code right}
+     * @requires |height(left) - height(right)| <= 2
+     */
+    private static <T> Node<T> balanced(T x, Node<T> left, Node<T> right) {
+        int balance = heightOf(left) - heightOf(right);
+        Node<T> result;
+        if (balance > 1) {
+            if (heightOf(left.left) >= heightOf(left.right)) {
+                // Single right rotation
+                result = new Node<T>(left.element, left.left,
+                        new Node<T>(x, left.right, right));
+            } else {
+                // Double rotation: left.right becomes the root
+                Node<T> lr = left.right;
+                result = new Node<T>(lr.element,
+                        new Node<T>(left.element, left.left, lr.left),
+                        new Node<T>(x, lr.right, right));
+            }
+        } else if (balance < -1) {
+            if (heightOf(right.right) >= heightOf(right.left)) {
+                // Single left rotation
+                result = new Node<T>(right.element,
+                        new Node<T>(x, left, right.left), right.right);
+            } else {
+                // Double rotation: right.left becomes the root
+                Node<T> rl = right.left;
+                result = new Node<T>(rl.element,
+                        new Node<T>(x, left, rl.left),
+                        new Node<T>(right.element, rl.right, right.right));
+            }
+        } else {
+            result = new Node<T>(x, left, right);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the root of a tree holding the elements under {@code n} and
+     * {@code x}; returns {@code n} itself if {@code x} is already there.
+     *
+     * @param <T>
+     *            type of elements
+     * @param n
+     *            the root, or {@code null}
+     * @param x
+     *            the element to add
+     * @return the new root
+     */
+    private static <T extends Comparable<T>> Node<T> insert(Node<T> n, T x) {
+        Node<T> result = n;
+        if (n == null) {
+            result = new Node<T>(x, null, null);
+        } else {
+            int order = x.compareTo(n.element);
+            if (order < 0) {
+                Node<T> left = insert(n.left, x);
+                if (left != n.left) {
+                    result = balanced(n.element, left, n.right);
+                }
+            } else if (order > 0) {
+                Node<T> right = insert(n.right, x);
+                if (right != n.right) {
+                    result = balanced(n.element, n.left, right);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the root of a tree holding the elements under {@code n} other
+     * than the smallest one.
+     *
+     * @param <T>
+     *            type of elements
+     * @param n
+     *            the root
+     * @return the new root
+     * @requires n /= null
+     */
+    private static <T> Node<T> withoutSmallest(Node<T> n) {
+        Node<T> result = n.right;
+        if (n.left != null) {
+            result = balanced(n.element, withoutSmallest(n.left), n.right);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the root of a tree holding the elements under {@code n} other
+     * than {@code x}; returns {@code n} itself if {@code x} is not there.
+     *
+     * @param <T>
+     *            type of elements
+     * @param n
+     *            the root, or {@code null}
+     * @param x
+     *            the element to remove
+     * @return the new root
+     */
+    private static <T extends Comparable<T>> Node<T> delete(Node<T> n, T x) {
+        Node<T> result = n;
+        if (n != null) {
+            int order = x.compareTo(n.element);
+            if (order < 0) {
+                Node<T> left = delete(n.left, x);
+                if (left != n.left) {
+                    result = balanced(n.element, left, n.right);
+                }
+            } else if (order > 0) {
+                Node<T> right = delete(n.right, x);
+                if (right != n.right) {
+                    result = balanced(n.element, n.left, right);
+                }
+            } else if (n.left == null) {
+                result = n.right;
+            } else if (n.right == null) {
+                result = n.left;
+            } else {
+                // Replace n's element by its successor
+                Node<T> successor = n.right;
+                while (successor.left != null) {
+                    successor = successor.left;
+                }
+                result = balanced(successor.element, n.left,
+                        withoutSmallest(n.right));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param root
+     *            the root of the tree, or {@code null}
+     */
+    private PersistentSet(Node<T> root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns a version of {@code this} rooted at {@code newRoot}, or
+     * {@code this} itself if the root did not change.
+     *
+     * @param newRoot
+     *            the new root
+     * @return the version
+     */
+    private PersistentSet<T> withRoot(Node<T> newRoot) {
+        PersistentSet<T> result = this;
+        if (newRoot != this.root) {
+            if (newRoot == null) {
+                result = empty();
+            } else {
+                result = new PersistentSet<T>(newRoot);
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Public members ---------------------------------------------------------
+     */
+
+    /**
+     * Returns the empty set.
+     *
+     * @param <T>
+     *            type of elements
+     * @return the empty set
+     * @ensures empty = {}
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Comparable<T>> PersistentSet<T> empty() {
+        return (PersistentSet<T>) EMPTY;
+    }
+
+    /**
+     * Returns {@code this} with {@code x} added, leaving {@code this}
+     * unchanged. If {@code x} is already in {@code this}, returns {@code this}.
+     *
+     * @param x
+     *            the element to add
+     * @return the new version
+     * @ensures add = this union {x}
+     */
+    public PersistentSet<T> add(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        return this.withRoot(insert(this.root, x));
+    }
+
+    /**
+     * Returns {@code this} with {@code x} removed, leaving {@code this}
+     * unchanged. If {@code x} is not in {@code this}, returns {@code this}.
+     *
+     * @param x
+     *            the element to remove
+     * @return the new version
+     * @ensures remove = this \ {x}
+     */
+    public PersistentSet<T> remove(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        return this.withRoot(delete(this.root, x));
+    }
+
+    /**
+     * Reports whether {@code x} is in {@code this}.
+     *
+     * @param x
+     *            the element to look for
+     * @return true iff x is in this
+     * @ensures contains = (x is in this)
+     */
+    public boolean contains(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        Node<T> n = this.root;
+        boolean found = false;
+        while (n != null && !found) {
+            int order = x.compareTo(n.element);
+            if (order < 0) {
+                n = n.left;
+            } else if (order > 0) {
+                n = n.right;
+            } else {
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Reports the size of {@code this}.
+     *
+     * @return |this|
+     * @ensures size = |this|
+     */
+    public int size() {
+        return sizeOf(this.root);
+    }
+
+    /**
+     * Reports the height of the tree representing {@code this}.
+     *
+     * @return the height of the tree
+     * @ensures height = height(TREE($this.root))
+     */
+    public int height() {
+        return heightOf(this.root);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new PersistentSetIterator();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (T x : this) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            sb.append(x);
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code PersistentSet}:
+     * an in-order traversal with an explicit stack; it can never see a change,
+     * since there are none.
+     */
+    private final class PersistentSetIterator implements Iterator<T> {
+
+        /**
+         * Nodes whose elements and right subtrees are still to be visited; the
+         * top is the next to visit.
+         */
+        private final Node<?>[] stack;
+
+        /**
+         * Number of nodes on {@code stack}.
+         */
+        private int depth;
+
+        /**
+         * No-argument constructor.
+         */
+        PersistentSetIterator() {
+            this.stack = new Node<?>[PersistentSet.this.height()];
+            this.depth = 0;
+            this.pushLeftPath(PersistentSet.this.root);
+        }
+
+        /**
+         * Pushes {@code n} and its chain of left descendants onto the stack.
+         *
+         * @param n
+         *            the first node to push, or {@code null}
+         */
+        private void pushLeftPath(Node<T> n) {
+            Node<T> current = n;
+            while (current != null) {
+                this.stack[this.depth] = current;
+                this.depth++;
+                current = current.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.depth > 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            this.depth--;
+            Node<T> n = (Node<T>) this.stack[this.depth];
+            this.pushLeftPath(n.right);
+            return n.element;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Holder of the latest version of a {@code PersistentSet}, for sharing it
+ * among threads without locks. Readers call {@code snapshot} and may then use
+ * that version for as long as they like; writers replace the version
+ * atomically, so a reader never sees a half-made change and never blocks or
+ * delays a writer.
+ *
+ * @param <T>
+ *            type of elements
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class PublishedSet<T extends Comparable<T>> {
+
+    /**
+     * The latest version.
+     */
+    private final AtomicReference<PersistentSet<T>> latest;
+
+    /**
+     * Constructor, publishing the empty set.
+     */
+    public PublishedSet() {
+        this.latest = new AtomicReference<PersistentSet<T>>(
+                PersistentSet.<T> empty());
+    }
+
+    /**
+     * Returns the latest published version; it never changes afterwards.
+     *
+     * @return the latest version
+     */
+    public PersistentSet<T> snapshot() {
+        return this.latest.get();
+    }
+
+    /**
+     * Publishes {@code version} as the latest one, replacing whatever was
+     * there; suitable when there is a single writer.
+     *
+     * @param version
+     *            the version to publish
+     */
+    public void publish(PersistentSet<T> version) {
+        assert version != null : "Violation of: version is not null";
+
+        this.latest.set(version);
+    }
+
+    /**
+     * Publishes {@code change} applied to the latest version, retrying if
+     * another writer publishes first, and returns what was published.
+     * {@code change} may be called more than once, so it must not have side
+     * effects.
+     *
+     * @param change
+     *            computes the new version from the latest one
+     * @return the version published
+     */
+    public PersistentSet<T> update(UnaryOperator<PersistentSet<T>> change) {
+        assert change != null : "Violation of: change is not null";
+
+        PersistentSet<T> current;
+        PersistentSet<T> next;
+        do {
+            current = this.latest.get();
+            next = change.apply(current);
+        } while (!this.latest.compareAndSet(current, next));
+        return next;
+    }
+
+    /**
+     * Publishes the latest version with {@code x} added.
+     *
+     * @param x
+     *            the element to add
+     * @return the version published
+     */
+    public PersistentSet<T> add(T x) {
+        return this.update(s -> s.add(x));
+    }
+
+    /**
+     * Publishes the latest version with {@code x} removed.
+     *
+     * @param x
+     *            the element to remove
+     * @return the version published
+     */
+    public PersistentSet<T> remove(T x) {
+        return this.update(s -> s.remove(x));
+    }
+
+}
@@ -1,7 +1,11 @@
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import components.binarytree.BinaryTree;
 import components.binarytree.BinaryTree1;
+import components.queue.Queue;
+import components.queue.Queue1L;
 import components.set.Set;
 import components.set.SetSecondary;
 
@@ -9,6 +13,39 @@ import components.set.SetSecondary;
  * {@code Set} represented as a {@code BinaryTree} (maintained as a binary
  * search tree) of elements with implementations of primary methods.
  *
+ * <p>
+ * {@code contains}, {@code add}, {@code remove}, and {@code removeAny} follow
+ * the {@code compareTo} ordering down a single path, so each costs time
+ * proportional to the height of the tree. The tree is not balanced, so the
+ * height depends on the order in which elements arrive: {@code height},
+ * {@code comparisonsInLastOperation}, and {@code isDegenerate} report how well
+ * the shape is holding up.
+ *
+ * <p>
+ * When the other set is also a {@code Set3}, the bulk operations
+ * {@code add(Set)}, {@code remove(Set)}, and {@code retain} merge the in-order
+ * sequences of the two trees in linear time and build their results directly
+ * as perfectly balanced trees, instead of paying for one {@code contains} and
+ * one {@code add} or {@code remove} per element.
+ *
+ * <p>
+ * The ordered queries {@code floor}, {@code ceiling}, {@code rank},
+ * {@code select}, and {@code range} also follow a single path down the tree
+ * (plus the reported elements, for {@code range}). {@code rank} and
+ * {@code select} use the size of each subtree, which {@code BinaryTree}
+ * reports in constant time, so the tree needs no extra labels.
+ *
+ * <p>
+ * The iterator does not copy the tree: it walks it in order, keeping the
+ * subtrees on the path to the next element taken apart on an explicit stack
+ * between calls to {@code next}, and putting each back together once it has
+ * been walked. The first element therefore costs O(height), and a whole
+ * iteration O(n), i.e., amortized constant time per element. While a walk has
+ * part of the tree taken apart, every other method first puts it back
+ * together, so {@code this} may be used as usual during an iteration, or after
+ * abandoning one; the walk then resumes by searching from the root for the
+ * successor of the element it returned last.
+ *
  * @param <T>
  *            type of {@code Set} elements
  * @mathdefinitions
@@ -22,8 +59,26 @@ import components.set.SetSecondary;
  *   it has no duplicate labels]
  *                  </pre>
  *
- * @convention IS_BST($this.tree)
- * @correspondence this = labels($this.tree)
+ * @convention
+ *
+ *             <pre>
+ * if $this.walk = null then
+ *   IS_BST($this.tree)
+ * else
+ *   [$this.tree, put back together from the levels on the stack of
+ *    $this.walk, is a tree t such that IS_BST(t)]  and
+ *   $this.walk.total = |t|
+ *             </pre>
+ *
+ * @correspondence
+ *
+ *                 <pre>
+ * if $this.walk = null then
+ *   this = labels($this.tree)
+ * else
+ *   this = labels([$this.tree put back together from the levels on the stack
+ *     of $this.walk])
+ *                 </pre>
  *
  * @author Sheng Wang, Bolong Zhang
  *
@@ -34,16 +89,69 @@ public class Set3<T extends Comparable<T>> extends SetSecondary<T> {
      * Private members --------------------------------------------------------
      */
 
+    /**
+     * Smallest size at which {@code isDegenerate} reports anything; tiny trees
+     * are never a problem.
+     */
+    private static final int DEGENERATE_MIN_SIZE = 16;
+
+    /**
+     * A tree is degenerate when its height exceeds this many times the least
+     * possible height for its size.
+     */
+    private static final int DEGENERATE_RATIO = 4;
+
     /**
      * Elements included in {@code this}.
      */
     private BinaryTree<T> tree;
 
+    /**
+     * Number of {@code compareTo} calls made so far by the current, or else
+     * the most recent, kernel operation.
+     */
+    private long comparisons;
+
+    /**
+     * Iterator whose walk has part of {@code tree} taken apart, or
+     * {@code null} if {@code tree} is whole.
+     */
+    private Set3Iterator walk;
+
+    /**
+     * Puts {@code tree} back together if an iterator's walk has part of it
+     * taken apart; every method that examines {@code tree}, other than the
+     * iterator itself, calls this first.
+     *
+     * @updates this.tree, this.walk
+     * @ensures this.walk = null  and  this = #this
+     */
+    private void restoreTree() {
+        if (this.walk != null) {
+            this.walk.putBack();
+            this.walk = null;
+        }
+    }
+
+    /**
+     * Compares {@code x} with {@code y}, counting the comparison.
+     *
+     * @param x
+     *            the first element
+     * @param y
+     *            the second element
+     * @return {@code x.compareTo(y)}
+     * @updates this.comparisons
+     * @ensures this.comparisons = #this.comparisons + 1
+     */
+    private int compare(T x, T y) {
+        this.comparisons++;
+        return x.compareTo(y);
+    }
+
     /**
      * Returns whether {@code x} is in {@code t}.
      *
-     * @param <T>
-     *            type of {@code BinaryTree} labels
      * @param t
      *            the {@code BinaryTree} to be searched
      * @param x
@@ -52,8 +160,7 @@ public class Set3<T extends Comparable<T>> extends SetSecondary<T> {
      * @requires IS_BST(t)
      * @ensures isInTree = (x is in labels(t))
      */
-    private static <T extends Comparable<T>> boolean isInTree(BinaryTree<T> t,
-            T x) {
+    private boolean isInTree(BinaryTree<T> t, T x) {
         assert t != null : "Violation of: t is not null";
         assert x != null : "Violation of: x is not null";
 
@@ -64,12 +171,18 @@ public class Set3<T extends Comparable<T>> extends SetSecondary<T> {
         BinaryTree<T> left = t.newInstance();
         BinaryTree<T> right = t.newInstance();
         /*
-         * Check whether x is in tree recursively
+         * Compare x with the root and search only the subtree that can hold x
          */
         if (t.size() > 0) {
             T root = t.disassemble(left, right);
-            result = (root.equals(x) || isInTree(left, x)
-                    || isInTree(right, x));
+            int order = this.compare(x, root);
+            if (order < 0) {
+                result = this.isInTree(left, x);
+            } else if (order > 0) {
+                result = this.isInTree(right, x);
+            } else {
+                result = true;
+            }
             t.assemble(root, left, right);
         }
         return result;
@@ -78,8 +191,6 @@ public class Set3<T extends Comparable<T>> extends SetSecondary<T> {
     /**
      * Inserts {@code x} in {@code t}.
      *
-     * @param <T>
-     *            type of {@code BinaryTree} labels
      * @param t
      *            the {@code BinaryTree} to be searched
      * @param x
@@ -89,8 +200,7 @@ public class Set3<T extends Comparable<T>> extends SetSecondary<T> {
      * @requires IS_BST(t) and x is not in labels(t)
      * @ensures IS_BST(t) and labels(t) = labels(#t) union {x}
      */
-    private static <T extends Comparable<T>> void insertInTree(BinaryTree<T> t,
-            T x) {
+    private void insertInTree(BinaryTree<T> t, T x) {
         assert t != null : "Violation of: t is not null";
         assert x != null : "Violation of: x is not null";
 
@@ -108,10 +218,10 @@ public class Set3<T extends Comparable<T>> extends SetSecondary<T> {
             t.assemble(x, t.newInstance(), t.newInstance());
         } else {
             T root = t.disassemble(left, right);
-            if (x.compareTo(root) < 0) {
-                insertInTree(left, x);
+            if (this.compare(x, root) < 0) {
+                this.insertInTree(left, x);
             } else {
-                insertInTree(right, x);
+                this.insertInTree(right, x);
             }
             t.assemble(root, left, right);
         }
@@ -165,8 +275,6 @@ public class Set3<T extends Comparable<T>> extends SetSecondary<T> {
      * Finds label {@code x} in {@code t}, removes it from {@code t}, and
      * returns it.
      *
-     * @param <T>
-     *            type of {@code BinaryTree} labels
      * @param t
      *            the {@code BinaryTree} from which to remove label {@code x}
      * @param x
@@ -181,8 +289,7 @@ public class Set3<T extends Comparable<T>> extends SetSecondary<T> {
      *  labels(t) = labels(#t) \ {x}
      *          </pre>
      */
-    private static <T extends Comparable<T>> T removeFromTree(BinaryTree<T> t,
-            T x) {
+    private T removeFromTree(BinaryTree<T> t, T x) {
         assert t != null : "Violation of: t is not null";
         assert x != null : "Violation of: x is not null";
         /*
@@ -199,11 +306,12 @@ public class Set3<T extends Comparable<T>> extends SetSecondary<T> {
          * Determine whether x is in left or right subtree, call this method
          * recursively to find x and remove it
          */
-        if (x.compareTo(root) < 0) {
-            result = removeFromTree(left, x);
+        int order = this.compare(x, root);
+        if (order < 0) {
+            result = this.removeFromTree(left, x);
             t.assemble(root, left, right);
-        } else if (x.compareTo(root) > 0) {
-            result = removeFromTree(right, x);
+        } else if (order > 0) {
+            result = this.removeFromTree(right, x);
             t.assemble(root, left, right);
         } else {
             if (right.size() == 0) {
@@ -217,12 +325,394 @@ public class Set3<T extends Comparable<T>> extends SetSecondary<T> {
         return result;
     }
 
+    /**
+     * Enqueues the labels of {@code t} in order.
+     *
+     * @param <T>
+     *            type of {@code BinaryTree} labels
+     * @param t
+     *            the {@code BinaryTree} whose labels are enqueued
+     * @param q
+     *            the queue to which they are appended
+     * @updates q
+     * @ensures q = #q * IN_ORDER(t)
+     */
+    private static <T> void enqueueInOrder(BinaryTree<T> t, Queue<T> q) {
+        for (T x : t) {
+            q.enqueue(x);
+        }
+    }
+
+    /**
+     * Builds in {@code t} a perfectly balanced tree whose in-order labels are
+     * the first {@code n} entries of {@code sorted}, dequeuing them.
+     *
+     * @param <T>
+     *            type of {@code BinaryTree} labels
+     * @param sorted
+     *            the labels, in increasing order
+     * @param n
+     *            the number of labels to take
+     * @param t
+     *            the tree to build
+     * @replaces t
+     * @updates sorted
+     * @requires 0 <= n <= |sorted|
+     * @ensures
+     *
+     *          <pre>
+     * #sorted = IN_ORDER(t) * sorted  and  |t| = n  and
+     * height(t) = ceiling(log2(n + 1))
+     *          </pre>
+     */
+    private static <T> void buildBalanced(Queue<T> sorted, int n,
+            BinaryTree<T> t) {
+        t.clear();
+        if (n > 0) {
+            BinaryTree<T> left = t.newInstance();
+            BinaryTree<T> right = t.newInstance();
+            /*
+             * The left subtree takes the first half, the root the middle
+             * label, and the right subtree the rest
+             */
+            int leftSize = n / 2;
+            buildBalanced(sorted, leftSize, left);
+            T root = sorted.dequeue();
+            buildBalanced(sorted, n - leftSize - 1, right);
+            t.assemble(root, left, right);
+        }
+    }
+
+    /**
+     * Merges the increasing sequences {@code a} and {@code b}, sorting their
+     * entries into the union, the intersection, and the entries only in
+     * {@code a}. Where an entry is in both, the one from {@code a} is kept.
+     *
+     * @param a
+     *            the first sequence, in increasing order
+     * @param b
+     *            the second sequence, in increasing order
+     * @param union
+     *            receives entries in {@code a} or {@code b}
+     * @param both
+     *            receives entries in {@code a} and {@code b}
+     * @param onlyA
+     *            receives entries in {@code a} but not {@code b}
+     * @clears a, b
+     * @updates union, both, onlyA, this.comparisons
+     * @requires union = <> and both = <> and onlyA = <>
+     * @ensures
+     *
+     *          <pre>
+     * union, both, and onlyA are in increasing order  and
+     * entries(union) = entries(#a) union entries(#b)  and
+     * entries(both) = entries(#a) intersection entries(#b)  and
+     * entries(onlyA) = entries(#a) \ entries(#b)
+     *          </pre>
+     */
+    private void merge(Queue<T> a, Queue<T> b, Queue<T> union, Queue<T> both,
+            Queue<T> onlyA) {
+        while (a.length() > 0 && b.length() > 0) {
+            int order = this.compare(a.front(), b.front());
+            if (order < 0) {
+                T x = a.dequeue();
+                union.enqueue(x);
+                onlyA.enqueue(x);
+            } else if (order > 0) {
+                union.enqueue(b.dequeue());
+            } else {
+                T x = a.dequeue();
+                b.dequeue();
+                union.enqueue(x);
+                both.enqueue(x);
+            }
+        }
+        while (a.length() > 0) {
+            T x = a.dequeue();
+            union.enqueue(x);
+            onlyA.enqueue(x);
+        }
+        while (b.length() > 0) {
+            union.enqueue(b.dequeue());
+        }
+    }
+
+    /**
+     * Merges the in-order sequences of {@code $this.tree} and
+     * {@code s.tree} into the union, the intersection, and the elements only
+     * in {@code this}.
+     *
+     * @param s
+     *            the other set
+     * @param union
+     *            receives the elements of {@code this} union {@code s}
+     * @param both
+     *            receives the elements of {@code this} intersection {@code s}
+     * @param onlyThis
+     *            receives the elements of {@code this} \ {@code s}
+     * @updates union, both, onlyThis, this.comparisons
+     * @requires union = <> and both = <> and onlyThis = <>
+     * @ensures [union, both, and onlyThis hold those elements in increasing
+     *          order]
+     */
+    private void mergeWith(Set3<T> s, Queue<T> union, Queue<T> both,
+            Queue<T> onlyThis) {
+        this.restoreTree();
+        s.restoreTree();
+        Queue<T> a = new Queue1L<T>();
+        Queue<T> b = new Queue1L<T>();
+        enqueueInOrder(this.tree, a);
+        enqueueInOrder(s.tree, b);
+        this.comparisons = 0;
+        this.merge(a, b, union, both, onlyThis);
+    }
+
+    /**
+     * Returns the greatest label of {@code t} not greater than {@code x}, or
+     * {@code null} if there is none.
+     *
+     * @param t
+     *            the {@code BinaryTree} to be searched
+     * @param x
+     *            the bound
+     * @return the floor of x in t
+     * @updates this.comparisons
+     * @requires IS_BST(t)
+     * @ensures
+     *
+     *          <pre>
+     * if there exists y in labels(t) (y <= x)
+     *  then floorInTree = [the greatest such y]
+     *  else floorInTree = null
+     *          </pre>
+     */
+    private T floorInTree(BinaryTree<T> t, T x) {
+        T result = null;
+        if (t.size() > 0) {
+            BinaryTree<T> left = t.newInstance();
+            BinaryTree<T> right = t.newInstance();
+            T root = t.disassemble(left, right);
+            int order = this.compare(x, root);
+            if (order < 0) {
+                result = this.floorInTree(left, x);
+            } else if (order > 0) {
+                // root is a candidate, unless the right subtree has a closer one
+                result = this.floorInTree(right, x);
+                if (result == null) {
+                    result = root;
+                }
+            } else {
+                result = root;
+            }
+            t.assemble(root, left, right);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the least label of {@code t} not less than {@code x}, or
+     * {@code null} if there is none.
+     *
+     * @param t
+     *            the {@code BinaryTree} to be searched
+     * @param x
+     *            the bound
+     * @return the ceiling of x in t
+     * @updates this.comparisons
+     * @requires IS_BST(t)
+     * @ensures
+     *
+     *          <pre>
+     * if there exists y in labels(t) (y >= x)
+     *  then ceilingInTree = [the least such y]
+     *  else ceilingInTree = null
+     *          </pre>
+     */
+    private T ceilingInTree(BinaryTree<T> t, T x) {
+        T result = null;
+        if (t.size() > 0) {
+            BinaryTree<T> left = t.newInstance();
+            BinaryTree<T> right = t.newInstance();
+            T root = t.disassemble(left, right);
+            int order = this.compare(x, root);
+            if (order > 0) {
+                result = this.ceilingInTree(right, x);
+            } else if (order < 0) {
+                // root is a candidate, unless the left subtree has a closer one
+                result = this.ceilingInTree(left, x);
+                if (result == null) {
+                    result = root;
+                }
+            } else {
+                result = root;
+            }
+            t.assemble(root, left, right);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of labels of {@code t} less than {@code x}.
+     *
+     * @param t
+     *            the {@code BinaryTree} to be searched
+     * @param x
+     *            the bound
+     * @return the rank of x in t
+     * @updates this.comparisons
+     * @requires IS_BST(t)
+     * @ensures rankInTree = |{y in labels(t) where (y < x)}|
+     */
+    private int rankInTree(BinaryTree<T> t, T x) {
+        int result = 0;
+        if (t.size() > 0) {
+            BinaryTree<T> left = t.newInstance();
+            BinaryTree<T> right = t.newInstance();
+            T root = t.disassemble(left, right);
+            int order = this.compare(x, root);
+            if (order < 0) {
+                result = this.rankInTree(left, x);
+            } else if (order > 0) {
+                // Everything in the left subtree, and the root, is less than x
+                result = left.size() + 1 + this.rankInTree(right, x);
+            } else {
+                result = left.size();
+            }
+            t.assemble(root, left, right);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the label of {@code t} with exactly {@code k} smaller labels.
+     *
+     * @param <T>
+     *            type of {@code BinaryTree} labels
+     * @param t
+     *            the {@code BinaryTree} to be searched
+     * @param k
+     *            the rank of the label wanted
+     * @return the label of rank k
+     * @requires IS_BST(t) and 0 <= k < |t|
+     * @ensures selectInTree = [the (k+1)-th smallest label of t]
+     */
+    private static <T> T selectInTree(BinaryTree<T> t, int k) {
+        BinaryTree<T> left = t.newInstance();
+        BinaryTree<T> right = t.newInstance();
+        T root = t.disassemble(left, right);
+        T result = root;
+        if (k < left.size()) {
+            result = selectInTree(left, k);
+        } else if (k > left.size()) {
+            result = selectInTree(right, k - left.size() - 1);
+        }
+        t.assemble(root, left, right);
+        return result;
+    }
+
+    /**
+     * Enqueues, in order, the labels of {@code t} between {@code low} and
+     * {@code high}, visiting only the subtrees that can hold such labels.
+     *
+     * @param t
+     *            the {@code BinaryTree} to be searched
+     * @param low
+     *            the lower bound, inclusive
+     * @param high
+     *            the upper bound, inclusive
+     * @param q
+     *            the queue to which the labels are appended
+     * @updates q, this.comparisons
+     * @requires IS_BST(t)
+     * @ensures q = #q * [the labels y of t with low <= y <= high, in order]
+     */
+    private void rangeInTree(BinaryTree<T> t, T low, T high, Queue<T> q) {
+        if (t.size() > 0) {
+            BinaryTree<T> left = t.newInstance();
+            BinaryTree<T> right = t.newInstance();
+            T root = t.disassemble(left, right);
+            boolean aboveLow = this.compare(low, root) <= 0;
+            boolean belowHigh = this.compare(root, high) <= 0;
+            if (aboveLow) {
+                this.rangeInTree(left, low, high, q);
+            }
+            if (aboveLow && belowHigh) {
+                q.enqueue(root);
+            }
+            if (belowHigh) {
+                this.rangeInTree(right, low, high, q);
+            }
+            t.assemble(root, left, right);
+        }
+    }
+
+    /**
+     * One level of a path taken apart by the iterator: a tree that was
+     * disassembled, and the pieces to reassemble it from.
+     *
+     * @param <T>
+     *            type of {@code BinaryTree} labels
+     */
+    private static final class Level<T> {
+
+        /**
+         * The disassembled tree.
+         */
+        private final BinaryTree<T> tree;
+
+        /**
+         * Its root.
+         */
+        private final T root;
+
+        /**
+         * Its left subtree.
+         */
+        private final BinaryTree<T> left;
+
+        /**
+         * Its right subtree.
+         */
+        private final BinaryTree<T> right;
+
+        /**
+         * Whether the walk has returned the root already, and so is in, or
+         * done with, the right subtree.
+         */
+        private boolean rootSeen;
+
+        /**
+         * Constructor.
+         *
+         * @param tree
+         *            the disassembled tree
+         * @param root
+         *            its root
+         * @param left
+         *            its left subtree
+         * @param right
+         *            its right subtree
+         * @param rootSeen
+         *            whether the walk has returned the root already
+         */
+        Level(BinaryTree<T> tree, T root, BinaryTree<T> left,
+                BinaryTree<T> right, boolean rootSeen) {
+            this.tree = tree;
+            this.root = root;
+            this.left = left;
+            this.right = right;
+            this.rootSeen = rootSeen;
+        }
+    }
+
     /**
      * Creator of initial representation.
      */
     private void createNewRep() {
 
         this.tree = new BinaryTree1<T>();
+        this.comparisons = 0;
+        this.walk = null;
     }
 
     /*
@@ -237,6 +727,60 @@ public class Set3<T extends Comparable<T>> extends SetSecondary<T> {
         this.createNewRep();
     }
 
+    /**
+     * Returns a {@code Set3} holding the elements of {@code sorted}, built in
+     * linear time as a perfectly balanced tree. Unlike {@code n} calls to
+     * {@code add}, this neither pays for a search per element nor lets sorted
+     * input degenerate the tree.
+     *
+     * @param <T>
+     *            type of {@code Set} elements
+     * @param sorted
+     *            the elements, in strictly increasing order
+     * @return the new set
+     * @throws IllegalArgumentException
+     *             if an element is null, or is not greater than the one before
+     *             it (so it is a duplicate or out of order)
+     * @ensures
+     *
+     *          <pre>
+     * fromSorted = entries(sorted)  and
+     * height(fromSorted.tree) = ceiling(log2(|fromSorted| + 1))
+     *          </pre>
+     */
+    public static <T extends Comparable<T>> Set3<T> fromSorted(
+            Iterable<T> sorted) {
+        assert sorted != null : "Violation of: sorted is not null";
+
+        /*
+         * Check the order while copying, so a bad input is rejected after one
+         * pass and before any tree is built
+         */
+        Queue<T> elements = new Queue1L<T>();
+        T previous = null;
+        int position = 0;
+        for (T x : sorted) {
+            if (x == null) {
+                throw new IllegalArgumentException(
+                        "Element " + position + " is null");
+            }
+            if (previous != null && previous.compareTo(x) >= 0) {
+                String problem = "out of order";
+                if (previous.compareTo(x) == 0) {
+                    problem = "a duplicate";
+                }
+                throw new IllegalArgumentException("Element " + position
+                        + " (" + x + ") is " + problem);
+            }
+            elements.enqueue(x);
+            previous = x;
+            position++;
+        }
+        Set3<T> result = new Set3<T>();
+        buildBalanced(elements, elements.length(), result.tree);
+        return result;
+    }
+
     /*
      * Standard methods -------------------------------------------------------
      */
@@ -269,7 +813,11 @@ public class Set3<T extends Comparable<T>> extends SetSecondary<T> {
          * the ? must be T or the call would not have compiled.
          */
         Set3<T> localSource = (Set3<T>) source;
+        localSource.restoreTree();
+        // Any walk of the old tree of this is dropped with it
+        this.walk = null;
         this.tree = localSource.tree;
+        this.comparisons = localSource.comparisons;
         localSource.createNewRep();
     }
 
@@ -282,7 +830,10 @@ public class Set3<T extends Comparable<T>> extends SetSecondary<T> {
         assert x != null : "Violation of: x is not null";
         assert!this.contains(x) : "Violation of: x is not in this";
 
-        insertInTree(this.tree, x);
+        // Count only this operation, not the contains in the assertion
+        this.restoreTree();
+        this.comparisons = 0;
+        this.insertInTree(this.tree, x);
     }
 
     @Override
@@ -290,13 +841,17 @@ public class Set3<T extends Comparable<T>> extends SetSecondary<T> {
         assert x != null : "Violation of: x is not null";
         assert this.contains(x) : "Violation of: x is in this";
 
-        return removeFromTree(this.tree, x);
+        this.restoreTree();
+        this.comparisons = 0;
+        return this.removeFromTree(this.tree, x);
     }
 
     @Override
     public final T removeAny() {
         assert this.size() > 0 : "Violation of: this /= empty_set";
 
+        this.restoreTree();
+        this.comparisons = 0;
         return removeSmallest(this.tree);
     }
 
@@ -304,18 +859,424 @@ public class Set3<T extends Comparable<T>> extends SetSecondary<T> {
     public final boolean contains(T x) {
         assert x != null : "Violation of: x is not null";
 
-        return isInTree(this.tree, x);
+        this.restoreTree();
+        this.comparisons = 0;
+        return this.isInTree(this.tree, x);
     }
 
     @Override
     public final int size() {
 
-        return this.tree.size();
+        int size;
+        if (this.walk != null) {
+            // The tree is taken apart, but the walk knows its size
+            size = this.walk.total;
+        } else {
+            size = this.tree.size();
+        }
+        return size;
+    }
+
+    /*
+     * Ordered queries --------------------------------------------------------
+     */
+
+    /**
+     * Reports the greatest element of {@code this} not greater than {@code x},
+     * or {@code null} if there is none.
+     *
+     * @param x
+     *            the bound
+     * @return the floor of x in this
+     * @ensures
+     *
+     *          <pre>
+     * if there exists y in this (y <= x)
+     *  then floor = [the greatest such y]
+     *  else floor = null
+     *          </pre>
+     */
+    public final T floor(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        this.restoreTree();
+        this.comparisons = 0;
+        return this.floorInTree(this.tree, x);
+    }
+
+    /**
+     * Reports the least element of {@code this} not less than {@code x}, or
+     * {@code null} if there is none.
+     *
+     * @param x
+     *            the bound
+     * @return the ceiling of x in this
+     * @ensures
+     *
+     *          <pre>
+     * if there exists y in this (y >= x)
+     *  then ceiling = [the least such y]
+     *  else ceiling = null
+     *          </pre>
+     */
+    public final T ceiling(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        this.restoreTree();
+        this.comparisons = 0;
+        return this.ceilingInTree(this.tree, x);
+    }
+
+    /**
+     * Reports the number of elements of {@code this} less than {@code x};
+     * {@code x} need not be in {@code this}.
+     *
+     * @param x
+     *            the bound
+     * @return the rank of x in this
+     * @ensures rank = |{y in this where (y < x)}|
+     */
+    public final int rank(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        this.restoreTree();
+        this.comparisons = 0;
+        return this.rankInTree(this.tree, x);
+    }
+
+    /**
+     * Reports the element of {@code this} with exactly {@code k} smaller
+     * elements, so that {@code select(0)} is the smallest and
+     * {@code rank(select(k)) = k}.
+     *
+     * @param k
+     *            the rank of the element wanted
+     * @return the element of rank k
+     * @requires 0 <= k < |this|
+     * @ensures select is in this and rank(select) = k
+     */
+    public final T select(int k) {
+        assert 0 <= k : "Violation of: 0 <= k";
+        assert k < this.size() : "Violation of: k < |this|";
+
+        this.restoreTree();
+        this.comparisons = 0;
+        return selectInTree(this.tree, k);
+    }
+
+    /**
+     * Reports, in increasing order, the elements of {@code this} between
+     * {@code low} and {@code high}, both inclusive, e.g., for paging through
+     * {@code this} or finding every element with a given prefix.
+     *
+     * @param low
+     *            the lower bound
+     * @param high
+     *            the upper bound
+     * @return the elements in [low, high], in order
+     * @ensures
+     *
+     *          <pre>
+     * entries(range) = {y in this where (low <= y <= high)}  and
+     * range is in increasing order
+     *          </pre>
+     */
+    public final Queue<T> range(T low, T high) {
+        assert low != null : "Violation of: low is not null";
+        assert high != null : "Violation of: high is not null";
+
+        Queue<T> result = new Queue1L<T>();
+        this.restoreTree();
+        this.comparisons = 0;
+        this.rangeInTree(this.tree, low, high, result);
+        return result;
+    }
+
+    /*
+     * Bulk operations --------------------------------------------------------
+     */
+
+    @Override
+    public final void add(Set<T> s) {
+        assert s != null : "Violation of: s is not null";
+        assert s != this : "Violation of: s is not this";
+
+        if (s instanceof Set3<?>) {
+            Set3<T> other = (Set3<T>) s;
+            Queue<T> union = new Queue1L<T>();
+            Queue<T> both = new Queue1L<T>();
+            this.mergeWith(other, union, both, new Queue1L<T>());
+            buildBalanced(union, union.length(), this.tree);
+            buildBalanced(both, both.length(), other.tree);
+        } else {
+            super.add(s);
+        }
+    }
+
+    @Override
+    public final Set<T> remove(Set<T> s) {
+        assert s != null : "Violation of: s is not null";
+        assert s != this : "Violation of: s is not this";
+
+        Set<T> result;
+        if (s instanceof Set3<?>) {
+            Set3<T> removed = new Set3<T>();
+            Queue<T> both = new Queue1L<T>();
+            Queue<T> onlyThis = new Queue1L<T>();
+            this.mergeWith((Set3<T>) s, new Queue1L<T>(), both, onlyThis);
+            buildBalanced(onlyThis, onlyThis.length(), this.tree);
+            buildBalanced(both, both.length(), removed.tree);
+            result = removed;
+        } else {
+            result = super.remove(s);
+        }
+        return result;
+    }
+
+    /**
+     * Removes from {@code this} all elements that are not in {@code s}.
+     *
+     * @param s
+     *            the set of elements to keep
+     * @updates this
+     * @requires s is not this
+     * @ensures this = #this intersection s
+     */
+    public final void retain(Set<T> s) {
+        assert s != null : "Violation of: s is not null";
+        assert s != this : "Violation of: s is not this";
+
+        if (s instanceof Set3<?>) {
+            Queue<T> both = new Queue1L<T>();
+            this.mergeWith((Set3<T>) s, new Queue1L<T>(), both,
+                    new Queue1L<T>());
+            buildBalanced(both, both.length(), this.tree);
+        } else {
+            Set<T> kept = this.newInstance();
+            while (this.size() > 0) {
+                T x = this.removeAny();
+                if (s.contains(x)) {
+                    kept.add(x);
+                }
+            }
+            this.transferFrom(kept);
+        }
     }
 
     @Override
     public final Iterator<T> iterator() {
-        return this.tree.iterator();
+        return new Set3Iterator();
+    }
+
+    /*
+     * Instrumentation --------------------------------------------------------
+     */
+
+    /**
+     * Reports the number of {@code compareTo} calls made by the most recent
+     * {@code add}, {@code remove}, {@code removeAny}, or {@code contains} on
+     * {@code this}, not counting the ones made to check its precondition, or
+     * by the merge of the most recent bulk operation with another
+     * {@code Set3}.
+     *
+     * @return number of comparisons in the last kernel operation
+     * @ensures comparisonsInLastOperation >= 0
+     */
+    public final long comparisonsInLastOperation() {
+        return this.comparisons;
+    }
+
+    /**
+     * Reports the height of the binary search tree representing {@code this};
+     * this takes time linear in {@code |this|}.
+     *
+     * @return the height of $this.tree
+     * @ensures height = height($this.tree)
+     */
+    public final int height() {
+        this.restoreTree();
+        return this.tree.height();
+    }
+
+    /**
+     * Reports whether the shape of the tree has degenerated, i.e., whether
+     * {@code this} has at least {@code DEGENERATE_MIN_SIZE} elements and the
+     * height is more than {@code DEGENERATE_RATIO} times the least possible
+     * height for its size, so that searches cost far more than they should.
+     * This usually means elements were added in (nearly) sorted order.
+     *
+     * @return true iff the tree is degenerate
+     * @ensures
+     *
+     *          <pre>
+     * isDegenerate = (|this| >= DEGENERATE_MIN_SIZE  and
+     *   height($this.tree) > DEGENERATE_RATIO * ceiling(log2(|this| + 1)))
+     *          </pre>
+     */
+    public final boolean isDegenerate() {
+        this.restoreTree();
+        int n = this.tree.size();
+        int minHeight = Integer.SIZE - Integer.numberOfLeadingZeros(n);
+        return n >= DEGENERATE_MIN_SIZE
+                && this.tree.height() > DEGENERATE_RATIO * minHeight;
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Set3}: walks the
+     * tree in order, keeping the path to the next element taken apart on an
+     * explicit stack between calls.
+     */
+    private final class Set3Iterator implements Iterator<T> {
+
+        /**
+         * Size of {@code this} when the iteration started, which it cannot
+         * change during the iteration.
+         */
+        private final int total;
+
+        /**
+         * Number of elements seen already (i.e., |~this.seen|).
+         */
+        private int numberSeen;
+
+        /**
+         * Element returned by the last call to {@code next}, or {@code null}
+         * if there has been none.
+         */
+        private T last;
+
+        /**
+         * Levels taken apart, from the root down; those whose root has not
+         * been returned yet are the elements still to come on this path.
+         */
+        private Level<?>[] stack;
+
+        /**
+         * Number of levels on {@code stack}.
+         */
+        private int depth;
+
+        /**
+         * No-argument constructor.
+         */
+        Set3Iterator() {
+            final int initialStackSize = 16;
+            this.total = Set3.this.size();
+            this.numberSeen = 0;
+            this.last = null;
+            this.stack = new Level<?>[initialStackSize];
+            this.depth = 0;
+        }
+
+        /**
+         * Takes apart {@code t} down the path towards the successor of
+         * {@code x} (the leftmost path if {@code x} is {@code null}), pushing
+         * each level on {@code stack}.
+         *
+         * @param t
+         *            the tree to take apart
+         * @param x
+         *            the element whose successor is wanted, or {@code null}
+         * @updates this.stack, this.depth, t
+         */
+        private void descend(BinaryTree<T> t, T x) {
+            BinaryTree<T> current = t;
+            while (current.size() > 0) {
+                BinaryTree<T> left = current.newInstance();
+                BinaryTree<T> right = current.newInstance();
+                T root = current.disassemble(left, right);
+                // A root not greater than x comes before the successor
+                boolean rootSeen = x != null && x.compareTo(root) >= 0;
+                if (this.depth == this.stack.length) {
+                    this.stack = Arrays.copyOf(this.stack, 2 * this.depth);
+                }
+                this.stack[this.depth] = new Level<T>(current, root, left,
+                        right, rootSeen);
+                this.depth++;
+                if (rootSeen) {
+                    current = right;
+                } else {
+                    current = left;
+                }
+            }
+        }
+
+        /**
+         * Pops the top level off {@code stack} and puts its tree back
+         * together.
+         *
+         * @updates this.stack, this.depth
+         * @requires this.depth > 0  and  [the subtrees of the top level are
+         *           whole]
+         */
+        private void popLevel() {
+            this.depth--;
+            @SuppressWarnings("unchecked")
+            Level<T> level = (Level<T>) this.stack[this.depth];
+            this.stack[this.depth] = null;
+            level.tree.assemble(level.root, level.left, level.right);
+        }
+
+        /**
+         * Puts back together every level on {@code stack}, deepest first.
+         *
+         * @updates this.stack, this.depth
+         * @ensures this.depth = 0
+         */
+        void putBack() {
+            while (this.depth > 0) {
+                this.popLevel();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.numberSeen < this.total;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            if (Set3.this.walk != this) {
+                // Start, or resume after the tree was put back together
+                Set3.this.restoreTree();
+                this.descend(Set3.this.tree, this.last);
+                Set3.this.walk = this;
+            }
+            /*
+             * Levels whose root has been returned are done with, since the
+             * walk has left their right subtrees too; the first level that is
+             * not holds the next element
+             */
+            while (this.stack[this.depth - 1].rootSeen) {
+                this.popLevel();
+            }
+            @SuppressWarnings("unchecked")
+            Level<T> level = (Level<T>) this.stack[this.depth - 1];
+            level.rootSeen = true;
+            this.last = level.root;
+            this.descend(level.right, null);
+            this.numberSeen++;
+            if (this.numberSeen == this.total) {
+                // Nothing is left to walk, so leave the tree whole
+                Set3.this.restoreTree();
+            }
+            return this.last;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
     }
 
 }
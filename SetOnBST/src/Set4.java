@@ -0,0 +1,578 @@
+import java.util.Iterator;
+
+import components.binarytree.BinaryTree;
+import components.binarytree.BinaryTree1;
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set} represented as a {@code BinaryTree} (maintained as an AVL tree)
+ * of elements, each labeled with the height of its subtree, with
+ * implementations of primary methods.
+ *
+ * <p>
+ * Unlike {@code Set3}, the tree is rebalanced by rotations after every
+ * {@code add} and {@code remove}, so its height stays below 1.45 log2(n + 2)
+ * whatever order the elements arrive in, sorted input included. Every kernel
+ * method therefore takes O(log n) time, and the recursive helpers never go
+ * deeper than that.
+ *
+ * @param <T>
+ *            type of {@code Set} elements
+ * @mathdefinitions
+ *
+ *                  <pre>
+ * IS_BST(
+ *   tree: binary tree of Node
+ *  ): boolean satisfies
+ *  [tree satisfies the binary search tree properties as described in the
+ *   slides with the ordering reported by compareTo for T on the elements of
+ *   its labels, including that it has no duplicate elements]
+ *
+ * IS_AVL(
+ *   tree: binary tree of Node
+ *  ): boolean satisfies
+ *  [for every subtree t = compose(n, l, r) of tree,
+ *   n.height = height(t)  and  |height(l) - height(r)| <= 1]
+ *
+ * ELEMENTS(
+ *   tree: binary tree of Node
+ *  ): finite set of T satisfies
+ *  ELEMENTS(tree) = {x: T where (there exists n: Node
+ *                                 (n is in labels(tree)  and  n.element = x))}
+ *                  </pre>
+ *
+ * @convention IS_BST($this.tree) and IS_AVL($this.tree)
+ * @correspondence this = ELEMENTS($this.tree)
+ *
+ * @author Sheng Wang, Bolong Zhang
+ *
+ */
+public class Set4<T extends Comparable<T>> extends SetSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Label of a node of the tree: an element, and the height of the subtree
+     * rooted at the node, so that balance is checked in constant time.
+     *
+     * @param <T>
+     *            type of elements
+     */
+    private static final class Node<T> {
+
+        /**
+         * The element.
+         */
+        private final T element;
+
+        /**
+         * Height of the subtree rooted at this node.
+         */
+        private final int height;
+
+        /**
+         * Constructor.
+         *
+         * @param element
+         *            the element
+         * @param height
+         *            height of the subtree rooted at this node
+         */
+        Node(T element, int height) {
+            this.element = element;
+            this.height = height;
+        }
+    }
+
+    /**
+     * Elements included in {@code this}, with subtree heights.
+     */
+    private BinaryTree<Node<T>> tree;
+
+    /**
+     * Returns the height of {@code t}, in constant time.
+     *
+     * @param <T>
+     *            type of elements
+     * @param t
+     *            the tree
+     * @return the height of t
+     * @requires IS_AVL(t)
+     * @ensures heightOf = height(t)
+     */
+    private static <T> int heightOf(BinaryTree<Node<T>> t) {
+        int height = 0;
+        if (t.size() > 0) {
+            height = t.root().height;
+        }
+        return height;
+    }
+
+    /**
+     * Assembles {@code t} from {@code x}, {@code left}, and {@code right},
+     * labeling the root with the resulting height.
+     *
+     * @param <T>
+     *            type of elements
+     * @param t
+     *            the tree to assemble
+     * @param x
+     *            the root element
+     * @param left
+     *            the left subtree
+     * @param right
+     *            the right subtree
+     * @replaces t
+     * @clears left, right
+     * @requires IS_AVL(left) and IS_AVL(right)
+     * @ensures
+     *
+     *          <pre>
+     * t = compose(n, #left, #right)  where
+     *  (n.element = x  and  n.height = 1 + max(height(#left), height(#right)))
+     *          </pre>
+     */
+    private static <T> void assembleNode(BinaryTree<Node<T>> t, T x,
+            BinaryTree<Node<T>> left, BinaryTree<Node<T>> right) {
+        int height = 1 + Math.max(heightOf(left), heightOf(right));
+        t.assemble(new Node<T>(x, height), left, right);
+    }
+
+    /**
+     * Returns the height of the left subtree of {@code t} minus that of its
+     * right subtree.
+     *
+     * @param <T>
+     *            type of elements
+     * @param t
+     *            the tree
+     * @return the balance of t
+     * @requires |t| > 0
+     * @ensures balance = height(left subtree of t) - height(right subtree of t)
+     */
+    private static <T> int balance(BinaryTree<Node<T>> t) {
+        BinaryTree<Node<T>> left = t.newInstance();
+        BinaryTree<Node<T>> right = t.newInstance();
+        Node<T> root = t.disassemble(left, right);
+        int balance = heightOf(left) - heightOf(right);
+        t.assemble(root, left, right);
+        return balance;
+    }
+
+    /**
+     * Rotates {@code t} right: its left child becomes its root.
+     *
+     * @param <T>
+     *            type of elements
+     * @param t
+     *            the tree to rotate
+     * @updates t
+     * @requires |t| > 0 and |left subtree of t| > 0
+     * @ensures
+     *
+     *          <pre>
+     * if #t = compose((x, h), compose((y, g), a, b), c)
+     *  then t = compose((y, _), a, compose((x, _), b, c))  and
+     *       [the heights are recomputed]
+     *          </pre>
+     */
+    private static <T> void rotateRight(BinaryTree<Node<T>> t) {
+        BinaryTree<Node<T>> left = t.newInstance();
+        BinaryTree<Node<T>> right = t.newInstance();
+        T x = t.disassemble(left, right).element;
+        BinaryTree<Node<T>> a = t.newInstance();
+        BinaryTree<Node<T>> b = t.newInstance();
+        T y = left.disassemble(a, b).element;
+        assembleNode(left, x, b, right);
+        assembleNode(t, y, a, left);
+    }
+
+    /**
+     * Rotates {@code t} left: its right child becomes its root.
+     *
+     * @param <T>
+     *            type of elements
+     * @param t
+     *            the tree to rotate
+     * @updates t
+     * @requires |t| > 0 and |right subtree of t| > 0
+     * @ensures
+     *
+     *          <pre>
+     * if #t = compose((x, h), a, compose((y, g), b, c))
+     *  then t = compose((y, _), compose((x, _), a, b), c)  and
+     *       [the heights are recomputed]
+     *          </pre>
+     */
+    private static <T> void rotateLeft(BinaryTree<Node<T>> t) {
+        BinaryTree<Node<T>> left = t.newInstance();
+        BinaryTree<Node<T>> right = t.newInstance();
+        T x = t.disassemble(left, right).element;
+        BinaryTree<Node<T>> b = t.newInstance();
+        BinaryTree<Node<T>> c = t.newInstance();
+        T y = right.disassemble(b, c).element;
+        assembleNode(right, x, left, b);
+        assembleNode(t, y, right, c);
+    }
+
+    /**
+     * Assembles {@code t} from {@code x}, {@code left}, and {@code right}, then
+     * restores the AVL property at the root with at most two rotations.
+     *
+     * @param <T>
+     *            type of elements
+     * @param t
+     *            the tree to assemble
+     * @param x
+     *            the root element
+     * @param left
+     *            the left subtree
+     * @param right
+     *            the right subtree
+     * @replaces t
+     * @clears left, right
+     * @requires
+     *
+     *           <pre>
+     * IS_AVL(left)  and  IS_AVL(right)  and
+     * |height(left) - height(right)| <= 2
+     *           </pre>
+     *
+     * @ensures
+     *
+     *          <pre>
+     * IS_AVL(t)  and  ELEMENTS(t) = {x} union ELEMENTS(#left) union
+     *  ELEMENTS(#right)  and  [the in-order sequence of elements is kept]
+     *          </pre>
+     */
+    private static <T> void assembleBalanced(BinaryTree<Node<T>> t, T x,
+            BinaryTree<Node<T>> left, BinaryTree<Node<T>> right) {
+        int balance = heightOf(left) - heightOf(right);
+        if (balance > 1) {
+            // Left-right case: first turn it into the left-left case
+            if (balance(left) < 0) {
+                rotateLeft(left);
+            }
+            assembleNode(t, x, left, right);
+            rotateRight(t);
+        } else if (balance < -1) {
+            // Right-left case: first turn it into the right-right case
+            if (balance(right) > 0) {
+                rotateRight(right);
+            }
+            assembleNode(t, x, left, right);
+            rotateLeft(t);
+        } else {
+            assembleNode(t, x, left, right);
+        }
+    }
+
+    /**
+     * Returns whether {@code x} is in {@code t}.
+     *
+     * @param <T>
+     *            type of elements
+     * @param t
+     *            the tree to be searched
+     * @param x
+     *            the element to be searched for
+     * @return true if t contains x, false otherwise
+     * @requires IS_BST(t)
+     * @ensures isInTree = (x is in ELEMENTS(t))
+     */
+    private static <T extends Comparable<T>> boolean isInTree(
+            BinaryTree<Node<T>> t, T x) {
+        assert t != null : "Violation of: t is not null";
+        assert x != null : "Violation of: x is not null";
+
+        boolean result = false;
+        if (t.size() > 0) {
+            BinaryTree<Node<T>> left = t.newInstance();
+            BinaryTree<Node<T>> right = t.newInstance();
+            Node<T> root = t.disassemble(left, right);
+            int order = x.compareTo(root.element);
+            if (order < 0) {
+                result = isInTree(left, x);
+            } else if (order > 0) {
+                result = isInTree(right, x);
+            } else {
+                result = true;
+            }
+            t.assemble(root, left, right);
+        }
+        return result;
+    }
+
+    /**
+     * Inserts {@code x} in {@code t}, rebalancing on the way back up.
+     *
+     * @param <T>
+     *            type of elements
+     * @param t
+     *            the tree in which to insert
+     * @param x
+     *            the element to be inserted
+     * @aliases reference {@code x}
+     * @updates t
+     * @requires IS_BST(t) and IS_AVL(t) and x is not in ELEMENTS(t)
+     * @ensures
+     *
+     *          <pre>
+     * IS_BST(t)  and  IS_AVL(t)  and  ELEMENTS(t) = ELEMENTS(#t) union {x}
+     *          </pre>
+     */
+    private static <T extends Comparable<T>> void insertInTree(
+            BinaryTree<Node<T>> t, T x) {
+        assert t != null : "Violation of: t is not null";
+        assert x != null : "Violation of: x is not null";
+
+        BinaryTree<Node<T>> left = t.newInstance();
+        BinaryTree<Node<T>> right = t.newInstance();
+        if (t.size() == 0) {
+            assembleNode(t, x, left, right);
+        } else {
+            T root = t.disassemble(left, right).element;
+            if (x.compareTo(root) < 0) {
+                insertInTree(left, x);
+            } else {
+                insertInTree(right, x);
+            }
+            assembleBalanced(t, root, left, right);
+        }
+    }
+
+    /**
+     * Removes and returns the smallest (left-most) element in {@code t},
+     * rebalancing on the way back up.
+     *
+     * @param <T>
+     *            type of elements
+     * @param t
+     *            the tree from which to remove the element
+     * @return the smallest element in the given tree
+     * @updates t
+     * @requires IS_BST(t) and IS_AVL(t) and |t| > 0
+     * @ensures
+     *
+     *          <pre>
+     * IS_BST(t)  and  IS_AVL(t)  and
+     *  removeSmallest = [the smallest element in ELEMENTS(#t)]  and
+     *  ELEMENTS(t) = ELEMENTS(#t) \ {removeSmallest}
+     *          </pre>
+     */
+    private static <T> T removeSmallest(BinaryTree<Node<T>> t) {
+        assert t != null : "Violation of: t is not null";
+
+        BinaryTree<Node<T>> left = t.newInstance();
+        BinaryTree<Node<T>> right = t.newInstance();
+        T root = t.disassemble(left, right).element;
+        T result = root;
+        if (left.size() > 0) {
+            result = removeSmallest(left);
+            assembleBalanced(t, root, left, right);
+        } else {
+            t.transferFrom(right);
+        }
+        return result;
+    }
+
+    /**
+     * Finds element {@code x} in {@code t}, removes it from {@code t}, and
+     * returns it, rebalancing on the way back up.
+     *
+     * @param <T>
+     *            type of elements
+     * @param t
+     *            the tree from which to remove element {@code x}
+     * @param x
+     *            the element to be removed
+     * @return the removed element
+     * @updates t
+     * @requires IS_BST(t) and IS_AVL(t) and x is in ELEMENTS(t)
+     * @ensures
+     *
+     *          <pre>
+     * IS_BST(t)  and  IS_AVL(t)  and  removeFromTree = x  and
+     *  ELEMENTS(t) = ELEMENTS(#t) \ {x}
+     *          </pre>
+     */
+    private static <T extends Comparable<T>> T removeFromTree(
+            BinaryTree<Node<T>> t, T x) {
+        assert t != null : "Violation of: t is not null";
+        assert x != null : "Violation of: x is not null";
+
+        BinaryTree<Node<T>> left = t.newInstance();
+        BinaryTree<Node<T>> right = t.newInstance();
+        T root = t.disassemble(left, right).element;
+        T result = root;
+        int order = x.compareTo(root);
+        if (order < 0) {
+            result = removeFromTree(left, x);
+            assembleBalanced(t, root, left, right);
+        } else if (order > 0) {
+            result = removeFromTree(right, x);
+            assembleBalanced(t, root, left, right);
+        } else if (right.size() == 0) {
+            t.transferFrom(left);
+        } else {
+            T smallest = removeSmallest(right);
+            assembleBalanced(t, smallest, left, right);
+        }
+        return result;
+    }
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+
+        this.tree = new BinaryTree1<Node<T>>();
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Set4() {
+
+        this.createNewRep();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Set<T> newInstance() {
+        try {
+            return this.getClass().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(Set<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Set4<?> : ""
+                + "Violation of: source is of dynamic type Set4<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Set4<?>, and
+         * the ? must be T or the call would not have compiled.
+         */
+        Set4<T> localSource = (Set4<T>) source;
+        this.tree = localSource.tree;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert!this.contains(x) : "Violation of: x is not in this";
+
+        insertInTree(this.tree, x);
+    }
+
+    @Override
+    public final T remove(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.contains(x) : "Violation of: x is in this";
+
+        return removeFromTree(this.tree, x);
+    }
+
+    @Override
+    public final T removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        return removeSmallest(this.tree);
+    }
+
+    @Override
+    public final boolean contains(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        return isInTree(this.tree, x);
+    }
+
+    @Override
+    public final int size() {
+
+        return this.tree.size();
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new Set4Iterator();
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Reports the height of the AVL tree representing {@code this}, in
+     * constant time.
+     *
+     * @return the height of $this.tree
+     * @ensures height = height($this.tree)
+     */
+    public final int height() {
+        return heightOf(this.tree);
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Set4}: the
+     * elements of the labels of the tree's iterator, in order.
+     */
+    private final class Set4Iterator implements Iterator<T> {
+
+        /**
+         * Iterator over the labels of the tree.
+         */
+        private final Iterator<Node<T>> nodes;
+
+        /**
+         * No-argument constructor.
+         */
+        Set4Iterator() {
+            this.nodes = Set4.this.tree.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.nodes.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return this.nodes.next().element;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+    }
+
+}
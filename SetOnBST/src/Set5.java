@@ -0,0 +1,413 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set} represented as a binary search tree of linked nodes, with
+ * iterative implementations of primary methods.
+ *
+ * <p>
+ * {@code Set3} walks its {@code BinaryTree} by disassembling and reassembling
+ * it, allocating two new subtrees at every level. Here the nodes are plain
+ * objects owned by {@code this}, and every kernel method is a loop down one
+ * path: {@code contains}, {@code remove}, and {@code removeAny} allocate
+ * nothing, and {@code add} allocates exactly one node. The tree is not
+ * balanced, but without recursion a tall tree only costs time, never a
+ * {@code StackOverflowError}.
+ *
+ * @param <T>
+ *            type of {@code Set} elements
+ * @mathdefinitions
+ *
+ *                  <pre>
+ * TREE(
+ *   n: Node
+ *  ): binary tree of T satisfies
+ *  if n = null then TREE(n) = empty_tree
+ *  else TREE(n) = compose(n.element, TREE(n.left), TREE(n.right))
+ *
+ * IS_BST(
+ *   tree: binary tree of T
+ *  ): boolean satisfies
+ *  [tree satisfies the binary search tree properties as described in the
+ *   slides with the ordering reported by compareTo for T, including that
+ *   it has no duplicate labels]
+ *                  </pre>
+ *
+ * @convention
+ *
+ *             <pre>
+ * IS_BST(TREE($this.root))  and  $this.size = |TREE($this.root)|  and
+ * [no node is reachable from $this.root along two different paths]
+ *             </pre>
+ *
+ * @correspondence this = labels(TREE($this.root))
+ *
+ * @author Sheng Wang, Bolong Zhang
+ *
+ */
+public class Set5<T extends Comparable<T>> extends SetSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Node of the binary search tree.
+     *
+     * @param <T>
+     *            type of elements
+     */
+    private static final class Node<T> {
+
+        /**
+         * The element.
+         */
+        private T element;
+
+        /**
+         * Root of the left subtree, or {@code null}.
+         */
+        private Node<T> left;
+
+        /**
+         * Root of the right subtree, or {@code null}.
+         */
+        private Node<T> right;
+
+        /**
+         * Constructor of a leaf.
+         *
+         * @param element
+         *            the element
+         */
+        Node(T element) {
+            this.element = element;
+        }
+    }
+
+    /**
+     * Root of the tree, or {@code null} if {@code this} is empty.
+     */
+    private Node<T> root;
+
+    /**
+     * Size of abstract {@code this}.
+     */
+    private int size;
+
+    /**
+     * Replaces the link from {@code parent} to {@code child} with a link to
+     * {@code replacement}; if {@code parent} is {@code null}, {@code child} is
+     * the root.
+     *
+     * @param parent
+     *            the parent of {@code child}, or {@code null}
+     * @param child
+     *            the node being unlinked
+     * @param replacement
+     *            the node taking its place, or {@code null}
+     * @updates $this.root, parent
+     * @requires
+     *
+     *           <pre>
+     * (parent = null  and  child = $this.root)  or
+     * (parent.left = child  or  parent.right = child)
+     *           </pre>
+     *
+     * @ensures [replacement is linked where child was]
+     */
+    private void replaceChild(Node<T> parent, Node<T> child,
+            Node<T> replacement) {
+        if (parent == null) {
+            this.root = replacement;
+        } else if (parent.left == child) {
+            parent.left = replacement;
+        } else {
+            parent.right = replacement;
+        }
+    }
+
+    /**
+     * Removes node {@code n}, which has no left child, by linking its right
+     * subtree in its place.
+     *
+     * @param parent
+     *            the parent of {@code n}, or {@code null} if {@code n} is the
+     *            root
+     * @param n
+     *            the node to remove
+     * @updates $this
+     * @requires n.left = null
+     * @ensures this = #this \ {n.element}
+     */
+    private void spliceOut(Node<T> parent, Node<T> n) {
+        this.replaceChild(parent, n, n.right);
+        this.size--;
+    }
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+        this.root = null;
+        this.size = 0;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Set5() {
+
+        this.createNewRep();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Set<T> newInstance() {
+        try {
+            return this.getClass().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(Set<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Set5<?> : ""
+                + "Violation of: source is of dynamic type Set5<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Set5<?>, and
+         * the ? must be T or the call would not have compiled.
+         */
+        Set5<T> localSource = (Set5<T>) source;
+        this.root = localSource.root;
+        this.size = localSource.size;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert!this.contains(x) : "Violation of: x is not in this";
+
+        Node<T> leaf = new Node<T>(x);
+        if (this.root == null) {
+            this.root = leaf;
+        } else {
+            /*
+             * Walk down to the node whose empty child slot x belongs in
+             */
+            Node<T> n = this.root;
+            boolean placed = false;
+            while (!placed) {
+                if (x.compareTo(n.element) < 0) {
+                    if (n.left == null) {
+                        n.left = leaf;
+                        placed = true;
+                    } else {
+                        n = n.left;
+                    }
+                } else {
+                    if (n.right == null) {
+                        n.right = leaf;
+                        placed = true;
+                    } else {
+                        n = n.right;
+                    }
+                }
+            }
+        }
+        this.size++;
+    }
+
+    @Override
+    public final T remove(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.contains(x) : "Violation of: x is in this";
+
+        /*
+         * Find the node holding x and its parent
+         */
+        Node<T> parent = null;
+        Node<T> n = this.root;
+        int order = x.compareTo(n.element);
+        while (order != 0) {
+            parent = n;
+            if (order < 0) {
+                n = n.left;
+            } else {
+                n = n.right;
+            }
+            order = x.compareTo(n.element);
+        }
+        T result = n.element;
+        if (n.left == null) {
+            this.spliceOut(parent, n);
+        } else if (n.right == null) {
+            this.replaceChild(parent, n, n.left);
+            this.size--;
+        } else {
+            /*
+             * Two children: move the smallest element of the right subtree
+             * into n, then splice out the node it came from
+             */
+            Node<T> successorParent = n;
+            Node<T> successor = n.right;
+            while (successor.left != null) {
+                successorParent = successor;
+                successor = successor.left;
+            }
+            n.element = successor.element;
+            this.spliceOut(successorParent, successor);
+        }
+        return result;
+    }
+
+    @Override
+    public final T removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        // The smallest element is the cheapest to remove: it has no left child
+        Node<T> parent = null;
+        Node<T> n = this.root;
+        while (n.left != null) {
+            parent = n;
+            n = n.left;
+        }
+        this.spliceOut(parent, n);
+        return n.element;
+    }
+
+    @Override
+    public final boolean contains(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        Node<T> n = this.root;
+        boolean found = false;
+        while (n != null && !found) {
+            int order = x.compareTo(n.element);
+            if (order < 0) {
+                n = n.left;
+            } else if (order > 0) {
+                n = n.right;
+            } else {
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public final int size() {
+
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new Set5Iterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Set5}: an
+     * in-order traversal with an explicit stack of the nodes whose elements
+     * and right subtrees are still to be visited.
+     */
+    private final class Set5Iterator implements Iterator<T> {
+
+        /**
+         * Pending nodes; the top is the next to visit.
+         */
+        private Node<?>[] stack;
+
+        /**
+         * Number of nodes on {@code stack}.
+         */
+        private int depth;
+
+        /**
+         * No-argument constructor.
+         */
+        Set5Iterator() {
+            final int initialStackSize = 16;
+            this.stack = new Node<?>[initialStackSize];
+            this.depth = 0;
+            this.pushLeftPath(Set5.this.root);
+        }
+
+        /**
+         * Pushes {@code n} and its chain of left descendants onto the stack.
+         *
+         * @param n
+         *            the first node to push, or {@code null}
+         */
+        private void pushLeftPath(Node<T> n) {
+            Node<T> current = n;
+            while (current != null) {
+                if (this.depth == this.stack.length) {
+                    this.stack = Arrays.copyOf(this.stack,
+                            2 * this.depth);
+                }
+                this.stack[this.depth] = current;
+                this.depth++;
+                current = current.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.depth > 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            this.depth--;
+            Node<T> n = (Node<T>) this.stack[this.depth];
+            this.stack[this.depth] = null;
+            this.pushLeftPath(n.right);
+            return n.element;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+    }
+
+}
@@ -0,0 +1,534 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set} represented as a lazy concurrent skip list, safe to share
+ * between threads.
+ *
+ * <p>
+ * Each element is in a node that is linked into the bottom list and, with
+ * probability 1/2 per level, into the lists above it, so a search skips most
+ * of the elements and takes O(log n) expected time. {@code contains} and
+ * iteration take no locks at all. {@code add} and {@code remove} lock only the
+ * few nodes whose links they change, after checking that nothing changed
+ * between their lock-free search and the locking, and retry if something did.
+ * A node is logically removed by marking it before it is unlinked, so readers
+ * never see a half-removed element as present. This is the lazy skip list of
+ * Herlihy, Lev, Luchangco, and Shavit.
+ *
+ * <p>
+ * Because other threads may add or remove elements at any time, the
+ * preconditions of {@code add} and {@code remove} can be hard for a caller to
+ * guarantee; {@code addIfAbsent} and {@code removeIfPresent} check and act in
+ * one atomic step instead. Iteration is in increasing order and weakly
+ * consistent: it sees every element present for the whole iteration, and may
+ * or may not see those added or removed meanwhile. {@code newInstance},
+ * {@code clear}, and {@code transferFrom} must not run concurrently with other
+ * operations on the same set.
+ *
+ * @param <T>
+ *            type of {@code Set} elements
+ * @mathdefinitions
+ *
+ *                  <pre>
+ * LEVEL(i) = [the sequence of nodes reached from $this.head by following
+ *             next[i] links, not including $this.head]
+ *
+ * PRESENT = {n: Node where (n is in LEVEL(0)  and  n.fullyLinked  and
+ *                           not n.marked)}
+ *                  </pre>
+ *
+ * @convention
+ *
+ *             <pre>
+ * for all i: integer where (0 <= i < MAX_LEVELS)
+ *   ([the items of LEVEL(i) are in strictly increasing order by compareTo]
+ *    and  entries(LEVEL(i + 1)) is a subset of entries(LEVEL(i)))  and
+ * [when no operation is in progress, $this.size = |PRESENT| and no node
+ *  in LEVEL(0) is marked]
+ *             </pre>
+ *
+ * @correspondence this = {x: T where (there exists n in PRESENT (n.item = x))}
+ *
+ * @author Sheng Wang, Bolong Zhang
+ *
+ */
+public class Set6<T extends Comparable<T>> extends SetSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Number of levels; enough for about 2^24 elements at full speed.
+     */
+    private static final int MAX_LEVELS = 24;
+
+    /**
+     * Node of the skip list.
+     *
+     * @param <T>
+     *            type of elements
+     */
+    private static final class Node<T> {
+
+        /**
+         * The element, or {@code null} in the head sentinel.
+         */
+        private final T item;
+
+        /**
+         * Successors at each level this node is linked into; {@code null}
+         * stands for the end of the list.
+         */
+        private final AtomicReferenceArray<Node<T>> next;
+
+        /**
+         * Highest level this node is linked into.
+         */
+        private final int topLevel;
+
+        /**
+         * Lock held while changing this node's links or marking it.
+         */
+        private final ReentrantLock lock;
+
+        /**
+         * Whether this node has been logically removed.
+         */
+        private volatile boolean marked;
+
+        /**
+         * Whether this node has been linked in at every one of its levels.
+         */
+        private volatile boolean fullyLinked;
+
+        /**
+         * Constructor.
+         *
+         * @param item
+         *            the element, or {@code null} for the head sentinel
+         * @param topLevel
+         *            highest level of the node
+         */
+        Node(T item, int topLevel) {
+            this.item = item;
+            this.next = new AtomicReferenceArray<Node<T>>(topLevel + 1);
+            this.topLevel = topLevel;
+            this.lock = new ReentrantLock();
+            this.marked = false;
+            this.fullyLinked = false;
+        }
+    }
+
+    /**
+     * Head sentinel, linked into every level; smaller than every element.
+     */
+    private Node<T> head;
+
+    /**
+     * Size of abstract {@code this}, as a counter that threads can update
+     * without contending on one memory location.
+     */
+    private LongAdder size;
+
+    /**
+     * Returns a random top level: {@code k} with probability 2^-(k+1).
+     *
+     * @return the top level of a new node
+     * @ensures 0 <= randomLevel < MAX_LEVELS
+     */
+    private static int randomLevel() {
+        int bits = ThreadLocalRandom.current().nextInt();
+        // Each trailing 1 bit is one more level, with probability 1/2
+        return Math.min(Integer.numberOfTrailingZeros(~bits), MAX_LEVELS - 1);
+    }
+
+    /**
+     * Searches for {@code x} without locking, recording at each level the
+     * last node before {@code x}'s position and the node after it.
+     *
+     * @param x
+     *            the element to search for
+     * @param preds
+     *            receives the predecessor at each level
+     * @param succs
+     *            receives the successor (or node holding x) at each level
+     * @return the highest level at which a node holding x was found, or -1
+     * @updates preds, succs
+     * @requires |preds| = |succs| = MAX_LEVELS
+     */
+    private int find(T x, Node<T>[] preds, Node<T>[] succs) {
+        int levelFound = -1;
+        Node<T> pred = this.head;
+        for (int level = MAX_LEVELS - 1; level >= 0; level--) {
+            Node<T> curr = pred.next.get(level);
+            int order = 1;
+            while (curr != null && (order = x.compareTo(curr.item)) > 0) {
+                pred = curr;
+                curr = pred.next.get(level);
+            }
+            if (levelFound == -1 && curr != null && order == 0) {
+                levelFound = level;
+            }
+            preds[level] = pred;
+            succs[level] = curr;
+        }
+        return levelFound;
+    }
+
+    /**
+     * Unlocks the locks of {@code preds[0..highestLocked]}; a node locked at
+     * several levels is unlocked as many times as it was locked.
+     *
+     * @param preds
+     *            the locked predecessors
+     * @param highestLocked
+     *            the highest level locked, or -1
+     */
+    private static <T> void unlock(Node<T>[] preds, int highestLocked) {
+        for (int level = 0; level <= highestLocked; level++) {
+            preds[level].lock.unlock();
+        }
+    }
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+        this.head = new Node<T>(null, MAX_LEVELS - 1);
+        this.head.fullyLinked = true;
+        this.size = new LongAdder();
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Set6() {
+
+        this.createNewRep();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Set<T> newInstance() {
+        try {
+            return this.getClass().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(Set<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Set6<?> : ""
+                + "Violation of: source is of dynamic type Set6<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Set6<?>, and
+         * the ? must be T or the call would not have compiled.
+         */
+        Set6<T> localSource = (Set6<T>) source;
+        this.head = localSource.head;
+        this.size = localSource.size;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        boolean added = this.addIfAbsent(x);
+        assert added : "Violation of: x is not in this";
+    }
+
+    @Override
+    public final T remove(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        T removed = this.removeIfPresent(x);
+        assert removed != null : "Violation of: x is in this";
+        return removed;
+    }
+
+    @Override
+    public final T removeAny() {
+        T removed = null;
+        Node<T> first = this.head.next.get(0);
+        // Another thread may remove the first element first; then try again
+        while (removed == null && first != null) {
+            removed = this.removeIfPresent(first.item);
+            first = this.head.next.get(0);
+        }
+        assert removed != null : "Violation of: this /= empty_set";
+        return removed;
+    }
+
+    @Override
+    public final boolean contains(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        /*
+         * Same search as find, but stopping at the first match and recording
+         * nothing, so a lookup allocates nothing
+         */
+        Node<T> pred = this.head;
+        Node<T> found = null;
+        for (int level = MAX_LEVELS - 1; level >= 0 && found == null;
+                level--) {
+            Node<T> curr = pred.next.get(level);
+            int order = 1;
+            while (curr != null && (order = x.compareTo(curr.item)) > 0) {
+                pred = curr;
+                curr = pred.next.get(level);
+            }
+            if (curr != null && order == 0) {
+                found = curr;
+            }
+        }
+        return found != null && found.fullyLinked && !found.marked;
+    }
+
+    @Override
+    public final int size() {
+        return this.size.intValue();
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new Set6Iterator();
+    }
+
+    /*
+     * Atomic update methods --------------------------------------------------
+     */
+
+    /**
+     * Adds {@code x} to {@code this} if it is not already there, atomically,
+     * and reports whether it did.
+     *
+     * @param x
+     *            the element to add
+     * @return true iff x was not in this
+     * @aliases reference {@code x}
+     * @updates this
+     * @ensures this = #this union {x} and addIfAbsent = (x is not in #this)
+     */
+    public final boolean addIfAbsent(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        int topLevel = randomLevel();
+        @SuppressWarnings("unchecked")
+        Node<T>[] preds = (Node<T>[]) new Node<?>[MAX_LEVELS];
+        @SuppressWarnings("unchecked")
+        Node<T>[] succs = (Node<T>[]) new Node<?>[MAX_LEVELS];
+        while (true) {
+            int levelFound = this.find(x, preds, succs);
+            if (levelFound != -1) {
+                Node<T> found = succs[levelFound];
+                if (!found.marked) {
+                    // Being added by another thread: present once linked
+                    while (!found.fullyLinked) {
+                        Thread.onSpinWait();
+                    }
+                    return false;
+                }
+                // Being removed: retry once it is unlinked
+                continue;
+            }
+            int highestLocked = -1;
+            try {
+                /*
+                 * Lock the predecessors bottom-up and check that each is still
+                 * present and still points to the successor found
+                 */
+                boolean valid = true;
+                for (int level = 0; valid && level <= topLevel; level++) {
+                    Node<T> pred = preds[level];
+                    Node<T> succ = succs[level];
+                    pred.lock.lock();
+                    highestLocked = level;
+                    valid = !pred.marked && (succ == null || !succ.marked)
+                            && pred.next.get(level) == succ;
+                }
+                if (!valid) {
+                    continue;
+                }
+                Node<T> node = new Node<T>(x, topLevel);
+                for (int level = 0; level <= topLevel; level++) {
+                    node.next.set(level, succs[level]);
+                }
+                for (int level = 0; level <= topLevel; level++) {
+                    preds[level].next.set(level, node);
+                }
+                node.fullyLinked = true;
+                this.size.increment();
+                return true;
+            } finally {
+                unlock(preds, highestLocked);
+            }
+        }
+    }
+
+    /**
+     * Removes {@code x} from {@code this} if it is there, atomically, and
+     * returns the element removed, or {@code null} if there was none.
+     *
+     * @param x
+     *            the element to remove
+     * @return the element removed, or null
+     * @updates this
+     * @ensures
+     *
+     *          <pre>
+     * this = #this \ {x}  and
+     * if x is in #this then removeIfPresent = x else removeIfPresent = null
+     *          </pre>
+     */
+    public final T removeIfPresent(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        @SuppressWarnings("unchecked")
+        Node<T>[] preds = (Node<T>[]) new Node<?>[MAX_LEVELS];
+        @SuppressWarnings("unchecked")
+        Node<T>[] succs = (Node<T>[]) new Node<?>[MAX_LEVELS];
+        Node<T> victim = null;
+        boolean isMarked = false;
+        while (true) {
+            int levelFound = this.find(x, preds, succs);
+            if (levelFound != -1) {
+                victim = succs[levelFound];
+            }
+            /*
+             * Only a fully linked, unmarked node found at its top level can be
+             * removed; otherwise it is being added or removed by another thread
+             */
+            if (!isMarked && !(levelFound != -1 && victim.fullyLinked
+                    && victim.topLevel == levelFound && !victim.marked)) {
+                return null;
+            }
+            if (!isMarked) {
+                victim.lock.lock();
+                if (victim.marked) {
+                    victim.lock.unlock();
+                    return null;
+                }
+                victim.marked = true;
+                isMarked = true;
+            }
+            int highestLocked = -1;
+            try {
+                boolean valid = true;
+                for (int level = 0; valid && level <= victim.topLevel;
+                        level++) {
+                    Node<T> pred = preds[level];
+                    pred.lock.lock();
+                    highestLocked = level;
+                    valid = !pred.marked && pred.next.get(level) == victim;
+                }
+                if (!valid) {
+                    continue;
+                }
+                for (int level = victim.topLevel; level >= 0; level--) {
+                    preds[level].next.set(level, victim.next.get(level));
+                }
+                victim.lock.unlock();
+                this.size.decrement();
+                return victim.item;
+            } finally {
+                unlock(preds, highestLocked);
+            }
+        }
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Set6}: walks
+     * the bottom list without locking, skipping removed nodes.
+     */
+    private final class Set6Iterator implements Iterator<T> {
+
+        /**
+         * Next node to return, or {@code null} if there is none.
+         */
+        private Node<T> nextNode;
+
+        /**
+         * No-argument constructor.
+         */
+        Set6Iterator() {
+            this.nextNode = this.present(Set6.this.head.next.get(0));
+        }
+
+        /**
+         * Returns the first node from {@code n} on, along the bottom list,
+         * that is present.
+         *
+         * @param n
+         *            the node to start from, or {@code null}
+         * @return the first present node, or {@code null}
+         */
+        private Node<T> present(Node<T> n) {
+            Node<T> current = n;
+            while (current != null
+                    && (current.marked || !current.fullyLinked)) {
+                current = current.next.get(0);
+            }
+            return current;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.nextNode != null;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            T x = this.nextNode.item;
+            this.nextNode = this.present(this.nextNode.next.get(0));
+            return x;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+    }
+
+}
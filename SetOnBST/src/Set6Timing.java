@@ -0,0 +1,233 @@
+import components.set.Set;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Measures throughput when several threads share one ordered set under a
+ * mixed workload of lookups, additions, and removals: {@code Set6}, the
+ * concurrent skip list, against {@code Set3} guarded by a single global lock.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class Set6Timing {
+
+    /**
+     * Thread counts to measure.
+     */
+    private static final int[] THREADS = { 1, 2, 4, 8, 16, 32 };
+
+    /**
+     * Number of distinct elements operations are drawn from; the set holds
+     * about half of them at any time.
+     */
+    private static final int KEY_RANGE = 100_000;
+
+    /**
+     * Total number of operations in each run, split among the threads.
+     */
+    private static final int OPERATIONS = 4_000_000;
+
+    /**
+     * Out of every 10 operations, how many are {@code contains}; the rest are
+     * split evenly between additions and removals.
+     */
+    private static final int LOOKUPS_PER_TEN = 8;
+
+    /**
+     * Number of untimed runs before the timed one, to let the JIT compile the
+     * hot paths.
+     */
+    private static final int WARMUP_RUNS = 2;
+
+    /**
+     * Multiplier used to scatter element choices across the key range.
+     */
+    private static final long SCATTER = 2_654_435_761L;
+
+    /**
+     * Nanoseconds per second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private Set6Timing() {
+    }
+
+    /**
+     * One operation on a shared set.
+     */
+    @FunctionalInterface
+    private interface Operation {
+        /**
+         * Performs the operation on element {@code x}.
+         *
+         * @param kind
+         *            which operation: 0 to {@code LOOKUPS_PER_TEN - 1} is a
+         *            lookup, then an addition, then a removal
+         * @param x
+         *            the element
+         */
+        void apply(int kind, Integer x);
+    }
+
+    /**
+     * Returns the element for operation {@code i} of the synthetic workload.
+     *
+     * @param i
+     *            the position in the workload
+     * @return the element
+     */
+    private static Integer elementAt(int i) {
+        return (int) ((i * SCATTER) % KEY_RANGE);
+    }
+
+    /**
+     * Returns the kind of operation {@code i} of the synthetic workload.
+     *
+     * @param i
+     *            the position in the workload
+     * @return the kind, in [0, 10)
+     */
+    private static int kindAt(int i) {
+        final int ten = 10;
+        return (int) (((long) i * SCATTER >>> Integer.SIZE) % ten);
+    }
+
+    /**
+     * Fills {@code s} with every other element of the key range, in
+     * scattered order so an unbalanced tree stays shallow.
+     *
+     * @param s
+     *            the set to fill
+     * @updates s
+     * @requires s = {}
+     */
+    private static void fill(Set<Integer> s) {
+        for (int i = 0; i < KEY_RANGE; i++) {
+            Integer x = elementAt(i);
+            if (x % 2 == 0) {
+                s.add(x);
+            }
+        }
+    }
+
+    /**
+     * Runs {@code OPERATIONS} operations split among {@code threadCount}
+     * threads and returns the throughput.
+     *
+     * @param threadCount
+     *            the number of threads
+     * @param op
+     *            the operation each thread runs
+     * @return operations per second
+     * @throws InterruptedException
+     *             if interrupted while waiting for the threads
+     */
+    private static double run(int threadCount, Operation op)
+            throws InterruptedException {
+        Thread[] threads = new Thread[threadCount];
+        int slice = OPERATIONS / threadCount;
+        for (int t = 0; t < threadCount; t++) {
+            int from = t * slice;
+            int to = from + slice;
+            threads[t] = new Thread(() -> {
+                for (int i = from; i < to; i++) {
+                    op.apply(kindAt(i), elementAt(i));
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        return slice * (double) threadCount * NANOS_PER_SECOND / elapsed;
+    }
+
+    /**
+     * Measures {@code Set6} with {@code threadCount} threads.
+     *
+     * @param threadCount
+     *            the number of threads
+     * @return operations per second in the timed run
+     * @throws InterruptedException
+     *             if interrupted while waiting for the threads
+     */
+    private static double timeSet6(int threadCount)
+            throws InterruptedException {
+        double result = 0;
+        for (int r = 0; r <= WARMUP_RUNS; r++) {
+            Set6<Integer> set = new Set6<Integer>();
+            fill(set);
+            result = run(threadCount, (kind, x) -> {
+                if (kind < LOOKUPS_PER_TEN) {
+                    set.contains(x);
+                } else if (kind == LOOKUPS_PER_TEN) {
+                    set.addIfAbsent(x);
+                } else {
+                    set.removeIfPresent(x);
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Measures {@code Set3} behind one global lock with {@code threadCount}
+     * threads.
+     *
+     * @param threadCount
+     *            the number of threads
+     * @return operations per second in the timed run
+     * @throws InterruptedException
+     *             if interrupted while waiting for the threads
+     */
+    private static double timeLockedSet3(int threadCount)
+            throws InterruptedException {
+        double result = 0;
+        for (int r = 0; r <= WARMUP_RUNS; r++) {
+            Set<Integer> set = new Set3<Integer>();
+            fill(set);
+            result = run(threadCount, (kind, x) -> {
+                synchronized (set) {
+                    if (kind < LOOKUPS_PER_TEN) {
+                        set.contains(x);
+                    } else if (kind == LOOKUPS_PER_TEN) {
+                        if (!set.contains(x)) {
+                            set.add(x);
+                        }
+                    } else if (set.contains(x)) {
+                        set.remove(x);
+                    }
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     * @throws InterruptedException
+     *             if interrupted while waiting for the threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        SimpleWriter out = new SimpleWriter1L();
+        out.println("threads\tSet6 (ops/s)\tlocked Set3 (ops/s)");
+        for (int threadCount : THREADS) {
+            double skipList = timeSet6(threadCount);
+            double locked = timeLockedSet3(threadCount);
+            out.println(threadCount + "\t" + String.format("%.0f", skipList)
+                    + "\t" + String.format("%.0f", locked));
+        }
+        out.close();
+    }
+
+}
@@ -0,0 +1,743 @@
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set} represented as a B-tree, with implementations of primary
+ * methods.
+ *
+ * <p>
+ * A binary search tree spends one node, and one likely cache miss, on every
+ * element along a search path. Here each node packs up to
+ * {@code fanOut - 1} elements into one array and has up to {@code fanOut}
+ * children, so a search visits only about log(n) / log(fanOut / 2) nodes and
+ * finds its way through each by binary search over the array. Iteration reads
+ * the arrays in order. Every leaf is at the same depth, whatever order the
+ * elements arrive in. {@code add} splits full nodes, and {@code remove} refills
+ * minimal ones, on the way down, so neither ever has to come back up the tree.
+ *
+ * @param <T>
+ *            type of {@code Set} elements
+ * @mathdefinitions
+ *
+ *                  <pre>
+ * KEYS(
+ *   n: Node
+ *  ): string of T is
+ *  <n.keys[0], n.keys[1], ..., n.keys[n.count - 1]>
+ *
+ * IN_ORDER(
+ *   n: Node
+ *  ): string of T satisfies
+ *  if n.children = null then IN_ORDER(n) = KEYS(n)
+ *  else IN_ORDER(n) = IN_ORDER(n.children[0]) * <n.keys[0]> *
+ *                     IN_ORDER(n.children[1]) * ... * <n.keys[n.count - 1]> *
+ *                     IN_ORDER(n.children[n.count])
+ *                  </pre>
+ *
+ * @convention
+ *
+ *             <pre>
+ * $this.fanOut is even  and  $this.fanOut >= 4  and
+ * [IN_ORDER($this.root) is in strictly increasing order by compareTo]  and
+ * $this.size = |IN_ORDER($this.root)|  and
+ * [every node n has n.count <= $this.fanOut - 1, and every node other than
+ *  $this.root has n.count >= $this.fanOut / 2 - 1]  and
+ * [every internal node n has n.count + 1 children, and every leaf
+ *  (children = null) is at the same depth]  and
+ * [slots of keys and children beyond those in use are null]
+ *             </pre>
+ *
+ * @correspondence this = entries(IN_ORDER($this.root))
+ *
+ * @author Sheng Wang, Bolong Zhang
+ *
+ */
+public class Set7<T extends Comparable<T>> extends SetSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default maximum number of children of a node.
+     */
+    private static final int DEFAULT_FAN_OUT = 64;
+
+    /**
+     * Node of the B-tree.
+     */
+    private static final class Node {
+
+        /**
+         * The elements, in increasing order, in slots {@code [0, count)}.
+         */
+        private final Object[] keys;
+
+        /**
+         * The children, in slots {@code [0, count]}, or {@code null} in a
+         * leaf.
+         */
+        private final Node[] children;
+
+        /**
+         * Number of elements in use.
+         */
+        private int count;
+
+        /**
+         * Constructor of an empty node.
+         *
+         * @param fanOut
+         *            the maximum number of children
+         * @param leaf
+         *            whether the node is a leaf
+         */
+        Node(int fanOut, boolean leaf) {
+            this.keys = new Object[fanOut - 1];
+            if (leaf) {
+                this.children = null;
+            } else {
+                this.children = new Node[fanOut];
+            }
+            this.count = 0;
+        }
+
+        /**
+         * Reports whether this node is a leaf.
+         *
+         * @return true iff this node has no children
+         */
+        boolean isLeaf() {
+            return this.children == null;
+        }
+    }
+
+    /**
+     * Maximum number of children of a node.
+     */
+    private int fanOut;
+
+    /**
+     * Minimum number of elements in a node other than the root.
+     */
+    private int minKeys;
+
+    /**
+     * Root of the tree; an empty leaf if {@code this} is empty.
+     */
+    private Node root;
+
+    /**
+     * Size of abstract {@code this}.
+     */
+    private int size;
+
+    /**
+     * Returns the element in slot {@code i} of {@code n}.
+     *
+     * @param n
+     *            the node
+     * @param i
+     *            the slot
+     * @return n.keys[i]
+     * @requires 0 <= i < n.count
+     */
+    @SuppressWarnings("unchecked")
+    private T key(Node n, int i) {
+        return (T) n.keys[i];
+    }
+
+    /**
+     * Binary search for {@code x} among the elements of {@code n}.
+     *
+     * @param n
+     *            the node
+     * @param x
+     *            the element to search for
+     * @return the slot of x if it is in n, and otherwise -(i + 1) where i is
+     *         the slot x would go in (so the child to search next)
+     */
+    private int search(Node n, T x) {
+        int low = 0;
+        int high = n.count - 1;
+        int result = -1;
+        while (low <= high && result < 0) {
+            int mid = (low + high) >>> 1;
+            int order = x.compareTo(this.key(n, mid));
+            if (order < 0) {
+                high = mid - 1;
+            } else if (order > 0) {
+                low = mid + 1;
+            } else {
+                result = mid;
+            }
+        }
+        if (result < 0) {
+            result = -(low + 1);
+        }
+        return result;
+    }
+
+    /**
+     * Inserts {@code x} in slot {@code i} of {@code n}, shifting later
+     * elements right; if {@code child} is not {@code null}, it is inserted
+     * as child {@code i + 1}.
+     *
+     * @param n
+     *            the node
+     * @param i
+     *            the slot
+     * @param x
+     *            the element
+     * @param child
+     *            the new child to the right of x, or {@code null}
+     * @updates n
+     * @requires 0 <= i <= n.count < |n.keys|
+     */
+    private static void insertAt(Node n, int i, Object x, Node child) {
+        System.arraycopy(n.keys, i, n.keys, i + 1, n.count - i);
+        n.keys[i] = x;
+        if (child != null) {
+            System.arraycopy(n.children, i + 1, n.children, i + 2,
+                    n.count - i);
+            n.children[i + 1] = child;
+        }
+        n.count++;
+    }
+
+    /**
+     * Removes the element in slot {@code i} of {@code n}, shifting later
+     * elements left; in an internal node, child {@code i + 1} is removed too.
+     *
+     * @param n
+     *            the node
+     * @param i
+     *            the slot
+     * @updates n
+     * @requires 0 <= i < n.count
+     */
+    private static void removeAt(Node n, int i) {
+        System.arraycopy(n.keys, i + 1, n.keys, i, n.count - i - 1);
+        n.keys[n.count - 1] = null;
+        if (!n.isLeaf()) {
+            System.arraycopy(n.children, i + 2, n.children, i + 1,
+                    n.count - i - 1);
+            n.children[n.count] = null;
+        }
+        n.count--;
+    }
+
+    /**
+     * Splits the full child {@code i} of {@code parent} in two around its
+     * middle element, which moves up into {@code parent}.
+     *
+     * @param parent
+     *            the parent
+     * @param i
+     *            the index of the full child
+     * @updates parent
+     * @requires parent.count < fanOut - 1 and parent.children[i].count =
+     *           fanOut - 1
+     */
+    private void split(Node parent, int i) {
+        Node left = parent.children[i];
+        Node right = new Node(this.fanOut, left.isLeaf());
+        int half = this.minKeys;
+        // left keeps [0, half), the middle moves up, right gets the rest
+        System.arraycopy(left.keys, half + 1, right.keys, 0, half);
+        if (!left.isLeaf()) {
+            System.arraycopy(left.children, half + 1, right.children, 0,
+                    half + 1);
+            Arrays.fill(left.children, half + 1, left.count + 1,
+                    null);
+        }
+        right.count = half;
+        Object middle = left.keys[half];
+        Arrays.fill(left.keys, half, left.count, null);
+        left.count = half;
+        insertAt(parent, i, middle, right);
+    }
+
+    /**
+     * Merges child {@code i + 1} of {@code parent} into child {@code i},
+     * together with the element between them.
+     *
+     * @param parent
+     *            the parent
+     * @param i
+     *            the index of the left child
+     * @updates parent
+     * @requires both children have minKeys elements
+     */
+    private static void merge(Node parent, int i) {
+        Node left = parent.children[i];
+        Node right = parent.children[i + 1];
+        left.keys[left.count] = parent.keys[i];
+        System.arraycopy(right.keys, 0, left.keys, left.count + 1,
+                right.count);
+        if (!left.isLeaf()) {
+            System.arraycopy(right.children, 0, left.children, left.count + 1,
+                    right.count + 1);
+        }
+        left.count += right.count + 1;
+        removeAt(parent, i);
+    }
+
+    /**
+     * Moves one element from child {@code i - 1} of {@code parent}, through
+     * {@code parent}, into child {@code i}.
+     *
+     * @param parent
+     *            the parent
+     * @param i
+     *            the index of the child to refill
+     * @updates parent
+     * @requires i > 0 and parent.children[i - 1].count > minKeys
+     */
+    private static void borrowFromLeft(Node parent, int i) {
+        Node child = parent.children[i];
+        Node sibling = parent.children[i - 1];
+        Node moved = null;
+        if (!sibling.isLeaf()) {
+            moved = sibling.children[sibling.count];
+            sibling.children[sibling.count] = null;
+        }
+        // Insert at the front of child: the moved subtree becomes child 0
+        System.arraycopy(child.keys, 0, child.keys, 1, child.count);
+        child.keys[0] = parent.keys[i - 1];
+        if (moved != null) {
+            System.arraycopy(child.children, 0, child.children, 1,
+                    child.count + 1);
+            child.children[0] = moved;
+        }
+        child.count++;
+        parent.keys[i - 1] = sibling.keys[sibling.count - 1];
+        sibling.keys[sibling.count - 1] = null;
+        sibling.count--;
+    }
+
+    /**
+     * Moves one element from child {@code i + 1} of {@code parent}, through
+     * {@code parent}, into child {@code i}.
+     *
+     * @param parent
+     *            the parent
+     * @param i
+     *            the index of the child to refill
+     * @updates parent
+     * @requires i < parent.count and parent.children[i + 1].count > minKeys
+     */
+    private static void borrowFromRight(Node parent, int i) {
+        Node child = parent.children[i];
+        Node sibling = parent.children[i + 1];
+        child.keys[child.count] = parent.keys[i];
+        if (!child.isLeaf()) {
+            child.children[child.count + 1] = sibling.children[0];
+            System.arraycopy(sibling.children, 1, sibling.children, 0,
+                    sibling.count);
+            sibling.children[sibling.count] = null;
+        }
+        child.count++;
+        parent.keys[i] = sibling.keys[0];
+        System.arraycopy(sibling.keys, 1, sibling.keys, 0,
+                sibling.count - 1);
+        sibling.keys[sibling.count - 1] = null;
+        sibling.count--;
+    }
+
+    /**
+     * Makes sure child {@code i} of {@code parent} has more than
+     * {@code minKeys} elements, so that one can be removed below it, by
+     * borrowing from a sibling or merging with one, and returns the index of
+     * the child that now covers what child {@code i} covered.
+     *
+     * @param parent
+     *            the parent
+     * @param i
+     *            the index of the child
+     * @return the index of the child to descend into
+     * @updates parent
+     * @requires parent = $this.root or parent.count > minKeys
+     */
+    private int refill(Node parent, int i) {
+        int result = i;
+        if (parent.children[i].count == this.minKeys) {
+            if (i > 0 && parent.children[i - 1].count > this.minKeys) {
+                borrowFromLeft(parent, i);
+            } else if (i < parent.count
+                    && parent.children[i + 1].count > this.minKeys) {
+                borrowFromRight(parent, i);
+            } else if (i < parent.count) {
+                merge(parent, i);
+            } else {
+                merge(parent, i - 1);
+                result = i - 1;
+            }
+            if (parent == this.root && parent.count == 0) {
+                // The root's last element moved down: the tree gets shorter
+                this.root = parent.children[result];
+                result = -1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes {@code x} from the subtree rooted at {@code this.root} and
+     * returns the element removed.
+     *
+     * @param x
+     *            the element to remove
+     * @return the element of this equal to x
+     * @updates $this.root
+     * @requires x is in this
+     */
+    private T delete(T x) {
+        T result = null;
+        T target = x;
+        Node n = this.root;
+        boolean done = false;
+        while (!done) {
+            int i = this.search(n, target);
+            if (i >= 0 && result == null) {
+                result = this.key(n, i);
+            }
+            if (n.isLeaf()) {
+                assert i >= 0 : "Violation of: x is in this";
+                removeAt(n, i);
+                done = true;
+            } else if (i >= 0) {
+                /*
+                 * target is in an internal node: replace it by its predecessor
+                 * or successor, and go on to remove that from below; or, if
+                 * both neighbouring children are minimal, merge them around
+                 * target and remove it from the merged child
+                 */
+                Node left = n.children[i];
+                Node right = n.children[i + 1];
+                if (left.count > this.minKeys) {
+                    Node m = left;
+                    while (!m.isLeaf()) {
+                        m = m.children[m.count];
+                    }
+                    target = this.key(m, m.count - 1);
+                    n.keys[i] = target;
+                    n = left;
+                } else if (right.count > this.minKeys) {
+                    Node m = right;
+                    while (!m.isLeaf()) {
+                        m = m.children[0];
+                    }
+                    target = this.key(m, 0);
+                    n.keys[i] = target;
+                    n = right;
+                } else {
+                    merge(n, i);
+                    if (n == this.root && n.count == 0) {
+                        this.root = left;
+                    }
+                    n = left;
+                }
+            } else {
+                int c = this.refill(n, -(i + 1));
+                if (c < 0) {
+                    n = this.root;
+                } else {
+                    n = n.children[c];
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+        this.root = new Node(this.fanOut, true);
+        this.size = 0;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Set7() {
+        this(DEFAULT_FAN_OUT);
+    }
+
+    /**
+     * Constructor resulting in a B-tree whose nodes have up to {@code fanOut}
+     * children.
+     *
+     * @param fanOut
+     *            the maximum number of children of a node
+     * @requires fanOut is even and fanOut >= 4
+     */
+    public Set7(int fanOut) {
+        assert fanOut >= 4 : "Violation of: fanOut >= 4";
+        assert fanOut % 2 == 0 : "Violation of: fanOut is even";
+
+        this.fanOut = fanOut;
+        this.minKeys = fanOut / 2 - 1;
+        this.createNewRep();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Set<T> newInstance() {
+        try {
+            Constructor<?> c = this.getClass().getConstructor(int.class);
+            return (Set<T>) c.newInstance(this.fanOut);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(Set<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Set7<?> : ""
+                + "Violation of: source is of dynamic type Set7<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Set7<?>, and
+         * the ? must be T or the call would not have compiled.
+         */
+        Set7<T> localSource = (Set7<T>) source;
+        // Nodes are sized for their fan-out, so it comes with them
+        this.fanOut = localSource.fanOut;
+        this.minKeys = localSource.minKeys;
+        this.root = localSource.root;
+        this.size = localSource.size;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert!this.contains(x) : "Violation of: x is not in this";
+
+        if (this.root.count == this.fanOut - 1) {
+            // Full root: split it under a new root, and the tree gets taller
+            Node newRoot = new Node(this.fanOut, false);
+            newRoot.children[0] = this.root;
+            this.root = newRoot;
+            this.split(newRoot, 0);
+        }
+        Node n = this.root;
+        int i = -(this.search(n, x) + 1);
+        while (!n.isLeaf()) {
+            if (n.children[i].count == this.fanOut - 1) {
+                this.split(n, i);
+                if (x.compareTo(this.key(n, i)) > 0) {
+                    i++;
+                }
+            }
+            n = n.children[i];
+            i = -(this.search(n, x) + 1);
+        }
+        insertAt(n, i, x, null);
+        this.size++;
+    }
+
+    @Override
+    public final T remove(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.contains(x) : "Violation of: x is in this";
+
+        T result = this.delete(x);
+        this.size--;
+        return result;
+    }
+
+    @Override
+    public final T removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        // The smallest element is in the leftmost leaf
+        Node n = this.root;
+        while (!n.isLeaf()) {
+            n = n.children[0];
+        }
+        return this.remove(this.key(n, 0));
+    }
+
+    @Override
+    public final boolean contains(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        Node n = this.root;
+        int i = this.search(n, x);
+        while (i < 0 && !n.isLeaf()) {
+            n = n.children[-(i + 1)];
+            i = this.search(n, x);
+        }
+        return i >= 0;
+    }
+
+    @Override
+    public final int size() {
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new Set7Iterator();
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Reports the maximum number of children of a node of the B-tree
+     * representing {@code this}.
+     *
+     * @return the fan-out
+     */
+    public final int fanOut() {
+        return this.fanOut;
+    }
+
+    /**
+     * Reports the height of the B-tree representing {@code this}: the number
+     * of nodes on any path from the root to a leaf.
+     *
+     * @return the height of the tree
+     */
+    public final int height() {
+        int height = 1;
+        Node n = this.root;
+        while (!n.isLeaf()) {
+            n = n.children[0];
+            height++;
+        }
+        return height;
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Set7}: an
+     * in-order traversal with an explicit stack holding, for each node on the
+     * path from the root, the slot of its next element.
+     */
+    private final class Set7Iterator implements Iterator<T> {
+
+        /**
+         * Nodes on the current path; the top is the node of the next element.
+         */
+        private final Node[] nodes;
+
+        /**
+         * Slot of the next element of each node on {@code nodes}.
+         */
+        private final int[] slots;
+
+        /**
+         * Number of nodes on the stack.
+         */
+        private int depth;
+
+        /**
+         * No-argument constructor.
+         */
+        Set7Iterator() {
+            int height = Set7.this.height();
+            this.nodes = new Node[height];
+            this.slots = new int[height];
+            this.depth = 0;
+            this.pushLeftPath(Set7.this.root);
+            this.popFinished();
+        }
+
+        /**
+         * Pushes {@code n} and its chain of leftmost descendants onto the
+         * stack.
+         *
+         * @param n
+         *            the first node to push
+         */
+        private void pushLeftPath(Node n) {
+            Node current = n;
+            while (current != null) {
+                this.nodes[this.depth] = current;
+                this.slots[this.depth] = 0;
+                this.depth++;
+                if (current.isLeaf()) {
+                    current = null;
+                } else {
+                    current = current.children[0];
+                }
+            }
+        }
+
+        /**
+         * Pops the nodes at the top of the stack that have no elements left.
+         */
+        private void popFinished() {
+            while (this.depth > 0 && this.slots[this.depth - 1] == this.nodes[
+                    this.depth - 1].count) {
+                this.nodes[this.depth - 1] = null;
+                this.depth--;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.depth > 0;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            Node n = this.nodes[this.depth - 1];
+            int i = this.slots[this.depth - 1];
+            T x = Set7.this.key(n, i);
+            this.slots[this.depth - 1] = i + 1;
+            if (n.isLeaf()) {
+                this.popFinished();
+            } else {
+                this.pushLeftPath(n.children[i + 1]);
+            }
+            return x;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+    }
+
+}
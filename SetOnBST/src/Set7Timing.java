@@ -0,0 +1,164 @@
+import java.util.Arrays;
+import java.util.Random;
+
+import components.set.Set;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Compares lookup and iteration throughput of {@code Set7}, the B-tree, with
+ * {@code Set3}, the binary search tree, at sizes where the binary tree no
+ * longer fits in cache, for both {@code Integer} and {@code String} elements.
+ * {@code Set3} is bulk loaded with {@code fromSorted}, so it is perfectly
+ * balanced and the comparison is with its best shape.
+ *
+ * <p>
+ * The 10,000,000-element runs need a large heap, e.g. {@code -Xmx8g}.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class Set7Timing {
+
+    /**
+     * Set sizes to time.
+     */
+    private static final int[] SIZES = { 1_000_000, 10_000_000 };
+
+    /**
+     * Number of lookups timed at each size.
+     */
+    private static final int LOOKUPS = 1_000_000;
+
+    /**
+     * Number of untimed rounds of lookups and iteration before the timed one,
+     * to let the JIT compile the hot paths.
+     */
+    private static final int WARMUP_RUNS = 1;
+
+    /**
+     * Seed for the random lookups, so runs are comparable.
+     */
+    private static final long SEED = 2231;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private Set7Timing() {
+    }
+
+    /**
+     * Returns the average number of nanoseconds per call since {@code start}.
+     *
+     * @param start
+     *            the starting time, from {@code System.nanoTime}
+     * @param calls
+     *            the number of calls
+     * @return nanoseconds per call
+     */
+    private static String perCall(long start, int calls) {
+        return String.format("%.1f",
+                (System.nanoTime() - start) / (double) calls);
+    }
+
+    /**
+     * Times {@code LOOKUPS} calls of {@code s.contains} on the elements of
+     * {@code probes} and a full iteration of {@code s}, and reports them.
+     *
+     * @param <T>
+     *            type of elements
+     * @param out
+     *            the output stream
+     * @param label
+     *            the first columns of the report line
+     * @param s
+     *            the set
+     * @param probes
+     *            the elements to look up
+     * @updates out.content
+     */
+    private static <T extends Comparable<T>> void time(SimpleWriter out,
+            String label, Set<T> s, T[] probes) {
+        String lookup = "";
+        String iteration = "";
+        int found = 0;
+        for (int r = 0; r <= WARMUP_RUNS; r++) {
+            long start = System.nanoTime();
+            for (T x : probes) {
+                if (s.contains(x)) {
+                    found++;
+                }
+            }
+            lookup = perCall(start, probes.length);
+            start = System.nanoTime();
+            int seen = 0;
+            for (T x : s) {
+                if (x != null) {
+                    seen++;
+                }
+            }
+            iteration = perCall(start, seen);
+        }
+        // Print found so the lookups cannot be optimized away
+        out.println(label + "\t" + lookup + "\t" + iteration + "\t" + found);
+    }
+
+    /**
+     * Builds {@code Set3} and {@code Set7} from {@code sorted}, one at a time
+     * to keep the heap small, and times each.
+     *
+     * @param <T>
+     *            type of elements
+     * @param out
+     *            the output stream
+     * @param type
+     *            the name of the element type, for the report
+     * @param sorted
+     *            the elements, in increasing order
+     * @updates out.content
+     */
+    private static <T extends Comparable<T>> void compare(SimpleWriter out,
+            String type, T[] sorted) {
+        Random random = new Random(SEED);
+        T[] probes = Arrays.copyOf(sorted, LOOKUPS);
+        for (int i = 0; i < LOOKUPS; i++) {
+            probes[i] = sorted[random.nextInt(sorted.length)];
+        }
+        String label = sorted.length + "\t" + type;
+        Set<T> set3 = Set3.fromSorted(Arrays.asList(sorted));
+        time(out, label + "\tSet3", set3, probes);
+        set3 = null;
+        Set<T> set7 = new Set7<T>();
+        for (T x : sorted) {
+            set7.add(x);
+        }
+        time(out, label + "\tSet7", set7, probes);
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        out.println("size\ttype\tset\tlookup (ns)\titeration (ns/element)"
+                + "\tfound");
+        for (int n : SIZES) {
+            Integer[] integers = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                integers[i] = i;
+            }
+            compare(out, "Integer", integers);
+            integers = null;
+            // Zero-padded, so string order is numeric order
+            String[] strings = new String[n];
+            for (int i = 0; i < n; i++) {
+                strings[i] = String.format("%09d", i);
+            }
+            compare(out, "String", strings);
+        }
+        out.close();
+    }
+
+}
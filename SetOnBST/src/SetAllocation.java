@@ -0,0 +1,135 @@
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import components.set.Set;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Measures how many bytes {@code Set3} and {@code Set5} allocate per
+ * {@code add} and per {@code contains}, using the per-thread allocation
+ * counter of the HotSpot JVM, together with the time per call.
+ *
+ * <p>
+ * Run it with assertions disabled: the {@code contains} in the precondition
+ * check of {@code add} would otherwise be counted as part of {@code add}.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class SetAllocation {
+
+    /**
+     * Set sizes to measure.
+     */
+    private static final int[] SIZES = { 10_000, 100_000, 1_000_000 };
+
+    /**
+     * Number of {@code contains} calls measured at each size.
+     */
+    private static final int LOOKUPS = 100_000;
+
+    /**
+     * Seed for the random element order, so runs are comparable.
+     */
+    private static final long SEED = 2231;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SetAllocation() {
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the current thread.
+     *
+     * @return bytes allocated by this thread
+     */
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean())
+                        .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Returns {@code 0..n-1} in random order.
+     *
+     * @param n
+     *            the number of elements
+     * @param random
+     *            the source of randomness
+     * @return the shuffled elements
+     */
+    private static Integer[] shuffled(int n, Random random) {
+        Integer[] elements = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            elements[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Integer tmp = elements[i];
+            elements[i] = elements[j];
+            elements[j] = tmp;
+        }
+        return elements;
+    }
+
+    /**
+     * Adds {@code elements} to {@code s}, then looks up the first
+     * {@code LOOKUPS} of them, and reports bytes and nanoseconds per call.
+     *
+     * @param s
+     *            the set to measure
+     * @param elements
+     *            the elements to add
+     * @return a line of bytes/add, ns/add, bytes/contains, ns/contains
+     * @updates s
+     * @requires s = {}
+     */
+    private static String measure(Set<Integer> s, Integer[] elements) {
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (Integer x : elements) {
+            s.add(x);
+        }
+        long addNanos = System.nanoTime() - start;
+        long addBytes = allocatedBytes() - bytes;
+        int lookups = Math.min(LOOKUPS, elements.length);
+        int found = 0;
+        bytes = allocatedBytes();
+        start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            if (s.contains(elements[i])) {
+                found++;
+            }
+        }
+        long containsNanos = System.nanoTime() - start;
+        long containsBytes = allocatedBytes() - bytes;
+        assert found == lookups : "Violation of: every element was found";
+        return String.format("%.1f\t%.0f\t%.1f\t%.0f",
+                addBytes / (double) elements.length,
+                addNanos / (double) elements.length,
+                containsBytes / (double) lookups,
+                containsNanos / (double) lookups);
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        Random random = new Random(SEED);
+        out.println("set\tsize\tB/add\tns/add\tB/contains\tns/contains");
+        for (int n : SIZES) {
+            Integer[] elements = shuffled(n, random);
+            out.println("Set3\t" + n + "\t"
+                    + measure(new Set3<Integer>(), elements));
+            out.println("Set5\t" + n + "\t"
+                    + measure(new Set5<Integer>(), elements));
+        }
+        out.close();
+    }
+
+}
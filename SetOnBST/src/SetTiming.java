@@ -0,0 +1,128 @@
+import java.util.Random;
+
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Times {@code Set3} kernel operations at increasing sizes, with elements
+ * added in random order, and reports the average cost and number of
+ * comparisons per call, so that changes to the search paths can be compared by
+ * running this program before and after. It also shows what sorted input does
+ * to the shape of the tree.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class SetTiming {
+
+    /**
+     * Set sizes to time.
+     */
+    private static final int[] SIZES = { 1_000, 10_000, 100_000 };
+
+    /**
+     * Size of the set built from sorted input; kept small because the
+     * recursive helpers go as deep as the tree is high.
+     */
+    private static final int SORTED_SIZE = 2_000;
+
+    /**
+     * Seed for the random element order, so runs are comparable.
+     */
+    private static final long SEED = 2231;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SetTiming() {
+    }
+
+    /**
+     * Returns {@code 0..n-1} in random order.
+     *
+     * @param n
+     *            the number of elements
+     * @param random
+     *            the source of randomness
+     * @return the shuffled elements
+     */
+    private static Integer[] shuffled(int n, Random random) {
+        Integer[] elements = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            elements[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Integer tmp = elements[i];
+            elements[i] = elements[j];
+            elements[j] = tmp;
+        }
+        return elements;
+    }
+
+    /**
+     * Returns the average number of nanoseconds per call since {@code start}.
+     *
+     * @param start
+     *            the starting time, from {@code System.nanoTime}
+     * @param calls
+     *            the number of calls
+     * @return nanoseconds per call
+     */
+    private static String perCall(long start, int calls) {
+        return String.format("%.0f",
+                (System.nanoTime() - start) / (double) calls);
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        Random random = new Random(SEED);
+        out.println("size\theight\tadd (ns)\tcontains (ns)\tcmp/contains"
+                + "\tremove (ns)");
+        for (int n : SIZES) {
+            Integer[] elements = shuffled(n, random);
+            Set3<Integer> s = new Set3<Integer>();
+            long start = System.nanoTime();
+            for (Integer x : elements) {
+                s.add(x);
+            }
+            String add = perCall(start, n);
+            int height = s.height();
+            long totalComparisons = 0;
+            start = System.nanoTime();
+            for (Integer x : elements) {
+                s.contains(x);
+                totalComparisons += s.comparisonsInLastOperation();
+            }
+            String contains = perCall(start, n);
+            start = System.nanoTime();
+            for (Integer x : elements) {
+                s.remove(x);
+            }
+            String remove = perCall(start, n);
+            out.println(n + "\t" + height + "\t" + add + "\t" + contains + "\t"
+                    + String.format("%.1f", totalComparisons / (double) n)
+                    + "\t" + remove);
+        }
+        /*
+         * Sorted input turns the tree into a list
+         */
+        Set3<Integer> s = new Set3<Integer>();
+        for (int i = 0; i < SORTED_SIZE; i++) {
+            s.add(i);
+        }
+        s.contains(SORTED_SIZE - 1);
+        out.println();
+        out.println("sorted input, size " + SORTED_SIZE + ": height "
+                + s.height() + ", " + s.comparisonsInLastOperation()
+                + " comparisons to find the largest, degenerate: "
+                + s.isDegenerate());
+        out.close();
+    }
+
+}
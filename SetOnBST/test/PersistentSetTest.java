@@ -0,0 +1,145 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code PersistentSet} and {@code PublishedSet}.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ *
+ */
+public class PersistentSetTest {
+
+    /**
+     * Number of elements in the large tests.
+     */
+    private static final int MANY = 100_000;
+
+    /**
+     * Returns 1.4405 log2(n + 2) rounded up, the greatest height of an AVL
+     * tree with {@code n} nodes.
+     *
+     * @param n
+     *            the number of nodes
+     * @return the bound
+     */
+    private static int avlBound(int n) {
+        final double factor = 1.4405;
+        return (int) Math.ceil(factor * Math.log(n + 2) / Math.log(2));
+    }
+
+    @Test
+    public final void testEmpty() {
+        PersistentSet<String> s = PersistentSet.empty();
+        assertEquals(0, s.size());
+        assertEquals(false, s.contains("a"));
+        assertEquals(false, s.iterator().hasNext());
+        assertEquals("{}", s.toString());
+    }
+
+    @Test
+    public final void testOldVersionsUnchanged() {
+        PersistentSet<String> v0 = PersistentSet.empty();
+        PersistentSet<String> v1 = v0.add("m");
+        PersistentSet<String> v2 = v1.add("c").add("x");
+        PersistentSet<String> v3 = v2.remove("m");
+        assertEquals("{}", v0.toString());
+        assertEquals("{m}", v1.toString());
+        assertEquals("{c,m,x}", v2.toString());
+        assertEquals("{c,x}", v3.toString());
+        assertEquals(true, v2.contains("m"));
+        assertEquals(false, v3.contains("m"));
+    }
+
+    @Test
+    public final void testNoChangeReturnsSameVersion() {
+        PersistentSet<String> s = PersistentSet.<String> empty().add("a");
+        assertTrue(s.add("a") == s);
+        assertTrue(s.remove("b") == s);
+        assertTrue(s.remove("a") == PersistentSet.<String> empty());
+    }
+
+    @Test
+    public final void testSortedInputStaysBalanced() {
+        PersistentSet<Integer> s = PersistentSet.empty();
+        for (int i = 0; i < MANY; i++) {
+            s = s.add(i);
+        }
+        assertEquals(MANY, s.size());
+        assertTrue(s.height() <= avlBound(MANY));
+        PersistentSet<Integer> half = s;
+        for (int i = 0; i < MANY; i += 2) {
+            half = half.remove(i);
+        }
+        assertEquals(MANY / 2, half.size());
+        assertTrue(half.height() <= avlBound(MANY / 2));
+        assertEquals(MANY, s.size());
+        int expected = 1;
+        for (Integer x : half) {
+            assertEquals(expected, x.intValue());
+            expected += 2;
+        }
+    }
+
+    @Test
+    public final void testReadersSeeConsistentSnapshots()
+            throws InterruptedException {
+        final int n = 20_000;
+        PublishedSet<Integer> published = new PublishedSet<Integer>();
+        final boolean[] failed = { false };
+        Thread reader = new Thread(() -> {
+            int lastSize = 0;
+            while (lastSize < n) {
+                PersistentSet<Integer> snapshot = published.snapshot();
+                /*
+                 * The writer adds 0, 1, 2, ... in order, so a consistent
+                 * snapshot of size k is exactly 0..k-1
+                 */
+                int expected = 0;
+                Iterator<Integer> it = snapshot.iterator();
+                while (it.hasNext()) {
+                    if (it.next() != expected) {
+                        failed[0] = true;
+                    }
+                    expected++;
+                }
+                if (expected != snapshot.size() || expected < lastSize) {
+                    failed[0] = true;
+                }
+                lastSize = expected;
+            }
+        });
+        reader.start();
+        for (int i = 0; i < n; i++) {
+            published.add(i);
+        }
+        reader.join();
+        assertEquals(false, failed[0]);
+        assertEquals(n, published.snapshot().size());
+    }
+
+    @Test
+    public final void testConcurrentWriters() throws InterruptedException {
+        final int perThread = 5_000;
+        final int threads = 4;
+        PublishedSet<Integer> published = new PublishedSet<Integer>();
+        Thread[] writers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    published.add(i * threads + offset);
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(perThread * threads, published.snapshot().size());
+    }
+
+}
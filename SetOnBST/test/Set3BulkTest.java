@@ -0,0 +1,156 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * JUnit test fixture for the merge-based bulk operations of {@code Set3}.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ *
+ */
+public class Set3BulkTest {
+
+    /**
+     * Number of elements in the large-set tests.
+     */
+    private static final int MANY = 10_000;
+
+    /**
+     * Adds {@code from}, {@code from + step}, ... below {@code to} to both
+     * {@code s} and {@code ref}.
+     *
+     * @param s
+     *            the set under test
+     * @param ref
+     *            the reference set
+     * @param from
+     *            the first element
+     * @param to
+     *            the bound, exclusive
+     * @param step
+     *            the step between elements
+     */
+    private static void fill(Set<Integer> s, Set<Integer> ref, int from,
+            int to, int step) {
+        for (int i = from; i < to; i += step) {
+            s.add(i);
+            ref.add(i);
+        }
+    }
+
+    /**
+     * Returns ceiling(log2(n + 1)), the height of a perfectly balanced tree of
+     * {@code n} nodes.
+     *
+     * @param n
+     *            the number of nodes
+     * @return the height
+     */
+    private static int balancedHeight(int n) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(n);
+    }
+
+    @Test
+    public final void testAddSet3() {
+        Set3<Integer> s = new Set3<Integer>();
+        Set3<Integer> t = new Set3<Integer>();
+        Set<Integer> sRef = new Set1L<Integer>();
+        Set<Integer> tRef = new Set1L<Integer>();
+        fill(s, sRef, 0, MANY, 2);
+        fill(t, tRef, 0, MANY, 3);
+        s.add(t);
+        sRef.add(tRef);
+        assertEquals(sRef, s);
+        assertEquals(tRef, t);
+        assertEquals(balancedHeight(s.size()), s.height());
+        assertEquals(balancedHeight(t.size()), t.height());
+    }
+
+    @Test
+    public final void testRemoveSet3() {
+        Set3<Integer> s = new Set3<Integer>();
+        Set3<Integer> t = new Set3<Integer>();
+        Set<Integer> sRef = new Set1L<Integer>();
+        Set<Integer> tRef = new Set1L<Integer>();
+        fill(s, sRef, 0, MANY, 2);
+        fill(t, tRef, MANY / 2, 2 * MANY, 3);
+        Set<Integer> removed = s.remove(t);
+        Set<Integer> removedRef = sRef.remove(tRef);
+        assertEquals(sRef, s);
+        assertEquals(tRef, t);
+        assertEquals(removedRef, removed);
+        assertEquals(balancedHeight(s.size()), s.height());
+    }
+
+    @Test
+    public final void testRetainSet3() {
+        Set3<Integer> s = new Set3<Integer>();
+        Set3<Integer> t = new Set3<Integer>();
+        Set<Integer> ref = new Set1L<Integer>();
+        Set<Integer> tRef = new Set1L<Integer>();
+        fill(s, new Set1L<Integer>(), 0, MANY, 2);
+        fill(t, tRef, 0, MANY, 3);
+        for (int i = 0; i < MANY; i += 6) {
+            ref.add(i);
+        }
+        s.retain(t);
+        assertEquals(ref, s);
+        assertEquals(tRef, t);
+        assertEquals(balancedHeight(s.size()), s.height());
+    }
+
+    @Test
+    public final void testMergeIsLinear() {
+        Set3<Integer> s = new Set3<Integer>();
+        Set3<Integer> t = new Set3<Integer>();
+        fill(s, new Set1L<Integer>(), 0, MANY, 1);
+        fill(t, new Set1L<Integer>(), MANY / 2, MANY + MANY / 2, 1);
+        s.add(t);
+        assertTrue(s.comparisonsInLastOperation() <= 2 * MANY);
+        assertEquals(MANY + MANY / 2, s.size());
+        assertEquals(MANY / 2, t.size());
+    }
+
+    @Test
+    public final void testEmptyOperands() {
+        Set3<Integer> s = new Set3<Integer>();
+        Set3<Integer> t = new Set3<Integer>();
+        s.add(t);
+        assertEquals(0, s.size());
+        assertEquals(0, t.size());
+        t.add(1);
+        assertEquals(0, s.remove(t).size());
+        s.retain(t);
+        assertEquals(0, s.size());
+        s.add(t);
+        assertEquals(1, s.size());
+        assertEquals(0, t.size());
+    }
+
+    @Test
+    public final void testOtherSetTypes() {
+        Set3<Integer> s = new Set3<Integer>();
+        Set<Integer> sRef = new Set1L<Integer>();
+        Set<Integer> t = new Set1L<Integer>();
+        Set<Integer> tRef = new Set1L<Integer>();
+        fill(s, sRef, 0, 100, 2);
+        fill(t, tRef, 0, 100, 5);
+        s.retain(t);
+        Set<Integer> expected = new Set1L<Integer>();
+        for (int i = 0; i < 100; i += 10) {
+            expected.add(i);
+        }
+        assertEquals(expected, s);
+        assertEquals(tRef, t);
+        assertEquals(expected, s.remove(t));
+        assertEquals(0, s.size());
+        s.add(t);
+        assertEquals(tRef, s);
+        assertEquals(0, t.size());
+    }
+
+}
@@ -0,0 +1,84 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * JUnit test fixture for {@code Set3.fromSorted}.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ *
+ */
+public class Set3FromSortedTest {
+
+    /**
+     * Number of elements in the large-input test.
+     */
+    private static final int MANY = 500_000;
+
+    /**
+     * Returns a queue with the given entries.
+     *
+     * @param args
+     *            the entries
+     * @return the queue
+     */
+    private static Queue<String> queue(String... args) {
+        Queue<String> q = new Queue1L<String>();
+        for (String x : args) {
+            q.enqueue(x);
+        }
+        return q;
+    }
+
+    @Test
+    public final void testEmpty() {
+        Set3<String> s = Set3.fromSorted(queue());
+        assertEquals(0, s.size());
+        assertEquals(0, s.height());
+    }
+
+    @Test
+    public final void testSeveral() {
+        Queue<String> q = queue("apple", "banana", "cherry", "date", "fig");
+        Set3<String> s = Set3.fromSorted(q);
+        Set<String> ref = new Set1L<String>();
+        for (String x : q) {
+            ref.add(x);
+        }
+        assertEquals(ref, s);
+        assertEquals(3, s.height());
+        assertEquals(5, q.length());
+        s.add("elderberry");
+        assertEquals("elderberry", s.select(4));
+    }
+
+    @Test
+    public final void testLargeSortedInputIsBalanced() {
+        Queue<Integer> q = new Queue1L<Integer>();
+        for (int i = 0; i < MANY; i++) {
+            q.enqueue(i);
+        }
+        Set3<Integer> s = Set3.fromSorted(q);
+        assertEquals(MANY, s.size());
+        assertEquals(Integer.SIZE - Integer.numberOfLeadingZeros(MANY),
+                s.height());
+        assertEquals(true, s.contains(MANY - 1));
+        assertEquals(false, s.contains(MANY));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public final void testDuplicate() {
+        Set3.fromSorted(queue("a", "b", "b", "c"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public final void testOutOfOrder() {
+        Set3.fromSorted(queue("a", "c", "b"));
+    }
+
+}
@@ -0,0 +1,79 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for the comparison counts and shape reports of
+ * {@code Set3}.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ *
+ */
+public class Set3InstrumentationTest {
+
+    /**
+     * Returns a {@code Set3} holding {@code 0..n-1}, added in the order of a
+     * perfectly balanced tree.
+     *
+     * @param n
+     *            the number of elements, one less than a power of 2
+     * @return the set
+     */
+    private static Set3<Integer> balanced(int n) {
+        Set3<Integer> s = new Set3<Integer>();
+        for (int step = (n + 1) / 2; step > 0; step /= 2) {
+            for (int i = step - 1; i < n; i += 2 * step) {
+                s.add(i);
+            }
+        }
+        return s;
+    }
+
+    @Test
+    public final void testContainsComparisonsBalanced() {
+        Set3<Integer> s = balanced(1023);
+        assertEquals(10, s.height());
+        for (int i = 0; i < 1023; i++) {
+            assertEquals(true, s.contains(i));
+            assertTrue(s.comparisonsInLastOperation() <= 10);
+        }
+        assertEquals(false, s.contains(-1));
+        assertEquals(10, s.comparisonsInLastOperation());
+        assertEquals(false, s.isDegenerate());
+    }
+
+    @Test
+    public final void testAddAndRemoveComparisons() {
+        Set3<Integer> s = balanced(7);
+        s.add(100);
+        assertEquals(3, s.comparisonsInLastOperation());
+        assertEquals(Integer.valueOf(3), s.remove(3));
+        assertEquals(1, s.comparisonsInLastOperation());
+        assertEquals(Integer.valueOf(100), s.remove(100));
+        assertEquals(4, s.comparisonsInLastOperation());
+    }
+
+    @Test
+    public final void testEmpty() {
+        Set3<Integer> s = new Set3<Integer>();
+        assertEquals(0, s.height());
+        assertEquals(0, s.comparisonsInLastOperation());
+        assertEquals(false, s.contains(1));
+        assertEquals(0, s.comparisonsInLastOperation());
+        assertEquals(false, s.isDegenerate());
+    }
+
+    @Test
+    public final void testSortedInputIsDegenerate() {
+        Set3<Integer> s = new Set3<Integer>();
+        for (int i = 0; i < 100; i++) {
+            s.add(i);
+        }
+        assertEquals(100, s.height());
+        assertEquals(true, s.isDegenerate());
+        s.contains(99);
+        assertEquals(100, s.comparisonsInLastOperation());
+    }
+
+}
@@ -0,0 +1,196 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for the in-order iterator of {@code Set3}.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ *
+ */
+public class Set3IteratorTest {
+
+    /**
+     * Returns a {@code Set3<Integer>} holding {@code 0..n-1}, added in a
+     * scrambled order.
+     *
+     * @param n
+     *            the number of elements
+     * @return the set
+     */
+    private static Set3<Integer> scrambled(int n) {
+        final int stride = 7919;
+        Set3<Integer> s = new Set3<Integer>();
+        for (int i = 0; i < n; i++) {
+            s.add((int) ((long) i * stride % n));
+        }
+        return s;
+    }
+
+    /**
+     * Integer key that counts the calls to {@code compareTo} on any key.
+     */
+    private static final class CountingKey
+            implements Comparable<CountingKey> {
+
+        /**
+         * Number of calls to {@code compareTo} so far.
+         */
+        private static long comparisons = 0;
+
+        /**
+         * Value of this key.
+         */
+        private final int value;
+
+        /**
+         * Constructor.
+         *
+         * @param value
+         *            the value of the key
+         */
+        CountingKey(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(CountingKey other) {
+            comparisons++;
+            return Integer.compare(this.value, other.value);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof CountingKey
+                    && ((CountingKey) obj).value == this.value;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.value;
+        }
+    }
+
+    /**
+     * Iterates over a degenerate tree of {@code 0..n-1} added in the given
+     * direction, checking the order and that the walk makes at most
+     * {@code n} comparisons, not one search per element.
+     *
+     * @param increasing
+     *            whether the elements are added in increasing order
+     */
+    private static void assertLinearWalk(boolean increasing) {
+        final int n = 2_000;
+        Set3<CountingKey> s = new Set3<CountingKey>();
+        for (int i = 0; i < n; i++) {
+            int value = i;
+            if (!increasing) {
+                value = n - 1 - i;
+            }
+            s.add(new CountingKey(value));
+        }
+        assertEquals(n, s.height());
+        CountingKey.comparisons = 0;
+        int expected = 0;
+        for (CountingKey x : s) {
+            assertEquals(expected, x.value);
+            expected++;
+        }
+        assertEquals(n, expected);
+        /*
+         * Searching from the root for each successor would take about
+         * n^2 / 2 = 2,000,000 comparisons
+         */
+        assertEquals(true, CountingKey.comparisons <= n);
+        assertEquals(n, s.height());
+        assertEquals(true, s.contains(new CountingKey(n - 1)));
+    }
+
+    @Test
+    public final void testDegenerateIncreasingIsLinear() {
+        assertLinearWalk(true);
+    }
+
+    @Test
+    public final void testDegenerateDecreasingIsLinear() {
+        assertLinearWalk(false);
+    }
+
+    @Test
+    public final void testInterleavedIterators() {
+        final int n = 300;
+        Set3<Integer> s = scrambled(n);
+        Iterator<Integer> a = s.iterator();
+        Iterator<Integer> b = s.iterator();
+        for (int i = 0; i < n; i++) {
+            assertEquals(i, a.next().intValue());
+            assertEquals(n, s.size());
+            assertEquals(i, b.next().intValue());
+        }
+        assertEquals(false, a.hasNext());
+        assertEquals(false, b.hasNext());
+        assertEquals(scrambled(n), s);
+    }
+
+    @Test
+    public final void testEmpty() {
+        Set3<Integer> s = new Set3<Integer>();
+        assertEquals(false, s.iterator().hasNext());
+    }
+
+    @Test
+    public final void testSortedOrder() {
+        final int n = 1000;
+        Set3<Integer> s = scrambled(n);
+        int expected = 0;
+        for (Integer x : s) {
+            assertEquals(expected, x.intValue());
+            expected++;
+        }
+        assertEquals(n, expected);
+        assertEquals(n, s.size());
+    }
+
+    @Test
+    public final void testTreeIntactDuringIteration() {
+        final int n = 200;
+        Set3<Integer> s = scrambled(n);
+        Iterator<Integer> it = s.iterator();
+        for (int i = 0; i < n / 2; i++) {
+            assertEquals(i, it.next().intValue());
+            assertEquals(true, s.contains(n - 1 - i));
+            assertEquals(true, s.contains(i));
+        }
+        assertEquals(n / 2, it.next().intValue());
+    }
+
+    @Test
+    public final void testAbandonEarly() {
+        Set3<Integer> s = scrambled(100);
+        Iterator<Integer> it = s.iterator();
+        assertEquals(0, it.next().intValue());
+        assertEquals(1, it.next().intValue());
+        assertEquals(100, s.size());
+        assertEquals(Integer.valueOf(99), s.remove(99));
+        assertEquals(Integer.valueOf(0), s.removeAny());
+        assertEquals(98, s.size());
+    }
+
+    @Test
+    public final void testStrings() {
+        Set3<String> s = new Set3<String>();
+        s.add("pear");
+        s.add("apple");
+        s.add("fig");
+        s.add("zucchini");
+        s.add("banana");
+        StringBuilder sb = new StringBuilder();
+        for (String x : s) {
+            sb.append(x).append(' ');
+        }
+        assertEquals("apple banana fig pear zucchini ", sb.toString());
+    }
+
+}
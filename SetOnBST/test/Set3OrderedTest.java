@@ -0,0 +1,120 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import components.queue.Queue;
+
+/**
+ * JUnit test fixture for the ordered queries of {@code Set3}.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ *
+ */
+public class Set3OrderedTest {
+
+    /**
+     * Returns a {@code Set3<String>} with the given elements, added in the
+     * order given.
+     *
+     * @param args
+     *            the elements
+     * @return the set
+     */
+    private static Set3<String> create(String... args) {
+        Set3<String> s = new Set3<String>();
+        for (String x : args) {
+            s.add(x);
+        }
+        return s;
+    }
+
+    /**
+     * Returns the entries of {@code q} separated by commas.
+     *
+     * @param q
+     *            the queue
+     * @return the entries as a string
+     */
+    private static String join(Queue<String> q) {
+        StringBuilder sb = new StringBuilder();
+        for (String x : q) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(x);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public final void testFloorAndCeiling() {
+        Set3<String> s = create("m", "d", "t", "b", "g", "p", "w");
+        assertEquals("g", s.floor("h"));
+        assertEquals("g", s.floor("g"));
+        assertEquals("w", s.floor("z"));
+        assertEquals(null, s.floor("a"));
+        assertEquals("m", s.ceiling("h"));
+        assertEquals("m", s.ceiling("m"));
+        assertEquals("b", s.ceiling("a"));
+        assertEquals(null, s.ceiling("x"));
+    }
+
+    @Test
+    public final void testEmpty() {
+        Set3<String> s = create();
+        assertEquals(null, s.floor("a"));
+        assertEquals(null, s.ceiling("a"));
+        assertEquals(0, s.rank("a"));
+        assertEquals("", join(s.range("a", "z")));
+    }
+
+    @Test
+    public final void testRankAndSelect() {
+        Set3<String> s = create("m", "d", "t", "b", "g", "p", "w");
+        String[] sorted = { "b", "d", "g", "m", "p", "t", "w" };
+        for (int k = 0; k < sorted.length; k++) {
+            assertEquals(sorted[k], s.select(k));
+            assertEquals(k, s.rank(sorted[k]));
+        }
+        assertEquals(0, s.rank("a"));
+        assertEquals(3, s.rank("h"));
+        assertEquals(7, s.rank("z"));
+        assertEquals(7, s.size());
+    }
+
+    @Test
+    public final void testRange() {
+        Set3<String> s = create("pear", "apple", "peach", "plum", "apricot",
+                "banana", "pea");
+        assertEquals("pea,peach,pear", join(s.range("pe", "pe\uffff")));
+        assertEquals("apple,apricot,banana", join(s.range("a", "c")));
+        assertEquals("banana", join(s.range("banana", "banana")));
+        assertEquals("", join(s.range("q", "z")));
+        assertEquals(7, s.size());
+    }
+
+    @Test
+    public final void testLogarithmicOnBalancedTree() {
+        Set3<Integer> s = new Set3<Integer>();
+        final int n = 1023;
+        for (int step = (n + 1) / 2; step > 0; step /= 2) {
+            for (int i = step - 1; i < n; i += 2 * step) {
+                s.add(2 * i);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            assertEquals(Integer.valueOf(2 * i), s.select(i));
+            assertEquals(i, s.rank(2 * i));
+            assertTrue(s.comparisonsInLastOperation() <= 10);
+            assertEquals(Integer.valueOf(2 * i), s.floor(2 * i + 1));
+            assertTrue(s.comparisonsInLastOperation() <= 10);
+            assertEquals(Integer.valueOf(2 * i), s.ceiling(2 * i - 1));
+            assertTrue(s.comparisonsInLastOperation() <= 10);
+        }
+        Queue<Integer> page = s.range(200, 218);
+        assertEquals(10, page.length());
+        assertTrue(s.comparisonsInLastOperation() <= 2 * (10 + 2 * 10));
+    }
+
+}
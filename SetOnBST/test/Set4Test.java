@@ -0,0 +1,84 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * Customized JUnit test fixture for {@code Set4}, with extra tests that the
+ * tree stays balanced on sorted input.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ *
+ */
+public class Set4Test extends SetTest {
+
+    /**
+     * Number of elements in the balance tests; far more than unbalanced
+     * recursion could handle.
+     */
+    private static final int MANY = 100_000;
+
+    @Override
+    protected final Set<String> constructorTest() {
+        return new Set4<String>();
+    }
+
+    @Override
+    protected final Set<String> constructorRef() {
+        return new Set1L<String>();
+    }
+
+    /**
+     * Returns the greatest height an AVL tree with {@code n} nodes can have,
+     * rounded up: 1.4405 log2(n + 2).
+     *
+     * @param n
+     *            the number of nodes
+     * @return the bound
+     */
+    private static int avlBound(int n) {
+        final double factor = 1.4405;
+        return (int) Math.ceil(factor * Math.log(n + 2) / Math.log(2));
+    }
+
+    @Test
+    public final void testSortedInputStaysBalanced() {
+        Set4<Integer> s = new Set4<Integer>();
+        for (int i = 0; i < MANY; i++) {
+            s.add(i);
+        }
+        assertEquals(MANY, s.size());
+        assertTrue(s.height() <= avlBound(MANY));
+        int expected = 0;
+        for (Integer x : s) {
+            assertEquals(expected, x.intValue());
+            expected++;
+        }
+    }
+
+    @Test
+    public final void testReverseInputAndRemovalsStayBalanced() {
+        Set4<Integer> s = new Set4<Integer>();
+        for (int i = MANY - 1; i >= 0; i--) {
+            s.add(i);
+        }
+        for (int i = 0; i < MANY; i += 2) {
+            assertEquals(Integer.valueOf(i), s.remove(i));
+        }
+        assertEquals(MANY / 2, s.size());
+        assertTrue(s.height() <= avlBound(MANY / 2));
+        for (int i = 0; i < MANY; i++) {
+            assertEquals(i % 2 == 1, s.contains(i));
+        }
+        while (s.size() > MANY / 4) {
+            s.removeAny();
+        }
+        assertTrue(s.height() <= avlBound(MANY / 4));
+        assertEquals(false, s.contains(MANY / 2 - 1));
+        assertEquals(true, s.contains(MANY - 1));
+    }
+
+}
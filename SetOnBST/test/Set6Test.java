@@ -0,0 +1,172 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * Customized JUnit test fixture for {@code Set6}, with extra tests of sorted
+ * iteration and of many threads updating one set.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ *
+ */
+public class Set6Test extends SetTest {
+
+    /**
+     * Number of threads in the concurrent tests.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * Number of elements each thread works on in the concurrent tests.
+     */
+    private static final int PER_THREAD = 20_000;
+
+    @Override
+    protected final Set<String> constructorTest() {
+        return new Set6<String>();
+    }
+
+    @Override
+    protected final Set<String> constructorRef() {
+        return new Set1L<String>();
+    }
+
+    /**
+     * Runs {@code body} in {@code THREADS} threads, passing each its index,
+     * and waits for all of them; then rethrows the first failure of any
+     * thread, so that a failed assertion in a thread fails the test.
+     *
+     * @param body
+     *            the work of one thread, given its index
+     */
+    private static void runThreads(IntConsumer body) {
+        Thread[] threads = new Thread[THREADS];
+        Throwable[] failures = new Throwable[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            int index = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    body.accept(index);
+                } catch (Throwable e) {
+                    failures[index] = e;
+                }
+            });
+            threads[t].start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        // join makes each thread's write to failures visible here
+        for (int t = 0; t < THREADS; t++) {
+            if (failures[t] != null) {
+                throw new AssertionError("Thread " + t + " failed",
+                        failures[t]);
+            }
+        }
+    }
+
+    @Test
+    public final void testIterationIsSorted() {
+        Set6<Integer> s = new Set6<Integer>();
+        final int n = 1000;
+        for (int i = n - 1; i >= 0; i--) {
+            s.add(i);
+        }
+        int expected = 0;
+        for (Integer x : s) {
+            assertEquals(expected, x.intValue());
+            expected++;
+        }
+        assertEquals(n, expected);
+    }
+
+    @Test
+    public final void testAtomicUpdates() {
+        Set6<String> s = new Set6<String>();
+        assertTrue(s.addIfAbsent("a"));
+        assertFalse(s.addIfAbsent("a"));
+        assertEquals("a", s.removeIfPresent("a"));
+        assertNull(s.removeIfPresent("a"));
+        assertEquals(0, s.size());
+    }
+
+    @Test
+    public final void testConcurrentDisjointAdds() {
+        Set6<Integer> s = new Set6<Integer>();
+        runThreads(t -> {
+            for (int i = 0; i < PER_THREAD; i++) {
+                s.add(i * THREADS + t);
+            }
+        });
+        assertEquals(THREADS * PER_THREAD, s.size());
+        int expected = 0;
+        for (Integer x : s) {
+            assertEquals(expected, x.intValue());
+            expected++;
+        }
+        assertEquals(THREADS * PER_THREAD, expected);
+    }
+
+    @Test
+    public final void testConcurrentContendedUpdates() {
+        Set6<Integer> s = new Set6<Integer>();
+        AtomicInteger added = new AtomicInteger();
+        AtomicInteger removed = new AtomicInteger();
+        // Every thread adds and removes the same small range of elements
+        final int range = 64;
+        runThreads(t -> {
+            for (int i = 0; i < PER_THREAD; i++) {
+                Integer x = (i * (t + 1)) % range;
+                if (i % 2 == 0) {
+                    if (s.addIfAbsent(x)) {
+                        added.incrementAndGet();
+                    }
+                } else if (s.removeIfPresent(x) != null) {
+                    removed.incrementAndGet();
+                }
+            }
+        });
+        assertEquals(added.get() - removed.get(), s.size());
+        int count = 0;
+        Integer previous = null;
+        for (Integer x : s) {
+            assertTrue(previous == null || previous < x);
+            previous = x;
+            count++;
+        }
+        assertEquals(s.size(), count);
+    }
+
+    @Test
+    public final void testConcurrentRemoveAny() {
+        Set6<Integer> s = new Set6<Integer>();
+        for (int i = 0; i < THREADS * PER_THREAD; i++) {
+            s.add(i);
+        }
+        AtomicLong sum = new AtomicLong();
+        runThreads(t -> {
+            for (int i = 0; i < PER_THREAD; i++) {
+                sum.addAndGet(s.removeAny());
+            }
+        });
+        assertEquals(0, s.size());
+        long n = THREADS * PER_THREAD;
+        // Each element was removed by exactly one thread
+        assertEquals(n * (n - 1) / 2, sum.get());
+    }
+
+}
@@ -0,0 +1,156 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * Customized JUnit test fixture for {@code Set7}, with extra tests that
+ * splitting and refilling keep the B-tree correct at the smallest fan-out.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ *
+ */
+public class Set7Test extends SetTest {
+
+    /**
+     * Number of elements in the larger tests.
+     */
+    private static final int MANY = 100_000;
+
+    /**
+     * Seed for the random operations, so failures can be reproduced.
+     */
+    private static final long SEED = 2231;
+
+    @Override
+    protected final Set<String> constructorTest() {
+        return new Set7<String>();
+    }
+
+    @Override
+    protected final Set<String> constructorRef() {
+        return new Set1L<String>();
+    }
+
+    /**
+     * Checks that {@code s} holds exactly the {@code i} with
+     * {@code present[i]}, in increasing order.
+     *
+     * @param s
+     *            the set
+     * @param present
+     *            which elements should be in s
+     */
+    private static void assertHolds(Set7<Integer> s, boolean[] present) {
+        int count = 0;
+        int previous = -1;
+        for (Integer x : s) {
+            assertTrue(x > previous);
+            assertTrue(present[x]);
+            previous = x;
+            count++;
+        }
+        int expected = 0;
+        for (boolean p : present) {
+            if (p) {
+                expected++;
+            }
+        }
+        assertEquals(expected, count);
+        assertEquals(expected, s.size());
+    }
+
+    @Test
+    public final void testSortedInputIsShallow() {
+        Set7<Integer> s = new Set7<Integer>();
+        for (int i = 0; i < MANY; i++) {
+            s.add(i);
+        }
+        assertEquals(MANY, s.size());
+        // 100,000 elements with at least 31 per node fit in 4 levels
+        assertTrue(s.height() <= 4);
+        int expected = 0;
+        for (Integer x : s) {
+            assertEquals(expected, x.intValue());
+            expected++;
+        }
+    }
+
+    @Test
+    public final void testRandomOperationsSmallFanOut() {
+        final int fanOut = 4;
+        final int range = 2_000;
+        final int operations = 50_000;
+        Set7<Integer> s = new Set7<Integer>(fanOut);
+        boolean[] present = new boolean[range];
+        Random random = new Random(SEED);
+        for (int k = 0; k < operations; k++) {
+            int x = random.nextInt(range);
+            assertEquals(present[x], s.contains(x));
+            if (present[x]) {
+                assertEquals(Integer.valueOf(x), s.remove(x));
+            } else {
+                s.add(x);
+            }
+            present[x] = !present[x];
+        }
+        assertHolds(s, present);
+    }
+
+    @Test
+    public final void testRemoveAnyEmptiesSmallFanOut() {
+        final int fanOut = 6;
+        Set7<Integer> s = new Set7<Integer>(fanOut);
+        boolean[] present = new boolean[MANY];
+        for (int i = MANY - 1; i >= 0; i--) {
+            s.add(i);
+            present[i] = true;
+        }
+        assertHolds(s, present);
+        while (s.size() > 0) {
+            Integer x = s.removeAny();
+            assertTrue(present[x]);
+            present[x] = false;
+        }
+        assertEquals(1, s.height());
+    }
+
+    @Test
+    public final void testTransferFromOtherFanOut() {
+        Set7<Integer> s = new Set7<Integer>();
+        Set7<Integer> t = new Set7<Integer>(4);
+        final int n = 100;
+        boolean[] present = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            t.add(i);
+            present[i] = true;
+        }
+        s.transferFrom(t);
+        assertHolds(s, present);
+        assertEquals(4, s.fanOut());
+        assertEquals(0, t.size());
+        assertEquals(4, t.fanOut());
+    }
+
+    @Test
+    public final void testNewInstanceKeepsFanOut() {
+        final int fanOut = 4;
+        Set7<Integer> s = new Set7<Integer>(fanOut);
+        Set7<Integer> t = (Set7<Integer>) s.newInstance();
+        assertEquals(fanOut, t.fanOut());
+        for (int i = 0; i < 10; i++) {
+            t.add(i);
+        }
+        s.transferFrom(t);
+        assertEquals(fanOut, s.fanOut());
+        assertEquals(10, s.size());
+        // Ten elements need more than one level when nodes hold three
+        assertEquals(true, s.height() > 1);
+    }
+
+}
@@ -0,0 +1,121 @@
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.sortingmachine.SortingMachine;
+
+/**
+ * Times {@code changeToExtractionMode} and the removal of every entry, with
+ * {@code SortingMachine5} extracting sequentially and in parallel on pools of
+ * 1, 4, and 16 threads. The speed-up is bounded by the number of cores of the
+ * machine it runs on. Run with assertion checking off.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class SortingMachine5ParallelTiming {
+
+    /**
+     * Default number of entries sorted; the first command line argument, if
+     * any, replaces it.
+     */
+    private static final int DEFAULT_SIZE = 10_000_000;
+
+    /**
+     * Numbers of threads of the pools to time.
+     */
+    private static final int[] PARALLELISMS = { 1, 4, 16 };
+
+    /**
+     * Number of untimed runs before the timed one, to let the JIT compile the
+     * hot paths.
+     */
+    private static final int WARMUP_RUNS = 2;
+
+    /**
+     * Seed for the random entries, so runs are comparable.
+     */
+    private static final long SEED = 2231;
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SortingMachine5ParallelTiming() {
+    }
+
+    /**
+     * Sorts {@code entries} with machines like {@code sm}, reporting the best
+     * of {@code WARMUP_RUNS + 1} runs.
+     *
+     * @param out
+     *            the output stream
+     * @param name
+     *            the name of the machine, for the report
+     * @param sm
+     *            an empty machine of the kind to time
+     * @param entries
+     *            the entries
+     * @updates out.content
+     */
+    private static void report(SimpleWriter out, String name,
+            SortingMachine<String> sm, String[] entries) {
+        long bestExtract = Long.MAX_VALUE;
+        long bestTotal = Long.MAX_VALUE;
+        for (int r = 0; r <= WARMUP_RUNS; r++) {
+            SortingMachine<String> m = sm.newInstance();
+            for (String x : entries) {
+                m.add(x);
+            }
+            long start = System.nanoTime();
+            m.changeToExtractionMode();
+            long extracted = System.nanoTime();
+            while (m.size() > 0) {
+                m.removeFirst();
+            }
+            long end = System.nanoTime();
+            bestExtract = Math.min(bestExtract, extracted - start);
+            bestTotal = Math.min(bestTotal, end - start);
+        }
+        out.println(String.format("%s\t%.1f\t%.1f", name,
+                bestExtract / NANOS_PER_MILLI, bestTotal / NANOS_PER_MILLI));
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        int size = DEFAULT_SIZE;
+        if (args.length > 0) {
+            size = Integer.parseInt(args[0]);
+        }
+        Random random = new Random(SEED);
+        String[] entries = new String[size];
+        for (int i = 0; i < size; i++) {
+            entries[i] = Integer.toString(random.nextInt(),
+                    Character.MAX_RADIX);
+        }
+        Comparator<String> order = Comparator.naturalOrder();
+        out.println("sort of " + size + " strings on "
+                + Runtime.getRuntime().availableProcessors() + " cores, ms");
+        out.println("machine\tchangeToExtractionMode\t+ removeFirst all");
+        report(out, "sequential", new SortingMachine5<String>(order), entries);
+        for (int p : PARALLELISMS) {
+            ForkJoinPool pool = new ForkJoinPool(p);
+            report(out, "pool of " + p,
+                    new SortingMachine5<String>(order, pool), entries);
+            pool.shutdown();
+        }
+        out.close();
+    }
+
+}
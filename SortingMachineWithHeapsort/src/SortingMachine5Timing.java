@@ -0,0 +1,277 @@
+import java.util.Comparator;
+import java.util.Random;
+
+import components.array.Array;
+import components.array.Array1L;
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Compares the heap construction and extraction of {@code SortingMachine5}
+ * with the recursive top-down {@code heapify} and the two-swap
+ * {@code siftDown} it used before, at 1,000,000 entries. The old algorithm is
+ * copied here so the two can be timed side by side; both work on the same
+ * {@code Array1L} representation and are fed from a {@code Queue1L}, as the
+ * machine is. Run with assertion checking off.
+ *
+ * <p>
+ * The old {@code siftDown} can go down both subtrees at every level, and on
+ * random input a {@code removeFirst} then costs time roughly proportional to
+ * the heap size: draining a 160,000-entry heap took over six billion
+ * comparisons. So extraction is compared over the first
+ * {@code DRAIN_SAMPLE} removals only, and the full drain is timed for the
+ * current version alone.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class SortingMachine5Timing {
+
+    /**
+     * Number of entries sorted.
+     */
+    private static final int SIZE = 1_000_000;
+
+    /**
+     * Number of removals timed for both versions.
+     */
+    private static final int DRAIN_SAMPLE = 1_000;
+
+    /**
+     * Number of untimed runs before the timed one, to let the JIT compile the
+     * hot paths.
+     */
+    private static final int WARMUP_RUNS = 2;
+
+    /**
+     * Seed for the random entries, so runs are comparable.
+     */
+    private static final long SEED = 2231;
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SortingMachine5Timing() {
+    }
+
+    /**
+     * Integer order that counts how many comparisons it makes.
+     */
+    private static final class CountingOrder implements Comparator<Integer> {
+
+        /**
+         * Number of comparisons since the last reset.
+         */
+        private long count;
+
+        @Override
+        public int compare(Integer a, Integer b) {
+            this.count++;
+            return a.compareTo(b);
+        }
+    }
+
+    /**
+     * The old {@code siftDown}: swaps the root with the left child if it is
+     * larger and recurses, then does the same with the right child.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param top
+     *            the index of the root of the "subtree"
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @updates array.entries
+     */
+    private static <T> void legacySiftDown(Array<T> array, int top, int last,
+            Comparator<T> order) {
+        T temp;
+        int left = 2 * top + 1;
+        int right = left + 1;
+        if (left <= last
+                && order.compare(array.entry(top), array.entry(left)) > 0) {
+            temp = array.entry(top);
+            array.setEntry(top, array.entry(left));
+            array.setEntry(left, temp);
+            legacySiftDown(array, left, last, order);
+        }
+        if (right <= last
+                && order.compare(array.entry(top), array.entry(right)) > 0) {
+            temp = array.entry(top);
+            array.setEntry(top, array.entry(right));
+            array.setEntry(right, temp);
+            legacySiftDown(array, right, last, order);
+        }
+    }
+
+    /**
+     * The old {@code heapify}: heapifies both subtrees recursively, then sifts
+     * down the root.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the {@code Array} to be turned into a heap
+     * @param top
+     *            the index of the root of the "subtree" to heapify
+     * @param order
+     *            the total preorder for sorting
+     * @updates array.entries
+     */
+    private static <T> void legacyHeapify(Array<T> array, int top,
+            Comparator<T> order) {
+        int left = 2 * top + 1;
+        int right = left + 1;
+        if (right < array.length()) {
+            legacyHeapify(array, left, order);
+            legacyHeapify(array, right, order);
+            legacySiftDown(array, top, array.length() - 1, order);
+        } else if (left < array.length()) {
+            legacyHeapify(array, left, order);
+            legacySiftDown(array, top, array.length() - 1, order);
+        }
+    }
+
+    /**
+     * Returns the entries in a new queue.
+     *
+     * @param entries
+     *            the entries
+     * @return a queue of the entries, in order
+     */
+    private static Queue<Integer> queueOf(Integer[] entries) {
+        Queue<Integer> q = new Queue1L<Integer>();
+        for (Integer x : entries) {
+            q.enqueue(x);
+        }
+        return q;
+    }
+
+    /**
+     * Returns the average number of microseconds per call since
+     * {@code start}.
+     *
+     * @param start
+     *            the starting time, from {@code System.nanoTime}
+     * @param calls
+     *            the number of calls
+     * @return microseconds per call
+     */
+    private static String microsPerCall(long start, int calls) {
+        final double nanosPerMicro = 1e3;
+        return String.format("%.2f",
+                (System.nanoTime() - start) / nanosPerMicro / calls);
+    }
+
+    /**
+     * Returns the number of milliseconds since {@code start}.
+     *
+     * @param start
+     *            the starting time, from {@code System.nanoTime}
+     * @return milliseconds elapsed
+     */
+    private static String millisSince(long start) {
+        return String.format("%.1f",
+                (System.nanoTime() - start) / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Builds a heap of {@code entries} with the old algorithm, removes the
+     * first {@code DRAIN_SAMPLE} entries, and returns the report line: build
+     * time, comparisons to build, time per removal, comparisons per removal.
+     *
+     * @param entries
+     *            the entries
+     * @return the report line
+     */
+    private static String timeLegacy(Integer[] entries) {
+        CountingOrder order = new CountingOrder();
+        Queue<Integer> q = queueOf(entries);
+        long start = System.nanoTime();
+        Array<Integer> heap = new Array1L<Integer>(q.length());
+        for (int i = 0; i < heap.length(); i++) {
+            heap.setEntry(i, q.dequeue());
+        }
+        legacyHeapify(heap, 0, order);
+        String build = millisSince(start) + "\t" + order.count;
+        order.count = 0;
+        start = System.nanoTime();
+        int size = heap.length();
+        for (int k = 0; k < DRAIN_SAMPLE; k++) {
+            heap.replaceEntry(0, heap.entry(size - 1));
+            size--;
+            legacySiftDown(heap, 0, size - 1, order);
+        }
+        return build + "\t" + microsPerCall(start, DRAIN_SAMPLE) + "\t"
+                + order.count / DRAIN_SAMPLE;
+    }
+
+    /**
+     * Sorts {@code entries} with {@code SortingMachine5} and returns the
+     * report line: build time, comparisons to build, time per removal and
+     * comparisons per removal over the first {@code DRAIN_SAMPLE} removals,
+     * and time for the whole drain.
+     *
+     * @param entries
+     *            the entries
+     * @return the report line
+     */
+    private static String timeCurrent(Integer[] entries) {
+        CountingOrder order = new CountingOrder();
+        SortingMachine5<Integer> sm = new SortingMachine5<Integer>(order);
+        for (Integer x : entries) {
+            sm.add(x);
+        }
+        long start = System.nanoTime();
+        sm.changeToExtractionMode();
+        String build = millisSince(start) + "\t" + order.count;
+        order.count = 0;
+        start = System.nanoTime();
+        for (int k = 0; k < DRAIN_SAMPLE; k++) {
+            sm.removeFirst();
+        }
+        String sample = microsPerCall(start, DRAIN_SAMPLE) + "\t"
+                + order.count / DRAIN_SAMPLE;
+        while (sm.size() > 0) {
+            sm.removeFirst();
+        }
+        return build + "\t" + sample + "\t" + millisSince(start);
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        Random random = new Random(SEED);
+        Integer[] entries = new Integer[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            entries[i] = random.nextInt();
+        }
+        String legacy = "";
+        String current = "";
+        for (int r = 0; r <= WARMUP_RUNS; r++) {
+            legacy = timeLegacy(entries);
+            current = timeCurrent(entries);
+        }
+        out.println("version\tbuild (ms)\tbuild compares\tremoveFirst (us)"
+                + "\tremoveFirst compares\tfull drain (ms)");
+        out.println("legacy\t" + legacy + "\t-");
+        out.println("current\t" + current);
+        out.close();
+    }
+
+}
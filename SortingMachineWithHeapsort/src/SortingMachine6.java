@@ -0,0 +1,472 @@
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachineSecondary;
+
+/**
+ * {@code SortingMachine} represented as a single growable array, used as a
+ * list of entries in insertion mode and as a d-ary heap in extraction mode,
+ * with implementations of primary methods.
+ *
+ * <p>
+ * Unlike {@code SortingMachine5}, entries are written straight into the array
+ * that becomes the heap, so {@code changeToExtractionMode} copies nothing: it
+ * heapifies the array in place. Each node of the heap has {@code arity}
+ * children stored next to each other, so a wider heap is shallower (log base
+ * {@code arity} of n levels) and looks at one run of adjacent entries per
+ * level, at the price of more comparisons per level.
+ *
+ * @param <T>
+ *            type of {@code SortingMachine} entries
+ * @mathdefinitions
+ *
+ *                  <pre>
+ * IS_TOTAL_PREORDER (
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all x, y, z: T
+ *   ((r(x, y) or r(y, x))  and
+ *    (if (r(x, y) and r(y, z)) then r(x, z)))
+ *
+ * IS_D_ARY_HEAP (
+ *   a: string of T,
+ *   d: integer,
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all i: integer where (1 <= i < |a|)
+ *   (r(a[(i - 1) / d], a[i]))
+ *                  </pre>
+ *
+ * @convention
+ *
+ *             <pre>
+ * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method])  and
+ * $this.arity >= 2  and
+ * 0 <= $this.size <= |$this.entries|  and
+ * [$this.entries[$this.size, |$this.entries|) are null]  and
+ * if not $this.insertionMode then
+ *   IS_D_ARY_HEAP($this.entries[0, $this.size), $this.arity,
+ *     [relation computed by $this.machineOrder.compare method])
+ *             </pre>
+ *
+ * @correspondence
+ *
+ *                 <pre>
+ * this = ($this.insertionMode, $this.machineOrder,
+ *   multiset_entries($this.entries[0, $this.size)))
+ *                 </pre>
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public class SortingMachine6<T> extends SortingMachineSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default number of children of each node of the heap.
+     */
+    private static final int DEFAULT_ARITY = 4;
+
+    /**
+     * Initial length of the array.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Order.
+     */
+    private Comparator<T> machineOrder;
+
+    /**
+     * Number of children of each node of the heap.
+     */
+    private int arity;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Entries, in slots {@code [0, size)}.
+     */
+    private Object[] entries;
+
+    /**
+     * Number of entries.
+     */
+    private int size;
+
+    /**
+     * Returns the entry in slot {@code i}.
+     *
+     * @param i
+     *            the slot
+     * @return $this.entries[i]
+     * @requires 0 <= i < $this.size
+     */
+    @SuppressWarnings("unchecked")
+    private T entry(int i) {
+        return (T) this.entries[i];
+    }
+
+    /**
+     * Sifts the entry in slot {@code top} down the heap in
+     * {@code entries[0, size)}: while some child is smaller, the smallest
+     * child moves up into the hole, and the entry is written once, into the
+     * final hole.
+     *
+     * @param top
+     *            the slot of the entry to sift down
+     * @return the slot where the entry ended up
+     * @updates $this.entries
+     * @requires
+     *
+     *           <pre>
+     * 0 <= top < $this.size  and
+     * [the subtrees rooted at the children of top are heaps]
+     *           </pre>
+     *
+     * @ensures
+     *
+     *          <pre>
+     * [the subtree rooted at top is a heap]  and
+     * perms($this.entries, #$this.entries)
+     *          </pre>
+     */
+    private int siftDown(int top) {
+        T x = this.entry(top);
+        int hole = top;
+        int first = this.arity * hole + 1;
+        boolean placed = false;
+        while (first < this.size && !placed) {
+            // Find the smallest of the (up to arity) children
+            int smallest = first;
+            T smallestEntry = this.entry(first);
+            int end = Math.min(first + this.arity, this.size);
+            for (int c = first + 1; c < end; c++) {
+                T candidate = this.entry(c);
+                if (this.machineOrder.compare(candidate, smallestEntry) < 0) {
+                    smallest = c;
+                    smallestEntry = candidate;
+                }
+            }
+            if (this.machineOrder.compare(smallestEntry, x) < 0) {
+                this.entries[hole] = smallestEntry;
+                hole = smallest;
+                first = this.arity * hole + 1;
+            } else {
+                placed = true;
+            }
+        }
+        this.entries[hole] = x;
+        return hole;
+    }
+
+    /**
+     * Checks that every entry on the path from {@code top} down to
+     * {@code bottom} is no larger than any of its children: after a sift from
+     * {@code top} that ended at {@code bottom}, the only parent-child pairs
+     * that changed.
+     *
+     * @param top
+     *            the slot at the start of the path
+     * @param bottom
+     *            the slot at the end of the path
+     * @return true iff every entry on the path is in order with its children
+     * @requires 0 <= top <= bottom < $this.size and [bottom is in the subtree
+     *           rooted at top]
+     */
+    private boolean pathIsHeap(int top, int bottom) {
+        boolean inOrder = true;
+        int node = bottom;
+        boolean done = false;
+        while (inOrder && !done) {
+            int first = this.arity * node + 1;
+            int end = Math.min(first + this.arity, this.size);
+            for (int c = first; c < end && inOrder; c++) {
+                inOrder = this.machineOrder.compare(this.entry(node),
+                        this.entry(c)) <= 0;
+            }
+            done = node <= top;
+            node = (node - 1) / this.arity;
+        }
+        return inOrder;
+    }
+
+    /**
+     * Checks that {@code entries[0, size)} is a heap, in linear time.
+     *
+     * @return true iff IS_D_ARY_HEAP($this.entries[0, $this.size),
+     *         $this.arity, [relation computed by $this.machineOrder.compare
+     *         method])
+     */
+    private boolean isHeap() {
+        boolean inOrder = true;
+        for (int i = 1; i < this.size && inOrder; i++) {
+            inOrder = this.machineOrder.compare(
+                    this.entry((i - 1) / this.arity), this.entry(i)) <= 0;
+        }
+        return inOrder;
+    }
+
+    /**
+     * Checks the constant-time part of the convention; the heap ordering,
+     * which takes linear time to check, is checked once when the heap is built
+     * and then only along the path of each sift.
+     *
+     * @return true if the convention holds (or if assertion checking is off);
+     *         otherwise reports a violated assertion
+     * @convention
+     *
+     *             <pre>
+     * $this.arity >= 2  and
+     * 0 <= $this.size <= |$this.entries|
+     *             </pre>
+     */
+    private boolean conventionHolds() {
+        assert this.arity >= 2 : "Violation of: $this.arity >= 2";
+        assert 0 <= this.size : "Violation of: 0 <= $this.size";
+        assert this.size <= this.entries.length : ""
+                + "Violation of: $this.size <= |$this.entries|";
+        return true;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param d
+     *            number of children of each node of the heap
+     */
+    private void createNewRep(Comparator<T> order, int d) {
+        this.insertionMode = true;
+        this.machineOrder = order;
+        this.arity = d;
+        this.entries = new Object[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from order, with a 4-ary heap.
+     *
+     * @param order
+     *            total preorder for sorting
+     */
+    public SortingMachine6(Comparator<T> order) {
+        this(order, DEFAULT_ARITY);
+    }
+
+    /**
+     * Constructor from order and arity.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param arity
+     *            number of children of each node of the heap
+     * @requires arity >= 2
+     */
+    public SortingMachine6(Comparator<T> order, int arity) {
+        assert order != null : "Violation of: order is not null";
+        assert arity >= 2 : "Violation of: arity >= 2";
+
+        this.createNewRep(order, arity);
+        assert this.conventionHolds();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final SortingMachine<T> newInstance() {
+        try {
+            Constructor<?> c = this.getClass().getConstructor(Comparator.class,
+                    int.class);
+            return (SortingMachine<T>) c.newInstance(this.machineOrder,
+                    this.arity);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(this.machineOrder, this.arity);
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void transferFrom(SortingMachine<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof SortingMachine6<?> : ""
+                + "Violation of: source is of dynamic type SortingMachine6<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * SortingMachine6<?>, and the ? must be T or the call would not have
+         * compiled.
+         */
+        SortingMachine6<T> localSource = (SortingMachine6<T>) source;
+        this.insertionMode = localSource.insertionMode;
+        this.machineOrder = localSource.machineOrder;
+        this.arity = localSource.arity;
+        this.entries = localSource.entries;
+        this.size = localSource.size;
+        localSource.createNewRep(localSource.machineOrder, localSource.arity);
+        assert this.conventionHolds();
+        assert localSource.conventionHolds();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        if (this.size == this.entries.length) {
+            this.entries = Arrays.copyOf(this.entries, 2 * this.size);
+        }
+        this.entries[this.size] = x;
+        this.size++;
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void changeToExtractionMode() {
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        this.insertionMode = false;
+        // Floyd's method: sift down every node with children, last first
+        for (int top = (this.size - 2) / this.arity; top >= 0; top--) {
+            this.siftDown(top);
+        }
+        assert this.isHeap() : "Violation of: IS_D_ARY_HEAP($this.entries,"
+                + " $this.arity, [relation computed by"
+                + " $this.machineOrder.compare method])";
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final T removeFirst() {
+        assert!this
+                .isInInsertionMode() : "Violation of: not this.insertion_mode";
+        assert this.size() > 0 : "Violation of: this.contents /= {}";
+
+        T first = this.entry(0);
+        this.size--;
+        this.entries[0] = this.entries[this.size];
+        this.entries[this.size] = null;
+        if (this.size > 0) {
+            int bottom = this.siftDown(0);
+            assert this.pathIsHeap(0, bottom) : ""
+                    + "Violation of: IS_D_ARY_HEAP($this.entries, $this.arity,"
+                    + " [relation computed by $this.machineOrder.compare method])";
+        }
+        assert this.conventionHolds();
+        return first;
+    }
+
+    @Override
+    public final boolean isInInsertionMode() {
+        assert this.conventionHolds();
+        return this.insertionMode;
+    }
+
+    @Override
+    public final Comparator<T> order() {
+        assert this.conventionHolds();
+        return this.machineOrder;
+    }
+
+    @Override
+    public final int size() {
+        assert this.conventionHolds();
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new SortingMachine6Iterator();
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Reports the number of children of each node of the heap representing
+     * {@code this}.
+     *
+     * @return the arity of the heap
+     */
+    public final int arity() {
+        return this.arity;
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code SortingMachine6}:
+     * the entries in the order they are stored in the array.
+     */
+    private final class SortingMachine6Iterator implements Iterator<T> {
+
+        /**
+         * Slot of the next entry to return.
+         */
+        private int next;
+
+        /**
+         * No-argument constructor.
+         */
+        private SortingMachine6Iterator() {
+            this.next = 0;
+            assert SortingMachine6.this.conventionHolds();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next < SortingMachine6.this.size;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            T x = SortingMachine6.this.entry(this.next);
+            this.next++;
+            return x;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
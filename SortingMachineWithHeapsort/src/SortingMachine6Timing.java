@@ -0,0 +1,198 @@
+import java.util.Comparator;
+import java.util.Random;
+
+import components.map.Map;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.sortingmachine.SortingMachine;
+
+/**
+ * Times a full sort (add every entry, build the heap, remove every entry)
+ * with {@code SortingMachine6} at arities 2, 4, and 8, and with
+ * {@code SortingMachine5} for reference, for two payloads: {@code String}s in
+ * their natural order, and {@code Map.Pair<String, Integer>} word counts in
+ * the tag cloud order (decreasing count). Run with assertion checking off.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class SortingMachine6Timing {
+
+    /**
+     * Number of entries sorted.
+     */
+    private static final int SIZE = 1_000_000;
+
+    /**
+     * Arities to time.
+     */
+    private static final int[] ARITIES = { 2, 4, 8 };
+
+    /**
+     * Number of untimed runs before the timed one, to let the JIT compile the
+     * hot paths.
+     */
+    private static final int WARMUP_RUNS = 2;
+
+    /**
+     * Seed for the random entries, so runs are comparable.
+     */
+    private static final long SEED = 2231;
+
+    /**
+     * Largest word count in the pair payload.
+     */
+    private static final int MAX_COUNT = 10_000;
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SortingMachine6Timing() {
+    }
+
+    /**
+     * Word and its count, as a {@code Map.Pair}.
+     */
+    private static final class WordCount
+            implements Map.Pair<String, Integer> {
+
+        /**
+         * The word.
+         */
+        private final String word;
+
+        /**
+         * Its count.
+         */
+        private final Integer count;
+
+        /**
+         * Constructor.
+         *
+         * @param word
+         *            the word
+         * @param count
+         *            its count
+         */
+        WordCount(String word, Integer count) {
+            this.word = word;
+            this.count = count;
+        }
+
+        @Override
+        public String key() {
+            return this.word;
+        }
+
+        @Override
+        public Integer value() {
+            return this.count;
+        }
+    }
+
+    /**
+     * Makes a new, empty sorting machine.
+     *
+     * @param <T>
+     *            type of entries
+     */
+    @FunctionalInterface
+    private interface MachineFactory<T> {
+        /**
+         * Returns a new sorting machine.
+         *
+         * @param order
+         *            total preorder for sorting
+         * @return the new machine, in insertion mode
+         */
+        SortingMachine<T> create(Comparator<T> order);
+    }
+
+    /**
+     * Sorts {@code entries} with a machine from {@code factory}, timing the
+     * best of {@code WARMUP_RUNS + 1} runs.
+     *
+     * @param <T>
+     *            type of entries
+     * @param entries
+     *            the entries
+     * @param order
+     *            the order to sort by
+     * @param factory
+     *            makes the machine
+     * @return milliseconds for the fastest run
+     */
+    private static <T> String time(T[] entries, Comparator<T> order,
+            MachineFactory<T> factory) {
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r <= WARMUP_RUNS; r++) {
+            long start = System.nanoTime();
+            SortingMachine<T> sm = factory.create(order);
+            for (T x : entries) {
+                sm.add(x);
+            }
+            sm.changeToExtractionMode();
+            while (sm.size() > 0) {
+                sm.removeFirst();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return String.format("%.1f", best / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Times every machine on {@code entries} and reports one line.
+     *
+     * @param <T>
+     *            type of entries
+     * @param out
+     *            the output stream
+     * @param payload
+     *            the name of the payload, for the report
+     * @param entries
+     *            the entries
+     * @param order
+     *            the order to sort by
+     * @updates out.content
+     */
+    private static <T> void report(SimpleWriter out, String payload,
+            T[] entries, Comparator<T> order) {
+        StringBuilder line = new StringBuilder(payload);
+        for (int d : ARITIES) {
+            line.append('\t').append(time(entries, order,
+                    o -> new SortingMachine6<T>(o, d)));
+        }
+        line.append('\t')
+                .append(time(entries, order, o -> new SortingMachine5<T>(o)));
+        out.println(line.toString());
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        Random random = new Random(SEED);
+        String[] words = new String[SIZE];
+        WordCount[] pairs = new WordCount[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            words[i] = Integer.toString(random.nextInt(), Character.MAX_RADIX);
+            pairs[i] = new WordCount(words[i], random.nextInt(MAX_COUNT));
+        }
+        out.println("sort of " + SIZE + " entries, ms");
+        out.println("payload\td=2\td=4\td=8\tSortingMachine5");
+        report(out, "String", words, Comparator.<String> naturalOrder());
+        Comparator<WordCount> byCount = (p1, p2) -> p2.value()
+                .compareTo(p1.value());
+        report(out, "Pair", pairs, byCount);
+        out.close();
+    }
+
+}
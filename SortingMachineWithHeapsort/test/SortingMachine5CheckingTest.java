@@ -0,0 +1,111 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Comparator;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * JUnit tests of {@code SortingMachine5}'s checking levels: every level sorts
+ * correctly, and {@code CheckingLevel.SAMPLED} keeps the checks from making
+ * extraction quadratic.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class SortingMachine5CheckingTest {
+
+    /**
+     * Number of entries sorted.
+     */
+    private static final int SIZE = 20_000;
+
+    /**
+     * Integer order that counts how many comparisons it makes.
+     */
+    private static final class CountingOrder implements Comparator<Integer> {
+
+        /**
+         * Number of comparisons so far.
+         */
+        private long count;
+
+        @Override
+        public int compare(Integer a, Integer b) {
+            this.count++;
+            return a.compareTo(b);
+        }
+    }
+
+    /**
+     * Sorts {@code 0..n-1}, added in a scrambled order, and checks the order
+     * of extraction, calling {@code size} and iterating as a client would.
+     *
+     * @param n
+     *            the number of entries
+     * @param order
+     *            the order to sort by
+     */
+    private static void assertSorts(int n, Comparator<Integer> order) {
+        SortingMachine5<Integer> sm = new SortingMachine5<Integer>(order);
+        final int stride = 7919;
+        for (int i = 0; i < n; i++) {
+            sm.add((int) ((long) i * stride % n));
+        }
+        sm.changeToExtractionMode();
+        int seen = 0;
+        for (Integer x : sm) {
+            assertTrue(x >= 0);
+            seen++;
+        }
+        assertEquals(n, seen);
+        for (int i = 0; i < n; i++) {
+            assertEquals(n - i, sm.size());
+            assertEquals(Integer.valueOf(i), sm.removeFirst());
+        }
+    }
+
+    /**
+     * Restores the default level for the other tests.
+     */
+    @After
+    public void restoreDefault() {
+        SortingMachine5.setCheckingLevel(
+                SortingMachine5.defaultCheckingLevel());
+    }
+
+    @Test
+    public void testDefaultIsSampled() {
+        // The tests run without SortingMachine5.checkingLevel set
+        assertEquals(SortingMachine5.CheckingLevel.SAMPLED,
+                SortingMachine5.defaultCheckingLevel());
+        assertEquals(SortingMachine5.defaultCheckingLevel(),
+                SortingMachine5.checkingLevel());
+    }
+
+    @Test
+    public void testEveryLevelSorts() {
+        final int n = 500;
+        for (SortingMachine5.CheckingLevel level : SortingMachine5.CheckingLevel
+                .values()) {
+            SortingMachine5.setCheckingLevel(level);
+            assertSorts(n, new CountingOrder());
+        }
+    }
+
+    @Test
+    public void testSampledIsNotQuadratic() {
+        SortingMachine5.setCheckingLevel(SortingMachine5.CheckingLevel.SAMPLED);
+        CountingOrder order = new CountingOrder();
+        assertSorts(SIZE, order);
+        /*
+         * Sifting and checking the sifted path take O(log n) comparisons per
+         * call, and the whole-heap checks O(1) amortized; checking the whole
+         * heap on every call would take about n^2 / 2 = 200,000,000
+         */
+        double log2 = Math.log(SIZE) / Math.log(2);
+        final int perLevel = 8;
+        assertTrue(order.count <= perLevel * SIZE * log2);
+    }
+
+}
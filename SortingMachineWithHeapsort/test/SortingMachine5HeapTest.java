@@ -0,0 +1,117 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * JUnit tests that {@code SortingMachine5} sorts larger inputs, including
+ * ones with many equal entries, with a bounded number of comparisons.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class SortingMachine5HeapTest {
+
+    /**
+     * Number of entries sorted.
+     */
+    private static final int SIZE = 2_000;
+
+    /**
+     * Seed for the random entries, so failures can be reproduced.
+     */
+    private static final long SEED = 2231;
+
+    /**
+     * Integer order that counts how many comparisons it makes.
+     */
+    private static final class CountingOrder implements Comparator<Integer> {
+
+        /**
+         * Number of comparisons so far.
+         */
+        private long count;
+
+        @Override
+        public int compare(Integer a, Integer b) {
+            this.count++;
+            return a.compareTo(b);
+        }
+    }
+
+    /**
+     * Sorts {@code entries} with a {@code SortingMachine5} and checks the
+     * result against {@code Arrays.sort}.
+     *
+     * @param entries
+     *            the entries
+     * @param order
+     *            the order to sort by
+     */
+    private static void assertSorts(Integer[] entries,
+            Comparator<Integer> order) {
+        SortingMachine5<Integer> sm = new SortingMachine5<Integer>(order);
+        for (Integer x : entries) {
+            sm.add(x);
+        }
+        sm.changeToExtractionMode();
+        Integer[] expected = entries.clone();
+        Arrays.sort(expected);
+        for (Integer x : expected) {
+            assertEquals(x, sm.removeFirst());
+        }
+        assertEquals(0, sm.size());
+    }
+
+    /**
+     * Restores the default checking level for the other tests.
+     */
+    @After
+    public void restoreDefault() {
+        SortingMachine5.setCheckingLevel(
+                SortingMachine5.defaultCheckingLevel());
+    }
+
+    @Test
+    public final void testRandom() {
+        Random random = new Random(SEED);
+        Integer[] entries = new Integer[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            entries[i] = random.nextInt();
+        }
+        assertSorts(entries, new CountingOrder());
+    }
+
+    @Test
+    public final void testManyDuplicates() {
+        Random random = new Random(SEED);
+        Integer[] entries = new Integer[SIZE];
+        final int distinct = 5;
+        for (int i = 0; i < SIZE; i++) {
+            entries[i] = random.nextInt(distinct);
+        }
+        assertSorts(entries, new CountingOrder());
+    }
+
+    @Test
+    public final void testComparisonsAreNLogN() {
+        Integer[] entries = new Integer[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            entries[i] = SIZE - i;
+        }
+        CountingOrder order = new CountingOrder();
+        /*
+         * The checks inside the machine use the order too, so turn them off
+         * while counting; building takes under 2n comparisons and each
+         * removeFirst under 2 log2(n)
+         */
+        SortingMachine5.setCheckingLevel(SortingMachine5.CheckingLevel.OFF);
+        assertSorts(entries, order);
+        double log2 = Math.log(SIZE) / Math.log(2);
+        assertEquals(true, order.count <= 2 * SIZE + 2 * SIZE * log2);
+    }
+
+}
@@ -0,0 +1,138 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+
+/**
+ * JUnit tests of {@code SortingMachine5}'s parallel extraction on inputs large
+ * enough to be split into several runs.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class SortingMachine5ParallelTest {
+
+    /**
+     * Number of entries sorted: enough for four runs of the smallest length.
+     */
+    private static final int SIZE = 40_000;
+
+    /**
+     * Number of threads of the pool.
+     */
+    private static final int PARALLELISM = 4;
+
+    /**
+     * Seed for the random entries, so failures can be reproduced.
+     */
+    private static final long SEED = 2231;
+
+    /**
+     * Pool shared by the machines of all test cases.
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool(PARALLELISM);
+
+    /**
+     * Sorts {@code entries} with a parallel {@code SortingMachine5}, checking
+     * that iterating sees every entry, and checks the order of extraction
+     * against {@code Arrays.sort}.
+     *
+     * @param entries
+     *            the entries
+     */
+    private static void assertSorts(Integer[] entries) {
+        SortingMachine5<Integer> sm = new SortingMachine5<Integer>(
+                Comparator.<Integer> naturalOrder(), POOL);
+        for (Integer x : entries) {
+            sm.add(x);
+        }
+        sm.changeToExtractionMode();
+        Integer[] expected = entries.clone();
+        Arrays.sort(expected);
+        long sum = 0;
+        for (Integer x : sm) {
+            sum += x;
+        }
+        long expectedSum = 0;
+        for (Integer x : expected) {
+            expectedSum += x;
+        }
+        assertEquals(expectedSum, sum);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected.length - i, sm.size());
+            assertEquals(expected[i], sm.removeFirst());
+        }
+        assertEquals(0, sm.size());
+    }
+
+    /**
+     * Restores the default level for the other tests.
+     */
+    @After
+    public void restoreDefault() {
+        SortingMachine5.setCheckingLevel(
+                SortingMachine5.defaultCheckingLevel());
+    }
+
+    @Test
+    public void testRandom() {
+        // Checking every run on every call would make this quadratic
+        SortingMachine5.setCheckingLevel(SortingMachine5.CheckingLevel.SAMPLED);
+        Random random = new Random(SEED);
+        Integer[] entries = new Integer[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            entries[i] = random.nextInt();
+        }
+        assertSorts(entries);
+    }
+
+    @Test
+    public void testManyDuplicates() {
+        SortingMachine5.setCheckingLevel(SortingMachine5.CheckingLevel.SAMPLED);
+        Random random = new Random(SEED);
+        Integer[] entries = new Integer[SIZE];
+        final int distinct = 5;
+        for (int i = 0; i < SIZE; i++) {
+            entries[i] = random.nextInt(distinct);
+        }
+        assertSorts(entries);
+    }
+
+    @Test
+    public void testDecreasingWithFullChecking() {
+        final int n = 1_000;
+        Integer[] entries = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            entries[i] = n - i;
+        }
+        assertSorts(entries);
+    }
+
+    @Test
+    public void testNewInstanceAndTransferFrom() {
+        SortingMachine5.setCheckingLevel(SortingMachine5.CheckingLevel.SAMPLED);
+        SortingMachine5<Integer> sm = new SortingMachine5<Integer>(
+                Comparator.<Integer> naturalOrder(), POOL);
+        SortingMachine<Integer> other = sm.newInstance();
+        for (int i = SIZE; i > 0; i--) {
+            other.add(i);
+        }
+        other.changeToExtractionMode();
+        assertEquals(Integer.valueOf(1), other.removeFirst());
+        sm.transferFrom(other);
+        assertEquals(SIZE - 1, sm.size());
+        for (int i = 2; i <= SIZE; i++) {
+            assertEquals(Integer.valueOf(i), sm.removeFirst());
+        }
+        other.add(1);
+        other.changeToExtractionMode();
+        assertEquals(Integer.valueOf(1), other.removeFirst());
+    }
+
+}
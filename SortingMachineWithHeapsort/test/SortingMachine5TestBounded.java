@@ -0,0 +1,30 @@
+import java.util.Comparator;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine5} using the bounded
+ * constructor, with a capacity larger than any test case so that the bounded
+ * machine must behave as an unbounded one.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class SortingMachine5TestBounded extends SortingMachineTest {
+
+    /**
+     * Capacity of the machine to be used in tests.
+     */
+    private static final int TEST_CAPACITY = 1000;
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        return new SortingMachine5<String>(order, TEST_CAPACITY);
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+}
@@ -0,0 +1,36 @@
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine5} using the parallel
+ * constructor.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class SortingMachine5TestParallel extends SortingMachineTest {
+
+    /**
+     * Number of threads of the pool to be used in tests.
+     */
+    private static final int TEST_PARALLELISM = 4;
+
+    /**
+     * Pool shared by the machines of all test cases.
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            TEST_PARALLELISM);
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        return new SortingMachine5<String>(order, POOL);
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+}
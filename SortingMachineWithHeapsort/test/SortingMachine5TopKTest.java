@@ -0,0 +1,148 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+
+/**
+ * JUnit tests of {@code SortingMachine5}'s bounded mode with fewer entries
+ * kept than added: the first K in order are kept, whatever the order they are
+ * added in.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class SortingMachine5TopKTest {
+
+    /**
+     * Number of entries added.
+     */
+    private static final int SIZE = 2_000;
+
+    /**
+     * Number of entries kept.
+     */
+    private static final int K = 50;
+
+    /**
+     * Seed for the random entries, so failures can be reproduced.
+     */
+    private static final long SEED = 2231;
+
+    /**
+     * Adds {@code entries} to a machine of capacity {@code k}, checking its
+     * size as it goes, and checks that it then removes the first {@code k} of
+     * them in order.
+     *
+     * @param entries
+     *            the entries
+     * @param k
+     *            the capacity
+     */
+    private static void assertKeepsFirst(Integer[] entries, int k) {
+        SortingMachine5<Integer> sm = new SortingMachine5<Integer>(
+                Comparator.<Integer> naturalOrder(), k);
+        for (int i = 0; i < entries.length; i++) {
+            sm.add(entries[i]);
+            assertEquals(Math.min(i + 1, k), sm.size());
+        }
+        int seen = 0;
+        for (@SuppressWarnings("unused")
+        Integer x : sm) {
+            seen++;
+        }
+        assertEquals(sm.size(), seen);
+        sm.changeToExtractionMode();
+        Integer[] expected = entries.clone();
+        Arrays.sort(expected);
+        int kept = Math.min(k, entries.length);
+        for (int i = 0; i < kept; i++) {
+            assertEquals(expected[i], sm.removeFirst());
+        }
+        assertEquals(0, sm.size());
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(SEED);
+        Integer[] entries = new Integer[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            entries[i] = random.nextInt();
+        }
+        assertKeepsFirst(entries, K);
+    }
+
+    @Test
+    public void testManyDuplicates() {
+        Random random = new Random(SEED);
+        Integer[] entries = new Integer[SIZE];
+        final int distinct = 5;
+        for (int i = 0; i < SIZE; i++) {
+            entries[i] = random.nextInt(distinct);
+        }
+        assertKeepsFirst(entries, K);
+    }
+
+    @Test
+    public void testDecreasing() {
+        Integer[] entries = new Integer[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            entries[i] = SIZE - i;
+        }
+        assertKeepsFirst(entries, K);
+    }
+
+    @Test
+    public void testFewerThanCapacity() {
+        Integer[] entries = { 3, 1, 2 };
+        assertKeepsFirst(entries, K);
+    }
+
+    @Test
+    public void testCapacityOne() {
+        Integer[] entries = { 3, 1, 2, 1, 5 };
+        assertKeepsFirst(entries, 1);
+    }
+
+    @Test
+    public void testNewInstanceAndClearKeepCapacity() {
+        SortingMachine5<Integer> sm = new SortingMachine5<Integer>(
+                Comparator.<Integer> naturalOrder(), 2);
+        SortingMachine<Integer> other = sm.newInstance();
+        other.add(3);
+        other.add(1);
+        other.add(2);
+        assertEquals(2, other.size());
+        other.clear();
+        other.add(3);
+        other.add(1);
+        other.add(2);
+        assertEquals(2, other.size());
+        other.changeToExtractionMode();
+        assertEquals(Integer.valueOf(1), other.removeFirst());
+        assertEquals(Integer.valueOf(2), other.removeFirst());
+        assertTrue(other.size() == 0);
+    }
+
+    @Test
+    public void testTransferFromKeepsCapacity() {
+        SortingMachine5<Integer> sm = new SortingMachine5<Integer>(
+                Comparator.<Integer> naturalOrder(), 2);
+        sm.add(3);
+        SortingMachine5<Integer> target = new SortingMachine5<Integer>(
+                Comparator.<Integer> naturalOrder());
+        target.transferFrom(sm);
+        target.add(1);
+        target.add(2);
+        assertEquals(2, target.size());
+        sm.add(4);
+        sm.add(5);
+        sm.add(6);
+        assertEquals(2, sm.size());
+    }
+
+}
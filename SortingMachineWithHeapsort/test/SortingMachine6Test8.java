@@ -0,0 +1,29 @@
+import java.util.Comparator;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine6} using non-default
+ * constructor and an 8-ary heap.
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public final class SortingMachine6Test8 extends SortingMachineTest {
+
+    /**
+     * Arity of the heap to be used in tests.
+     */
+    private static final int TEST_ARITY = 8;
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        return new SortingMachine6<String>(order, TEST_ARITY);
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+}
@@ -0,0 +1,462 @@
+import java.util.Arrays;
+
+import components.map.Map;
+
+/**
+ * Hash map from keys of type {@code K} to primitive {@code int} values, for
+ * counting without boxing. Like {@code Map4} it chains the keys of each bucket
+ * together, but the chains live in parallel arrays indexed by entry number
+ * instead of in per-bucket {@code Map} objects, and the values are stored as
+ * {@code int}s, so {@code increment} allocates nothing unless the table grows.
+ *
+ * <p>
+ * Counts can be handed to code that expects a {@code Map<K, Integer>} with
+ * {@code transferTo}, which boxes each distinct key's count once.
+ *
+ * @param <K>
+ *            type of keys
+ * @convention
+ *
+ *             <pre>
+ * |$this.bucketHeads| is a power of 2  and
+ * |$this.keys| = |$this.values| = |$this.hashes| = |$this.next|  and
+ * 0 <= $this.size <= LOAD_FACTOR * |$this.bucketHeads|  and
+ * $this.size <= |$this.keys|  and
+ * [entries 0 through $this.size - 1 of $this.keys are non-null and
+ *  distinct, and the rest are null]  and
+ * for all e: integer where (0 <= e < $this.size)
+ *   ($this.hashes[e] = SPREAD([computed result of $this.keys[e].hashCode()])
+ *    and  e is on the chain starting at
+ *         $this.bucketHeads[$this.hashes[e] bitwise-and
+ *                           (|$this.bucketHeads| - 1)]
+ *         and continuing through $this.next)  and
+ * [each chain ends with NONE and contains no entry twice]
+ *             </pre>
+ *
+ * @correspondence
+ *
+ *                 <pre>
+ * this = {($this.keys[e], $this.values[e]) : 0 <= e < $this.size}
+ *                 </pre>
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public class ObjectIntMap<K> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default number of buckets; must be a power of 2.
+     */
+    private static final int DEFAULT_BUCKETS = 16;
+
+    /**
+     * Maximum ratio of {@code size} to number of buckets.
+     */
+    private static final double LOAD_FACTOR = 0.75;
+
+    /**
+     * Marks the end of a chain, or an empty bucket.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * Multiplier for the hash-spreading step (a murmur3 finalizer constant).
+     */
+    private static final int SPREAD_MULTIPLIER = 0x85ebca6b;
+
+    /**
+     * Number of bits to fold down when spreading a hash code.
+     */
+    private static final int SPREAD_SHIFT = 16;
+
+    /**
+     * For each bucket, the first entry in its chain, or {@code NONE}.
+     */
+    private int[] bucketHeads;
+
+    /**
+     * For each entry, the next entry in its bucket's chain, or {@code NONE}.
+     */
+    private int[] next;
+
+    /**
+     * Key of each entry.
+     */
+    private Object[] keys;
+
+    /**
+     * Value of each entry.
+     */
+    private int[] values;
+
+    /**
+     * Spread hash code of each entry's key.
+     */
+    private int[] hashes;
+
+    /**
+     * Number of entries, which occupy indices {@code 0} to {@code size - 1}.
+     */
+    private int size;
+
+    /**
+     * Mixes the bits of {@code h} so that keys differing only in their high
+     * bits still land in different buckets.
+     *
+     * @param h
+     *            the hash code to spread
+     * @return the spread hash code
+     */
+    private static int spread(int h) {
+        int x = h * SPREAD_MULTIPLIER;
+        return x ^ (x >>> SPREAD_SHIFT);
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param buckets
+     *            the number of buckets
+     * @requires buckets is a power of 2
+     * @ensures |$this.bucketHeads| = buckets and this = {}
+     */
+    private void createNewRep(int buckets) {
+        this.bucketHeads = new int[buckets];
+        Arrays.fill(this.bucketHeads, NONE);
+        int capacity = (int) (buckets * LOAD_FACTOR);
+        this.next = new int[capacity];
+        this.keys = new Object[capacity];
+        this.values = new int[capacity];
+        this.hashes = new int[capacity];
+        this.size = 0;
+    }
+
+    /**
+     * Returns the entry holding {@code key}, or {@code NONE}.
+     *
+     * @param key
+     *            the key to find
+     * @param hash
+     *            SPREAD([computed result of key.hashCode()])
+     * @return the entry index, or {@code NONE}
+     * @ensures
+     *
+     *          <pre>
+     * if key is in DOMAIN(this) then $this.keys[find] = key
+     * else find = NONE
+     *          </pre>
+     */
+    private int find(Object key, int hash) {
+        int e = this.bucketHeads[hash & (this.bucketHeads.length - 1)];
+        while (e != NONE
+                && (this.hashes[e] != hash || !this.keys[e].equals(key))) {
+            e = this.next[e];
+        }
+        return e;
+    }
+
+    /**
+     * Doubles the number of buckets and relinks every entry, reusing the cached
+     * hash codes; entry indices do not change.
+     *
+     * @updates $this
+     * @ensures this = #this and |$this.bucketHeads| = 2 * |#$this.bucketHeads|
+     */
+    private void grow() {
+        int buckets = this.bucketHeads.length * 2;
+        int capacity = (int) (buckets * LOAD_FACTOR);
+        this.next = Arrays.copyOf(this.next, capacity);
+        this.keys = Arrays.copyOf(this.keys, capacity);
+        this.values = Arrays.copyOf(this.values, capacity);
+        this.hashes = Arrays.copyOf(this.hashes, capacity);
+        this.bucketHeads = new int[buckets];
+        Arrays.fill(this.bucketHeads, NONE);
+        for (int e = 0; e < this.size; e++) {
+            int b = this.hashes[e] & (buckets - 1);
+            this.next[e] = this.bucketHeads[b];
+            this.bucketHeads[b] = e;
+        }
+    }
+
+    /**
+     * Adds a new entry ({@code key}, {@code value}) at the head of its chain.
+     *
+     * @param key
+     *            the key
+     * @param hash
+     *            SPREAD([computed result of key.hashCode()])
+     * @param value
+     *            the value
+     * @updates this
+     * @requires key is not in DOMAIN(this)
+     * @ensures this = #this union {(key, value)}
+     */
+    private void addEntry(K key, int hash, int value) {
+        if (this.size == this.keys.length) {
+            this.grow();
+        }
+        int e = this.size;
+        int b = hash & (this.bucketHeads.length - 1);
+        this.keys[e] = key;
+        this.values[e] = value;
+        this.hashes[e] = hash;
+        this.next[e] = this.bucketHeads[b];
+        this.bucketHeads[b] = e;
+        this.size++;
+    }
+
+    /**
+     * Replaces whichever link (a bucket head or a {@code next} entry) points to
+     * entry {@code e} by {@code replacement}.
+     *
+     * @param e
+     *            the entry being unlinked or moved
+     * @param replacement
+     *            the new target of the link
+     * @updates $this.bucketHeads, $this.next
+     * @requires 0 <= e < $this.size
+     */
+    private void relink(int e, int replacement) {
+        int b = this.hashes[e] & (this.bucketHeads.length - 1);
+        if (this.bucketHeads[b] == e) {
+            this.bucketHeads[b] = replacement;
+        } else {
+            int p = this.bucketHeads[b];
+            while (this.next[p] != e) {
+                p = this.next[p];
+            }
+            this.next[p] = replacement;
+        }
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public ObjectIntMap() {
+        this.createNewRep(DEFAULT_BUCKETS);
+    }
+
+    /*
+     * Public members ---------------------------------------------------------
+     */
+
+    /**
+     * Resets {@code this} to an empty map.
+     *
+     * @clears this
+     */
+    public final void clear() {
+        this.createNewRep(DEFAULT_BUCKETS);
+    }
+
+    /**
+     * Adds 1 to the value associated with {@code key}, first associating 0
+     * with it if it is not in {@code this}.
+     *
+     * @param key
+     *            the key to count
+     * @return the new value associated with {@code key}
+     * @updates this
+     * @requires key /= null
+     * @ensures
+     *
+     *          <pre>
+     * if key is in DOMAIN(#this) then increment = #this(key) + 1
+     * else increment = 1  and
+     * this = (#this \ {(key, v) for any v}) union {(key, increment)}
+     *          </pre>
+     */
+    public final int increment(K key) {
+        return this.addTo(key, 1);
+    }
+
+    /**
+     * Adds {@code delta} to the value associated with {@code key}, first
+     * associating 0 with it if it is not in {@code this}.
+     *
+     * @param key
+     *            the key to update
+     * @param delta
+     *            the amount to add
+     * @return the new value associated with {@code key}
+     * @updates this
+     * @requires key /= null
+     * @ensures
+     *
+     *          <pre>
+     * if key is in DOMAIN(#this) then addTo = #this(key) + delta
+     * else addTo = delta  and
+     * this = (#this \ {(key, v) for any v}) union {(key, addTo)}
+     *          </pre>
+     */
+    public final int addTo(K key, int delta) {
+        assert key != null : "Violation of: key is not null";
+
+        int hash = spread(key.hashCode());
+        int e = this.find(key, hash);
+        int result = delta;
+        if (e == NONE) {
+            this.addEntry(key, hash, delta);
+        } else {
+            this.values[e] += delta;
+            result = this.values[e];
+        }
+        return result;
+    }
+
+    /**
+     * Associates {@code value} with {@code key}, replacing any value it had.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @updates this
+     * @requires key /= null
+     * @ensures this = (#this \ {(key, v) for any v}) union {(key, value)}
+     */
+    public final void put(K key, int value) {
+        assert key != null : "Violation of: key is not null";
+
+        int hash = spread(key.hashCode());
+        int e = this.find(key, hash);
+        if (e == NONE) {
+            this.addEntry(key, hash, value);
+        } else {
+            this.values[e] = value;
+        }
+    }
+
+    /**
+     * Returns the value associated with {@code key}, or
+     * {@code defaultValue} if {@code key} is not in {@code this}.
+     *
+     * @param key
+     *            the key
+     * @param defaultValue
+     *            the result if {@code key} is not in {@code this}
+     * @return the value associated with {@code key}, or {@code defaultValue}
+     * @requires key /= null
+     * @ensures
+     *
+     *          <pre>
+     * if key is in DOMAIN(this) then get = this(key)
+     * else get = defaultValue
+     *          </pre>
+     */
+    public final int get(K key, int defaultValue) {
+        assert key != null : "Violation of: key is not null";
+
+        int e = this.find(key, spread(key.hashCode()));
+        int result = defaultValue;
+        if (e != NONE) {
+            result = this.values[e];
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether there is a pair in {@code this} whose first component is
+     * {@code key}.
+     *
+     * @param key
+     *            the key to be checked
+     * @return true iff there is a pair in {@code this} whose first component
+     *         is {@code key}
+     * @requires key /= null
+     * @ensures hasKey = (key is in DOMAIN(this))
+     */
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.find(key, spread(key.hashCode())) != NONE;
+    }
+
+    /**
+     * Removes the pair whose first component is {@code key} and returns its
+     * value.
+     *
+     * @param key
+     *            the key to be removed
+     * @return the value that was associated with {@code key}
+     * @updates this
+     * @requires key is in DOMAIN(this)
+     * @ensures
+     *
+     *          <pre>
+     * remove = #this(key)  and
+     * this = #this \ {(key, remove)}
+     *          </pre>
+     */
+    public final int remove(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int e = this.find(key, spread(key.hashCode()));
+        int result = this.values[e];
+        this.relink(e, this.next[e]);
+        // Keep entries dense by moving the last one into the freed index
+        int last = this.size - 1;
+        if (e != last) {
+            this.relink(last, e);
+            this.keys[e] = this.keys[last];
+            this.values[e] = this.values[last];
+            this.hashes[e] = this.hashes[last];
+            this.next[e] = this.next[last];
+        }
+        this.keys[last] = null;
+        this.size--;
+        return result;
+    }
+
+    /**
+     * Reports the size (cardinality) of {@code this}.
+     *
+     * @return the number of pairs in {@code this}
+     * @ensures size = |this|
+     */
+    public final int size() {
+        return this.size;
+    }
+
+    /**
+     * Moves every pair of {@code this} into {@code m}, boxing each value once.
+     *
+     * @param m
+     *            the {@code Map} to receive the pairs
+     * @updates m
+     * @clears this
+     * @requires DOMAIN(this) intersection DOMAIN(m) = {}
+     * @ensures m = #m union #this
+     */
+    @SuppressWarnings("unchecked")
+    public final void transferTo(Map<K, Integer> m) {
+        assert m != null : "Violation of: m is not null";
+
+        for (int e = 0; e < this.size; e++) {
+            m.add((K) this.keys[e], this.values[e]);
+        }
+        this.clear();
+    }
+
+    @Override
+    public final String toString() {
+        StringBuilder result = new StringBuilder("{");
+        for (int e = 0; e < this.size; e++) {
+            if (e > 0) {
+                result.append(",");
+            }
+            result.append("(").append(this.keys[e]).append(",")
+                    .append(this.values[e]).append(")");
+        }
+        return result.append("}").toString();
+    }
+
+}
@@ -0,0 +1,1296 @@
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import components.array.Array;
+import components.array.Array1L;
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachineSecondary;
+
+/**
+ * {@code SortingMachine} represented as a {@code Queue} and an {@code Array}
+ * (using an embedding of heap sort), with implementations of primary methods.
+ *
+ * <p>
+ * A machine constructed with a capacity K is bounded: it keeps only the K
+ * entries that come first in its order, which is all a client that will only
+ * ever remove the first K needs. In insertion mode it keeps them in a heap of
+ * size K ordered the other way round, so that the entry to drop when a better
+ * one arrives is at the root; adding n entries then takes O(n log K) time and
+ * O(K) space instead of O(n) space, and {@code changeToExtractionMode}
+ * heapifies just those K.
+ *
+ * <p>
+ * A machine constructed with a {@code ForkJoinPool} extracts in parallel:
+ * {@code changeToExtractionMode} splits the entries into one run per thread of
+ * the pool and sorts the runs on the pool at the same time, and
+ * {@code removeFirst} merges the runs, using a heap of runs ordered by their
+ * first entries. This spreads the O(n log n) work of sorting over the pool,
+ * leaving O(log k) work per {@code removeFirst} for k runs.
+ *
+ * @param <T>
+ *            type of {@code SortingMachine} entries
+ * @mathdefinitions
+ *
+ *                  <pre>
+ * IS_TOTAL_PREORDER (
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all x, y, z: T
+ *   ((r(x, y) or r(y, x))  and
+ *    (if (r(x, y) and r(y, z)) then r(x, z)))
+ *
+ * SUBTREE_IS_HEAP (
+ *   a: ARRAY_MODEL,
+ *   start: integer,
+ *   stop: integer,
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  [the subtree of a (when a is interpreted as a complete binary tree) rooted
+ *   at index start and only through entry stop of a satisfies the heap
+ *   ordering property according to the relation r]
+ *
+ * SUBTREE_ARRAY_ENTRIES (
+ *   a: ARRAY_MODEL,
+ *   start: integer,
+ *   stop: integer
+ *  ) : finite multiset of T is
+ *  [the multiset of entries in a that belong to the subtree of a
+ *   (when a is interpreted as a complete binary tree) rooted at
+ *   index start and only through entry stop]
+ *                  </pre>
+ *
+ * @convention
+ *
+ *             <pre>
+ * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method]  and
+ * $this.capacity >= 0  and
+ * [$this.capacity = 0  or  $this.pool = null]  and
+ * if $this.insertionMode  and  $this.capacity = 0 then
+ *   $this.heapSize = 0
+ * else if $this.insertionMode then
+ *   $this.entries = <>  and
+ *   |$this.heap.entries| = $this.capacity  and
+ *   0 <= $this.heapSize <= $this.capacity  and
+ *   [$this.heap.entries[0, $this.heapSize) are examinable]  and
+ *   SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
+ *     [relation computed by $this.evictionOrder.compare method])  and
+ *   [$this.evictionOrder is $this.machineOrder reversed]
+ * else if $this.pool /= null then
+ *   $this.entries = <>  and
+ *   |$this.runNext| = |$this.runEnd| = |$this.runHeap.entries|  and
+ *   |$this.runHeap.examinableIndices| = |$this.runHeap.entries|  and
+ *   0 <= $this.runCount <= |$this.runHeap.entries|  and
+ *   [for every r in $this.runHeap.entries[0, $this.runCount),
+ *    $this.runNext[r] < $this.runEnd[r]  and
+ *    $this.runs[$this.runNext[r], $this.runEnd[r]) is sorted by
+ *      [relation computed by $this.machineOrder.compare method]]  and
+ *   SUBTREE_IS_HEAP($this.runHeap, 0, $this.runCount - 1,
+ *     [relation computed by $this.runOrder.compare method])  and
+ *   [$this.runOrder compares runs r by their first entries
+ *    $this.runs[$this.runNext[r]]]  and
+ *   $this.heapSize = [sum over r in $this.runHeap.entries[0, $this.runCount)
+ *     of $this.runEnd[r] - $this.runNext[r]]
+ * else
+ *   $this.entries = <>  and
+ *   |$this.heap.examinableIndices| = |$this.heap.entries|  and
+ *   SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
+ *     [relation computed by $this.machineOrder.compare method])  and
+ *   0 <= $this.heapSize <= |$this.heap.entries|
+ *             </pre>
+ *
+ * @correspondence
+ *
+ *                 <pre>
+ * if $this.insertionMode  and  $this.capacity = 0 then
+ *   this = (true, $this.machineOrder, multiset_entries($this.entries))
+ * else if $this.insertionMode then
+ *   this = (true, $this.machineOrder,
+ *     multiset_entries($this.heap.entries[0, $this.heapSize)))
+ * else if $this.pool /= null then
+ *   this = (false, $this.machineOrder,
+ *     [union over r in $this.runHeap.entries[0, $this.runCount) of
+ *      multiset_entries($this.runs[$this.runNext[r], $this.runEnd[r]))])
+ * else
+ *   this = (false, $this.machineOrder,
+ *     multiset_entries($this.heap.entries[0, $this.heapSize)))
+ *                 </pre>
+ *
+ * @author Sheng Wang, Bolong Zhang
+ */
+public class SortingMachine5<T> extends SortingMachineSecondary<T> {
+
+    /**
+     * How thoroughly the representation is checked when assertion checking is
+     * on. With assertion checking off, nothing is checked at any level.
+     */
+    public enum CheckingLevel {
+        /**
+         * Only the preconditions of the kernel methods are checked.
+         */
+        OFF,
+        /**
+         * The constant-time parts of the convention are checked on every call,
+         * and after every sift the path it moved entries along is checked to
+         * satisfy the heap ordering; the whole heap is checked only once per
+         * (heap length) calls, so checking costs O(log n) amortized time per
+         * call.
+         */
+        SAMPLED,
+        /**
+         * The whole convention, and the heap preconditions of every sift, are
+         * checked on every call, which costs O(n) time per call.
+         */
+        FULL
+    }
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Fewest entries sorted in one run in parallel; fewer entries per thread
+     * than this are not worth the overhead of a task.
+     */
+    private static final int MIN_RUN_LENGTH = 1 << 13;
+
+    /**
+     * Checking level shared by all machines.
+     */
+    private static volatile CheckingLevel checkingLevel = CheckingLevel.FULL;
+
+    /**
+     * Order.
+     */
+    private Comparator<T> machineOrder;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Maximum number of entries kept, or 0 if there is no maximum.
+     */
+    private int capacity;
+
+    /**
+     * Order of the heap kept in insertion mode by a bounded machine: the
+     * reverse of {@code machineOrder}, so the entry to drop is at the root.
+     */
+    private Comparator<T> evictionOrder;
+
+    /**
+     * Pool that sorts the runs in parallel, or null if extraction is
+     * sequential.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Entries.
+     */
+    private Queue<T> entries;
+
+    /**
+     * Heap.
+     */
+    private Array<T> heap;
+
+    /**
+     * Heap size.
+     */
+    private int heapSize;
+
+    /**
+     * Entries in extraction mode of a parallel machine, in sorted runs.
+     */
+    private T[] runs;
+
+    /**
+     * Index in {@code runs} of the next entry of each run.
+     */
+    private int[] runNext;
+
+    /**
+     * Index in {@code runs} just past the last entry of each run.
+     */
+    private int[] runEnd;
+
+    /**
+     * Heap of the runs that are not used up, by their next entries.
+     */
+    private Array<Integer> runHeap;
+
+    /**
+     * Number of runs in {@code runHeap}.
+     */
+    private int runCount;
+
+    /**
+     * Order of runs by their next entries.
+     */
+    private Comparator<Integer> runOrder;
+
+    /**
+     * Number of convention checks since the whole heap was last checked; used
+     * only at {@code CheckingLevel.SAMPLED}, and not part of the
+     * representation.
+     */
+    private int checksSinceFullCheck;
+
+    /**
+     * Given an {@code Array} that represents a complete binary tree and an
+     * index referring to the root of a subtree that would be a heap except for
+     * its root, sifts the root down to turn that whole subtree into a heap.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param top
+     *            the index of the root of the "subtree"
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @updates array.entries
+     * @requires
+     *
+     *           <pre>
+     * 0 <= top  and  last < |array.entries|  and
+     * |array.examinableIndices| = |array.entries|  and
+     * [subtree rooted at {@code top} is a complete binary tree]  and
+     * SUBTREE_IS_HEAP(array, 2 * top + 1, last,
+     *     [relation computed by order.compare method])  and
+     * SUBTREE_IS_HEAP(array, 2 * top + 2, last,
+     *     [relation computed by order.compare method])  and
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])
+     *           </pre>
+     *
+     * @ensures
+     *
+     *          <pre>
+     * SUBTREE_IS_HEAP(array, top, last,
+     *     [relation computed by order.compare method])  and
+     * perms(array.entries, #array.entries)  and
+     * SUBTREE_ARRAY_ENTRIES(array, top, last) =
+     *  SUBTREE_ARRAY_ENTRIES(#array, top, last)  and
+     * [the other entries in array.entries are the same as in #array.entries]
+     *          </pre>
+     */
+    private static <T> void siftDown(Array<T> array, int top, int last,
+            Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert order != null : "Violation of: order is not null";
+        assert 0 <= top : "Violation of: 0 <= top";
+        assert last < array.length() : "Violation of: last < |array.entries|";
+        if (checkingLevel == CheckingLevel.FULL) {
+            for (int i = 0; i < array.length(); i++) {
+                assert array.mayBeExamined(i) : ""
+                        + "Violation of: |array.examinableIndices| = |array.entries|";
+            }
+            assert isHeap(array, 2 * top + 1, last, order) : ""
+                    + "Violation of: SUBTREE_IS_HEAP(array, 2 * top + 1, last,"
+                    + " [relation computed by order.compare method])";
+            assert isHeap(array, 2 * top + 2, last, order) : ""
+                    + "Violation of: SUBTREE_IS_HEAP(array, 2 * top + 2, last,"
+                    + " [relation computed by order.compare method])";
+        }
+        /*
+         * Impractical to check last requires clause; no need to check the other
+         * requires clause, because it must be true when using the Array
+         * representation for a complete binary tree. The heap preconditions
+         * take time linear in the size of the subtree, so they are only
+         * checked at CheckingLevel.FULL.
+         */
+
+        /*
+         * Move the root entry down a "hole": at each level pick the smaller
+         * child with one comparison, move it up into the hole, and stop as
+         * soon as the root entry is no larger than both children; the root
+         * entry is then written once, into the final hole
+         */
+        T root = array.entry(top);
+        int hole = top;
+        int child = 2 * hole + 1;
+        boolean placed = false;
+        while (child <= last && !placed) {
+            T smaller = array.entry(child);
+            int right = child + 1;
+            if (right <= last) {
+                T rightEntry = array.entry(right);
+                if (order.compare(rightEntry, smaller) < 0) {
+                    child = right;
+                    smaller = rightEntry;
+                }
+            }
+            if (order.compare(smaller, root) < 0) {
+                array.setEntry(hole, smaller);
+                hole = child;
+                child = 2 * hole + 1;
+            } else {
+                placed = true;
+            }
+        }
+        array.setEntry(hole, root);
+        assert checkingLevel == CheckingLevel.OFF
+                || pathIsHeap(array, top, hole, last, order) : ""
+                        + "Violation of: SUBTREE_IS_HEAP(array, top, last,"
+                        + " [relation computed by order.compare method])";
+    }
+
+    /**
+     * Given an {@code Array} whose entries through {@code bottom - 1} form a
+     * heap, sifts the entry at {@code bottom} up so that the entries through
+     * {@code bottom} form a heap.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param bottom
+     *            the index of the entry to sift up
+     * @param order
+     *            total preorder for sorting
+     * @updates array.entries
+     * @requires
+     *
+     *           <pre>
+     * 0 <= bottom < |array.entries|  and
+     * [array.entries[0, bottom] are examinable]  and
+     * SUBTREE_IS_HEAP(array, 0, bottom - 1,
+     *     [relation computed by order.compare method])
+     *           </pre>
+     *
+     * @ensures
+     *
+     *          <pre>
+     * SUBTREE_IS_HEAP(array, 0, bottom,
+     *     [relation computed by order.compare method])  and
+     * perms(array.entries, #array.entries)
+     *          </pre>
+     */
+    private static <T> void siftUp(Array<T> array, int bottom,
+            Comparator<T> order) {
+        T x = array.entry(bottom);
+        int hole = bottom;
+        boolean placed = false;
+        while (hole > 0 && !placed) {
+            int parent = (hole - 1) / 2;
+            T parentEntry = array.entry(parent);
+            if (order.compare(x, parentEntry) < 0) {
+                array.setEntry(hole, parentEntry);
+                hole = parent;
+            } else {
+                placed = true;
+            }
+        }
+        array.setEntry(hole, x);
+    }
+
+    /**
+     * Heapifies the given {@code Array} bottom-up, in place: every subtree
+     * rooted at a leaf is already a heap, so sifting down the roots of the
+     * other subtrees, from the last one back to the root, makes each a heap in
+     * turn (Floyd's method). This takes O(n) time, since most subtrees are
+     * short.
+     *
+     * @param <T>
+     *            type of {@code Array} entries
+     * @param array
+     *            the {@code Array} to be turned into a heap
+     * @param order
+     *            the total preorder for sorting
+     * @updates array.entries
+     * @requires
+     *
+     *           <pre>
+     * |array.examinableIndices| = |array.entries|  and
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])
+     *           </pre>
+     *
+     * @ensures
+     *
+     *          <pre>
+     * SUBTREE_IS_HEAP(array, 0, |array.entries| - 1,
+     *     [relation computed by order.compare method])  and
+     * perms(array.entries, #array.entries)
+     *          </pre>
+     */
+    private static <T> void heapify(Array<T> array, Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert order != null : "Violation of: order is not null";
+        for (int i = 0; i < array.length(); i++) {
+            assert array.mayBeExamined(i) : ""
+                    + "Violation of: |array.examinableIndices| = |array.entries|";
+        }
+        /*
+         * Impractical to check last requires clause.
+         */
+
+        int last = array.length() - 1;
+        // The last entry with a child is the parent of the last entry
+        for (int top = array.length() / 2 - 1; top >= 0; top--) {
+            siftDown(array, top, last, order);
+        }
+    }
+
+    /**
+     * Constructs and returns an {@code Array} representing a heap with the
+     * entries from the given {@code Queue}.
+     *
+     * @param <T>
+     *            type of {@code Queue} and {@code Array} entries
+     * @param q
+     *            the {@code Queue} with the entries for the heap
+     * @param order
+     *            the total preorder for sorting
+     * @return the {@code Array} representation of a heap
+     * @clears q
+     * @requires IS_TOTAL_PREORDER([relation computed by order.compare method])
+     * @ensures
+     *
+     *          <pre>
+     * SUBTREE_IS_HEAP(buildHeap, 0, |buildHeap.entries| - 1)  and
+     * perms(buildHeap.entries, #q)  and
+     * |buildHeap.examinableIndices| = |buildHeap.entries|
+     *          </pre>
+     */
+    private static <T> Array<T> buildHeap(Queue<T> q, Comparator<T> order) {
+        assert q != null : "Violation of: q is not null";
+        assert order != null : "Violation of: order is not null";
+        /*
+         * Impractical to check the requires clause.
+         */
+
+        int size = q.length();
+        // Initialize the array
+        Array<T> array = new Array1L<T>(size);
+        // Add each element into the array
+        for (int i = 0; i < size; i++) {
+            array.setEntry(i, q.dequeue());
+        }
+        // Heapify the array
+        heapify(array, order);
+        return array;
+    }
+
+    /**
+     * Fork-join task that sorts a range of runs of an array, splitting the
+     * range in halves until each task sorts a single run.
+     *
+     * @param <T>
+     *            type of array entries
+     */
+    private static final class RunSorter<T> extends RecursiveAction {
+
+        /**
+         * Serialization version, as {@code RecursiveAction} is serializable.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The array whose runs are sorted.
+         */
+        private final T[] array;
+
+        /**
+         * Index of the first entry of each run.
+         */
+        private final int[] start;
+
+        /**
+         * Index just past the last entry of each run.
+         */
+        private final int[] end;
+
+        /**
+         * First run of the range.
+         */
+        private final int lo;
+
+        /**
+         * Run just past the range.
+         */
+        private final int hi;
+
+        /**
+         * The order to sort by.
+         */
+        private final Comparator<T> order;
+
+        /**
+         * Constructor.
+         *
+         * @param array
+         *            the array whose runs are sorted
+         * @param start
+         *            index of the first entry of each run
+         * @param end
+         *            index just past the last entry of each run
+         * @param lo
+         *            first run of the range
+         * @param hi
+         *            run just past the range
+         * @param order
+         *            the order to sort by
+         */
+        RunSorter(T[] array, int[] start, int[] end, int lo, int hi,
+                Comparator<T> order) {
+            this.array = array;
+            this.start = start;
+            this.end = end;
+            this.lo = lo;
+            this.hi = hi;
+            this.order = order;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.hi - this.lo == 1) {
+                Arrays.sort(this.array, this.start[this.lo],
+                        this.end[this.lo], this.order);
+            } else {
+                int mid = (this.lo + this.hi) >>> 1;
+                invokeAll(
+                        new RunSorter<T>(this.array, this.start, this.end,
+                                this.lo, mid, this.order),
+                        new RunSorter<T>(this.array, this.start, this.end, mid,
+                                this.hi, this.order));
+            }
+        }
+    }
+
+    /**
+     * Moves the entries of the given {@code Queue} into runs, one per thread
+     * of {@code this.pool} but each of at least {@code MIN_RUN_LENGTH} entries
+     * if there are that many, sorts the runs in parallel on
+     * {@code this.pool}, and makes the heap of runs.
+     *
+     * @updates this
+     * @clears q
+     * @requires
+     *
+     *           <pre>
+     * $this.pool /= null  and
+     * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method])
+     *           </pre>
+     *
+     * @ensures
+     *
+     *          <pre>
+     * [the representation of this is a parallel extraction mode one, as in the
+     *  convention]  and
+     * [the union of the runs] = multiset_entries(#q)
+     *          </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private void buildRuns(Queue<T> q) {
+        int n = q.length();
+        int k = Math.max(1,
+                Math.min(this.pool.getParallelism(), n / MIN_RUN_LENGTH));
+        this.runs = (T[]) new Object[n];
+        for (int i = 0; i < n; i++) {
+            this.runs[i] = q.dequeue();
+        }
+        this.runNext = new int[k];
+        this.runEnd = new int[k];
+        for (int r = 0; r < k; r++) {
+            this.runNext[r] = (int) ((long) r * n / k);
+            this.runEnd[r] = (int) ((long) (r + 1) * n / k);
+        }
+        this.pool.invoke(new RunSorter<T>(this.runs, this.runNext, this.runEnd,
+                0, k, this.machineOrder));
+        /*
+         * Capture the arrays, not this, so the order stays right after the
+         * representation is transferred to another machine
+         */
+        T[] a = this.runs;
+        int[] next = this.runNext;
+        Comparator<T> order = this.machineOrder;
+        this.runOrder = (r1, r2) -> order.compare(a[next[r1]], a[next[r2]]);
+        // Only runs with entries go in the heap
+        this.runHeap = new Array1L<Integer>(k);
+        this.runCount = 0;
+        for (int r = 0; r < k; r++) {
+            if (this.runNext[r] < this.runEnd[r]) {
+                this.runHeap.setEntry(this.runCount, r);
+                this.runCount++;
+            }
+        }
+        for (int i = this.runCount; i < k; i++) {
+            this.runHeap.setEntry(i, 0);
+        }
+        for (int top = this.runCount / 2 - 1; top >= 0; top--) {
+            siftDown(this.runHeap, top, this.runCount - 1, this.runOrder);
+        }
+        this.heapSize = n;
+    }
+
+    /**
+     * Removes and returns the first entry of the runs of a parallel machine in
+     * extraction mode.
+     *
+     * @return the first entry of the run at the root of the heap of runs
+     * @updates this
+     * @requires $this.pool /= null  and  not $this.insertionMode  and
+     *           $this.heapSize > 0
+     * @ensures [removeFirstOfRuns is the first entry of all runs in
+     *          #this, and this is #this without it]
+     */
+    private T removeFirstOfRuns() {
+        int r = this.runHeap.entry(0);
+        T first = this.runs[this.runNext[r]];
+        // Let go of the entry, so the runs do not keep it reachable
+        this.runs[this.runNext[r]] = null;
+        this.runNext[r]++;
+        this.heapSize--;
+        if (this.runNext[r] == this.runEnd[r]) {
+            // The run is used up: replace it by the last run in the heap
+            this.runCount--;
+            this.runHeap.setEntry(0, this.runHeap.entry(this.runCount));
+            this.runHeap.setEntry(this.runCount, r);
+        }
+        siftDown(this.runHeap, 0, this.runCount - 1, this.runOrder);
+        return first;
+    }
+
+    /**
+     * Checks if the subtree of the given {@code Array} rooted at the given
+     * {@code top} is a heap.
+     *
+     * @param <T>
+     *            type of {@code Array} entries
+     * @param array
+     *            the complete binary tree
+     * @param top
+     *            the index of the root of the "subtree"
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @return true if the subtree of the given {@code Array} rooted at the
+     *         given {@code top} is a heap; false otherwise
+     * @requires
+     *
+     *           <pre>
+     * 0 <= top  and  last < |array.entries|  and
+     * |array.examinableIndices| = |array.entries|  and
+     * [subtree rooted at {@code top} is a complete binary tree]
+     *           </pre>
+     *
+     * @ensures
+     *
+     *          <pre>
+     * isHeap = SUBTREE_IS_HEAP(heap, top, last,
+     *     [relation computed by order.compare method])
+     *          </pre>
+     */
+    private static <T> boolean isHeap(Array<T> array, int top, int last,
+            Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert 0 <= top : "Violation of: 0 <= top";
+        assert last < array.length() : "Violation of: last < |array.entries|";
+        /*
+         * No need to check the examinable indices: every caller has just
+         * checked them, and checking them again at every level of the
+         * recursion would take quadratic time. No need to check the other
+         * requires clause, because it must be true when using the Array
+         * representation for a complete binary tree.
+         */
+        int left = 2 * top + 1;
+        boolean isHeap = true;
+        if (left <= last) {
+            isHeap = (order.compare(array.entry(top), array.entry(left)) <= 0)
+                    && isHeap(array, left, last, order);
+            int right = left + 1;
+            if (isHeap && (right <= last)) {
+                isHeap = (order.compare(array.entry(top),
+                        array.entry(right)) <= 0)
+                        && isHeap(array, right, last, order);
+            }
+        }
+        return isHeap;
+    }
+
+    /**
+     * Checks that every entry on the path from {@code top} down to
+     * {@code bottom} is in order with its children. After a sift from
+     * {@code top} that ended at {@code bottom}, these are the only
+     * parent-child pairs that changed, so if the two subtrees of {@code top}
+     * were heaps before the sift, this checks in O(log n) time that the whole
+     * subtree rooted at {@code top} is a heap now.
+     *
+     * @param <T>
+     *            type of {@code Array} entries
+     * @param array
+     *            the complete binary tree
+     * @param top
+     *            the index of the start of the path
+     * @param bottom
+     *            the index of the end of the path
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @return true if each entry on the path is no larger than its children
+     *         through entry {@code last}; false otherwise
+     * @requires
+     *
+     *           <pre>
+     * 0 <= top <= bottom  and  last < |array.entries|  and
+     * [bottom is in the subtree rooted at top]
+     *           </pre>
+     */
+    private static <T> boolean pathIsHeap(Array<T> array, int top,
+            int bottom, int last, Comparator<T> order) {
+        boolean inOrder = true;
+        int node = bottom;
+        boolean done = false;
+        while (inOrder && !done) {
+            int left = 2 * node + 1;
+            if (left <= last) {
+                inOrder = order.compare(array.entry(node),
+                        array.entry(left)) <= 0;
+            }
+            if (inOrder && left + 1 <= last) {
+                inOrder = order.compare(array.entry(node),
+                        array.entry(left + 1)) <= 0;
+            }
+            done = node <= top;
+            node = (node - 1) / 2;
+        }
+        return inOrder;
+    }
+
+    /**
+     * Checks that the part of the convention repeated below holds for the
+     * current representation.
+     *
+     * @return true if the convention holds (or if assertion checking or the
+     *         checking level is off); otherwise reports a violated assertion
+     * @convention
+     *
+     *             <pre>
+     * if $this.insertionMode  and  $this.capacity = 0 then
+     *   $this.heapSize = 0
+     * else if $this.insertionMode then
+     *   $this.entries = <>  and
+     *   |$this.heap.entries| = $this.capacity  and
+     *   0 <= $this.heapSize <= $this.capacity  and
+     *   SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
+     *     [relation computed by $this.evictionOrder.compare method])
+     * else if $this.pool /= null then
+     *   $this.entries = <>  and
+     *   0 <= $this.runCount <= |$this.runHeap.entries|  and
+     *   [every run in $this.runHeap.entries[0, $this.runCount) is not used
+     *    up and is sorted]  and
+     *   SUBTREE_IS_HEAP($this.runHeap, 0, $this.runCount - 1,
+     *     [relation computed by $this.runOrder.compare method])  and
+     *   $this.heapSize = [number of entries left in those runs]
+     * else
+     *   $this.entries = <>  and
+     *   |$this.heap.examinableIndices| = |$this.heap.entries|  and
+     *   SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
+     *     [relation computed by $this.machineOrder.compare method])  and
+     *   0 <= $this.heapSize <= |$this.heap.entries|
+     *             </pre>
+     */
+    private boolean conventionHolds() {
+        CheckingLevel level = checkingLevel;
+        if (level != CheckingLevel.OFF) {
+            if (this.insertionMode && this.capacity == 0) {
+                assert this.heapSize == 0 : ""
+                        + "Violation of: if $this.insertionMode and"
+                        + " $this.capacity = 0 then $this.heapSize = 0";
+            } else if (this.insertionMode) {
+                assert this.entries.length() == 0 : ""
+                        + "Violation of: if $this.insertionMode then $this.entries = <>";
+                assert this.heap.length() == this.capacity : ""
+                        + "Violation of: if $this.insertionMode then"
+                        + " |$this.heap.entries| = $this.capacity";
+                assert 0 <= this.heapSize
+                        && this.heapSize <= this.capacity : ""
+                                + "Violation of: if $this.insertionMode then"
+                                + " 0 <= $this.heapSize <= $this.capacity";
+                if (level == CheckingLevel.FULL || this.fullCheckDue()) {
+                    assert isHeap(this.heap, 0, this.heapSize - 1,
+                            this.evictionOrder) : ""
+                                    + "Violation of: if $this.insertionMode then"
+                                    + " SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,"
+                                    + " [relation computed by $this.evictionOrder.compare method])";
+                }
+            } else if (this.pool != null) {
+                assert this.entries.length() == 0 : ""
+                        + "Violation of: if not $this.insertionMode then $this.entries = <>";
+                assert 0 <= this.runCount
+                        && this.runCount <= this.runHeap.length() : ""
+                                + "Violation of: 0 <= $this.runCount <= |$this.runHeap.entries|";
+                if (level == CheckingLevel.FULL || this.fullCheckDue()) {
+                    long left = 0;
+                    for (int i = 0; i < this.runCount; i++) {
+                        int r = this.runHeap.entry(i);
+                        assert this.runNext[r] < this.runEnd[r] : ""
+                                + "Violation of: [every run in $this.runHeap.entries"
+                                + "[0, $this.runCount) is not used up]";
+                        for (int j = this.runNext[r] + 1; j < this.runEnd[r]; j++) {
+                            assert this.machineOrder.compare(this.runs[j - 1],
+                                    this.runs[j]) <= 0 : ""
+                                            + "Violation of: [every run in $this.runHeap.entries"
+                                            + "[0, $this.runCount) is sorted]";
+                        }
+                        left += this.runEnd[r] - this.runNext[r];
+                    }
+                    assert this.heapSize == left : ""
+                            + "Violation of: $this.heapSize ="
+                            + " [number of entries left in those runs]";
+                    assert isHeap(this.runHeap, 0, this.runCount - 1,
+                            this.runOrder) : ""
+                                    + "Violation of: SUBTREE_IS_HEAP($this.runHeap, 0,"
+                                    + " $this.runCount - 1,"
+                                    + " [relation computed by $this.runOrder.compare method])";
+                }
+            } else {
+                assert this.entries.length() == 0 : ""
+                        + "Violation of: if not $this.insertionMode then $this.entries = <>";
+                assert 0 <= this.heapSize : ""
+                        + "Violation of: if not $this.insertionMode then 0 <= $this.heapSize";
+                assert this.heapSize <= this.heap.length() : ""
+                        + "Violation of: if not $this.insertionMode then"
+                        + " $this.heapSize <= |$this.heap.entries|";
+                if (level == CheckingLevel.FULL || this.fullCheckDue()) {
+                    for (int i = 0; i < this.heap.length(); i++) {
+                        assert this.heap.mayBeExamined(i) : ""
+                                + "Violation of: if not $this.insertionMode then"
+                                + " |$this.heap.examinableIndices| = |$this.heap.entries|";
+                    }
+                    assert isHeap(this.heap, 0, this.heapSize - 1,
+                            this.machineOrder) : ""
+                                    + "Violation of: if not $this.insertionMode then"
+                                    + " SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,"
+                                    + " [relation computed by $this.machineOrder.compare method])";
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Counts one convention check at {@code CheckingLevel.SAMPLED} and reports
+     * whether it is time to check the whole heap: once every
+     * {@code |$this.heap.entries|} checks (or {@code |$this.runs|} checks, for
+     * the runs of a parallel machine), so that the linear cost of a whole
+     * check is spread over as many calls.
+     *
+     * @return true iff the whole heap should be checked now
+     * @updates this.checksSinceFullCheck
+     * @requires not $this.insertionMode or $this.capacity > 0
+     */
+    private boolean fullCheckDue() {
+        this.checksSinceFullCheck++;
+        int period;
+        if (this.heap != null) {
+            period = this.heap.length();
+        } else {
+            period = this.runs.length;
+        }
+        boolean due = this.checksSinceFullCheck >= period;
+        if (due) {
+            this.checksSinceFullCheck = 0;
+        }
+        return due;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param k
+     *            maximum number of entries kept, or 0 for no maximum
+     * @param p
+     *            pool to extract in parallel on, or null for sequential
+     *            extraction
+     */
+    private void createNewRep(Comparator<T> order, int k, ForkJoinPool p) {
+        this.insertionMode = true;
+        this.machineOrder = order;
+        this.capacity = k;
+        this.pool = p;
+        this.runs = null;
+        this.runNext = null;
+        this.runEnd = null;
+        this.runHeap = null;
+        this.runCount = 0;
+        this.runOrder = null;
+        this.entries = new Queue1L<T>();
+        this.heapSize = 0;
+        if (k > 0) {
+            this.evictionOrder = order.reversed();
+            this.heap = new Array1L<T>(k);
+        } else {
+            this.evictionOrder = null;
+            this.heap = null;
+        }
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from order.
+     *
+     * @param order
+     *            total preorder for sorting
+     */
+    public SortingMachine5(Comparator<T> order) {
+        this.createNewRep(order, 0, null);
+        assert this.conventionHolds();
+    }
+
+    /**
+     * Constructor from order and capacity, resulting in a bounded machine that
+     * keeps only the first {@code capacity} entries added, in order. Every
+     * {@code add} on this machine behaves as specified by the following
+     * contract instead of that of {@code SortingMachineKernel.add}.
+     *
+     * <pre>
+     * updates this.contents
+     * ensures
+     *  if |#this.contents| < capacity then
+     *    this.contents = #this.contents union {x}
+     *  else
+     *    [this.contents is #this.contents union {x} without one entry y of
+     *     it such that, for every entry z of this.contents,
+     *     [relation computed by order.compare method](z, y)]
+     * </pre>
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param capacity
+     *            maximum number of entries kept
+     * @requires capacity > 0
+     */
+    public SortingMachine5(Comparator<T> order, int capacity) {
+        assert capacity > 0 : "Violation of: capacity > 0";
+
+        this.createNewRep(order, capacity, null);
+        assert this.conventionHolds();
+    }
+
+    /**
+     * Constructor from order and pool, resulting in a machine that extracts in
+     * parallel: {@code changeToExtractionMode} sorts runs of the entries on
+     * {@code pool} at the same time, and {@code removeFirst} merges the runs.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param pool
+     *            pool to sort on
+     */
+    public SortingMachine5(Comparator<T> order, ForkJoinPool pool) {
+        assert pool != null : "Violation of: pool is not null";
+
+        this.createNewRep(order, 0, pool);
+        assert this.conventionHolds();
+    }
+
+    /*
+     * Checking level ---------------------------------------------------------
+     */
+
+    /**
+     * Sets how thoroughly every {@code SortingMachine5} checks its
+     * representation when assertion checking is on; the default is
+     * {@code CheckingLevel.FULL}.
+     *
+     * @param level
+     *            the new checking level
+     * @ensures checkingLevel = level
+     */
+    public static void setCheckingLevel(CheckingLevel level) {
+        assert level != null : "Violation of: level is not null";
+
+        checkingLevel = level;
+    }
+
+    /**
+     * Reports how thoroughly every {@code SortingMachine5} checks its
+     * representation when assertion checking is on.
+     *
+     * @return the checking level
+     */
+    public static CheckingLevel checkingLevel() {
+        return checkingLevel;
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final SortingMachine<T> newInstance() {
+        try {
+            SortingMachine<T> result;
+            if (this.capacity > 0) {
+                Constructor<?> c = this.getClass()
+                        .getConstructor(Comparator.class, int.class);
+                result = (SortingMachine<T>) c.newInstance(this.machineOrder,
+                        this.capacity);
+            } else if (this.pool != null) {
+                Constructor<?> c = this.getClass()
+                        .getConstructor(Comparator.class, ForkJoinPool.class);
+                result = (SortingMachine<T>) c.newInstance(this.machineOrder,
+                        this.pool);
+            } else {
+                Constructor<?> c = this.getClass()
+                        .getConstructor(Comparator.class);
+                result = (SortingMachine<T>) c.newInstance(this.machineOrder);
+            }
+            return result;
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(this.machineOrder, this.capacity, this.pool);
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void transferFrom(SortingMachine<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof SortingMachine5<?> : ""
+                + "Violation of: source is of dynamic type SortingMachine5<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * SortingMachine5<?>, and the ? must be T or the call would not have
+         * compiled.
+         */
+        SortingMachine5<T> localSource = (SortingMachine5<T>) source;
+        this.insertionMode = localSource.insertionMode;
+        this.machineOrder = localSource.machineOrder;
+        this.capacity = localSource.capacity;
+        this.evictionOrder = localSource.evictionOrder;
+        this.entries = localSource.entries;
+        this.heap = localSource.heap;
+        this.heapSize = localSource.heapSize;
+        this.pool = localSource.pool;
+        this.runs = localSource.runs;
+        this.runNext = localSource.runNext;
+        this.runEnd = localSource.runEnd;
+        this.runHeap = localSource.runHeap;
+        this.runCount = localSource.runCount;
+        this.runOrder = localSource.runOrder;
+        localSource.createNewRep(localSource.machineOrder,
+                localSource.capacity, localSource.pool);
+        assert this.conventionHolds();
+        assert localSource.conventionHolds();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        if (this.capacity == 0) {
+            this.entries.enqueue(x);
+        } else if (this.heapSize < this.capacity) {
+            this.heap.setEntry(this.heapSize, x);
+            siftUp(this.heap, this.heapSize, this.evictionOrder);
+            this.heapSize++;
+        } else if (this.machineOrder.compare(x, this.heap.entry(0)) < 0) {
+            // x comes before the last entry kept, which makes room for it
+            this.heap.setEntry(0, x);
+            siftDown(this.heap, 0, this.heapSize - 1, this.evictionOrder);
+        }
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void changeToExtractionMode() {
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        this.insertionMode = false;
+        if (this.pool != null) {
+            this.buildRuns(this.entries);
+        } else if (this.capacity == 0) {
+            this.heapSize = this.entries.length();
+            // Build the heap
+            this.heap = buildHeap(this.entries, this.machineOrder);
+        } else {
+            if (this.heapSize < this.capacity) {
+                // Fewer entries than the capacity: keep only those in use
+                Array<T> exact = new Array1L<T>(this.heapSize);
+                for (int i = 0; i < this.heapSize; i++) {
+                    exact.setEntry(i, this.heap.entry(i));
+                }
+                this.heap = exact;
+            }
+            // Turn the heap the other way round
+            heapify(this.heap, this.machineOrder);
+        }
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final T removeFirst() {
+        assert!this
+                .isInInsertionMode() : "Violation of: not this.insertion_mode";
+        assert this.size() > 0 : "Violation of: this.contents /= {}";
+
+        T top;
+        if (this.pool != null) {
+            top = this.removeFirstOfRuns();
+        } else {
+            int len = this.heapSize;
+            top = this.heap.entry(0);
+            T last = this.heap.entry(len - 1);
+            // Replace the first by the last
+            this.heap.replaceEntry(0, last);
+            this.heapSize--;
+            // SiftDown the new first element
+            siftDown(this.heap, 0, this.heapSize - 1, this.machineOrder);
+        }
+        assert this.conventionHolds();
+        return top;
+    }
+
+    @Override
+    public final boolean isInInsertionMode() {
+        assert this.conventionHolds();
+        return this.insertionMode;
+    }
+
+    @Override
+    public final Comparator<T> order() {
+        assert this.conventionHolds();
+        return this.machineOrder;
+    }
+
+    @Override
+    public final int size() {
+
+        int size;
+        // Determine which mode it is
+        if (this.insertionMode && this.capacity == 0) {
+            size = this.entries.length();
+        } else {
+            size = this.heapSize;
+        }
+        assert this.conventionHolds();
+        return size;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new SortingMachine5Iterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code SortingMachine5}.
+     */
+    private final class SortingMachine5Iterator implements Iterator<T> {
+
+        /**
+         * Representation iterator, or null when iterating over the runs of a
+         * parallel machine.
+         */
+        private final Iterator<T> iterator;
+
+        /**
+         * Run being iterated over, for a parallel machine.
+         */
+        private int run;
+
+        /**
+         * Index in {@code runs} of the next entry, for a parallel machine.
+         */
+        private int position;
+
+        /**
+         * Iterator count.
+         */
+        private int notSeenCount;
+
+        /**
+         * No-argument constructor.
+         */
+        private SortingMachine5Iterator() {
+            if (SortingMachine5.this.insertionMode
+                    && SortingMachine5.this.capacity == 0) {
+                this.iterator = SortingMachine5.this.entries.iterator();
+                this.notSeenCount = SortingMachine5.this.entries.length();
+            } else if (SortingMachine5.this.pool != null) {
+                this.iterator = null;
+                this.run = 0;
+                this.position = SortingMachine5.this.runNext[0];
+                this.notSeenCount = SortingMachine5.this.heapSize;
+            } else {
+                // Only the first heapSize entries of the heap are in use
+                this.iterator = SortingMachine5.this.heap.iterator();
+                this.notSeenCount = SortingMachine5.this.heapSize;
+            }
+            assert SortingMachine5.this.conventionHolds();
+        }
+
+        @Override
+        public boolean hasNext() {
+            assert SortingMachine5.this.conventionHolds();
+            return this.notSeenCount > 0;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            this.notSeenCount--;
+            T next;
+            if (this.iterator != null) {
+                next = this.iterator.next();
+            } else {
+                // Skip the runs that are used up
+                while (this.position == SortingMachine5.this.runEnd[this.run]) {
+                    this.run++;
+                    this.position = SortingMachine5.this.runNext[this.run];
+                }
+                next = SortingMachine5.this.runs[this.position];
+                this.position++;
+            }
+            assert SortingMachine5.this.conventionHolds();
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
@@ -103,37 +103,27 @@ public final class TagCloudGenerator {
      *          occurred frequency
      */
     private static Map<String, Integer> readFromFile(SimpleReader inFile) {
-        Map<String, Integer> map = new Map2<String, Integer>();
-        String word = "";
-        int count = 0;
+        // Count into unboxed ints, then box each distinct word's count once
+        ObjectIntMap<String> counts = new ObjectIntMap<String>();
+        StringBuilder word = new StringBuilder();
         // Constantly add words from the file into the map
         while (!inFile.atEOS()) {
             char next = Character.toLowerCase(inFile.read());
             if (isSeparator(next, SEPARATORS)) {
-                if (!word.equals("")) {
-                    count = 1;
-                    if (map.hasKey(word)) {
-                        count = map.value(word);
-                        count++;
-                        map.remove(word);
-                    }
-                    map.add(word, count);
+                if (word.length() > 0) {
+                    counts.increment(word.toString());
                 }
-                word = "";
+                word.setLength(0);
             } else {
-                word += next;
+                word.append(next);
             }
         }
         // Add the last word from the file
-        if (!word.equals("")) {
-            count = 1;
-            if (map.hasKey(word)) {
-                count = map.value(word);
-                count++;
-                map.remove(word);
-            }
-            map.add(word, count);
+        if (word.length() > 0) {
+            counts.increment(word.toString());
         }
+        Map<String, Integer> map = new Map2<String, Integer>();
+        counts.transferTo(map);
         return map;
     }
 
@@ -154,8 +144,13 @@ public final class TagCloudGenerator {
             Map<String, Integer> map, int size) {
         SortingMachine<Map.Pair<String, Integer>> sortedAlphWords = new SortingMachine3<Map.Pair<String, Integer>>(
                 new alphComparator());
-        SortingMachine<Map.Pair<String, Integer>> sortedNumWords = new SortingMachine3<Map.Pair<String, Integer>>(
-                new numComparator());
+        /*
+         * Only the first size words by count are ever removed, so keep only
+         * those instead of sorting the whole map; a bounded machine keeps at
+         * least one word, and the loop below takes at most size of them
+         */
+        SortingMachine<Map.Pair<String, Integer>> sortedNumWords = new SortingMachine5<Map.Pair<String, Integer>>(
+                new numComparator(), Math.max(size, 1));
         Map<String, Integer> temp = map.newInstance();
         temp.transferFrom(map);
         while (temp.size() > 0) {
@@ -77,19 +77,13 @@ public final class WordCounter {
      * @return map that contains words and their occurrences.
      */
     public static Map<String, Integer> getWordMap(Queue<String> wordQueue) {
-        Map<String, Integer> wordMap = new Map1L<String, Integer>();
+        // Count into unboxed ints, then box each distinct word's count once
+        ObjectIntMap<String> counts = new ObjectIntMap<String>();
         for (String i : wordQueue) {
-            // Check if the map has the word
-            if (!wordMap.hasKey(i)) {
-                // Add the word into the map
-                wordMap.add(i, 1);
-            } else {
-                // Increase the value of the exited word
-                int value = wordMap.value(i);
-                value++;
-                wordMap.replaceValue(i, value);
-            }
+            counts.increment(i);
         }
+        Map<String, Integer> wordMap = new Map1L<String, Integer>();
+        counts.transferTo(wordMap);
         return wordMap;
     }
 
@@ -13,6 +13,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 
 /**
  * This program asks the user to input text file, and it will generates a tag
@@ -158,16 +159,36 @@ public final class TagCloudGeneratorSTD {
      * @param size
      *            the number of words in the cloud
      * @return the subList in alphabetic order
-     * @ensures subList.size == size
+     * @ensures subList.size == min(max(size, 0), map.size)
      */
     private static List<Map.Entry<String, Integer>> sortedWords(
             Map<String, Integer> map, int size) {
-        List<Map.Entry<String, Integer>> entries = new ArrayList<Map.Entry<String, Integer>>(
-                map.entrySet());
-        Collections.sort(entries, new numericComparator());
-        List<Map.Entry<String, Integer>> subList = entries.subList(0, size);
-        maxNumber = subList.get(0).getValue();
-        minNumber = subList.get(subList.size() - 1).getValue();
+        List<Map.Entry<String, Integer>> subList = new ArrayList<Map.Entry<String, Integer>>();
+        // With no words to show, there are no counts to scale the fonts by
+        minNumber = 0;
+        maxNumber = 0;
+        if (size > 0 && map.size() > 0) {
+            /*
+             * Keep only the first size entries by count in a heap whose root
+             * is the one to drop when a larger count arrives, instead of
+             * sorting every entry of the map
+             */
+            PriorityQueue<Map.Entry<String, Integer>> top = new PriorityQueue<Map.Entry<String, Integer>>(
+                    size + 1,
+                    Collections.reverseOrder(new numericComparator()));
+            for (Map.Entry<String, Integer> entry : map.entrySet()) {
+                top.add(entry);
+                if (top.size() > size) {
+                    top.poll();
+                }
+            }
+            subList.addAll(top);
+            minNumber = top.peek().getValue();
+            maxNumber = minNumber;
+            for (Map.Entry<String, Integer> entry : subList) {
+                maxNumber = Math.max(maxNumber, entry.getValue());
+            }
+        }
         Collections.sort(subList, new alphebeticalComparator());
         return subList;
     }